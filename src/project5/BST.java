@@ -1,18 +1,37 @@
 package project5;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This Binary Search Tree or BST<T> class acts as the backbone of the MeteoriteData class.
  * It is built off of the provided BST class implementation provided on Ed, with 9 new methods
  * added. It extends the Comparable<T> interface in order to implement the methods that require
  * comparison between objects. It also uses the generic T parameter.
+ * The tree is kept balanced as an AVL tree: after every add and remove, nodes whose subtrees
+ * differ in height by more than one are rotated, so the height of the tree stays O(log N)
+ * regardless of the order in which the elements are added.
+ * Every node also stores the number of nodes in its subtree. This makes it possible to answer
+ * order statistic queries (rank, select, countRange and quantile) in O(H) time.
+ * A tree may also be given a key extractor that maps every element to a primitive long key
+ * consistent with the ordering of the tree. The key of every element is stored in its node, so
+ * walking down the tree compares two longs at every step and only calls the comparator (or
+ * compareTo) when the keys are equal. Such a tree can also be searched by a range of keys, without
+ * building elements to stand for the endpoints of the range.
+ * The elements can also be processed with streams: the spliterators of the tree know the exact
+ * number of elements they cover from the subtree counts, and split along subtree boundaries, so
+ * a parallel stream divides the work evenly without copying the elements into a list first.
  * @param <T> - generic parameter
  */
-public class BST <T extends Comparable<T>> {
+public class BST <T extends Comparable<T>> implements Iterable<T> {
     private BSTNode root;   //reference to the root node of the tree
     private int size;       //number of values stored in this tree
+    private int modCount;   //number of structural modifications, used by the iterators
     private Comparator<T> comparator;   //comparator object to overwrite the
     // natural ordering of the elements
+    private ToLongFunction<T> key;      //primitive keys of the elements, null if there are none
 
     private boolean found;  //helper variable used by the remove methods
     private boolean added ; //helper variable used by the add method
@@ -33,6 +52,21 @@ public class BST <T extends Comparable<T>> {
         this.comparator = comparator;
     }
 
+    /**
+     * Constructs a new, empty tree, sorted according to the specified comparator, or to the
+     * natural ordering of its elements if comparator is null, with the given key extractor. The
+     * keys must be consistent with the ordering: if the key of a is less than the key of b, then a
+     * must be less than b. Elements with equal keys are ordered by the comparator.
+     * @param comparator - ordering of the elements, null for their natural ordering
+     * @param key - primitive key of every element
+     * @throws NullPointerException if key is null
+     */
+    public BST(Comparator<T> comparator, ToLongFunction<T> key) {
+        if (key == null) throw new NullPointerException();
+        this.comparator = comparator;
+        this.key = key;
+    }
+
     /**
      * Adds the specified element to this tree if it is not already present.
      * If this tree already contains the element, the call leaves the
@@ -46,9 +80,12 @@ public class BST <T extends Comparable<T>> {
         if (data == null) return added;
         //replace root with the reference to the tree after the new
         //value is added
-        root = add (data, root);
+        root = add (data, key(data), root);
         //update the size and return the status accordingly
-        if (added) size++;
+        if (added) {
+            size++;
+            modCount++;
+        }
         return added;
     }
 
@@ -59,35 +96,72 @@ public class BST <T extends Comparable<T>> {
      * the new value was added.
      *
      * @param data element to be added to this tree
+     * @param dataKey key of data
      * @param node node at which the recursive call is made
      */
-    private BSTNode add (T data, BSTNode node ) {
+    private BSTNode add (T data, long dataKey, BSTNode node ) {
         if (node == null) {
             added = true;
-            return new BSTNode(data);
+            return new BSTNode(data, dataKey);
         }
-        //decide how comparisons should be done
-        int comp = 0 ;
-        if (comparator == null ) //use natural ordering of the elements
-            comp = node.data.compareTo(data);
-        else                     //use the comparator
-            comp = comparator.compare(node.data, data ) ;
+        int comp = compare(data, dataKey, node);
 
         //find the location to add the new value
-        if (comp > 0 ) { //add to the left subtree
-            node.left = add(data, node.left);
+        if (comp < 0 ) { //add to the left subtree
+            node.left = add(data, dataKey, node.left);
         }
-        else if (comp < 0 ) { //add to the right subtree
-            node.right = add(data, node.right);
+        else if (comp > 0 ) { //add to the right subtree
+            node.right = add(data, dataKey, node.right);
         }
         else { //duplicate found, do not add
             added = false;
             return node;
         }
-        return node;
+        //restore the balance of the subtree on the way back up
+        return balance(node);
     }
 
 
+    /**
+     * Adds all elements of the given list to this tree, which must be empty. The elements must
+     * be sorted in strictly ascending order according to the ordering of this tree (so there are
+     * no duplicates). The tree is built directly from the list with the middle element at the
+     * root, so it is perfectly balanced.
+     * This operation is O(N), compared to O(N log N) for N calls to add.
+     * @param sorted - elements to be added in strictly ascending order
+     * @throws IllegalStateException if this tree is not empty
+     * @throws IllegalArgumentException if the elements are not in strictly ascending order
+     * @throws NullPointerException if the list or any of its elements is null
+     */
+    public void addAllSorted(List<T> sorted) {
+        if (!isEmpty()) throw new IllegalStateException("Tree must be empty.");
+        for (int i = 0; i < sorted.size(); i++) {
+            if (sorted.get(i) == null) throw new NullPointerException();
+            //elements with smaller keys are smaller, so only equal keys need a comparison
+            if (i > 0 && (key(sorted.get(i - 1)) > key(sorted.get(i)) ||
+                    (key(sorted.get(i - 1)) == key(sorted.get(i)) &&
+                            compare(sorted.get(i - 1), sorted.get(i)) >= 0)))
+                throw new IllegalArgumentException("Elements are not in strictly ascending order.");
+        }
+        root = build(sorted, 0, sorted.size());
+        size = sorted.size();
+        modCount++;
+    }
+
+    /*
+     * Builds a balanced subtree from the elements at positions from (inclusive) to to (exclusive)
+     * of a sorted list and returns its root.
+     */
+    private BSTNode build(List<T> sorted, int from, int to) {
+        if (from >= to) return null;
+        int mid = (from + to) >>> 1;
+        BSTNode node = new BSTNode(sorted.get(mid), key(sorted.get(mid)));
+        node.left = build(sorted, from, mid);
+        node.right = build(sorted, mid + 1, to);
+        update(node);
+        return node;
+    }
+
     /**
      * Removes the specified element from this tree if it is present.
      * Returns true if this tree contained the element (or equivalently,
@@ -100,9 +174,12 @@ public class BST <T extends Comparable<T>> {
     public boolean remove(T target)
     {
         //replace root with a reference to the tree after target was removed
-        root = recRemove(target, root);
+        root = recRemove(target, key(target), root);
         //update the size and return the status accordingly
-        if (found) size--;
+        if (found) {
+            size--;
+            modCount++;
+        }
         return found;
     }
 
@@ -114,32 +191,28 @@ public class BST <T extends Comparable<T>> {
      * and returns the reference to the modified tree to the caller.
      *
      * @param target object to be removed from this tree, if present
+     * @param targetKey key of target
      * @param node node at which the recursive call is made
      */
-    private BSTNode recRemove(T target, BSTNode node)
+    private BSTNode recRemove(T target, long targetKey, BSTNode node)
     {
         if (node == null)  { //value not found
             found = false;
             return node;
         }
 
-        //decide how comparisons should be done
-        int comp = 0 ;
-        if (comparator == null ) //use natural ordering of the elements
-            comp = target.compareTo(node.data);
-        else                     //use the comparator
-            comp = comparator.compare(target, node.data ) ;
-
+        int comp = compare(target, targetKey, node);
 
         if (comp < 0)       // target might be in a left subtree
-            node.left = recRemove(target, node.left);
+            node.left = recRemove(target, targetKey, node.left);
         else if (comp > 0)  // target might be in a right subtree
-            node.right = recRemove(target, node.right );
+            node.right = recRemove(target, targetKey, node.right );
         else {          // target found, now remove it
             node = removeNode(node);
             found = true;
         }
-        return node;
+        //restore the balance of the subtree on the way back up
+        return balance(node);
     }
 
     /*
@@ -150,35 +223,140 @@ public class BST <T extends Comparable<T>> {
      */
     private BSTNode removeNode(BSTNode node)
     {
-        T data;
+        BSTNode predecessor;
         if (node.left == null)   //handle the leaf and one child node with right subtree
             return node.right ;
         else if (node.right  == null)  //handle one child node with left subtree
             return node.left;
         else {                   //handle nodes with two children
-            data = getPredecessor(node.left);
-            node.data = data;
-            node.left = recRemove(data, node.left);
+            predecessor = getPredecessor(node.left);
+            node.data = predecessor.data;
+            node.key = predecessor.key;
+            node.left = recRemove(predecessor.data, predecessor.key, node.left);
             return node;
         }
     }
 
     /*
-     * Returns the information held in the rightmost node of subtree
+     * Returns the rightmost node of subtree
      *
      * @param subtree root of the subtree within which to search for the rightmost node
-     * @return returns data stored in the rightmost node of subtree
+     * @return returns the rightmost node of subtree
      */
-    private T getPredecessor(BSTNode subtree)
+    private BSTNode getPredecessor(BSTNode subtree)
     {
         if (subtree==null) //this should not happen
             throw new NullPointerException("getPredecessor called with an empty subtree");
         BSTNode temp = subtree;
         while (temp.right  != null)
             temp = temp.right ;
-        return temp.data;
+        return temp;
+    }
+
+
+    /*
+     * Compares two elements using the comparator of this tree, or their natural ordering if
+     * this tree does not have a comparator.
+     */
+    private int compare(T a, T b) {
+        if (comparator == null) return a.compareTo(b);
+        return comparator.compare(a, b);
+    }
+
+    /*
+     * Compares an element, whose key is given, with the element of node. The keys are compared
+     * first and the elements only if the keys are equal.
+     */
+    private int compare(T a, long aKey, BSTNode node) {
+        if (key != null && aKey != node.key) return aKey < node.key ? -1 : 1;
+        return compare(a, node.data);
+    }
+
+    /*
+     * Returns the key of an element, or zero if this tree does not have a key extractor.
+     */
+    private long key(T element) {
+        return key == null ? 0 : key.applyAsLong(element);
+    }
+
+    /*
+     * Returns the height of the subtree rooted at node (0 for an empty subtree).
+     */
+    private int height(BSTNode node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /*
+     * Returns the number of nodes in the subtree rooted at node (0 for an empty subtree).
+     */
+    private int count(BSTNode node) {
+        return node == null ? 0 : node.count;
+    }
+
+    /*
+     * Recomputes the height and the node count stored in node from the values of its children.
+     */
+    private void update(BSTNode node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        node.count = count(node.left) + count(node.right) + 1;
+    }
+
+    /*
+     * Rotates the subtree rooted at node to the right and returns its new root.
+     */
+    private BSTNode rotateRight(BSTNode node) {
+        BSTNode newRoot = node.left;
+        node.left = newRoot.right;
+        newRoot.right = node;
+        update(node);
+        update(newRoot);
+        return newRoot;
+    }
+
+    /*
+     * Rotates the subtree rooted at node to the left and returns its new root.
+     */
+    private BSTNode rotateLeft(BSTNode node) {
+        BSTNode newRoot = node.right;
+        node.right = newRoot.left;
+        newRoot.left = node;
+        update(node);
+        update(newRoot);
+        return newRoot;
+    }
+
+    /*
+     * Updates the height of node and performs the rotations needed if the heights of its
+     * subtrees differ by more than one. Both subtrees of node must already be balanced.
+     *
+     * @param node root of the subtree to be balanced (may be null)
+     * @return the root of the balanced subtree
+     */
+    private BSTNode balance(BSTNode node) {
+        if (node == null) return null;
+        update(node);
+        int diff = height(node.left) - height(node.right);
+        if (diff > 1) {         //left subtree is too tall
+            if (height(node.left.left) < height(node.left.right))
+                node.left = rotateLeft(node.left);
+            return rotateRight(node);
+        }
+        if (diff < -1) {        //right subtree is too tall
+            if (height(node.right.right) < height(node.right.left))
+                node.right = rotateRight(node.right);
+            return rotateLeft(node);
+        }
+        return node;
     }
 
+    /**
+     * Returns the comparator used to order the elements in this tree, or null if this tree uses
+     * the natural ordering of its elements.
+     * @return the comparator used to order this tree
+     */
+    public Comparator<T> comparator() {
+        return comparator;
+    }
 
     /**
      * Returns the number of elements in this tree.
@@ -225,17 +403,15 @@ public class BST <T extends Comparable<T>> {
     private class BSTNode implements Comparable < BSTNode > {
 
         T data;
+        long key;           //key of data, zero if the tree does not have a key extractor
         BSTNode  left;
         BSTNode  right;
+        int height = 1;     //height of the subtree rooted at this node
+        int count = 1;      //number of nodes in the subtree rooted at this node
 
-        public BSTNode ( T data ) {
+        public BSTNode ( T data, long key ) {
             this.data = data;
-        }
-
-        public BSTNode (T data, BSTNode left, BSTNode right ) {
-            this.data = data;
-            this.left = left;
-            this.right = right;
+            this.key = key;
         }
 
         public int compareTo ( BSTNode other ) {
@@ -250,7 +426,8 @@ public class BST <T extends Comparable<T>> {
      * This is a wrapper method for the recursive method contains(T o, BSTNode n). It returns true
      * if this tree contains the specified element. More formally, returns true if and only if this
      * tree contains an element e such that Objects.equals(o, e).
-     * This operation is O(H).
+     * This operation is O(H). Elements are compared in the same way as in add and remove, i.e.,
+     * using the comparator of this tree if it has one.
      * @param o - object to be checked for containment in this set
      * @return true if this tree contains the specified element
      * @throws ClassCastException - if the specified object cannot be compared with the elements
@@ -263,34 +440,42 @@ public class BST <T extends Comparable<T>> {
         if(o == null) throw new NullPointerException();
 
         //calls recursive function
-        return contains((T)(o), root);
+        T element = (T) o;
+        long elementKey;
+        try {
+            elementKey = key(element);
+        } catch(Exception e) {
+            throw new ClassCastException();
+        }
+        return contains(element, elementKey, root);
     }
 
     /**
      * Private recursive method to see if BST contains certain element o. Operation is O(H).
      * @param o - object to be checked for containment in this set
+     * @param oKey - key of o
      * @param n - node at which recursio begins
      * @return true if this tree contains the specified element
      * @throws ClassCastException - if the specified object cannot be compared with the elements
      * currently in the set
      */
-    private boolean contains(T o, BSTNode n) throws ClassCastException{
+    private boolean contains(T o, long oKey, BSTNode n) throws ClassCastException{
         //base case
         if(n == null) return false;
         int compareResult;
 
         //compares o to data in node
         try {
-            compareResult = o.compareTo(n.data);
+            compareResult = compare(o, oKey, n);
         } catch(Exception e) {
             throw new ClassCastException();
         }
 
         //calls recursive method or returns true depending on comparison
         if(compareResult < 0)
-            return contains(o, n.left);
+            return contains(o, oKey, n.left);
         else if(compareResult > 0)
-            return contains(o, n.right);
+            return contains(o, oKey, n.right);
         else
             return true;
     }
@@ -305,68 +490,446 @@ public class BST <T extends Comparable<T>> {
     }
 
     /**
-     * Returns an iterator over the elements in this tree in ascending order.
-     * This operation is O(N).
+     * Returns an iterator over the elements in this tree in ascending order. The iterator is lazy:
+     * it only keeps the path from the root to the next element, so creating it is O(H), each call
+     * to next is O(1) amortized and the iterator uses O(H) memory. The iterator is fail-fast: if
+     * this tree is modified after the iterator is created, next throws
+     * ConcurrentModificationException.
      * @return an iterator over the elements in this tree in ascending order
      */
+    @Override
     public Iterator<T> iterator(){
-        //Method parses through BST first to ensure Iterator methods are O(1)
-        ArrayList<T> elements = new ArrayList<T>();
-        if(root != null) {
-            BSTNode current = root;
-            while (current != null) {
-                if (current.left == null) {
-                    elements.add(current.data);
-                    current = current.right;
+        return new BSTIterator(null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns an iterator over the elements that range from fromElement, inclusive, to toElement,
+     * inclusive, in ascending order. These are the elements of the list returned by getRange, but
+     * the iterator is lazy: it starts at the first element of the range in O(H) time, uses O(H)
+     * memory and never builds a list. The iterator is fail-fast, like the one returned by iterator.
+     * @param fromElement - low endpoint (inclusive) of the range
+     * @param toElement - high endpoint (inclusive) of the range
+     * @return an iterator over the elements of this tree within the range
+     * @throws NullPointerException - if fromElement or toElement is null
+     * @throws IllegalArgumentException - if fromElement is greater than toElement
+     */
+    public Iterator<T> rangeIterator(T fromElement, T toElement){
+        //checks for errors
+        if(fromElement == null || toElement == null) throw new NullPointerException();
+        if(compare(fromElement, toElement) > 0) throw new IllegalArgumentException();
+        return new BSTIterator(fromElement, toElement, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns an iterator over the elements whose keys range from fromKey, inclusive, to toKey,
+     * inclusive, in ascending order. Like rangeIterator, the iterator is lazy and
+     * fail-fast, but the search only compares keys, so it never calls the comparator.
+     * This operation is O(H) to create the iterator.
+     * @param fromKey - low endpoint (inclusive) of the keys
+     * @param toKey - high endpoint (inclusive) of the keys
+     * @return an iterator over the elements of this tree within the range of keys
+     * @throws IllegalStateException - if this tree does not have a key extractor
+     * @throws IllegalArgumentException - if fromKey is greater than toKey
+     */
+    public Iterator<T> keyRangeIterator(long fromKey, long toKey){
+        //checks for errors
+        if(key == null) throw new IllegalStateException("Tree does not have keys.");
+        if(fromKey > toKey) throw new IllegalArgumentException();
+        return new BSTIterator(null, null, fromKey, toKey);
+    }
+
+    /**
+     * Returns a spliterator over the elements in this tree in ascending order. The spliterator is
+     * SIZED, SUBSIZED, SORTED, ORDERED, DISTINCT and NONNULL. It covers a range of positions in
+     * the ascending order of the tree, which it splits at the root of the smallest subtree
+     * holding the range, so every split is O(H) and divides the range roughly in halves. Like the
+     * iterators, the spliterator is fail-fast: it throws ConcurrentModificationException if this
+     * tree is modified after the spliterator is created.
+     * @return a spliterator over the elements in this tree
+     */
+    @Override
+    public Spliterator<T> spliterator(){
+        return new BSTSpliterator(0, size);
+    }
+
+    /**
+     * Returns a spliterator over the elements that range from fromElement, inclusive, to
+     * toElement, inclusive, in ascending order, with the same characteristics as the one returned
+     * by spliterator. These are the elements of the list returned by getRange, but no list is
+     * built. This operation is O(H) to create the spliterator.
+     * @param fromElement - low endpoint (inclusive) of the range
+     * @param toElement - high endpoint (inclusive) of the range
+     * @return a spliterator over the elements of this tree within the range
+     * @throws NullPointerException - if fromElement or toElement is null
+     * @throws IllegalArgumentException - if fromElement is greater than toElement
+     */
+    public Spliterator<T> rangeSpliterator(T fromElement, T toElement){
+        //checks for errors
+        if(fromElement == null || toElement == null) throw new NullPointerException();
+        if(compare(fromElement, toElement) > 0) throw new IllegalArgumentException();
+        return new BSTSpliterator(countBelow(fromElement, false), countBelow(toElement, true));
+    }
+
+    /**
+     * Returns a spliterator over the elements whose keys range from fromKey, inclusive, to toKey,
+     * inclusive, in ascending order, with the same characteristics as the one returned by
+     * spliterator. This operation is O(H) to create the spliterator.
+     * @param fromKey - low endpoint (inclusive) of the keys
+     * @param toKey - high endpoint (inclusive) of the keys
+     * @return a spliterator over the elements of this tree within the range of keys
+     * @throws IllegalStateException - if this tree does not have a key extractor
+     * @throws IllegalArgumentException - if fromKey is greater than toKey
+     */
+    public Spliterator<T> keyRangeSpliterator(long fromKey, long toKey){
+        //checks for errors
+        if(key == null) throw new IllegalStateException("Tree does not have keys.");
+        if(fromKey > toKey) throw new IllegalArgumentException();
+        return new BSTSpliterator(countBelow(fromKey, false), countBelow(toKey, true));
+    }
+
+    /**
+     * Returns a sequential stream over the elements in this tree in ascending order, backed by
+     * spliterator. Call parallel on it to process the elements in parallel.
+     * @return a stream over the elements in this tree
+     */
+    public Stream<T> stream(){
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /*
+     * Spliterator over the elements at positions index (inclusive) to fence (exclusive) in the
+     * ascending order of the tree. The path to the next element is found by position, using the
+     * subtree counts, when the traversal starts, and then maintained like in BSTIterator.
+     */
+    private class BSTSpliterator implements Spliterator<T> {
+        //nodes on the path to the next element, null until the traversal starts
+        private ArrayDeque<BSTNode> path;
+        //modCount of the tree when the spliterator was created
+        private final int expectedModCount = modCount;
+        //position of the next element and end (exclusive) of the range
+        private int index;
+        private final int fence;
+
+        BSTSpliterator(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        /*
+         * Pushes the nodes on the path from the root to the element at position index that are
+         * not less than it.
+         */
+        private void seek() {
+            path = new ArrayDeque<BSTNode>();
+            BSTNode node = root;
+            int k = index;
+            while (node != null) {
+                int leftCount = count(node.left);
+                if (k <= leftCount) {
+                    path.push(node);
+                    if (k == leftCount) return;
+                    node = node.left;
                 }
                 else {
-                    BSTNode pre = current.left;
-                    while (pre.right != null && pre.right != current){
-                        pre = pre.right;
-                    }
-                    if (pre.right == null) {
-                        pre.right = current;
-                        current = current.left;
-                    }
-                    else {
-                        pre.right = null;
-                        elements.add(current.data);
-                        current = current.right;
-                    }
+                    k -= leftCount + 1;
+                    node = node.right;
                 }
             }
         }
 
-        //actual iterator with implemented methods
-        Iterator<T> BSTIterator = new Iterator<T>() {
-            //counter for keeping track of iterative steps
-            private int counter = 0;
-
-            /**
-             * Overrides hasNext method of Iterator<T> interface
-             * @return true if next element is available
-             */
-            @Override
-            public boolean hasNext() {
-                if(elements.size() == 0) return false;
-                int tmp = counter;
-                counter++;
-                return tmp <= elements.size()-1;
+        /*
+         * Returns the next element and moves past it.
+         */
+        private T advance() {
+            if (path == null) seek();
+            BSTNode node = path.pop();
+            for (BSTNode n = node.right; n != null; n = n.left) {
+                path.push(n);
             }
+            index++;
+            return node.data;
+        }
 
-            /**
-             * Overrides next method of Iterator<T> interface
-             * @return next element in BST
-             */
-            @Override
-            public T next() {
-                if(elements.size() == 0) return null;
-                int tmp = counter;
-                counter++;
-                return elements.get(tmp);
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (action == null) throw new NullPointerException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (index >= fence) return false;
+            action.accept(advance());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (action == null) throw new NullPointerException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            while (index < fence) {
+                action.accept(advance());
             }
-        };
-        return BSTIterator;
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+        }
+
+        /*
+         * Splits the range at the position of the highest node that is strictly inside it, i.e.,
+         * at the root of the smallest subtree holding the range. Returns the first part and
+         * keeps the second one.
+         */
+        @Override
+        public Spliterator<T> trySplit() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (fence - index < 2) return null;
+            BSTNode node = root;
+            int base = 0;
+            while (node != null) {
+                int position = base + count(node.left);
+                if (position <= index) {
+                    base = position + 1;
+                    node = node.right;
+                }
+                else if (position >= fence) node = node.left;
+                else {
+                    BSTSpliterator prefix = new BSTSpliterator(index, position);
+                    index = position;
+                    path = null;
+                    return prefix;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return SIZED | SUBSIZED | SORTED | ORDERED | DISTINCT | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
+    }
+
+    /*
+     * In-order iterator that stores the nodes whose data has not been returned yet and whose
+     * left subtree has already been visited. It can be restricted to a range of elements or to a
+     * range of keys.
+     */
+    private class BSTIterator implements Iterator<T> {
+        //nodes on the path to the next element, the next element is at the top
+        private final ArrayDeque<BSTNode> path = new ArrayDeque<BSTNode>();
+        //modCount of the tree when the iterator was created
+        private final int expectedModCount = modCount;
+        //high endpoint (inclusive) of the iteration, null if there is none
+        private final T toElement;
+        //high endpoint (inclusive) of the keys, Long.MAX_VALUE if there is none
+        private final long toKey;
+
+        /*
+         * Creates an iterator over the elements from fromElement to toElement (inclusive) whose
+         * keys range from fromKey to toKey (inclusive). Null endpoints and the extreme keys mean
+         * that the iteration is not bounded on that side.
+         */
+        BSTIterator(T fromElement, T toElement, long fromKey, long toKey) {
+            this.toElement = toElement;
+            this.toKey = toKey;
+            if (fromElement == null && fromKey == Long.MIN_VALUE) {
+                pushLeft(root);
+                return;
+            }
+            //push the nodes on the search path of the start that are not less than it
+            long elementKey = fromElement == null ? 0 : key(fromElement);
+            BSTNode node = root;
+            while (node != null) {
+                int comp = fromElement == null ? Long.compare(fromKey, node.key) :
+                        compare(fromElement, elementKey, node);
+                if (comp <= 0) {
+                    path.push(node);
+                    node = node.left;
+                }
+                else {
+                    node = node.right;
+                }
+            }
+        }
+
+        /*
+         * Pushes node and all the nodes along the left spine of its subtree.
+         */
+        private void pushLeft(BSTNode node) {
+            while (node != null) {
+                path.push(node);
+                node = node.left;
+            }
+        }
+
+        /**
+         * Overrides hasNext method of Iterator<T> interface
+         * @return true if next element is available
+         */
+        @Override
+        public boolean hasNext() {
+            if (path.isEmpty()) return false;
+            if (toElement == null) return path.peek().key <= toKey;
+            return compare(path.peek().data, toElement) <= 0;
+        }
+
+        /**
+         * Overrides next method of Iterator<T> interface
+         * @return next element in BST
+         * @throws NoSuchElementException if there are no more elements
+         * @throws ConcurrentModificationException if the tree was modified
+         */
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (!hasNext()) throw new NoSuchElementException();
+            BSTNode node = path.pop();
+            pushLeft(node.right);
+            return node.data;
+        }
+    }
+
+    /**
+     * Returns an iterator over the elements in this tree in descending order. Like iterator, it
+     * is lazy: creating it is O(H), each call to next is O(1) amortized and it uses O(H) memory,
+     * so the K largest elements are read in O(H + K). The iterator is fail-fast.
+     * @return an iterator over the elements in this tree in descending order
+     */
+    public Iterator<T> descendingIterator(){
+        return new CursorIterator(0, size, 0, Integer.MAX_VALUE, true);
+    }
+
+    /**
+     * Returns a cursor over one page of the elements in this tree: it skips the first offset
+     * elements and returns at most limit elements, in ascending order, or in descending order
+     * (from the largest element) if descending is true. The first element of the page is found
+     * by position using the subtree counts, so creating the cursor is O(H) whatever the offset,
+     * each call to next is O(1) amortized, and no list is allocated. The cursor is fail-fast,
+     * like the iterator returned by iterator.
+     * @param offset - number of elements to be skipped
+     * @param limit - maximum number of elements to be returned
+     * @param descending - true to iterate from the largest element down
+     * @return an iterator over the page of elements
+     * @throws IllegalArgumentException - if offset is negative or limit is under one
+     */
+    public Iterator<T> iterator(int offset, int limit, boolean descending){
+        return new CursorIterator(0, size, offset, limit, descending);
+    }
+
+    /**
+     * Returns a cursor over one page of the elements that range from fromElement, inclusive, to
+     * toElement, inclusive, as iterator(int, int, boolean) does for the whole tree. The range and
+     * the first element of the page are found in O(H).
+     * @param fromElement - low endpoint (inclusive) of the range
+     * @param toElement - high endpoint (inclusive) of the range
+     * @param offset - number of elements of the range to be skipped
+     * @param limit - maximum number of elements to be returned
+     * @param descending - true to iterate from toElement down
+     * @return an iterator over the page of elements within the range
+     * @throws NullPointerException - if fromElement or toElement is null
+     * @throws IllegalArgumentException - if fromElement is greater than toElement, offset is
+     * negative or limit is under one
+     */
+    public Iterator<T> rangeIterator(T fromElement, T toElement, int offset, int limit,
+                                     boolean descending){
+        //checks for errors
+        if(fromElement == null || toElement == null) throw new NullPointerException();
+        if(compare(fromElement, toElement) > 0) throw new IllegalArgumentException();
+        return new CursorIterator(countBelow(fromElement, false), countBelow(toElement, true),
+                offset, limit, descending);
+    }
+
+    /**
+     * Returns a cursor over one page of the elements whose keys range from fromKey, inclusive,
+     * to toKey, inclusive, as iterator(int, int, boolean) does for the whole tree. Only keys
+     * are compared. The range and the first element of the page are found in O(H).
+     * @param fromKey - low endpoint (inclusive) of the keys
+     * @param toKey - high endpoint (inclusive) of the keys
+     * @param offset - number of elements of the range to be skipped
+     * @param limit - maximum number of elements to be returned
+     * @param descending - true to iterate from toKey down
+     * @return an iterator over the page of elements within the range of keys
+     * @throws IllegalStateException - if this tree does not have a key extractor
+     * @throws IllegalArgumentException - if fromKey is greater than toKey, offset is negative
+     * or limit is under one
+     */
+    public Iterator<T> keyRangeIterator(long fromKey, long toKey, int offset, int limit,
+                                        boolean descending){
+        //checks for errors
+        if(key == null) throw new IllegalStateException("Tree does not have keys.");
+        if(fromKey > toKey) throw new IllegalArgumentException();
+        return new CursorIterator(countBelow(fromKey, false), countBelow(toKey, true),
+                offset, limit, descending);
+    }
+
+    /*
+     * Iterator over a page of the elements at positions from (inclusive) to to (exclusive) in
+     * the ascending order of the tree. In ascending order, the path holds the nodes whose data has
+     * not been returned yet and whose left subtree has been visited, as in BSTIterator; in
+     * descending order, it holds the nodes whose right subtree has been visited.
+     */
+    private class CursorIterator implements Iterator<T> {
+        //nodes on the path to the next element, the next element is at the top
+        private final ArrayDeque<BSTNode> path = new ArrayDeque<BSTNode>();
+        //modCount of the tree when the iterator was created
+        private final int expectedModCount = modCount;
+        private final boolean descending;
+        //number of elements left to be returned
+        private int remaining;
+
+        CursorIterator(int from, int to, int offset, int limit, boolean descending) {
+            if(offset < 0 || limit < 1) throw new IllegalArgumentException("Invalid arguments.");
+            this.descending = descending;
+            remaining = (int) Math.max(0, Math.min(limit, (long) to - from - offset));
+            if (remaining > 0) seek(descending ? to - 1 - offset : from + offset);
+        }
+
+        /*
+         * Pushes the nodes on the path from the root to the element at position k that come
+         * after it in the order of the iteration, and the element itself.
+         */
+        private void seek(int k) {
+            BSTNode node = root;
+            while (node != null) {
+                int leftCount = count(node.left);
+                if (k == leftCount) {
+                    path.push(node);
+                    return;
+                }
+                if (k < leftCount) {
+                    if (!descending) path.push(node);
+                    node = node.left;
+                }
+                else {
+                    if (descending) path.push(node);
+                    k -= leftCount + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (remaining <= 0) throw new NoSuchElementException();
+            remaining--;
+            BSTNode node = path.pop();
+            //pushes the next subtree in the order of the iteration along its near spine
+            for (BSTNode n = descending ? node.left : node.right; n != null;
+                 n = descending ? n.right : n.left) {
+                path.push(n);
+            }
+            return node.data;
+        }
     }
 
     /**
@@ -376,7 +939,8 @@ public class BST <T extends Comparable<T>> {
      * so changes in the returned list are reflected in this tree, and vice-versa (i.e., the two
      * structures share elements. The returned collection should be organized according to the
      * natural ordering of the elements (i.e., it should be sorted). This operation is O(M) where
-     * M is the number of elements in the returned list.
+     * M is the number of elements in the returned list. To page through a large range, use
+     * rangeIterator(fromElement, toElement, offset, limit, descending), which builds no list.
      * @param fromElement - low endpoint (inclusive) of the returned collection
      * @param toElement - high endpoint (inclusive) of the returned collection
      * @return a collection containing a portion of this tree whose elements range from fromElement,
@@ -387,7 +951,7 @@ public class BST <T extends Comparable<T>> {
     public ArrayList<T> getRange​(T fromElement, T toElement){
         //checks for errors
         if(fromElement == null || toElement == null) throw new NullPointerException();
-        if(fromElement.compareTo(toElement) > 0) throw new IllegalArgumentException();
+        if(compare(fromElement, toElement) > 0) throw new IllegalArgumentException();
 
         //creates arraylist and assigns result of recursive method to it
         ArrayList<T> rangeList = new ArrayList<T>();
@@ -412,14 +976,8 @@ public class BST <T extends Comparable<T>> {
         int compTo;
 
         //compares using comparator if provided
-        if(comparator == null){
-            compFrom = fromElement.compareTo(n.data);
-            compTo = toElement.compareTo(n.data);
-        }
-        else{
-            compFrom = comparator.compare(fromElement, n.data);
-            compTo = comparator.compare(toElement, n.data);
-        }
+        compFrom = compare(fromElement, n.data);
+        compTo = compare(toElement, n.data);
 
         //recurse thru left subtree first
         if (compFrom < 0) {
@@ -437,6 +995,134 @@ public class BST <T extends Comparable<T>> {
         }
     }
 
+    /**
+     * Returns the number of elements in this tree that are strictly less than the given element.
+     * The element does not have to be present in this tree. Iterative method.
+     * This operation is O(H).
+     * @param element - element to be compared with the elements of this tree
+     * @return the number of elements in this tree that are less than element
+     * @throws NullPointerException - if element is null
+     */
+    public int rank(T element){
+        if(element == null) throw new NullPointerException();
+        return countBelow(element, false);
+    }
+
+    /*
+     * Counts the elements that are less than element, or less than or equal to element if
+     * inclusive is true.
+     */
+    private int countBelow(T element, boolean inclusive){
+        int result = 0;
+        long elementKey = key(element);
+        BSTNode tmp = root;
+        while(tmp != null){
+            int comp = compare(element, elementKey, tmp);
+            if(comp < 0 || (comp == 0 && !inclusive)){
+                tmp = tmp.left;
+            }
+            else {
+                //tmp and its whole left subtree are below element
+                result += count(tmp.left) + 1;
+                if(comp == 0) break;
+                tmp = tmp.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the element at the given position in the ascending order of this tree, i.e., the
+     * element whose rank is k. Iterative method.
+     * This operation is O(H).
+     * @param k - position of the element, from 0 to size()-1
+     * @return the k-th smallest element of this tree (counting from 0)
+     * @throws IndexOutOfBoundsException - if k is negative or not smaller than size()
+     */
+    public T select(int k){
+        if(k < 0 || k >= size) throw new IndexOutOfBoundsException("Invalid position: " + k);
+        BSTNode tmp = root;
+        while(true){
+            int leftCount = count(tmp.left);
+            if(k < leftCount) tmp = tmp.left;
+            else if(k == leftCount) return tmp.data;
+            else {
+                k -= leftCount + 1;
+                tmp = tmp.right;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements that range from fromElement, inclusive, to toElement,
+     * inclusive. This is the size of the list returned by getRange, but the elements are not
+     * visited. This operation is O(H).
+     * @param fromElement - low endpoint (inclusive) of the range
+     * @param toElement - high endpoint (inclusive) of the range
+     * @return the number of elements of this tree within the range
+     * @throws NullPointerException - if fromElement or toElement is null
+     * @throws IllegalArgumentException - if fromElement is greater than toElement
+     */
+    public int countRange(T fromElement, T toElement){
+        //checks for errors
+        if(fromElement == null || toElement == null) throw new NullPointerException();
+        if(compare(fromElement, toElement) > 0) throw new IllegalArgumentException();
+        return countBelow(toElement, true) - countBelow(fromElement, false);
+    }
+
+    /**
+     * Returns the number of elements whose keys range from fromKey, inclusive, to toKey,
+     * inclusive. The elements are not visited and only keys are compared. This operation is O(H).
+     * @param fromKey - low endpoint (inclusive) of the keys
+     * @param toKey - high endpoint (inclusive) of the keys
+     * @return the number of elements of this tree within the range of keys
+     * @throws IllegalStateException - if this tree does not have a key extractor
+     * @throws IllegalArgumentException - if fromKey is greater than toKey
+     */
+    public int countKeyRange(long fromKey, long toKey){
+        //checks for errors
+        if(key == null) throw new IllegalStateException("Tree does not have keys.");
+        if(fromKey > toKey) throw new IllegalArgumentException();
+        return countBelow(toKey, true) - countBelow(fromKey, false);
+    }
+
+    /*
+     * Counts the elements whose keys are less than bound, or less than or equal to bound if
+     * inclusive is true.
+     */
+    private int countBelow(long bound, boolean inclusive){
+        int result = 0;
+        BSTNode tmp = root;
+        while(tmp != null){
+            if(bound < tmp.key || (bound == tmp.key && !inclusive)){
+                tmp = tmp.left;
+            }
+            else {
+                //tmp and its whole left subtree are below bound
+                result += count(tmp.left) + 1;
+                tmp = tmp.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the element at the given quantile of this tree using the nearest-rank method: the
+     * smallest element such that a fraction q of all elements is less than or equal to it. For
+     * example, quantile(0.5) returns the median and quantile(0.9) the 90th percentile.
+     * This operation is O(H).
+     * @param q - quantile, from 0.0 to 1.0
+     * @return the element at quantile q
+     * @throws IllegalArgumentException - if q is not within range 0.0 to 1.0
+     * @throws NoSuchElementException - if this tree is empty
+     */
+    public T quantile(double q){
+        if(!(q >= 0 && q <= 1)) throw new IllegalArgumentException("Invalid quantile: " + q);
+        if(isEmpty()) throw new NoSuchElementException();
+        int k = (int) Math.ceil(q * size) - 1;
+        return select(Math.max(k, 0));
+    }
+
     /**
      * Returns the first (lowest) element currently in this tree. Iterative method.
      * This operation is O(H).
@@ -511,13 +1197,13 @@ public class BST <T extends Comparable<T>> {
 
         //uses iterator to parse through elements and add to String
         Iterator<T> t = iterator();
-        String elements = "[";
-        for(int i = 0; i < size; i++){
-            if(i == size-1) elements = elements + String.valueOf(t.next());
-            else elements = elements + String.valueOf(t.next()) + ", ";
+        StringBuilder elements = new StringBuilder("[");
+        while(t.hasNext()){
+            elements.append(String.valueOf(t.next()));
+            if(t.hasNext()) elements.append(", ");
         }
-        elements += "]";
-        return elements;
+        elements.append("]");
+        return elements.toString();
     }
 
     /**
@@ -0,0 +1,244 @@
+package project5;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a separate program used to measure the performance of the data structures of
+ * this project on a given catalog. It is executed with the name of the measurement and the name
+ * of a CSV file with meteorite data as command line arguments, for example
+ * <pre>
+ *   java project5.Benchmark heap Meteorite_Landings.csv
+ * </pre>
+ * Available measurements:
+ * <ul>
+ *   <li>heap - heap used per meteorite by MeteoriteData, ColumnarMeteoriteData and
+ *   OffHeapMeteoriteData</li>
+ *   <li>nearest - throughput of single, k nearest and batched nearest neighbour queries on
+ *   random locations</li>
+ *   <li>concurrent - throughput of the queries of ConcurrentMeteoriteData answered by 1, 2, 4 and
+ *   8 reader threads while a writer thread keeps removing and adding meteorites</li>
+ * </ul>
+ *
+ * @author Jack
+ */
+public class Benchmark {
+
+    /**
+     * The main() method of the program.
+     * @param args: name of the measurement followed by the name of the data file
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage Error: the program expects a measurement name and a file name " +
+                    "as arguments.");
+            System.exit(1);
+        }
+        try {
+            File file = new File(args[1]);
+            if (args[0].equals("heap")) heap(file);
+            else if (args[0].equals("nearest")) nearest(file);
+            else if (args[0].equals("concurrent")) concurrent(file);
+            else {
+                System.err.println("Error: unknown measurement " + args[0] + ".");
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: the file " + args[1] + " cannot be opened for reading.");
+            System.exit(1);
+        }
+    }
+
+    /*
+     * Compares the heap used by the BST-backed MeteoriteData with the heap used by the packed
+     * collections holding the same meteorites.
+     */
+    private static void heap(File file) throws IOException {
+        long base = usedHeap();
+        MeteoriteData data = MeteoriteReader.read(file);
+        long treeBytes = usedHeap() - base;
+        int n = data.size();
+
+        base = usedHeap();
+        ColumnarMeteoriteData columnar = new ColumnarMeteoriteData(data);
+        long columnarBytes = usedHeap() - base;
+
+        base = usedHeap();
+        OffHeapMeteoriteData offHeap = new OffHeapMeteoriteData(data);
+        long offHeapBytes = usedHeap() - base;
+
+        System.out.println("meteorites: " + n);
+        report("MeteoriteData (three BSTs)", treeBytes, 0, n);
+        report("ColumnarMeteoriteData", columnarBytes, 0, n);
+        report("OffHeapMeteoriteData", offHeapBytes, offHeap.offHeapBytes(), n);
+
+        //keep the collections reachable until all measurements are done
+        if (columnar.size() != offHeap.size()) throw new IllegalStateException();
+    }
+
+    /*
+     * Measures the number of nearest neighbour queries answered per second: one query at a time,
+     * ten nearest neighbours at a time, and in batches answered in parallel.
+     */
+    private static void nearest(File file) throws IOException {
+        MeteoriteData data = MeteoriteReader.read(file);
+        Random random = new Random(42);
+        Location[] queries = new Location[200000];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+        }
+        System.out.println("meteorites: " + data.size() + ", queries: " + queries.length +
+                ", processors: " + Runtime.getRuntime().availableProcessors());
+
+        //each measurement is run twice and the second run is reported, after the JIT warmed up
+        long time = 0;
+        for (int run = 0; run < 2; run++) {
+            long start = System.nanoTime();
+            for (Location loc : queries) {
+                data.getByLocation(loc);
+            }
+            time = System.nanoTime() - start;
+        }
+        throughput("getByLocation", queries.length, time);
+
+        for (int run = 0; run < 2; run++) {
+            long start = System.nanoTime();
+            for (Location loc : queries) {
+                data.getNearest(loc, 10);
+            }
+            time = System.nanoTime() - start;
+        }
+        throughput("getNearest (k = 10)", queries.length, time);
+
+        for (int run = 0; run < 2; run++) {
+            long start = System.nanoTime();
+            data.getByLocation(queries);
+            time = System.nanoTime() - start;
+        }
+        throughput("getByLocation (batch)", queries.length, time);
+    }
+
+    /*
+     * Measures the number of queries answered per second by ConcurrentMeteoriteData with an
+     * increasing number of reader threads, while one writer thread removes and adds back random
+     * meteorites as fast as it can. Every reader runs a mix of mass, year and location queries.
+     */
+    private static void concurrent(File file) throws IOException {
+        MeteoriteData source = MeteoriteReader.read(file);
+        ConcurrentMeteoriteData data = new ConcurrentMeteoriteData(source);
+        List<Meteorite> all = new ArrayList<Meteorite>(data.size());
+        for (Meteorite m : data) {
+            all.add(m);
+        }
+        System.out.println("meteorites: " + data.size() + ", processors: " +
+                Runtime.getRuntime().availableProcessors());
+
+        for (int readers = 1; readers <= 8; readers *= 2) {
+            //each measurement is run twice and the second run is reported, after the JIT warmed up
+            long[] counts = null;
+            for (int run = 0; run < 2; run++) {
+                counts = mixedLoad(data, all, readers, 1000);
+            }
+            System.out.printf("%d reader(s) + 1 writer   %,12.0f queries/s   %,10.0f changes/s%n",
+                    readers, (double) counts[0], (double) counts[1]);
+        }
+    }
+
+    /*
+     * Runs the given number of reader threads and one writer thread on data for the given number
+     * of milliseconds. Returns the number of queries and of changes done per second.
+     */
+    private static long[] mixedLoad(ConcurrentMeteoriteData data, List<Meteorite> all, int readers,
+                                    long millis) {
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong queries = new AtomicLong();
+        AtomicLong changes = new AtomicLong();
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+        for (int r = 0; r < readers; r++) {
+            long seed = r;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                long done = 0;
+                while (!stop.get()) {
+                    switch ((int) (done % 3)) {
+                        case 0:
+                            data.countByMass(random.nextInt(100000), 100);
+                            break;
+                        case 1:
+                            data.countByYear(1800 + random.nextInt(221));
+                            break;
+                        default:
+                            data.getByLocation(new Location(random.nextDouble() * 180 - 90,
+                                    random.nextDouble() * 360 - 180));
+                    }
+                    done++;
+                }
+                queries.addAndGet(done);
+            }));
+        }
+        threads.add(new Thread(() -> {
+            Random random = new Random(-1);
+            long done = 0;
+            while (!stop.get() && !all.isEmpty()) {
+                Meteorite m = all.get(random.nextInt(all.size()));
+                data.remove(m);
+                data.add(m);
+                done += 2;
+            }
+            changes.addAndGet(done);
+        }));
+
+        long start = System.nanoTime();
+        for (Thread t : threads) {
+            t.start();
+        }
+        try {
+            Thread.sleep(millis);
+            stop.set(true);
+            for (Thread t : threads) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new long[] {(long) (queries.get() / seconds), (long) (changes.get() / seconds)};
+    }
+
+    /*
+     * Prints the number of queries answered per second.
+     */
+    private static void throughput(String name, int queries, long nanos) {
+        System.out.printf("%-28s %,12.0f queries/s%n", name, queries / (nanos / 1e9));
+    }
+
+    /*
+     * Prints the memory used by a collection in total and per meteorite.
+     */
+    private static void report(String name, long heapBytes, long directBytes, int n) {
+        System.out.printf("%-28s heap %,14d B (%6.1f B/meteorite)   off-heap %,14d B (%6.1f B/meteorite)%n",
+                name, heapBytes, heapBytes / (double) Math.max(n, 1),
+                directBytes, directBytes / (double) Math.max(n, 1));
+    }
+
+    /*
+     * Returns the number of bytes currently used on the heap, after asking for garbage collection.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
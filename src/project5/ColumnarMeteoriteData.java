@@ -0,0 +1,113 @@
+package project5;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ColumnarMeteoriteData class is a read-only alternative to MeteoriteData that stores the
+ * meteorites in primitive columns instead of Meteorite, Location and BST node objects. The ids,
+ * masses and years are stored in int arrays, the latitudes and longitudes in double arrays and
+ * the names in a single byte array holding their UTF-8 encoding. The mass index is an int array
+ * holding the record numbers sorted by mass and the year index is a YearIndex on the heap.
+ *
+ * @author Jack
+ */
+public class ColumnarMeteoriteData extends PackedMeteoriteData {
+    //number of records
+    private final int size;
+    //columns, indexed by record number
+    private final int[] ids;
+    private final int[] masses;
+    private final int[] years;
+    private final double[] latitudes;     //NaN for meteorites without location
+    private final double[] longitudes;
+    //UTF-8 encoded names, the name of record i spans nameOffsets[i] to nameOffsets[i+1]
+    private final byte[] names;
+    private final int[] nameOffsets;
+    //record numbers sorted by mass and posting lists by year
+    private final int[] byMass;
+    private final YearIndex byYear;
+
+    /**
+     * Constructs a columnar copy of the given collection. Operation is O(N log N).
+     * @param data - collection to be copied
+     * @throws NullPointerException if data is null
+     */
+    public ColumnarMeteoriteData(MeteoriteData data) throws NullPointerException {
+        if (data == null) throw new NullPointerException();
+        size = data.size();
+        ids = new int[size];
+        masses = new int[size];
+        years = new int[size];
+        latitudes = new double[size];
+        longitudes = new double[size];
+        nameOffsets = new int[size + 1];
+
+        //copy the columns in natural order, collecting the encoded names
+        byte[][] encoded = new byte[size][];
+        int i = 0;
+        for (Meteorite m : data) {
+            encoded[i] = m.getName().getBytes(StandardCharsets.UTF_8);
+            nameOffsets[i + 1] = nameOffsets[i] + encoded[i].length;
+            ids[i] = m.getId();
+            masses[i] = m.getMass();
+            years[i] = m.getYear();
+            Location loc = m.getLocation();
+            latitudes[i] = loc == null ? Double.NaN : loc.getLatitude();
+            longitudes[i] = loc == null ? Double.NaN : loc.getLongitude();
+            i++;
+        }
+        names = new byte[nameOffsets[size]];
+        for (i = 0; i < size; i++) {
+            System.arraycopy(encoded[i], 0, names, nameOffsets[i], encoded[i].length);
+        }
+
+        byMass = sortBy(masses);
+        byYear = new YearIndex(years, false);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    protected String name(int record) {
+        return new String(names, nameOffsets[record],
+                nameOffsets[record + 1] - nameOffsets[record], StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected int id(int record) {
+        return ids[record];
+    }
+
+    @Override
+    protected int mass(int record) {
+        return masses[record];
+    }
+
+    @Override
+    protected int year(int record) {
+        return years[record];
+    }
+
+    @Override
+    protected double latitude(int record) {
+        return latitudes[record];
+    }
+
+    @Override
+    protected double longitude(int record) {
+        return longitudes[record];
+    }
+
+    @Override
+    protected int massOrder(int position) {
+        return byMass[position];
+    }
+
+    @Override
+    protected YearIndex yearIndex() {
+        return byYear;
+    }
+}
@@ -0,0 +1,326 @@
+package project5;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConcurrentMeteoriteData class is a thread-safe variant of MeteoriteData, for collections that
+ * are queried by many threads while other threads add and remove meteorites. All indexes (by
+ * name, by mass, by year and by location) are persistent trees, PersistentBST and
+ * PersistentKDTree, which are never modified: a change creates new versions of the trees that
+ * share all unchanged nodes with the old ones. The current versions of the indexes are held
+ * together in one immutable MeteoriteSnapshot, published through a volatile field.
+ * Readers never block and never retry: a query reads the current state once and answers from it,
+ * so it always sees every index at the same version, either before or after any change, and is
+ * never slowed down by writers. Writers are serialized by a lock, build the new versions of all
+ * indexes and publish them with a single write, so every change (including a batch added with
+ * addAll) becomes visible to readers atomically.
+ * The views returned by the queries are backed by the state they were created from: they do not
+ * reflect later changes and can be iterated while the collection is being modified, without
+ * ConcurrentModificationException. The current state can also be kept as a snapshot, to run
+ * several queries on the same version or to compare versions later. Query results are not
+ * cached, since the cache of MeteoriteData is not thread-safe and every query is already answered
+ * from the trees in O(H + K).
+ *
+ * @author Jack
+ */
+public class ConcurrentMeteoriteData implements Iterable<Meteorite> {
+    //current versions of the indexes
+    private volatile MeteoriteSnapshot state;
+    //serializes the writers
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Constructs a new, empty collection.
+     */
+    public ConcurrentMeteoriteData() {
+        state = MeteoriteSnapshot.empty();
+    }
+
+    /**
+     * Constructs a collection containing the given Meteorite objects. The result is the same as
+     * adding the objects one by one in the order of the given collection (if several objects are
+     * equal, only the first one is kept), but, as in MeteoriteData, the objects are sorted once for
+     * each ordering and each tree is built directly from its sorted array. Operation is
+     * O(N log N).
+     * @param meteorites - Meteorite objects to be added
+     * @throws NullPointerException if meteorites or any of its elements is null
+     */
+    public ConcurrentMeteoriteData(Collection<Meteorite> meteorites) throws NullPointerException {
+        this();
+        Meteorite[] sorted = meteorites.toArray(new Meteorite[0]);
+        for (Meteorite m : sorted) {
+            if (m == null) throw new NullPointerException();
+        }
+
+        //stable sort, so the first of several equal objects stays in front of the others
+        Arrays.parallelSort(sorted);
+        if (!MeteoriteData.consistentlyOrdered(sorted)) {
+            addAll(meteorites);
+            return;
+        }
+        ArrayList<Meteorite> natural = new ArrayList<Meteorite>(sorted.length);
+        for (Meteorite m : sorted) {
+            if (natural.isEmpty() || natural.get(natural.size() - 1).compareTo(m) != 0)
+                natural.add(m);
+        }
+
+        state = MeteoriteSnapshot.of(natural);
+    }
+
+    /**
+     * Constructs a collection containing the Meteorite objects of data. Operation is O(N log N).
+     * @param data - collection to be copied
+     * @throws NullPointerException if data is null
+     */
+    public ConcurrentMeteoriteData(MeteoriteData data) throws NullPointerException {
+        this(toList(data));
+    }
+
+    /*
+     * Returns the meteorites of data in natural order.
+     */
+    private static List<Meteorite> toList(MeteoriteData data) {
+        ArrayList<Meteorite> list = new ArrayList<Meteorite>(data.size());
+        for (Meteorite m : data) {
+            list.add(m);
+        }
+        return list;
+    }
+
+    /**
+     * Adds the given Meteorite object to this collection if an equal object is not already
+     * present. The change is published to all indexes at once. Operation is O(H) for the trees
+     * and amortized O(log N) for the spatial index.
+     * @param m - Meteorite object to be added
+     * @return true if m was added, false if an equal object is already present
+     * @throws NullPointerException if m is null
+     */
+    public boolean add(Meteorite m) throws NullPointerException {
+        if (m == null) throw new NullPointerException();
+        writeLock.lock();
+        try {
+            MeteoriteSnapshot next = state.add(m);
+            if (next == null) return false;
+            state = next;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds all given Meteorite objects to this collection, as add would, in the order of the
+     * given collection. Readers see either none or all of the added objects. Operation is
+     * O(K H) where K is the number of objects.
+     * @param meteorites - Meteorite objects to be added
+     * @return the number of objects that were added
+     * @throws NullPointerException if meteorites or any of its elements is null, in which case
+     * none of them is added
+     */
+    public int addAll(Collection<Meteorite> meteorites) throws NullPointerException {
+        writeLock.lock();
+        try {
+            MeteoriteSnapshot next = state;
+            int added = 0;
+            for (Meteorite m : meteorites) {
+                if (m == null) throw new NullPointerException();
+                MeteoriteSnapshot s = next.add(m);
+                if (s != null) {
+                    next = s;
+                    added++;
+                }
+            }
+            state = next;
+            return added;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the object equal to the given Meteorite object from this collection, if present.
+     * The change is published to all indexes at once. Operation is O(H) for the trees and
+     * O(log N) on average for the spatial index.
+     * @param m - Meteorite object to be removed
+     * @return true if an equal object was present and removed
+     * @throws NullPointerException if m is null
+     */
+    public boolean remove(Meteorite m) throws NullPointerException {
+        if (m == null) throw new NullPointerException();
+        writeLock.lock();
+        try {
+            MeteoriteSnapshot next = state.remove(m);
+            if (next == null) return false;
+            state = next;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the current content of this collection, which answers queries as of
+     * now regardless of later changes. Operation is O(1): the snapshot shares all nodes of the
+     * indexes with the collection, and later changes only copy the nodes on their paths.
+     * @return snapshot of this collection
+     */
+    public MeteoriteSnapshot snapshot() {
+        return state;
+    }
+
+    /**
+     * Returns true if this collection contains a Meteorite object equal to m. Operation is O(H).
+     * @param m - Meteorite object to be checked for
+     * @return true if an equal Meteorite object is present in this collection
+     * @throws NullPointerException if m is null
+     */
+    public boolean contains(Meteorite m) throws NullPointerException {
+        return state.contains(m);
+    }
+
+    /**
+     * Returns the number of Meteorite objects in this collection. Operation is O(1).
+     * @return the number of Meteorite objects in this collection
+     */
+    public int size() {
+        return state.size();
+    }
+
+    /**
+     * Returns collection of all Meteorite objects with mass within delta grams of the specified
+     * mass, as MeteoriteSnapshot.getByMass. Operation is O(H) to create the view and O(K) to
+     * iterate over it.
+     * @param mass - specified mass
+     * @param delta - acceptable range around mass
+     * @return MeteoriteView with elements within range, or null if there are none
+     * @throws IllegalArgumentException if mass or delta is under zero
+     */
+    public MeteoriteView getByMass(int mass, int delta) throws IllegalArgumentException {
+        return state.getByMass(mass, delta);
+    }
+
+    /**
+     * Returns the number of Meteorite objects with mass within delta grams of the specified mass,
+     * without visiting them. Operation is O(H).
+     * @param mass - specified mass
+     * @param delta - acceptable range around mass
+     * @return number of Meteorite objects with mass within range
+     * @throws IllegalArgumentException if mass or delta is under zero
+     */
+    public int countByMass(int mass, int delta) throws IllegalArgumentException {
+        return state.countByMass(mass, delta);
+    }
+
+    /**
+     * Returns collection of Meteorite objects that landed within provided year, organized
+     * according to their natural ordering. Operation is O(H) to create the view and O(K) to
+     * iterate over it.
+     * @param year - year in which desired Meteorites landed
+     * @return MeteoriteView of all Meteorites that landed during provided year, or null if there
+     * are none
+     * @throws IllegalArgumentException if year is under zero or over 2020
+     */
+    public MeteoriteView getByYear(int year) throws IllegalArgumentException {
+        return state.getByYear(year);
+    }
+
+    /**
+     * Returns collection of Meteorite objects that landed from fromYear to toYear, inclusive,
+     * organized by year and, within a year, according to their natural ordering. Operation is
+     * O(H) to create the view and O(K) to iterate over it.
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @return MeteoriteView of all Meteorites that landed during these years, or null if there
+     * are none
+     * @throws IllegalArgumentException if the years are not within range 0 to 2020 or fromYear is
+     * greater than toYear
+     */
+    public MeteoriteView getByYear(int fromYear, int toYear) throws IllegalArgumentException {
+        return state.getByYear(fromYear, toYear);
+    }
+
+    /**
+     * Returns the number of Meteorite objects that landed within provided year. Operation is O(H).
+     * @param year - year in which desired Meteorites landed
+     * @return number of Meteorites that landed during provided year
+     * @throws IllegalArgumentException if year is under zero or over 2020
+     */
+    public int countByYear(int year) throws IllegalArgumentException {
+        return state.countByYear(year);
+    }
+
+    /**
+     * Returns the number of Meteorite objects that landed from fromYear to toYear, inclusive.
+     * Operation is O(H).
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @return number of Meteorites that landed during these years
+     * @throws IllegalArgumentException if the years are not within range 0 to 2020 or fromYear is
+     * greater than toYear
+     */
+    public int countByYear(int fromYear, int toYear) throws IllegalArgumentException {
+        return state.countByYear(fromYear, toYear);
+    }
+
+    /**
+     * Returns the Meteorite object closest to the given Location, as
+     * MeteoriteData.getByLocation(Location) would. Operation is O(log N).
+     * @param loc - Location value to be compared
+     * @return Meteorite object with closest Location value to loc, or null if no meteorite has a
+     * Location
+     * @throws IllegalArgumentException if loc is null
+     */
+    public Meteorite getByLocation(Location loc) throws IllegalArgumentException {
+        return state.getByLocation(loc);
+    }
+
+    /**
+     * Returns collection of the k Meteorite objects closest to the given Location, as
+     * MeteoriteData.getNearest would. Operation is O(k log k + log N).
+     * @param loc - Location value to be compared
+     * @param k - number of Meteorite objects to be returned
+     * @return MeteoriteView of the k closest meteorites, or null if no meteorite has a Location
+     * @throws IllegalArgumentException if loc is null or k is under one
+     */
+    public MeteoriteView getNearest(Location loc, int k) throws IllegalArgumentException {
+        return state.getNearest(loc, k);
+    }
+
+    /**
+     * Returns collection of all Meteorite objects within radius kilometres of the given Location,
+     * as MeteoriteData.getByDistance would. Operation is O(log N + K log K) for small radii.
+     * @param loc - center of the search
+     * @param radius - maximum distance from loc in kilometres
+     * @return MeteoriteView of the meteorites within radius of loc, or null if there are none
+     * @throws IllegalArgumentException if loc is null or radius is negative
+     */
+    public MeteoriteView getByDistance(Location loc, double radius) throws IllegalArgumentException {
+        return state.getByDistance(loc, radius);
+    }
+
+    /**
+     * Iterates over the Meteorite objects of this collection according to their natural order.
+     * The iterator is backed by the version of the collection at the time of the call, so it does
+     * not reflect later changes and never throws ConcurrentModificationException.
+     * @return Iterator for ConcurrentMeteoriteData
+     */
+    @Override
+    public Iterator<Meteorite> iterator() {
+        return state.iterator();
+    }
+
+    /**
+     * toString method, in the same format as MeteoriteData.toString, of the current version of
+     * the collection.
+     * @return String representation of ConcurrentMeteoriteData collection
+     */
+    @Override
+    public String toString() {
+        return state.toString();
+    }
+}
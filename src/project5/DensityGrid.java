@@ -0,0 +1,379 @@
+package project5;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * DensityGrid class aggregates meteorites by location for heatmaps. The surface of the Earth is
+ * divided in cells of a given size in degrees of latitude and longitude, and for every cell the
+ * grid keeps the number of meteorites that fell in it, their total mass and the heaviest of them.
+ * The grid may be restricted to a range of years, in which case meteorites that fell in other
+ * years are ignored.
+ * The values are kept in primitive arrays indexed by cell, so aggregating does not create any
+ * objects. Large collections are aggregated in parallel: every fork-join task fills a sparse
+ * table holding only the cells its meteorites fell in, the tables are merged, and the result is
+ * added to the cells of the grid. So the memory used by the tasks depends on the number of
+ * meteorites, not on the number of cells. A grid can be refined afterwards by adding the
+ * meteorites that were added to the collection since it was computed.
+ * Cells are numbered by row, from the south pole, and by column, from the antimeridian at -180
+ * degrees. Locations on the north pole and on the antimeridian at 180 degrees belong to the last
+ * row and column.
+ *
+ * @author Jack
+ */
+public class DensityGrid {
+    //maximum number of cells of a grid
+    private static final int MAX_CELLS = 1 << 24;
+    //number of meteorites below which the aggregation is not split any further
+    private static final int THRESHOLD = 1 << 14;
+
+    //size of a cell in degrees and number of rows and columns of cells
+    private final double resolution;
+    private final int rows;
+    private final int columns;
+    //years of the meteorites counted by the grid, inclusive
+    private final int fromYear;
+    private final int toYear;
+
+    //values of the cells: number of meteorites, total mass and heaviest meteorite
+    private final int[] counts;
+    private final long[] masses;
+    private final Meteorite[] heaviest;
+
+    /**
+     * Constructs an empty grid with cells of the given size, counting meteorites of all years.
+     * @param resolution - size of a cell in degrees
+     * @throws IllegalArgumentException if resolution is not within range 0 to 180, or is so small
+     * that the grid would have more than 2^24 cells
+     */
+    public DensityGrid(double resolution) throws IllegalArgumentException {
+        this(resolution, 0, 2020);
+    }
+
+    /**
+     * Constructs an empty grid with cells of the given size, counting only the meteorites that
+     * fell from fromYear to toYear, inclusive.
+     * @param resolution - size of a cell in degrees
+     * @param fromYear - first year counted by the grid
+     * @param toYear - last year counted by the grid
+     * @throws IllegalArgumentException if resolution is not within range 0 to 180, or is so small
+     * that the grid would have more than 2^24 cells, or if fromYear is greater than toYear
+     */
+    public DensityGrid(double resolution, int fromYear, int toYear) throws IllegalArgumentException {
+        if (!(resolution > 0 && resolution <= 180) || fromYear > toYear)
+            throw new IllegalArgumentException("Invalid arguments.");
+        long rows = (long) Math.ceil(180 / resolution);
+        long columns = (long) Math.ceil(360 / resolution);
+        if (rows * columns > MAX_CELLS) throw new IllegalArgumentException("Resolution is too fine.");
+        this.resolution = resolution;
+        this.rows = (int) rows;
+        this.columns = (int) columns;
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+        counts = new int[this.rows * this.columns];
+        masses = new long[counts.length];
+        heaviest = new Meteorite[counts.length];
+    }
+
+    /**
+     * Adds the given meteorite to the grid. The meteorite is ignored if it has no location or if
+     * it fell outside the years of the grid. Operation is O(1).
+     * @param m - Meteorite object to be added
+     * @return true if m was counted in one of the cells
+     * @throws NullPointerException if m is null
+     */
+    public boolean add(Meteorite m) throws NullPointerException {
+        int cell = cellOf(m);
+        if (cell < 0) return false;
+        counts[cell]++;
+        masses[cell] += m.getMass();
+        if (heavier(m, heaviest[cell])) heaviest[cell] = m;
+        return true;
+    }
+
+    /*
+     * Returns the index of the cell m fell in, or -1 if m has no location or fell outside the
+     * years of the grid.
+     */
+    private int cellOf(Meteorite m) {
+        Location loc = m.getLocation();
+        if (loc == null || m.getYear() < fromYear || m.getYear() > toYear) return -1;
+        return getRow(loc.getLatitude()) * columns + getColumn(loc.getLongitude());
+    }
+
+    /*
+     * Returns true if m is heavier than h, or as heavy and first in natural order, or if h is
+     * null.
+     */
+    private static boolean heavier(Meteorite m, Meteorite h) {
+        return h == null || m.getMass() > h.getMass() ||
+                (m.getMass() == h.getMass() && m.compareTo(h) < 0);
+    }
+
+    /**
+     * Adds all given meteorites to the grid, as add would. Large collections are split in parts
+     * that are aggregated in parallel in the common fork-join pool, each into a table of the cells
+     * it touched. Operation is O(N).
+     * @param meteorites - Meteorite objects to be added
+     * @throws NullPointerException if meteorites or any of its elements is null
+     */
+    public void addAll(Collection<Meteorite> meteorites) throws NullPointerException {
+        Meteorite[] array = meteorites.toArray(new Meteorite[0]);
+        int parts = 4 * ForkJoinPool.commonPool().getParallelism();
+        int threshold = Math.max(THRESHOLD, array.length / parts + 1);
+        if (array.length <= threshold) {
+            for (Meteorite m : array) {
+                add(m);
+            }
+            return;
+        }
+        merge(ForkJoinPool.commonPool().invoke(new AggregateTask(array, 0, array.length, threshold)));
+    }
+
+    /*
+     * Adds the values of the cells of the table to the cells of this grid.
+     */
+    private void merge(Cells table) {
+        for (int slot = 0; slot < table.keys.length; slot++) {
+            int cell = table.keys[slot];
+            if (cell < 0) continue;
+            counts[cell] += table.counts[slot];
+            masses[cell] += table.masses[slot];
+            if (heavier(table.heaviest[slot], heaviest[cell])) heaviest[cell] = table.heaviest[slot];
+        }
+    }
+
+    /*
+     * Values of the cells touched by a part of the meteorites, in an open-addressing hash table
+     * keyed by the index of the cell. A table grows with the number of cells it holds, so it
+     * never takes more memory than the meteorites it aggregates.
+     */
+    private static class Cells {
+        //index of the cell of every slot (-1 if the slot is free) and values of the cell
+        private int[] keys;
+        private int[] counts;
+        private long[] masses;
+        private Meteorite[] heaviest;
+        //number of slots in use
+        private int size;
+
+        Cells(int expected) {
+            int capacity = 16;
+            while (capacity < 2 * expected) capacity <<= 1;
+            allocate(capacity);
+        }
+
+        /*
+         * Replaces the slots with capacity free slots.
+         */
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            Arrays.fill(keys, -1);
+            counts = new int[capacity];
+            masses = new long[capacity];
+            heaviest = new Meteorite[capacity];
+            size = 0;
+        }
+
+        /*
+         * Adds count meteorites of total mass mass, the heaviest of which is h, to the cell.
+         */
+        void add(int cell, int count, long mass, Meteorite h) {
+            //keeps at least half of the slots free, so that probe sequences stay short
+            if (2 * (size + 1) > keys.length) grow();
+            int mask = keys.length - 1;
+            int slot = hash(cell) & mask;
+            while (keys[slot] >= 0 && keys[slot] != cell) slot = (slot + 1) & mask;
+            if (keys[slot] < 0) {
+                keys[slot] = cell;
+                size++;
+            }
+            counts[slot] += count;
+            masses[slot] += mass;
+            if (heavier(h, heaviest[slot])) heaviest[slot] = h;
+        }
+
+        /*
+         * Adds the values of the cells of table to the cells of this table.
+         */
+        void addAll(Cells table) {
+            for (int slot = 0; slot < table.keys.length; slot++) {
+                if (table.keys[slot] >= 0)
+                    add(table.keys[slot], table.counts[slot], table.masses[slot], table.heaviest[slot]);
+            }
+        }
+
+        /*
+         * Doubles the number of slots and adds the cells again.
+         */
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            long[] oldMasses = masses;
+            Meteorite[] oldHeaviest = heaviest;
+            allocate(2 * oldKeys.length);
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] >= 0)
+                    add(oldKeys[slot], oldCounts[slot], oldMasses[slot], oldHeaviest[slot]);
+            }
+        }
+
+        /*
+         * Spreads the bits of the index of a cell, so that neighbouring cells do not fill
+         * consecutive slots.
+         */
+        private static int hash(int cell) {
+            int h = cell * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /*
+     * Aggregates array[from] to array[to-1] into a table of the cells they touched, splitting
+     * the range in halves until it holds at most threshold meteorites.
+     */
+    private class AggregateTask extends RecursiveTask<Cells> {
+        private static final long serialVersionUID = 1L;
+        private final Meteorite[] array;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        AggregateTask(Meteorite[] array, int from, int to, int threshold) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Cells compute() {
+            if (to - from <= threshold) {
+                Cells table = new Cells(to - from);
+                for (int i = from; i < to; i++) {
+                    Meteorite m = array[i];
+                    int cell = cellOf(m);
+                    if (cell >= 0) table.add(cell, 1, m.getMass(), m);
+                }
+                return table;
+            }
+            int mid = (from + to) >>> 1;
+            AggregateTask right = new AggregateTask(array, mid, to, threshold);
+            right.fork();
+            Cells left = new AggregateTask(array, from, mid, threshold).compute();
+            Cells other = right.join();
+            //adds the smaller table to the larger one
+            if (left.size < other.size) {
+                other.addAll(left);
+                return other;
+            }
+            left.addAll(other);
+            return left;
+        }
+    }
+
+    /**
+     * Returns the size of a cell in degrees.
+     * @return the resolution of the grid
+     */
+    public double getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Returns the number of rows of cells, from south to north.
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of cells, from west to east.
+     * @return the number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the row of the cells holding the given latitude.
+     * @param latitude - latitude within range -90.0 to 90.0
+     * @return row of the cells holding latitude
+     */
+    public int getRow(double latitude) {
+        return Math.max(0, Math.min(rows - 1, (int) ((latitude + 90) / resolution)));
+    }
+
+    /**
+     * Returns the column of the cells holding the given longitude.
+     * @param longitude - longitude within range -180.0 to 180.0
+     * @return column of the cells holding longitude
+     */
+    public int getColumn(double longitude) {
+        return Math.max(0, Math.min(columns - 1, (int) ((longitude + 180) / resolution)));
+    }
+
+    /**
+     * Returns the number of meteorites that fell in the given cell.
+     * @param row - row of the cell
+     * @param column - column of the cell
+     * @return the number of meteorites in the cell
+     * @throws IndexOutOfBoundsException if the cell is not within the grid
+     */
+    public int getCount(int row, int column) throws IndexOutOfBoundsException {
+        return counts[cell(row, column)];
+    }
+
+    /**
+     * Returns the total mass of the meteorites that fell in the given cell, in grams.
+     * @param row - row of the cell
+     * @param column - column of the cell
+     * @return the total mass of the meteorites in the cell
+     * @throws IndexOutOfBoundsException if the cell is not within the grid
+     */
+    public long getTotalMass(int row, int column) throws IndexOutOfBoundsException {
+        return masses[cell(row, column)];
+    }
+
+    /**
+     * Returns the heaviest meteorite that fell in the given cell. If several meteorites have the
+     * same mass, the first one in natural order is returned.
+     * @param row - row of the cell
+     * @param column - column of the cell
+     * @return the heaviest Meteorite object in the cell, or null if the cell is empty
+     * @throws IndexOutOfBoundsException if the cell is not within the grid
+     */
+    public Meteorite getHeaviest(int row, int column) throws IndexOutOfBoundsException {
+        return heaviest[cell(row, column)];
+    }
+
+    /*
+     * Returns the index of the given cell in the arrays of values.
+     */
+    private int cell(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns)
+            throw new IndexOutOfBoundsException("Invalid cell: " + row + ", " + column);
+        return row * columns + column;
+    }
+
+    /**
+     * toString method. Lists the cells that hold at least one meteorite, one per line, with the
+     * latitude and longitude of their south-west corner, the number of meteorites, their total
+     * mass and the name of the heaviest one.
+     * @return String representation of the grid
+     */
+    @Override
+    public String toString() {
+        StringBuilder stuff = new StringBuilder();
+        for (int cell = 0; cell < counts.length; cell++) {
+            if (counts[cell] == 0) continue;
+            stuff.append(String.format("%10.5f %11.5f %8d %14d %s\n",
+                    cell / columns * resolution - 90, cell % columns * resolution - 180,
+                    counts[cell], masses[cell], heaviest[cell].getName()));
+        }
+        return stuff.toString();
+    }
+}
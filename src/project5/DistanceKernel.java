@@ -0,0 +1,146 @@
+package project5;
+
+import java.util.Arrays;
+
+/**
+ * DistanceKernel class scans packed arrays of locations for the ones closest to, or within a given
+ * distance of, a query location, without evaluating the haversine formula for every location.
+ * Every location is converted once to a point on the unit sphere and stored in three arrays of
+ * coordinates. The squared chord between two points grows with their great-circle distance and
+ * only takes three multiplications and additions, so the scans compare on it instead of on the
+ * distance. The loops run over plain double arrays with no calls and no trigonometry, so they are
+ * limited by memory bandwidth rather than by the cost of Math.sin and Math.asin.
+ * The chord is computed differently from Location.getDistance, so the two may round differently.
+ * To return exactly the results of a scan with Location.getDistance, the locations whose chord is
+ * within a tiny margin of the best one (or of the radius) are checked again with
+ * Location.getDistance.
+ *
+ * @author Jack
+ */
+public class DistanceKernel {
+    //radius of the Earth used by Location.getDistance
+    private static final double EARTH_RADIUS = 6371;
+    //margin added to chords before the candidates are checked with Location.getDistance
+    private static final double EPSILON = 1e-12;
+
+    //locations in degrees, NaN if there is none
+    private final double[] latitudes;
+    private final double[] longitudes;
+    //locations as points on the unit sphere, NaN if there is none
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+
+    /**
+     * Constructs a kernel over the given locations. The arrays are not copied and must not be
+     * modified afterwards. Operation is O(N).
+     * @param latitudes - latitudes in degrees, NaN for a missing location
+     * @param longitudes - longitudes in degrees, NaN for a missing location
+     * @throws IllegalArgumentException if the arrays do not have the same length
+     */
+    public DistanceKernel(double[] latitudes, double[] longitudes) throws IllegalArgumentException {
+        if (latitudes.length != longitudes.length) throw new IllegalArgumentException("Invalid arguments.");
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        int size = latitudes.length;
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+        for (int i = 0; i < size; i++) {
+            double lat = Math.toRadians(latitudes[i]);
+            double lon = Math.toRadians(longitudes[i]);
+            x[i] = Math.cos(lat) * Math.cos(lon);
+            y[i] = Math.cos(lat) * Math.sin(lon);
+            z[i] = Math.sin(lat);
+        }
+    }
+
+    /**
+     * Returns the number of locations of this kernel.
+     * @return the number of locations
+     */
+    public int size() {
+        return x.length;
+    }
+
+    /**
+     * Returns the index of the location closest to the given one, as a scan comparing
+     * Location.getDistance values would: if several locations are at the same distance, the one
+     * with the lowest index is returned. Operation is O(N).
+     * @param latitude - latitude of the query in degrees
+     * @param longitude - longitude of the query in degrees
+     * @return index of the closest location, or -1 if there are no locations
+     */
+    public int nearest(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double qx = Math.cos(lat) * Math.cos(lon);
+        double qy = Math.cos(lat) * Math.sin(lon);
+        double qz = Math.sin(lat);
+
+        //finds the smallest squared chord (NaN never compares as smaller)
+        double best = Double.POSITIVE_INFINITY;
+        int size = x.length;
+        for (int i = 0; i < size; i++) {
+            double dx = x[i] - qx;
+            double dy = y[i] - qy;
+            double dz = z[i] - qz;
+            double chord = dx * dx + dy * dy + dz * dz;
+            if (chord < best) best = chord;
+        }
+        if (best == Double.POSITIVE_INFINITY) return -1;
+
+        //checks the candidates within the margin with the haversine formula
+        double bound = Math.sqrt(best) + EPSILON;
+        bound *= bound;
+        int closest = -1;
+        double closestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            double dx = x[i] - qx;
+            double dy = y[i] - qy;
+            double dz = z[i] - qz;
+            if (dx * dx + dy * dy + dz * dz <= bound) {
+                double d = Location.getDistance(latitudes[i], longitudes[i], latitude, longitude);
+                if (closest < 0 || d < closestDistance) {
+                    closest = i;
+                    closestDistance = d;
+                }
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Returns the indexes of the locations within the given distance of the given one, in
+     * increasing order, as a scan comparing Location.getDistance values with radius would.
+     * Operation is O(N).
+     * @param latitude - latitude of the query in degrees
+     * @param longitude - longitude of the query in degrees
+     * @param radius - maximum distance in kilometres
+     * @return indexes of the locations within radius, possibly empty
+     */
+    public int[] within(double latitude, double longitude, double radius) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double qx = Math.cos(lat) * Math.cos(lon);
+        double qy = Math.cos(lat) * Math.sin(lon);
+        double qz = Math.sin(lat);
+        double bound = 2 * Math.sin(Math.min(radius / EARTH_RADIUS, Math.PI) / 2) + EPSILON;
+        bound *= bound;
+
+        int[] found = new int[16];
+        int count = 0;
+        int size = x.length;
+        for (int i = 0; i < size; i++) {
+            double dx = x[i] - qx;
+            double dy = y[i] - qy;
+            double dz = z[i] - qz;
+            if (dx * dx + dy * dy + dz * dz <= bound &&
+                    Location.getDistance(latitudes[i], longitudes[i], latitude, longitude) <= radius) {
+                if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                found[count++] = i;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+}
@@ -1,9 +1,8 @@
 package project5;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
 
@@ -18,6 +17,8 @@ import java.util.Scanner;
  * @author Jack
  */
 public class FallenStars {
+    //files larger than this number of bytes are loaded in parallel
+    private static final long PARALLEL_LOAD_SIZE = 1 << 24;
 
     /**
      * The main() method of the program.
@@ -45,62 +46,25 @@ public class FallenStars {
             System.exit(1);
         }
 
-        //open file for reading
-        Scanner meteors = null;
+        //parsing through data and adding to MeteoriteData
+        MeteoriteData meteorList = null;
 
-        //checks to see if file can be opened
+        //checks to see if file can be read
         try {
-            meteors = new Scanner(metFile);
-        } catch (FileNotFoundException e) {
+            if (metFile.length() > PARALLEL_LOAD_SIZE) meteorList = MeteoriteReader.readParallel(metFile);
+            else meteorList = MeteoriteReader.read(metFile);
+        } catch (IOException e) {
             System.err.println("Error: the file "+metFile.getAbsolutePath()+
                     " cannot be opened for reading.\n");
             System.exit(1);
         }
 
-        //parsing through data and adding to MeteoriteData
-        MeteoriteData meteorList = new MeteoriteData();
-        String line = null;
-        ArrayList<String> meteorData = new ArrayList<String>();
-        String mName = null;
-        int mId = 0;
-        int mMass = 0;
-        int mYear = 0;
-        Location mLoc = null;
-        Meteorite current = null;
-        meteors.nextLine();
-        while (meteors.hasNextLine()) {
-            //getting data from array created by splitCSVLine
-            try {
-                line = meteors.nextLine();
-                meteorData = splitCSVLine(line);
-                mName = meteorData.get(0);
-                mId = Integer.parseInt(meteorData.get(1));
-                mMass = Integer.parseInt(meteorData.get(4));
-                mYear = Integer.parseInt(meteorData.get(6).substring(6, 10));
-                mLoc = new Location(Double.parseDouble(meteorData.get(7)), Double.parseDouble(meteorData.get(8)));
-            }
-            catch (Exception ex) {
-                //caused by an incomplete or miss-formatted line in the input file
-                continue;
-            }
-            //setting new values for Meteorite object
-            try {
-                current = new Meteorite(mName.trim(), mId);
-                current.setMass(mMass);
-                current.setLocation(mLoc);
-                current.setYear(mYear);
-                meteorList.add(current);
-            }
-            catch (IllegalArgumentException ex ) {
-                //ignore this exception and skip to the next line
-                continue;
-            }
-        }
-
         //Interaction with user
         System.out.println("Search the database by using one of the following queries.\n");
         System.out.println("To search for meteorite nearest to a given geo-location, enter\n" +
                 "   location LATITUDE LONGITUDE");
+        System.out.println("To search for meteorites within RADIUS kilometres of a given geo-location, enter\n" +
+                "   location LATITUDE LONGITUDE RADIUS");
         System.out.println("To search for meteorites that fell in a given year, enter\n" +
                 "   year YEAR");
         System.out.println("To search for meteorites with weights MASS +/- 10 grams, enter\n" +
@@ -120,8 +84,27 @@ public class FallenStars {
             if (!userValue.equalsIgnoreCase("quit")) {
                 if(userValue.equals("location")){
                     try{
-                        System.out.println(meteorList.getByLocation(new Location(
-                                userInput.nextDouble(), userInput.nextDouble())));
+                        Location tempLocation = new Location(userInput.nextDouble(), userInput.nextDouble());
+                        //the radius is optional, so the rest of the line is read as a whole
+                        String tempRadius = userInput.nextLine().trim();
+                        if(tempRadius.isEmpty()){
+                            System.out.println(meteorList.getByLocation(tempLocation));
+                        }
+                        else{
+                            try{
+                                MeteoriteView near = meteorList.getByDistance(tempLocation,
+                                        Double.parseDouble(tempRadius));
+                                if(near == null){
+                                    System.out.println("No matches found. Try again.\n");
+                                }
+                                else{
+                                    near.writeTo(System.out);
+                                    System.out.println();
+                                }
+                            } catch(Exception e){
+                                System.out.println("This is not a valid radius. Try again.\n");
+                            }
+                        }
                     } catch(NoSuchElementException e){
                         System.out.println("This is not a valid location. Try again.\n");
                         userInput.nextLine();
@@ -130,11 +113,13 @@ public class FallenStars {
                 else if(userValue.equals("year")){
                     try{
                         int tempYear = userInput.nextInt();
-                        if(meteorList.getByYear(tempYear) == null){
+                        MeteoriteView years = meteorList.getByYear(tempYear);
+                        if(years == null){
                             System.out.println("No matches found. Try again.\n"); //!!!!!!!!!
                         }
                         else{
-                            System.out.println(meteorList.getByYear(tempYear));;
+                            years.writeTo(System.out);
+                            System.out.println();
                         }
                     } catch(Exception e){
                         System.out.println("This is not a valid year. Try again.\n");
@@ -144,10 +129,14 @@ public class FallenStars {
                 else if(userValue.equals("mass")){
                     try{
                         int tempMass = userInput.nextInt();
-                        if(meteorList.getByMass(tempMass, 10) == null){
+                        MeteoriteView masses = meteorList.getByMass(tempMass, 10);
+                        if(masses == null){
                             System.out.println("No matches found. Try again.\n");
                         }
-                        else System.out.println(meteorList.getByMass(tempMass, 10));
+                        else{
+                            masses.writeTo(System.out);
+                            System.out.println();
+                        }
                     } catch(Exception e){
                         System.out.println("This is not a valid mass. Try again.\n");
                         userInput.nextLine();
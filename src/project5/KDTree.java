@@ -0,0 +1,804 @@
+package project5;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * KDTree class is a spatial index of Meteorite objects used by MeteoriteData to find the meteorite
+ * closest to a given location without computing the distance to every meteorite.
+ * Every location is converted to a point on the unit sphere in three dimensions, so the tree has
+ * no special cases at the antimeridian or at the poles. The straight-line (chord) distance between
+ * two points on the sphere grows with the great-circle distance, and the difference between the
+ * coordinates of two points along one axis is never more than their chord distance, so a subtree
+ * can be skipped when the splitting plane is farther than the chord of the best distance found so
+ * far. The candidates that are not skipped are compared with the same haversine formula as
+ * Location.getDistance, so the results are exactly those of a full scan. The same pruning answers
+ * radius queries, which return every meteorite within a given distance, and k nearest neighbours
+ * queries, which keep the k best candidates in a bounded priority queue. Batches of nearest
+ * neighbour queries are answered in parallel. Boxes of latitudes and longitudes are searched
+ * through the smallest three-dimensional box that holds them, and the number of meteorites within
+ * a box can be estimated from the counts of the subtrees and a sample of their nodes.
+ * The tree is kept balanced like a scapegoat tree: when an insertion makes a path too deep, the
+ * subtree at the highest unbalanced node on the path is rebuilt. Removed meteorites are only
+ * marked as removed, and the whole tree is rebuilt once they outnumber the remaining ones.
+ * Meteorites without a location are not stored in the tree.
+ *
+ * @author Jack
+ */
+public class KDTree {
+    //a node is unbalanced if one of its subtrees holds more than this fraction of its nodes
+    static final double ALPHA = 0.7;
+    //radius of the Earth used by Location.getDistance
+    private static final double EARTH_RADIUS = 6371;
+    //slack used when pruning, to stay safe from rounding errors of the distances
+    static final double EPSILON = 1e-9;
+    //depth to which the tree is walked down to estimate the size of a box query, and number of
+    //levels of the subtrees below that depth that are sampled
+    private static final int ESTIMATE_DEPTH = 10;
+    private static final int SAMPLE_DEPTH = 3;
+
+    private MutableNode root;
+    //number of meteorites in the tree and number of nodes marked as removed
+    private int size;
+    private int removed;
+
+    /**
+     * Constructs a new, empty tree.
+     */
+    public KDTree() {
+    }
+
+    /**
+     * Constructs a balanced tree holding the given meteorites. Meteorites without a location are
+     * ignored. Operation is O(N log N).
+     * @param meteorites - Meteorite objects to be added
+     * @throws NullPointerException if meteorites or any of its elements is null
+     */
+    public KDTree(Collection<Meteorite> meteorites) throws NullPointerException {
+        ArrayList<Point> points = new ArrayList<Point>(meteorites.size());
+        for (Meteorite m : meteorites) {
+            if (m.getLocation() != null) points.add(new Point(m));
+        }
+        root = build(points.toArray(new Point[0]), 0, points.size());
+        size = points.size();
+    }
+
+    /**
+     * Returns the number of meteorites in this tree.
+     * @return the number of meteorites in this tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds the given meteorite to this tree. The meteorite is not added if it has no location.
+     * The caller is responsible for not adding the same object twice. Operation is amortized
+     * O(log N).
+     * @param m - Meteorite object to be added
+     * @return true if m was added
+     * @throws NullPointerException if m is null
+     */
+    public boolean add(Meteorite m) throws NullPointerException {
+        if (m.getLocation() == null) return false;
+        Point point = new Point(m);
+        size++;
+        if (root == null) {
+            root = new MutableNode(point, 0);
+            return true;
+        }
+
+        //walks down to the new leaf, remembering the path
+        ArrayList<MutableNode> path = new ArrayList<MutableNode>();
+        MutableNode current = root;
+        while (true) {
+            path.add(current);
+            current.count++;
+            MutableNode next = point.goesLeft(current) ? current.left : current.right;
+            if (next == null) break;
+            current = next;
+        }
+        MutableNode node = new MutableNode(point, (current.axis + 1) % 3);
+        if (point.goesLeft(current)) current.left = node;
+        else current.right = node;
+        path.add(node);
+
+        //rebuilds the subtree at the highest unbalanced node if the path is too deep
+        if (tooDeep(path.size() - 1, root.count)) {
+            for (int i = 0; i < path.size() - 1; i++) {
+                MutableNode parent = path.get(i);
+                MutableNode child = path.get(i + 1);
+                if (unbalanced(child.count, parent.count)) {
+                    MutableNode rebuilt = rebuild(parent);
+                    if (i == 0) root = rebuilt;
+                    else {
+                        MutableNode grandparent = path.get(i - 1);
+                        if (grandparent.left == parent) grandparent.left = rebuilt;
+                        else grandparent.right = rebuilt;
+                        //the rebuilt subtree dropped the nodes marked as removed
+                        int dropped = parent.count - count(rebuilt);
+                        for (int j = 0; j < i; j++) {
+                            path.get(j).count -= dropped;
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the given meteorite from this tree. The meteorite is found by identity, so m must be
+     * the object that was added. Operation is amortized O(log N).
+     * @param m - Meteorite object to be removed
+     * @return true if m was found and removed
+     * @throws NullPointerException if m is null
+     */
+    public boolean remove(Meteorite m) throws NullPointerException {
+        if (m.getLocation() == null) return false;
+        MutableNode node = find(root, new Point(m), m);
+        if (node == null) return false;
+        node.removed = true;
+        size--;
+        removed++;
+        if (removed > size) {
+            root = rebuild(root);
+            removed = 0;
+        }
+        return true;
+    }
+
+    /*
+     * Returns the node holding m in the subtree rooted at node, or null if there is none. point
+     * holds the coordinates of m. Points on a splitting plane may be on either side of it.
+     */
+    private static MutableNode find(MutableNode node, Point point, Meteorite m) {
+        while (node != null) {
+            if (node.point.meteorite == m && !node.removed) return node;
+            double diff = point.coordinate(node.axis) - node.point.coordinate(node.axis);
+            if (diff == 0) {
+                MutableNode found = find(node.left, point, m);
+                if (found != null) return found;
+                node = node.right;
+            }
+            else node = diff < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the meteorite closest to the given location. If several meteorites are at the same
+     * distance, the first one in the natural ordering is returned, like a scan of MeteoriteData in
+     * its natural order would. Operation is O(log N) for locations spread over the globe.
+     * @param loc - Location value to be compared
+     * @return Meteorite object with closest Location value to loc, or null if the tree is empty
+     * @throws IllegalArgumentException if loc is null
+     */
+    public Meteorite nearest(Location loc) throws IllegalArgumentException {
+        if (loc == null) throw new IllegalArgumentException("Invalid argument.");
+        return nearest(root, loc);
+    }
+
+    /**
+     * Returns the meteorites closest to the given location, sorted by their distance from it
+     * (meteorites at the same distance in natural order). The k best candidates found so far are
+     * kept in a bounded priority queue, and subtrees are skipped when their splitting plane is
+     * farther than the chord of the k-th best distance. Operation is O(k log k + log N) for
+     * locations spread over the globe.
+     * @param loc - Location value to be compared
+     * @param k - number of meteorites to be returned
+     * @return list of the k meteorites closest to loc, or all of them if the tree holds fewer
+     * than k meteorites
+     * @throws IllegalArgumentException if loc is null or k is under one
+     */
+    public List<Meteorite> nearest(Location loc, int k) throws IllegalArgumentException {
+        if (loc == null || k < 1) throw new IllegalArgumentException("Invalid arguments.");
+        return nearest(root, loc, k);
+    }
+
+    /**
+     * Returns the meteorite closest to each of the given locations, as nearest(Location) would.
+     * The locations are sorted along a Z-order curve, so that consecutive searches look at the
+     * same part of the tree, and every search starts from the answer of the previous one, which
+     * is usually close to the new answer and lets most subtrees be skipped right away. The sorted
+     * locations are split in chunks that are searched in parallel in the common fork-join pool.
+     * The tree must not be modified during the call.
+     * @param locations - Location values to be compared
+     * @return array holding at index i the meteorite closest to locations[i], or null if the tree
+     * is empty
+     * @throws IllegalArgumentException if locations or any of its elements is null
+     */
+    public Meteorite[] nearest(Location[] locations) throws IllegalArgumentException {
+        if (locations == null) throw new IllegalArgumentException("Invalid argument.");
+        long[] order = new long[locations.length];
+        for (int i = 0; i < locations.length; i++) {
+            if (locations[i] == null) throw new IllegalArgumentException("Invalid argument.");
+            //flips the sign bit, so the signed sort follows the unsigned Z-order code
+            order[i] = ((zOrder(locations[i]) << 32) ^ Long.MIN_VALUE) | i;
+        }
+        Arrays.parallelSort(order);
+        Meteorite[] result = new Meteorite[locations.length];
+        ForkJoinPool.commonPool().invoke(new BatchTask(locations, order, result, 0, order.length));
+        return result;
+    }
+
+    /*
+     * Returns the position of loc along a Z-order curve, obtained by interleaving the bits of its
+     * latitude and longitude scaled to 16 bits each.
+     */
+    private static long zOrder(Location loc) {
+        long lat = (long) ((loc.getLatitude() + 90) / 180 * 0xFFFF);
+        long lon = (long) ((loc.getLongitude() + 180) / 360 * 0xFFFF);
+        long z = 0;
+        for (int bit = 15; bit >= 0; bit--) {
+            z = (z << 2) | (((lat >> bit) & 1) << 1) | ((lon >> bit) & 1);
+        }
+        return z;
+    }
+
+    /*
+     * Searches the locations listed in order[from] to order[to-1], splitting the range in halves
+     * until it is small enough to be searched sequentially.
+     */
+    private class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        //number of searches below which a range is not split any further
+        private static final int THRESHOLD = 1024;
+
+        private final Location[] locations;
+        private final long[] order;
+        private final Meteorite[] result;
+        private final int from;
+        private final int to;
+
+        BatchTask(Location[] locations, long[] order, Meteorite[] result, int from, int to) {
+            this.locations = locations;
+            this.order = order;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BatchTask(locations, order, result, from, mid),
+                        new BatchTask(locations, order, result, mid, to));
+                return;
+            }
+            Point previous = null;
+            for (int i = from; i < to; i++) {
+                //the index is in the low 32 bits of the sort key
+                int index = (int) order[i];
+                Nearest search = new Nearest(locations[index]);
+                if (previous != null) search.consider(previous);
+                search.visit(root);
+                previous = search.best();
+                result[index] = previous == null ? null : previous.meteorite;
+            }
+        }
+    }
+
+    /**
+     * Returns the meteorites within the given distance of the given location, sorted by their
+     * distance from it (meteorites at the same distance in natural order). Subtrees whose
+     * splitting plane is farther than the chord of the radius are skipped, so only the meteorites
+     * near the circle are compared. Operation is O(log N + K log K) for small radii, where K is
+     * the number of meteorites within the radius.
+     * @param loc - center of the circle
+     * @param radius - radius of the circle in kilometres
+     * @return list of the meteorites within radius of loc, possibly empty
+     * @throws IllegalArgumentException if loc is null or radius is negative or NaN
+     */
+    public List<Meteorite> within(Location loc, double radius) throws IllegalArgumentException {
+        if (loc == null || !(radius >= 0)) throw new IllegalArgumentException("Invalid arguments.");
+        return within(root, loc, radius);
+    }
+
+    /*
+     * Returns the meteorite of the tree rooted at root closest to loc, or null if the tree is
+     * empty. Shared with PersistentKDTree, as are the other searches.
+     */
+    static Meteorite nearest(Node root, Location loc) {
+        Nearest search = new Nearest(loc);
+        search.visit(root);
+        return search.best() == null ? null : search.best().meteorite;
+    }
+
+    /*
+     * Returns the k meteorites of the tree rooted at root closest to loc, sorted by their distance
+     * from it.
+     */
+    static List<Meteorite> nearest(Node root, Location loc, int k) {
+        KNearest search = new KNearest(loc, k);
+        search.visit(root);
+        Neighbour[] found = search.heap.toArray(new Neighbour[0]);
+        Arrays.sort(found);
+        return meteorites(Arrays.asList(found));
+    }
+
+    /*
+     * Returns the meteorites of the tree rooted at root within radius of loc, sorted by their
+     * distance from it.
+     */
+    static List<Meteorite> within(Node root, Location loc, double radius) {
+        ArrayList<Neighbour> found = new ArrayList<Neighbour>();
+        within(root, new Point(loc.getLatitude(), loc.getLongitude()), radius, chord(radius), found);
+        Collections.sort(found);
+        return meteorites(found);
+    }
+
+    /*
+     * Adds the meteorites of the subtree rooted at node that are within radius of query to found.
+     * The nodes of the left subtree are not greater than node along its axis and the nodes of the
+     * right subtree are not smaller.
+     */
+    private static void within(Node node, Point query, double radius, double chord,
+                               List<Neighbour> found) {
+        if (node == null) return;
+        if (!node.removed()) {
+            double d = Location.getDistance(node.point.latitude, node.point.longitude,
+                    query.latitude, query.longitude);
+            if (d <= radius) found.add(new Neighbour(node.point.meteorite, d));
+        }
+        double diff = query.coordinate(node.axis) - node.point.coordinate(node.axis);
+        if (diff <= chord + EPSILON) within(node.left(), query, radius, chord, found);
+        if (-diff <= chord + EPSILON) within(node.right(), query, radius, chord, found);
+    }
+
+    /*
+     * Returns the meteorites of a sorted list of neighbours.
+     */
+    private static List<Meteorite> meteorites(List<Neighbour> neighbours) {
+        ArrayList<Meteorite> result = new ArrayList<Meteorite>(neighbours.size());
+        for (Neighbour n : neighbours) {
+            result.add(n.meteorite);
+        }
+        return result;
+    }
+
+    /*
+     * State of a nearest neighbour search: the query point and the best point found so far.
+     */
+    static class Nearest {
+        private final Point query;
+        private Point best;
+        private double bestDistance = Double.POSITIVE_INFINITY;
+        private double bestChord = Double.POSITIVE_INFINITY;
+
+        Nearest(Location loc) {
+            query = new Point(loc.getLatitude(), loc.getLongitude());
+        }
+
+        void visit(Node node) {
+            if (node == null) return;
+            if (!node.removed()) consider(node.point);
+            double diff = query.coordinate(node.axis) - node.point.coordinate(node.axis);
+            visit(diff < 0 ? node.left() : node.right());
+            if (Math.abs(diff) <= bestChord + EPSILON) visit(diff < 0 ? node.right() : node.left());
+        }
+
+        void consider(Point p) {
+            //same argument order as in MeteoriteData, so the distances are identical
+            double d = Location.getDistance(p.latitude, p.longitude, query.latitude, query.longitude);
+            if (best == null || d < bestDistance ||
+                    (d == bestDistance && p.meteorite.compareTo(best.meteorite) < 0)) {
+                best = p;
+                bestDistance = d;
+                bestChord = chord(d);
+            }
+        }
+
+        Point best() {
+            return best;
+        }
+    }
+
+    /*
+     * State of a k nearest neighbours search: the query point and the k best meteorites found so
+     * far, in a priority queue with the worst of them at its head.
+     */
+    private static class KNearest {
+        private final Point query;
+        private final int k;
+        private final PriorityQueue<Neighbour> heap;
+        private double worstChord = Double.POSITIVE_INFINITY;
+
+        KNearest(Location loc, int k) {
+            query = new Point(loc.getLatitude(), loc.getLongitude());
+            this.k = k;
+            heap = new PriorityQueue<Neighbour>(Math.min(k, 1024), Collections.reverseOrder());
+        }
+
+        void visit(Node node) {
+            if (node == null) return;
+            Point p = node.point;
+            if (!node.removed()) {
+                double d = Location.getDistance(p.latitude, p.longitude, query.latitude, query.longitude);
+                if (heap.size() < k) {
+                    heap.add(new Neighbour(p.meteorite, d));
+                    if (heap.size() == k) worstChord = chord(heap.peek().distance);
+                }
+                else if (d <= heap.peek().distance) {
+                    Neighbour n = new Neighbour(p.meteorite, d);
+                    if (n.compareTo(heap.peek()) < 0) {
+                        heap.poll();
+                        heap.add(n);
+                        worstChord = chord(heap.peek().distance);
+                    }
+                }
+            }
+            double diff = query.coordinate(node.axis) - p.coordinate(node.axis);
+            visit(diff < 0 ? node.left() : node.right());
+            if (Math.abs(diff) <= worstChord + EPSILON) visit(diff < 0 ? node.right() : node.left());
+        }
+    }
+
+    /*
+     * Returns the length of the chord of the unit sphere between two points that are the given
+     * distance in kilometres apart on the surface of the Earth.
+     */
+    static double chord(double distance) {
+        return 2 * Math.sin(Math.min(distance / EARTH_RADIUS, Math.PI) / 2);
+    }
+
+    /**
+     * Returns the meteorites whose latitude is from south to north and whose longitude is from
+     * west to east, inclusive, in no particular order. The box is converted to the smallest box
+     * of the three-dimensional space that holds it, and subtrees whose splitting plane is outside
+     * of that box are skipped. Operation is O(sqrt(N) + K) for small boxes, where K is the number
+     * of meteorites within the box.
+     * @param south - lowest latitude of the box
+     * @param west - lowest longitude of the box
+     * @param north - highest latitude of the box
+     * @param east - highest longitude of the box
+     * @return list of the meteorites within the box, possibly empty
+     * @throws IllegalArgumentException if the box is not within range -90.0 to 90.0 and -180.0 to
+     * 180.0, or south is greater than north or west is greater than east
+     */
+    public List<Meteorite> inBox(double south, double west, double north, double east)
+            throws IllegalArgumentException {
+        double[][] bounds = bounds(south, west, north, east);
+        ArrayList<Meteorite> found = new ArrayList<Meteorite>();
+        inBox(root, south, west, north, east, bounds[0], bounds[1], found);
+        return found;
+    }
+
+    /*
+     * Adds the meteorites of the subtree rooted at node that are within the box to found. low and
+     * high are the corners of the box in three dimensions.
+     */
+    private static void inBox(MutableNode node, double south, double west, double north, double east,
+                              double[] low, double[] high, List<Meteorite> found) {
+        if (node == null) return;
+        if (!node.removed && inside(node, south, west, north, east)) found.add(node.point.meteorite);
+        double c = node.point.coordinate(node.axis);
+        if (low[node.axis] <= c) inBox(node.left, south, west, north, east, low, high, found);
+        if (high[node.axis] >= c) inBox(node.right, south, west, north, east, low, high, found);
+    }
+
+    /**
+     * Estimates the number of meteorites within the given box, as returned by inBox, without
+     * visiting all of them. The tree is walked down like inBox to a limited depth, and the node of
+     * every subtree on the way is checked against the box. A subtree that is still crossed by the
+     * box at the maximum depth counts for its number of nodes times the fraction of the nodes at
+     * its top levels that are within the box. Operation is O(1) for a given depth.
+     * @param south - lowest latitude of the box
+     * @param west - lowest longitude of the box
+     * @param north - highest latitude of the box
+     * @param east - highest longitude of the box
+     * @return estimated number of meteorites within the box
+     * @throws IllegalArgumentException if the box is not within range -90.0 to 90.0 and -180.0 to
+     * 180.0, or south is greater than north or west is greater than east
+     */
+    public double estimateInBox(double south, double west, double north, double east)
+            throws IllegalArgumentException {
+        double[][] bounds = bounds(south, west, north, east);
+        if (root == null) return 0;
+        double estimate = estimate(root, south, west, north, east, bounds[0], bounds[1], ESTIMATE_DEPTH);
+        //the counts of the nodes include the nodes marked as removed
+        return estimate * size / root.count;
+    }
+
+    /*
+     * Estimates the number of nodes of the subtree rooted at node that are within the box. low and
+     * high are the corners of the box in three dimensions.
+     */
+    private static double estimate(MutableNode node, double south, double west, double north, double east,
+                                   double[] low, double[] high, int depth) {
+        if (node == null) return 0;
+        if (depth == 0) {
+            //samples the top levels of the subtree
+            int[] sample = new int[2];
+            sample(node, south, west, north, east, SAMPLE_DEPTH, sample);
+            return (double) node.count * sample[0] / sample[1];
+        }
+        double estimate = inside(node, south, west, north, east) ? 1 : 0;
+        double c = node.point.coordinate(node.axis);
+        if (low[node.axis] <= c) estimate += estimate(node.left, south, west, north, east, low, high, depth - 1);
+        if (high[node.axis] >= c) estimate += estimate(node.right, south, west, north, east, low, high, depth - 1);
+        return estimate;
+    }
+
+    /*
+     * Counts the nodes of the top levels of the subtree rooted at node: sample[0] is the number of
+     * them within the box and sample[1] the number of them.
+     */
+    private static void sample(MutableNode node, double south, double west, double north, double east,
+                               int depth, int[] sample) {
+        if (node == null || depth < 0) return;
+        if (inside(node, south, west, north, east)) sample[0]++;
+        sample[1]++;
+        sample(node.left, south, west, north, east, depth - 1, sample);
+        sample(node.right, south, west, north, east, depth - 1, sample);
+    }
+
+    /*
+     * Returns true if the location of node is within the box.
+     */
+    private static boolean inside(MutableNode node, double south, double west, double north, double east) {
+        Point p = node.point;
+        return p.latitude >= south && p.latitude <= north && p.longitude >= west && p.longitude <= east;
+    }
+
+    /*
+     * Returns the corners of the smallest box of the three-dimensional space holding all points
+     * of the sphere within the given box of latitudes and longitudes, widened by EPSILON.
+     */
+    private static double[][] bounds(double south, double west, double north, double east) {
+        if (!(south >= -90 && north <= 90 && south <= north && west >= -180 && east <= 180 && west <= east))
+            throw new IllegalArgumentException("Invalid arguments.");
+        double s = Math.toRadians(south);
+        double n = Math.toRadians(north);
+        double w = Math.toRadians(west);
+        double e = Math.toRadians(east);
+
+        //ranges of cos(latitude), cos(longitude) and sin(longitude) within the box
+        double cosLatLow = Math.min(Math.cos(s), Math.cos(n));
+        double cosLatHigh = s <= 0 && n >= 0 ? 1 : Math.max(Math.cos(s), Math.cos(n));
+        double cosLonLow = w <= -Math.PI || e >= Math.PI ? -1 : Math.min(Math.cos(w), Math.cos(e));
+        double cosLonHigh = w <= 0 && e >= 0 ? 1 : Math.max(Math.cos(w), Math.cos(e));
+        double sinLonLow = w <= -Math.PI / 2 && e >= -Math.PI / 2 ? -1 : Math.min(Math.sin(w), Math.sin(e));
+        double sinLonHigh = w <= Math.PI / 2 && e >= Math.PI / 2 ? 1 : Math.max(Math.sin(w), Math.sin(e));
+
+        //cos(latitude) is never negative, so the extremes of the products are at the ends
+        double[] low = {
+                Math.min(cosLatLow * cosLonLow, cosLatHigh * cosLonLow) - EPSILON,
+                Math.min(cosLatLow * sinLonLow, cosLatHigh * sinLonLow) - EPSILON,
+                Math.sin(s) - EPSILON};
+        double[] high = {
+                Math.max(cosLatLow * cosLonHigh, cosLatHigh * cosLonHigh) + EPSILON,
+                Math.max(cosLatLow * sinLonHigh, cosLatHigh * sinLonHigh) + EPSILON,
+                Math.sin(n) + EPSILON};
+        return new double[][] {low, high};
+    }
+
+    /*
+     * Meteorite found by a search along with its distance from the query location. Neighbours are
+     * ordered by distance, and neighbours at the same distance by the natural ordering of their
+     * meteorites.
+     */
+    static class Neighbour implements Comparable<Neighbour> {
+        final Meteorite meteorite;
+        final double distance;
+
+        Neighbour(Meteorite meteorite, double distance) {
+            this.meteorite = meteorite;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(Neighbour other) {
+            int comp = Double.compare(distance, other.distance);
+            return comp != 0 ? comp : meteorite.compareTo(other.meteorite);
+        }
+    }
+
+    /*
+     * Returns a balanced copy of the subtree rooted at node, without the nodes marked as removed.
+     */
+    private MutableNode rebuild(MutableNode node) {
+        ArrayList<Point> points = new ArrayList<Point>(count(node));
+        collect(node, points);
+        removed -= count(node) - points.size();
+        return build(points.toArray(new Point[0]), 0, points.size());
+    }
+
+    /*
+     * Builds a balanced tree from points[from] to points[to-1].
+     */
+    private static MutableNode build(Point[] points, int from, int to) {
+        if (from >= to) return null;
+        int axis = split(points, from, to);
+        int mid = (from + to) >>> 1;
+        MutableNode node = new MutableNode(points[mid], axis);
+        node.left = build(points, from, mid);
+        node.right = build(points, mid + 1, to);
+        node.count = to - from;
+        return node;
+    }
+
+    /*
+     * Returns the number of nodes in the subtree rooted at node.
+     */
+    private static int count(MutableNode node) {
+        return node == null ? 0 : node.count;
+    }
+
+    /*
+     * Adds the points of the subtree rooted at node that are not marked as removed to points.
+     */
+    static void collect(Node node, List<Point> points) {
+        if (node == null) return;
+        if (!node.removed()) points.add(node.point);
+        collect(node.left(), points);
+        collect(node.right(), points);
+    }
+
+    /*
+     * Prepares points[from] to points[to-1] to become a balanced subtree: chooses the axis with
+     * the widest spread of the points and moves their median along that axis to the middle of the
+     * range, which is the root of the subtree, and the points of its left and right subtrees
+     * before and after it. Returns the axis.
+     */
+    static int split(Point[] points, int from, int to) {
+        double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = from; i < to; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                double c = points[i].coordinate(axis);
+                if (c < min[axis]) min[axis] = c;
+                if (c > max[axis]) max[axis] = c;
+            }
+        }
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (max[a] - min[a] > max[axis] - min[axis]) axis = a;
+        }
+        select(points, from, to - 1, (from + to) >>> 1, axis);
+        return axis;
+    }
+
+    /*
+     * Rearranges points[low] to points[high] so that points[k] is the point that would be there if
+     * they were sorted along axis, the points before it are not greater and the points after it
+     * are not smaller.
+     */
+    private static void select(Point[] points, int low, int high, int k, int axis) {
+        while (low < high) {
+            double pivot = points[(low + high) >>> 1].coordinate(axis);
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (points[i].coordinate(axis) < pivot) i++;
+                while (points[j].coordinate(axis) > pivot) j--;
+                if (i <= j) {
+                    Point tmp = points[i];
+                    points[i++] = points[j];
+                    points[j--] = tmp;
+                }
+            }
+            if (k <= j) high = j;
+            else if (k >= i) low = i;
+            else return;
+        }
+    }
+
+    /*
+     * Returns true if a new leaf at the given depth is too deep for a tree of the given number of
+     * nodes, in which case the subtree at the highest unbalanced node on its path is rebuilt.
+     */
+    static boolean tooDeep(int depth, int size) {
+        return depth > Math.log(size) / Math.log(1 / ALPHA);
+    }
+
+    /*
+     * Returns true if a node of the given number of nodes is unbalanced because one of its
+     * subtrees holds the given number of nodes.
+     */
+    static boolean unbalanced(int child, int parent) {
+        return child > ALPHA * parent;
+    }
+
+    /*
+     * Meteorite along with its location, both in degrees and as a point on the unit sphere. A
+     * point without a meteorite is the query of a search.
+     */
+    static final class Point {
+        final Meteorite meteorite;
+        final double latitude;
+        final double longitude;
+        final double x;
+        final double y;
+        final double z;
+
+        Point(Meteorite m) {
+            this(m, m.getLocation().getLatitude(), m.getLocation().getLongitude());
+        }
+
+        Point(double latitude, double longitude) {
+            this(null, latitude, longitude);
+        }
+
+        private Point(Meteorite m, double latitude, double longitude) {
+            meteorite = m;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            double lat = Math.toRadians(latitude);
+            double lon = Math.toRadians(longitude);
+            x = Math.cos(lat) * Math.cos(lon);
+            y = Math.cos(lat) * Math.sin(lon);
+            z = Math.sin(lat);
+        }
+
+        double coordinate(int axis) {
+            return axis == 0 ? x : axis == 1 ? y : z;
+        }
+
+        /*
+         * Returns true if this point is added to the left subtree of node.
+         */
+        boolean goesLeft(Node node) {
+            return coordinate(node.axis) < node.point.coordinate(node.axis);
+        }
+    }
+
+    /*
+     * Node of a tree, as seen by the searches shared with PersistentKDTree: a point, the axis
+     * along which the node splits its subtree, and the subtrees. The two trees only differ in how
+     * they change their nodes.
+     */
+    abstract static class Node {
+        final Point point;
+        final int axis;
+
+        Node(Point point, int axis) {
+            this.point = point;
+            this.axis = axis;
+        }
+
+        abstract Node left();
+
+        abstract Node right();
+
+        abstract boolean removed();
+    }
+
+    /*
+     * Node of this tree, which is modified in place: its subtrees are replaced, its number of
+     * nodes is updated, and it is marked as removed instead of being taken out of the tree.
+     */
+    private static final class MutableNode extends Node {
+        private int count = 1;
+        private boolean removed;
+        private MutableNode left;
+        private MutableNode right;
+
+        MutableNode(Point point, int axis) {
+            super(point, axis);
+        }
+
+        @Override
+        Node left() {
+            return left;
+        }
+
+        @Override
+        Node right() {
+            return right;
+        }
+
+        @Override
+        boolean removed() {
+            return removed;
+        }
+    }
+}
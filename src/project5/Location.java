@@ -36,13 +36,27 @@ public class Location {
      */
     double getDistance(Location loc) throws IllegalArgumentException{
         if(loc == null) throw new IllegalArgumentException("Parameter cannot be null.");
+        return getDistance(this.latitude, this.longitude, loc.latitude, loc.longitude);
+    }
 
-        double dLat = Math.toRadians(this.latitude - loc.latitude);
-        double dLon = Math.toRadians(this.longitude - loc.longitude);
+    /**
+     * Returns calculated distance between two locations given by their latitude and longitude
+     * values, using the same Haversine formula as getDistance(Location). Allows computing
+     * distances without creating Location objects.
+     * @param latitude1: latitude of the first location
+     * @param longitude1: longitude of the first location
+     * @param latitude2: latitude of the second location
+     * @param longitude2: longitude of the second location
+     * @return double value of calculated distance between two locations
+     */
+    static double getDistance(double latitude1, double longitude1,
+                              double latitude2, double longitude2){
+        double dLat = Math.toRadians(latitude1 - latitude2);
+        double dLon = Math.toRadians(longitude1 - longitude2);
 
         // convert to radians
-        double lat1 = Math.toRadians(this.latitude);
-        double lat2 = Math.toRadians(loc.latitude);
+        double lat1 = Math.toRadians(latitude1);
+        double lat2 = Math.toRadians(latitude2);
 
         // apply formulae
         double a = Math.pow(Math.sin(dLat / 2), 2) +
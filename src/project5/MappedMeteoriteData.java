@@ -0,0 +1,386 @@
+package project5;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * MappedMeteoriteData class is a read-only collection of meteorites backed by an index file that
+ * is memory-mapped when the collection is opened. The file is written once from a MeteoriteData
+ * with the write method; opening it only reads the header and maps the sections of the file, so
+ * it takes the same time regardless of the size of the catalog, and queries run directly against
+ * the mapped pages.
+ * All values in the file are stored in little-endian byte order. The file consists of:
+ * <pre>
+ *   header     64 bytes: magic "METEORIX", version, number of records, number of records with
+ *              a location, size of the name section, offsets of the other sections
+ *   records    fixed-width records in natural order, with the layout of OffHeapMeteoriteData
+ *   names      UTF-8 encoded names referenced by the records
+ *   mass       record numbers sorted by mass (ints)
+ *   year       direct-addressed year index with compressed posting lists, see YearIndex
+ *   spatial    numbers of the records with a location, sorted by latitude (ints)
+ * </pre>
+ * Records are stored in the natural ordering of the meteorites, so the name index is the record
+ * number itself and does not need a section of its own.
+ *
+ * @author Jack
+ */
+public class MappedMeteoriteData extends PackedMeteoriteData {
+    //identification of the file format
+    private static final byte[] MAGIC = "METEORIX".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    //radius of the Earth used by Location.getDistance
+    private static final double EARTH_RADIUS = 6371;
+    //slack used when pruning by latitude, to stay safe from rounding errors of the distance
+    private static final double EPSILON = 1e-9;
+
+    //number of records and number of records with a location
+    private final int size;
+    private final int located;
+    //mapped sections of the file
+    private final ByteBuffer records;
+    private final ByteBuffer names;
+    private final IntBuffer byMass;
+    private final YearIndex byYear;
+    private final IntBuffer byLatitude;
+
+    /*
+     * Constructs the collection from the mapped sections of an index file.
+     */
+    private MappedMeteoriteData(int size, int located, ByteBuffer records, ByteBuffer names,
+                                IntBuffer byMass, YearIndex byYear, IntBuffer byLatitude) {
+        this.size = size;
+        this.located = located;
+        this.records = records;
+        this.names = names;
+        this.byMass = byMass;
+        this.byYear = byYear;
+        this.byLatitude = byLatitude;
+    }
+
+    /**
+     * Writes an index file holding all meteorites of the given collection. An existing file is
+     * replaced. Operation is O(N log N).
+     * @param data - collection to be written
+     * @param file - index file to be created
+     * @throws IOException if the file cannot be written
+     * @throws NullPointerException if data or file is null
+     */
+    public static void write(MeteoriteData data, File file) throws IOException, NullPointerException {
+        if (data == null || file == null) throw new NullPointerException();
+        int size = data.size();
+        Meteorite[] meteorites = new Meteorite[size];
+        byte[][] encoded = new byte[size][];
+        int[] masses = new int[size];
+        int[] years = new int[size];
+        long nameBytes = 0;
+        int located = 0;
+        int i = 0;
+        for (Meteorite m : data) {
+            meteorites[i] = m;
+            encoded[i] = m.getName().getBytes(StandardCharsets.UTF_8);
+            masses[i] = m.getMass();
+            years[i] = m.getYear();
+            nameBytes += encoded[i].length;
+            if (m.getLocation() != null) located++;
+            i++;
+        }
+        if (nameBytes > Integer.MAX_VALUE || (long) size * OffHeapMeteoriteData.STRIDE > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many meteorites for a single index file.");
+
+        //numbers of the records with a location, sorted by latitude
+        Integer[] spatial = new Integer[located];
+        int next = 0;
+        for (i = 0; i < size; i++) {
+            if (meteorites[i].getLocation() != null) spatial[next++] = i;
+        }
+        Arrays.sort(spatial, (a, b) -> Double.compare(meteorites[a].getLocation().getLatitude(),
+                meteorites[b].getLocation().getLatitude()));
+        ByteBuffer yearIndex = new YearIndex(years, false).buffer();
+
+        //offsets of the sections
+        long recordsAt = HEADER_SIZE;
+        long namesAt = recordsAt + (long) size * OffHeapMeteoriteData.STRIDE;
+        long massAt = namesAt + nameBytes;
+        long yearAt = massAt + 4L * size;
+        long spatialAt = yearAt + yearIndex.remaining();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+            //header
+            buf.put(MAGIC);
+            buf.putInt(VERSION);
+            buf.putInt(size);
+            buf.putInt(located);
+            buf.putInt((int) nameBytes);
+            buf.putLong(recordsAt);
+            buf.putLong(namesAt);
+            buf.putLong(massAt);
+            buf.putLong(yearAt);
+            buf.putLong(spatialAt);
+            while (buf.position() < HEADER_SIZE) buf.put((byte) 0);
+
+            //records
+            int nameOffset = 0;
+            for (i = 0; i < size; i++) {
+                buf = ensure(channel, buf, OffHeapMeteoriteData.STRIDE);
+                Meteorite m = meteorites[i];
+                Location loc = m.getLocation();
+                buf.putInt(m.getId());
+                buf.putInt(m.getMass());
+                buf.putInt(m.getYear());
+                buf.putInt(nameOffset);
+                buf.putInt(encoded[i].length);
+                buf.putInt(0);
+                buf.putDouble(loc == null ? Double.NaN : loc.getLatitude());
+                buf.putDouble(loc == null ? Double.NaN : loc.getLongitude());
+                nameOffset += encoded[i].length;
+            }
+
+            //names
+            for (byte[] name : encoded) {
+                buf = ensure(channel, buf, name.length);
+                buf.put(name);
+            }
+
+            //indexes
+            for (int record : sortBy(masses)) {
+                buf = ensure(channel, buf, 4);
+                buf.putInt(record);
+            }
+            flush(channel, buf);
+            while (yearIndex.hasRemaining()) channel.write(yearIndex);
+            for (int record : spatial) {
+                buf = ensure(channel, buf, 4);
+                buf.putInt(record);
+            }
+            flush(channel, buf);
+        }
+    }
+
+    /*
+     * Makes sure that buf has room for the given number of bytes, writing its content to the
+     * channel or replacing it with a larger buffer if needed.
+     */
+    private static ByteBuffer ensure(FileChannel channel, ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() >= bytes) return buf;
+        flush(channel, buf);
+        if (buf.capacity() < bytes) return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        return buf;
+    }
+
+    /*
+     * Writes the content of buf to the channel and clears buf.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) channel.write(buf);
+        buf.clear();
+    }
+
+    /**
+     * Opens an index file written by the write method. The sections of the file are mapped into
+     * memory, nothing else is read. The file can be closed by the operating system only once the
+     * returned collection is no longer used. Operation is O(1).
+     * @param file - index file to be opened
+     * @return collection backed by the index file
+     * @throws IOException if the file cannot be read or is not a valid index file
+     */
+    public static MappedMeteoriteData open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE) throw new IOException("Not a valid index file.");
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a valid index file.");
+            if (header.getInt() != VERSION) throw new IOException("Unsupported index file version.");
+            int size = header.getInt();
+            int located = header.getInt();
+            int nameBytes = header.getInt();
+            long recordsAt = header.getLong();
+            long namesAt = header.getLong();
+            long massAt = header.getLong();
+            long yearAt = header.getLong();
+            long spatialAt = header.getLong();
+            if (size < 0 || located < 0 || located > size || nameBytes < 0
+                    || (long) size * OffHeapMeteoriteData.STRIDE > Integer.MAX_VALUE)
+                throw new IOException("Not a valid index file.");
+            //the sections follow one another as written by the write method, so all offsets but
+            //the one of the spatial section are given by the sizes, and the last one ends the file
+            if (recordsAt != HEADER_SIZE || namesAt != recordsAt + (long) size * OffHeapMeteoriteData.STRIDE
+                    || massAt != namesAt + nameBytes || yearAt != massAt + 4L * size || yearAt > spatialAt
+                    || spatialAt > length || spatialAt + 4L * located != length)
+                throw new IOException("Not a valid index file.");
+
+            //the mappings stay valid after the channel is closed
+            YearIndex byYear;
+            try {
+                byYear = new YearIndex(map(channel, yearAt, spatialAt - yearAt));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Not a valid index file.", e);
+            }
+            return new MappedMeteoriteData(size, located,
+                    map(channel, recordsAt, (long) size * OffHeapMeteoriteData.STRIDE),
+                    map(channel, namesAt, nameBytes),
+                    map(channel, massAt, 4L * size).asIntBuffer(),
+                    byYear,
+                    map(channel, spatialAt, 4L * located).asIntBuffer());
+        }
+    }
+
+    /*
+     * Maps a section of the file read-only in little-endian byte order.
+     */
+    private static ByteBuffer map(FileChannel channel, long position, long bytes) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    protected String name(int record) {
+        int base = record * OffHeapMeteoriteData.STRIDE;
+        byte[] name = new byte[records.getInt(base + OffHeapMeteoriteData.NAME_LENGTH)];
+        names.get(records.getInt(base + OffHeapMeteoriteData.NAME_OFFSET), name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected int id(int record) {
+        return records.getInt(record * OffHeapMeteoriteData.STRIDE + OffHeapMeteoriteData.ID);
+    }
+
+    @Override
+    protected int mass(int record) {
+        return records.getInt(record * OffHeapMeteoriteData.STRIDE + OffHeapMeteoriteData.MASS);
+    }
+
+    @Override
+    protected int year(int record) {
+        return records.getInt(record * OffHeapMeteoriteData.STRIDE + OffHeapMeteoriteData.YEAR);
+    }
+
+    @Override
+    protected double latitude(int record) {
+        return records.getDouble(record * OffHeapMeteoriteData.STRIDE + OffHeapMeteoriteData.LATITUDE);
+    }
+
+    @Override
+    protected double longitude(int record) {
+        return records.getDouble(record * OffHeapMeteoriteData.STRIDE + OffHeapMeteoriteData.LONGITUDE);
+    }
+
+    @Override
+    protected int massOrder(int position) {
+        return byMass.get(position);
+    }
+
+    @Override
+    protected YearIndex yearIndex() {
+        return byYear;
+    }
+
+    /**
+     * Returns the Meteorite object that is closest to the given Location, as in
+     * MeteoriteData.getByLocation. Uses the spatial section of the file: starting from the
+     * latitude of loc, records are visited in order of their latitude difference from loc, and
+     * the search stops once the latitude difference alone is larger than the best distance found
+     * so far (the distance between two locations is never less than the distance along the
+     * meridian between their latitudes). Operation is O(log N + K), where K is the number of
+     * records within that latitude band.
+     * @param loc - Location value to be compared
+     * @return Meteorite object with closest Location value to loc, or null if there are none
+     * @throws IllegalArgumentException if loc is null
+     */
+    @Override
+    public Meteorite getByLocation(Location loc) throws IllegalArgumentException {
+        if (loc == null) throw new IllegalArgumentException("Invalid argument.");
+        if (located == 0) return null;
+        double lat = loc.getLatitude();
+        double lon = loc.getLongitude();
+
+        //first position whose latitude is not less than lat
+        int low = 0;
+        int high = located;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (latitude(byLatitude.get(mid)) < lat) low = mid + 1;
+            else high = mid;
+        }
+
+        //expand the band in both directions
+        int down = low - 1;
+        int up = low;
+        int closest = -1;
+        double best = Double.POSITIVE_INFINITY;
+        while (down >= 0 || up < located) {
+            double downGap = down >= 0 ? lat - latitude(byLatitude.get(down)) : Double.POSITIVE_INFINITY;
+            double upGap = up < located ? latitude(byLatitude.get(up)) - lat : Double.POSITIVE_INFINITY;
+            boolean goUp = upGap <= downGap;
+            double gap = goUp ? upGap : downGap;
+            if (EARTH_RADIUS * Math.toRadians(gap) > best + EPSILON) break;
+
+            int record = byLatitude.get(goUp ? up++ : down--);
+            double d = Location.getDistance(latitude(record), longitude(record), lat, lon);
+            //ties go to the record that comes first in natural order
+            if (closest < 0 || d < best || (d == best && record < closest)) {
+                closest = record;
+                best = d;
+            }
+        }
+        return get(closest);
+    }
+
+    /**
+     * Returns view of all Meteorite objects within radius kilometres of the given Location, sorted
+     * by distance, as in MeteoriteData.getByDistance. Uses the spatial section of the file: only
+     * the records whose latitude differs from the one of loc by at most the radius are compared.
+     * Operation is O(log N + B + K log K), where B is the number of records within that latitude
+     * band.
+     * @param loc - center of the search
+     * @param radius - maximum distance from loc in kilometres
+     * @return MeteoriteView of the meteorites within radius of loc, or null if there are none
+     * @throws IllegalArgumentException if loc is null or radius is negative
+     */
+    @Override
+    public MeteoriteView getByDistance(Location loc, double radius) throws IllegalArgumentException {
+        if (loc == null || !(radius >= 0)) throw new IllegalArgumentException("Invalid arguments.");
+        double lat = loc.getLatitude();
+        double lon = loc.getLongitude();
+
+        //first position whose latitude is not less than the bottom of the band
+        int low = 0;
+        int high = located;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            double gap = lat - latitude(byLatitude.get(mid));
+            if (gap > 0 && EARTH_RADIUS * Math.toRadians(gap) > radius + EPSILON) low = mid + 1;
+            else high = mid;
+        }
+
+        ArrayList<KDTree.Neighbour> found = new ArrayList<KDTree.Neighbour>();
+        for (int i = low; i < located; i++) {
+            int record = byLatitude.get(i);
+            double recordLat = latitude(record);
+            if (recordLat > lat && EARTH_RADIUS * Math.toRadians(recordLat - lat) > radius + EPSILON) break;
+            double d = Location.getDistance(recordLat, longitude(record), lat, lon);
+            if (d <= radius) found.add(new KDTree.Neighbour(get(record), d));
+        }
+        return sorted(found);
+    }
+}
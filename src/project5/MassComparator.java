@@ -11,6 +11,6 @@ public class MassComparator implements Comparator<Meteorite> {
         if (m1.getMass() == m2.getMass())
             return m1.compareTo(m2);
         else
-            return m1.getMass() - m2.getMass();
+            return Integer.compare(m1.getMass(), m2.getMass());
     }
 }
@@ -13,6 +13,16 @@ public class Meteorite implements Comparable<Meteorite>{
     private int mass;
     private int year;
     private Location mLoc;
+    //prefix of the name packed into a long, see nameKey
+    private final long nameKey;
+
+    //number of characters of the name packed into nameKey, bits per character and the largest
+    //value of a character
+    private static final int KEY_CHARS = 4;
+    private static final int KEY_BITS = 15;
+    private static final int KEY_MAX = (1 << KEY_BITS) - 1;
+    //number of bits of nameKey that are used
+    static final int NAME_KEY_BITS = KEY_CHARS * KEY_BITS;
 
     /**
      * Two-parameter constructor that validates and sets the name and id of the Meteorite object.
@@ -25,6 +35,56 @@ public class Meteorite implements Comparable<Meteorite>{
                 "id value less than zero.");
         this.name = name;
         this.id = id;
+        this.nameKey = packName(name);
+    }
+
+    /*
+     * Returns the first characters of the name packed into a long, so that comparing the keys of
+     * two meteorites is a single comparison of primitives: if the key of m1 is less than the key
+     * of m2, then m1.compareTo(m2) is negative. If the keys are equal, nothing is known and the
+     * names have to be compared. The key is never negative and uses the lower NAME_KEY_BITS bits.
+     */
+    long nameKey(){
+        return nameKey;
+    }
+
+    /*
+     * Packs the first characters of name, folded in the same way as String.compareToIgnoreCase
+     * does, into 15 bits each, the first character in the highest bits. Missing characters are
+     * zero, which keeps a name before the longer names it is a prefix of. A character whose
+     * folded value does not fit (including surrogates) is stored as the largest value and ends
+     * the key, so all names that share the prefix up to it have equal keys.
+     */
+    private static long packName(String name){
+        long key = 0;
+        int i = 0;
+        for(; i < KEY_CHARS && i < name.length(); i++){
+            char c = name.charAt(i);
+            int folded = Character.toLowerCase(Character.toUpperCase(c));
+            if(Character.isSurrogate(c) || folded >= KEY_MAX){
+                key = (key << KEY_BITS) | KEY_MAX;
+                i++;
+                break;
+            }
+            key = (key << KEY_BITS) | folded;
+        }
+        return key << (KEY_BITS * (KEY_CHARS - i));
+    }
+
+    /**
+     * Returns the name of the Meteorite object
+     * @return name of Meteorite object
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * Returns the id of the Meteorite object
+     * @return id of Meteorite object
+     */
+    public int getId(){
+        return id;
     }
 
     /**
@@ -91,6 +151,22 @@ public class Meteorite implements Comparable<Meteorite>{
         return(this.compareTo(m) == 0);
     }
 
+    /**
+     * Returns a hash code for this Meteorite object that is consistent with equals. Two
+     * meteorites whose names differ only in case are equal regardless of their ids (see
+     * compareTo), so the hash code depends only on the name, with each character folded in the
+     * same way as String.compareToIgnoreCase does.
+     * @return hash code of Meteorite object
+     */
+    @Override
+    public int hashCode(){
+        int h = 0;
+        for(int i = 0; i < name.length(); i++){
+            h = 31 * h + Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+        }
+        return h;
+    }
+
     /**
      * Returns a string representation of Meteorite object.
      * @return string representation of Meteorite object
@@ -1,30 +1,197 @@
 package project5;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * MeteoriteData class stores Meteorite objects using three BSTs. The class includes many methods to
- * add, remove, and find and return collection of Meteorite objects based on year, mass, or Location.
+ * MeteoriteData class stores Meteorite objects using two BSTs, ordered by mass and by name. The class
+ * includes many methods to add, remove, and find and return collection of Meteorite objects based on
+ * year, mass, or Location. Years are small bounded integers, so instead of a third BST ordered by
+ * year, the meteorites of every year are kept in a bucket of their own, a BST in natural order,
+ * found directly by year. A hash map keyed on the meteorites (i.e., on name and id, as defined by
+ * Meteorite.equals) answers membership questions, so add and remove only walk each BST once. A
+ * KDTree indexes the locations of the meteorites for getByLocation.
+ * The results of recent getByMass, getByYear and getByLocation queries are kept in a QueryCache,
+ * which add and remove invalidate as needed.
+ * The collection and the views returned by its range queries can be processed with streams. Their
+ * spliterators are sized and split along the subtrees of the BSTs (and, for ranges of years,
+ * between the year buckets), so parallel streams divide the work evenly.
  */
-public class MeteoriteData {
+public class MeteoriteData implements Iterable<Meteorite> {
     //private instance variables
     private BST<Meteorite> massTree;
     private BST<Meteorite> naturalTree;
-    private BST<Meteorite> yearTree;
+    //meteorites of every year in natural order, indexed by year (null if there were none yet)
+    private BST<Meteorite>[] yearBuckets;
+    //maps every stored Meteorite object to itself
+    private HashMap<Meteorite, Meteorite> identity;
+    //spatial index of the meteorites with a location
+    private KDTree spatial;
+    //results of recent queries
+    private QueryCache cache;
 
-    //Default constructor - initializes three BSTs
+    //limits of the query cache: number of cached queries and of meteorites in cached results
+    private static final int CACHED_QUERIES = 256;
+    private static final int CACHED_METEORITES = 1 << 16;
+    //bits of the keys of massTree that hold the beginning of the name
+    static final int NAME_BITS = 30;
+
+    //Default constructor - initializes two BSTs, the year buckets, the identity map and the query cache
     public MeteoriteData(){
-        massTree = new BST<Meteorite>(new MassComparator());
-        naturalTree = new BST<Meteorite>();
-        yearTree = new BST<Meteorite>(new YearComparator());
+        massTree = new BST<Meteorite>(new MassComparator(), MeteoriteData::massKey);
+        naturalTree = new BST<Meteorite>(null, Meteorite::nameKey);
+        yearBuckets = newBuckets();
+        identity = new HashMap<Meteorite, Meteorite>();
+        spatial = new KDTree();
+        cache = new QueryCache(CACHED_QUERIES, CACHED_METEORITES);
+    }
+
+    /**
+     * Constructs a collection containing the given Meteorite objects. The result is the same as
+     * adding the objects one by one in the order of the given collection (if several objects are
+     * equal, only the first one is kept), but instead of N calls to add, the objects are sorted
+     * once for each of the two orderings and each BST is built directly from its sorted array; the
+     * objects are then distributed, still in natural order, to the buckets of their years. The
+     * trees, the year buckets and the spatial index are built concurrently. Operation is
+     * O(N log N) for the sorting and O(N) for building the trees.
+     * @param meteorites - Meteorite objects to be added
+     * @throws NullPointerException - if meteorites or any of its elements is null
+     */
+    public MeteoriteData(Collection<Meteorite> meteorites) throws NullPointerException{
+        this();
+        Meteorite[] sorted = meteorites.toArray(new Meteorite[0]);
+        for (Meteorite m : sorted) {
+            if (m == null) throw new NullPointerException();
+        }
+
+        //sorts the objects and checks that their names are consistently ordered; if several
+        //names differ only in case, the ordering is not transitive, so fall back to adding the
+        //objects one by one
+        try {
+            //stable sort, so the first of several equal objects stays in front of the others
+            Arrays.parallelSort(sorted);
+        } catch (IllegalArgumentException e) {
+            //the sort found that the ordering is not transitive
+            addAll(meteorites);
+            return;
+        }
+        if (!consistentlyOrdered(sorted)) {
+            addAll(meteorites);
+            return;
+        }
+        ArrayList<Meteorite> natural = new ArrayList<Meteorite>(sorted.length);
+        for (Meteorite m : sorted) {
+            if (natural.isEmpty() || natural.get(natural.size() - 1).compareTo(m) != 0)
+                natural.add(m);
+        }
+
+        BST<Meteorite> natTree = naturalTree;
+        BST<Meteorite> mTree = massTree;
+        BST<Meteorite>[] buckets = yearBuckets;
+        HashMap<Meteorite, Meteorite> map = new HashMap<Meteorite, Meteorite>(natural.size() * 2);
+        ForkJoinTask<KDTree> spatialTask = ForkJoinTask.adapt(() -> new KDTree(natural));
+        ForkJoinTask.invokeAll(spatialTask,
+                ForkJoinTask.adapt(() -> natTree.addAllSorted(natural)),
+                ForkJoinTask.adapt(() -> {
+                    for (Meteorite m : natural) map.put(m, m);
+                }),
+                ForkJoinTask.adapt(() -> buildSorted(mTree, natural,
+                        Comparator.comparingInt(Meteorite::getMass))),
+                ForkJoinTask.adapt(() -> buildBuckets(buckets, natural)));
+        identity = map;
+        spatial = spatialTask.join();
+    }
+
+    /*
+     * Returns true if the objects, sorted in natural order, are consistently ordered, i.e., no
+     * two of their names differ only in case. Names equal ignoring case are next to each other
+     * once sorted, so only neighbours are compared. Also used by ConcurrentMeteoriteData.
+     */
+    static boolean consistentlyOrdered(Meteorite[] sorted){
+        for (int i = 1; i < sorted.length; i++) {
+            String previous = sorted[i - 1].getName();
+            String name = sorted[i].getName();
+            if (!previous.equals(name) && previous.equalsIgnoreCase(name)) return false;
+        }
+        return true;
+    }
+
+    /*
+     * Adds the given objects one by one, in the order of the collection.
+     */
+    private void addAll(Collection<Meteorite> meteorites){
+        for (Meteorite m : meteorites) {
+            add(m);
+        }
+    }
+
+    /*
+     * Builds tree from objects given in natural order. The comparator of massTree breaks ties
+     * using the natural ordering, so a stable sort of the objects on the mass alone puts them in
+     * the order of the tree without comparing any names.
+     */
+    private static void buildSorted(BST<Meteorite> tree, List<Meteorite> natural,
+                                    Comparator<Meteorite> key){
+        Meteorite[] sorted = natural.toArray(new Meteorite[0]);
+        Arrays.parallelSort(sorted, key);
+        tree.addAllSorted(Arrays.asList(sorted));
+    }
+
+    /*
+     * Builds the year buckets from objects given in natural order. Distributing the objects by
+     * year keeps every bucket in natural order, so each bucket is built directly.
+     */
+    private static void buildBuckets(BST<Meteorite>[] buckets, List<Meteorite> natural){
+        ArrayList<ArrayList<Meteorite>> years = new ArrayList<ArrayList<Meteorite>>(buckets.length);
+        for (int year = 0; year < buckets.length; year++) {
+            years.add(null);
+        }
+        for (Meteorite m : natural) {
+            ArrayList<Meteorite> list = years.get(m.getYear());
+            if (list == null) years.set(m.getYear(), list = new ArrayList<Meteorite>());
+            list.add(m);
+        }
+        for (int year = 0; year < buckets.length; year++) {
+            if (years.get(year) == null) continue;
+            buckets[year] = new BST<Meteorite>(null, Meteorite::nameKey);
+            buckets[year].addAllSorted(years.get(year));
+        }
+    }
+
+    /*
+     * Returns an array of empty year buckets, one for every year from 0 to 2020.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static BST<Meteorite>[] newBuckets(){
+        return (BST<Meteorite>[]) new BST[YearIndex.YEARS];
+    }
+
+    /*
+     * Returns the bucket of the given year, creating it if needed.
+     */
+    private BST<Meteorite> bucket(int year){
+        if (yearBuckets[year] == null) yearBuckets[year] = new BST<Meteorite>(null, Meteorite::nameKey);
+        return yearBuckets[year];
     }
 
     /**
      * This method should add the given Meteorite object to this collection and return true if an
      * equal Meteorite object is not already present. If this collection already contains an object
      * equal to m, the method should return false. The method should throw an instance of
-     * NullPointerException if m is null. Operation is O(H) where H is the height of the tree.
+     * NullPointerException if m is null. Membership is checked in the identity map in O(1), then
+     * m is added once to each tree. Operation is O(H) where H is the height of the tree.
      * @param m - Meteorite object to be added.
      * @return - true if m is succesfully added
      * @throws NullPointerException - if m is null
@@ -34,10 +201,28 @@ public class MeteoriteData {
         if(m == null) throw new NullPointerException();
 
         //returns false if collection already includes m
-        if(naturalTree.contains(m) || massTree.contains(m) || yearTree.contains(m)) return false;
+        if(identity.putIfAbsent(m, m) != null) return false;
 
-        //adds m to three trees
-        return (massTree.add(m) && naturalTree.add(m) && yearTree.add(m));
+        //adds m to two trees and to the bucket of its year
+        massTree.add(m);
+        naturalTree.add(m);
+        bucket(m.getYear()).add(m);
+        spatial.add(m);
+        cache.invalidate(m, true);
+        return true;
+    }
+
+    /**
+     * Returns true if this collection contains a Meteorite object equal to m. Uses the identity
+     * map, so operation is O(1).
+     * @param m - Meteorite object to be checked for
+     * @return true if an equal Meteorite object is present in this collection
+     * @throws NullPointerException - if m is null
+     */
+    public boolean contains (Meteorite m) throws NullPointerException{
+        //checks if m is null
+        if(m == null) throw new NullPointerException();
+        return identity.containsKey(m);
     }
 
     /**
@@ -67,40 +252,40 @@ public class MeteoriteData {
      * method defined in the Mereorite class). This method should perform in O(K+H) in which K is
      * the number of Meteorite objects in the returned collection and H is the height of the tree
      * representing this collection (not O(N) where N is the total number of all Meteorite objects).
+     * The returned view is backed by the range of massTree: finding the start of the range is
+     * O(H) and iterating over it is O(K). The result is cached, so repeating a query (or asking
+     * for the same range of masses) is O(1) until a meteorite within the range is added or removed.
      * @param mass - specified mass
      * @param delta - acceptable range around mass
-     * @return - MeteoriteData object with elements within range
+     * @return - MeteoriteView with elements within range, or null if there are none
      * @throws IllegalArgumentException - mass or delta is under zero
      */
-    public MeteoriteData getByMass (int mass, int delta) throws IllegalArgumentException{
+    public MeteoriteView getByMass (int mass, int delta) throws IllegalArgumentException{
         //checks for errors
         if(mass < 0 || delta < 0) throw new IllegalArgumentException("Invalid arguments.");
-        MeteoriteData massData = new MeteoriteData();
-
-        //dummy Meteorite objects to use for getRange function
-        Meteorite m1 = new Meteorite("!!!", 1);
-        Meteorite m2 = new Meteorite("~~~", Integer.MAX_VALUE);
-        if(mass-delta <= 0) m1.setMass(1);
-        else m1.setMass(mass-delta);
-        m2.setMass(mass+delta);
 
-        //calls getRange function on dummy Meteorite objects
-        ArrayList<Meteorite> masses = massTree.getRange​(m1, m2);
-        if(masses.size() == 0) return null;
+        //checks the cache, keyed on the range of masses
+        long low = Math.max((long) mass - delta, 1);
+        long high = (long) mass + delta;
+        //a mass of zero is unknown, so the range is empty if it ends below one gram
+        if(high < low) return null;
+        QueryCache.Key key = QueryCache.massKey(low, high);
+        QueryCache.Entry cached = cache.get(key);
+        if(cached != null) return cached.view();
 
-        //copies Meteorite objects from ArrayList to MeteoriteData
-        for (Meteorite meteorite : masses) {
-            massData.add(meteorite);
-        }
-        return massData;
+        //creates a view of the range of keys of these masses
+        return cache.putRange(key, MeteoriteView.of(massTree, lowestKey(low), highestKey(high)));
     }
 
     /**
      * This method returns a Meteorite object that is closest to the given Location. It should throw
-     * and IllegalArgumentException if loc is null and return null if the BST is empty. Uses iterator
-     * to find Location. Operation is O(N).
+     * and IllegalArgumentException if loc is null and return null if the BST is empty. Uses the
+     * KDTree spatial index, so only the meteorites near loc are compared. If several meteorites
+     * are equally close, the first one in natural order is returned. Meteorites without a Location
+     * are ignored. Operation is O(log N), or O(1) if the query is cached.
      * @param loc - Location value to be compared
-     * @return Meteorite object with closest Location value to loc
+     * @return Meteorite object with closest Location value to loc, or null if no meteorite has a
+     * Location
      * @throws IllegalArgumentException if loc is null
      */
     public Meteorite getByLocation (Location loc) throws IllegalArgumentException{
@@ -109,60 +294,777 @@ public class MeteoriteData {
         //checks if tree is empty
         if(naturalTree.isEmpty()) return null;
 
-        //uses iterator to parse thru list and find closest Meteorite
-        Iterator<Meteorite> m = iterator();
-        Meteorite closest = m.next();
-        for(int i = 0; i < naturalTree.size()-1; i++){
-            Meteorite tmp = m.next();
-            if(tmp.getLocation().getDistance(loc) <
-                    closest.getLocation().getDistance(loc)) closest = tmp;
-        }
+        //checks the cache
+        QueryCache.Key key = QueryCache.locationKey(loc);
+        QueryCache.Entry cached = cache.get(key);
+        if(cached != null) return cached.closest();
+
+        //searches the spatial index
+        Meteorite closest = spatial.nearest(loc);
+        cache.putClosest(key, loc, closest);
         return closest;
     }
 
     /**
-     * Returns collection of Meteorite objects that landed within provided year. Objects are stored
-     * in MeteoriteData collection. Uses getRange function from BST class to find desired elements.
-     * Operation is O(K+H).
+     * Returns the Meteorite objects that are closest to each of the given Locations, as
+     * getByLocation(Location) would. The KDTree answers the queries in parallel, in an order that
+     * lets consecutive searches share most of their work. The results are not cached. The
+     * collection must not be modified while the call is running.
+     * @param locs - Location values to be compared
+     * @return array holding at index i the Meteorite object closest to locs[i], or null if no
+     * meteorite has a Location
+     * @throws IllegalArgumentException if locs or any of its elements is null
+     */
+    public Meteorite[] getByLocation (Location[] locs) throws IllegalArgumentException{
+        //checks for errors
+        if(locs == null) throw new IllegalArgumentException("Invalid argument.");
+        return spatial.nearest(locs);
+    }
+
+    /**
+     * Returns collection of the k Meteorite objects closest to the given Location, organized by
+     * their distance from loc from closest to farthest, and for meteorite objects at the same
+     * distance according to their natural ordering. The first element is the one returned by
+     * getByLocation. Meteorites without a Location are ignored. Operation is O(k log k + log N).
+     * @param loc - Location value to be compared
+     * @param k - number of Meteorite objects to be returned
+     * @return MeteoriteView of the k closest meteorites (fewer if the collection holds fewer than
+     * k meteorites with a Location), or null if no meteorite has a Location
+     * @throws IllegalArgumentException if loc is null or k is under one
+     */
+    public MeteoriteView getNearest (Location loc, int k) throws IllegalArgumentException{
+        //checks for errors
+        if(loc == null || k < 1) throw new IllegalArgumentException("Invalid arguments.");
+        List<Meteorite> near = spatial.nearest(loc, k);
+        if(near.isEmpty()) return null;
+        return MeteoriteView.of(near);
+    }
+
+    /**
+     * Returns collection of all Meteorite objects within radius kilometres of the given Location,
+     * organized by their distance from loc from closest to farthest, and for meteorite objects
+     * at the same distance according to their natural ordering. Distances are computed as in
+     * Location.getDistance. Uses the KDTree spatial index, so only the meteorites near the circle
+     * are compared. Meteorites without a Location are ignored. Operation is O(log N + K log K) for
+     * small radii, where K is the number of meteorites within the radius.
+     * @param loc - center of the search
+     * @param radius - maximum distance from loc in kilometres
+     * @return MeteoriteView of the meteorites within radius of loc, or null if there are none
+     * @throws IllegalArgumentException if loc is null or radius is negative
+     */
+    public MeteoriteView getByDistance (Location loc, double radius) throws IllegalArgumentException{
+        //checks for errors
+        if(loc == null || !(radius >= 0)) throw new IllegalArgumentException("Invalid arguments.");
+        List<Meteorite> near = spatial.within(loc, radius);
+        if(near.isEmpty()) return null;
+        return MeteoriteView.of(near);
+    }
+
+    /**
+     * Returns collection of Meteorite objects that landed within provided year, organized according
+     * to their natural ordering. The returned view is backed by the bucket of the year, which is
+     * found directly by year. Operation is O(K), or O(1) if the query is cached.
      * @param year - year in which desired Meteorites landed
-     * @return MeteoriteData collection of all Meteorites that landed during provided year
+     * @return MeteoriteView of all Meteorites that landed during provided year, or null if there
+     * are none
      * @throws IllegalArgumentException if year is under zero or over 2020
      */
-    public MeteoriteData getByYear (int year) throws IllegalArgumentException{
+    public MeteoriteView getByYear (int year) throws IllegalArgumentException{
         //checks for errors
         if(year < 0 || year > 2020) throw new IllegalArgumentException("Invalid argument.");
-        MeteoriteData yearData = new MeteoriteData();
 
-        //dummy Meteorite objects
-        Meteorite m1 = new Meteorite("!!!", 1);
-        Meteorite m2 = new Meteorite("~~~", Integer.MAX_VALUE);
-        m1.setYear(year);
-        m2.setYear(year);
+        //checks the cache
+        QueryCache.Key key = QueryCache.yearKey(year);
+        QueryCache.Entry cached = cache.get(key);
+        if(cached != null) return cached.view();
+
+        return cache.putRange(key, yearView(year, year));
+    }
+
+    /**
+     * Returns collection of Meteorite objects that landed from fromYear to toYear, inclusive,
+     * organized by year and, within a year, according to their natural ordering. The returned view
+     * is backed by the buckets of the years. Operation is O(Y+K) where Y is the number of years.
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @return MeteoriteView of all Meteorites that landed during these years, or null if there
+     * are none
+     * @throws IllegalArgumentException if the years are not within range 0 to 2020 or fromYear is
+     * greater than toYear
+     */
+    public MeteoriteView getByYear (int fromYear, int toYear) throws IllegalArgumentException{
+        //checks for errors
+        if(fromYear < 0 || toYear > 2020 || fromYear > toYear)
+            throw new IllegalArgumentException("Invalid arguments.");
+        if(countByYear(fromYear, toYear) == 0) return null;
+        return yearView(fromYear, toYear);
+    }
+
+    /**
+     * Returns one page of the collection returned by getByMass(mass, delta): the first offset
+     * Meteorite objects are skipped and at most limit objects are returned, in the order of
+     * getByMass, or in the reverse order (heaviest first) if descending is true. The returned view
+     * is backed by a cursor over the range of massTree, which finds the first object of the page
+     * by position in O(H), whatever the offset, so paging through a large range never builds a
+     * list. Operation is O(H+L) where L is the size of the page. Pages are not cached.
+     * @param mass - specified mass
+     * @param delta - acceptable range around mass
+     * @param offset - number of Meteorite objects to be skipped
+     * @param limit - maximum number of Meteorite objects to be returned
+     * @param descending - true to return the objects from the heaviest down
+     * @return MeteoriteView of the page, or null if it is empty
+     * @throws IllegalArgumentException - mass, delta or offset is under zero or limit is under one
+     */
+    public MeteoriteView getByMass (int mass, int delta, int offset, int limit, boolean descending)
+            throws IllegalArgumentException{
+        //checks for errors
+        if(mass < 0 || delta < 0 || offset < 0 || limit < 1)
+            throw new IllegalArgumentException("Invalid arguments.");
+        long low = Math.max((long) mass - delta, 1);
+        long high = (long) mass + delta;
+        if(high < low) return null;
+        if(pageSize(massTree.countKeyRange(lowestKey(low), highestKey(high)), offset, limit) == 0)
+            return null;
+        return massView(low, high, offset, limit, descending);
+    }
+
+    /**
+     * Returns one page of the collection returned by getByYear(fromYear, toYear): the first
+     * offset Meteorite objects are skipped and at most limit objects are returned, in the order
+     * of getByYear, or in the reverse order (latest year first) if descending is true. Whole
+     * buckets are skipped by their sizes and the first object of the page is found by position
+     * within its bucket, so the view never builds a list. Operation is O(Y+H+L) where Y is the
+     * number of years and L is the size of the page.
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @param offset - number of Meteorite objects to be skipped
+     * @param limit - maximum number of Meteorite objects to be returned
+     * @param descending - true to return the objects from the end of the range down
+     * @return MeteoriteView of the page, or null if it is empty
+     * @throws IllegalArgumentException if the years are not within range 0 to 2020, fromYear is
+     * greater than toYear, offset is under zero or limit is under one
+     */
+    public MeteoriteView getByYear (int fromYear, int toYear, int offset, int limit, boolean descending)
+            throws IllegalArgumentException{
+        //checks for errors
+        if(fromYear < 0 || toYear > 2020 || fromYear > toYear || offset < 0 || limit < 1)
+            throw new IllegalArgumentException("Invalid arguments.");
+        if(pageSize(countByYear(fromYear, toYear), offset, limit) == 0) return null;
+        return yearView(fromYear, toYear, offset, limit, descending);
+    }
+
+    /*
+     * Returns the number of objects of a page of a result of the given size.
+     */
+    private static int pageSize(int count, int offset, int limit){
+        return (int) Math.max(0, Math.min(limit, (long) count - offset));
+    }
+
+    /**
+     * Returns the number of Meteorite objects with mass within delta grams of the specified mass,
+     * i.e., the size of the collection returned by getByMass. Uses countRange function from BST
+     * class, so the matching objects are not visited. Operation is O(H).
+     * @param mass - specified mass
+     * @param delta - acceptable range around mass
+     * @return number of Meteorite objects with mass within range
+     * @throws IllegalArgumentException - mass or delta is under zero
+     */
+    public int countByMass (int mass, int delta) throws IllegalArgumentException{
+        //checks for errors
+        if(mass < 0 || delta < 0) throw new IllegalArgumentException("Invalid arguments.");
+        long low = Math.max((long) mass - delta, 1);
+        long high = (long) mass + delta;
+        //a mass of zero is unknown, so the range is empty if it ends below one gram
+        if(high < low) return 0;
+        return massTree.countKeyRange(lowestKey(low), highestKey(high));
+    }
+
+    /**
+     * Returns the number of Meteorite objects that landed within provided year, i.e., the size of
+     * the collection returned by getByYear. The count is the size of the bucket of the year.
+     * Operation is O(1).
+     * @param year - year in which desired Meteorites landed
+     * @return number of Meteorites that landed during provided year
+     * @throws IllegalArgumentException if year is under zero or over 2020
+     */
+    public int countByYear (int year) throws IllegalArgumentException{
+        //checks for errors
+        if(year < 0 || year > 2020) throw new IllegalArgumentException("Invalid argument.");
+        return yearBuckets[year] == null ? 0 : yearBuckets[year].size();
+    }
+
+    /**
+     * Returns the number of Meteorite objects that landed from fromYear to toYear, inclusive.
+     * Operation is O(Y) where Y is the number of years.
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @return number of Meteorites that landed during these years
+     * @throws IllegalArgumentException if the years are not within range 0 to 2020 or fromYear is
+     * greater than toYear
+     */
+    public int countByYear (int fromYear, int toYear) throws IllegalArgumentException{
+        //checks for errors
+        if(fromYear < 0 || toYear > 2020 || fromYear > toYear)
+            throw new IllegalArgumentException("Invalid arguments.");
+        int count = 0;
+        for (int year = fromYear; year <= toYear; year++) {
+            if (yearBuckets[year] != null) count += yearBuckets[year].size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns collection of the k heaviest Meteorite objects of this collection, from the
+     * heaviest down, i.e., in the reverse order of getByMass. Meteorites with mass 0 have an
+     * unknown mass and are left out by this and the other top-k queries. The objects are read
+     * from the end of massTree with a descending cursor, so operation is O(H+k).
+     * @param k - number of Meteorite objects to be returned
+     * @return MeteoriteView of the k heaviest meteorites (all of them if the collection holds
+     * fewer than k), or null if no meteorite has a known mass
+     * @throws IllegalArgumentException if k is under one
+     */
+    public MeteoriteView getHeaviest (int k) throws IllegalArgumentException{
+        return extremes(k, true);
+    }
+
+    /**
+     * Returns collection of the k lightest Meteorite objects of this collection, from the
+     * lightest up, in the order of getByMass, leaving out meteorites with mass 0. The cursor
+     * starts after them at the lowest key of mass 1, so operation is O(H+k).
+     * @param k - number of Meteorite objects to be returned
+     * @return MeteoriteView of the k lightest meteorites (all of them if the collection holds
+     * fewer than k), or null if no meteorite has a known mass
+     * @throws IllegalArgumentException if k is under one
+     */
+    public MeteoriteView getLightest (int k) throws IllegalArgumentException{
+        return extremes(k, false);
+    }
+
+    /**
+     * Returns collection of the k heaviest Meteorite objects that landed from fromYear to toYear,
+     * inclusive, from the heaviest down. Meteorites with mass 0 are left out by a mass condition
+     * from 1 gram. The query is planned by MeteoriteQuery: when the years hold a large part of
+     * the collection, massTree is read from its end and stops after k matches; otherwise the
+     * meteorites of the year buckets are scanned (in parallel if there are many) and the k best
+     * are kept in bounded priority queues.
+     * @param k - number of Meteorite objects to be returned
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @return MeteoriteView of the k heaviest meteorites of these years, or null if there are none
+     * @throws IllegalArgumentException if k is under one, or the years are not within range 0 to
+     * 2020 or fromYear is greater than toYear
+     */
+    public MeteoriteView getHeaviest (int k, int fromYear, int toYear) throws IllegalArgumentException{
+        return query().years(fromYear, toYear).mass(1, Integer.MAX_VALUE).orderByMass().descending()
+                .limit(k).run();
+    }
+
+    /**
+     * Returns collection of the k lightest Meteorite objects that landed from fromYear to toYear,
+     * inclusive, from the lightest up, planned as in getHeaviest(int, int, int).
+     * @param k - number of Meteorite objects to be returned
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @return MeteoriteView of the k lightest meteorites of these years, or null if there are none
+     * @throws IllegalArgumentException if k is under one, or the years are not within range 0 to
+     * 2020 or fromYear is greater than toYear
+     */
+    public MeteoriteView getLightest (int k, int fromYear, int toYear) throws IllegalArgumentException{
+        return query().years(fromYear, toYear).mass(1, Integer.MAX_VALUE).orderByMass()
+                .limit(k).run();
+    }
+
+    /**
+     * Returns collection of the k heaviest Meteorite objects whose Location is within the given
+     * box of latitudes and longitudes, inclusive, from the heaviest down. The query is planned by
+     * MeteoriteQuery, either from the end of massTree or from the spatial index with bounded
+     * priority queues, as in getHeaviest(int, int, int).
+     * @param k - number of Meteorite objects to be returned
+     * @param south - lowest latitude
+     * @param west - lowest longitude
+     * @param north - highest latitude
+     * @param east - highest longitude
+     * @return MeteoriteView of the k heaviest meteorites within the box, or null if there are none
+     * @throws IllegalArgumentException if k is under one, or the box is not within range -90.0 to
+     * 90.0 and -180.0 to 180.0, or south is greater than north or west is greater than east
+     */
+    public MeteoriteView getHeaviest (int k, double south, double west, double north, double east)
+            throws IllegalArgumentException{
+        return query().box(south, west, north, east).mass(1, Integer.MAX_VALUE).orderByMass().descending()
+                .limit(k).run();
+    }
+
+    /**
+     * Returns collection of the k lightest Meteorite objects whose Location is within the given
+     * box of latitudes and longitudes, inclusive, from the lightest up, planned as in
+     * getHeaviest(int, double, double, double, double).
+     * @param k - number of Meteorite objects to be returned
+     * @param south - lowest latitude
+     * @param west - lowest longitude
+     * @param north - highest latitude
+     * @param east - highest longitude
+     * @return MeteoriteView of the k lightest meteorites within the box, or null if there are none
+     * @throws IllegalArgumentException if k is under one, or the box is not within range -90.0 to
+     * 90.0 and -180.0 to 180.0, or south is greater than north or west is greater than east
+     */
+    public MeteoriteView getLightest (int k, double south, double west, double north, double east)
+            throws IllegalArgumentException{
+        return query().box(south, west, north, east).mass(1, Integer.MAX_VALUE).orderByMass().limit(k).run();
+    }
+
+    /*
+     * Returns a view of the first k meteorites with a known mass of massTree, or of the last k
+     * in reverse order. Meteorites with mass 0 are at the start of massTree, so the key range
+     * starts after them.
+     */
+    private MeteoriteView extremes(int k, boolean descending){
+        //checks for errors
+        if(k < 1) throw new IllegalArgumentException("Invalid argument.");
+        long fromKey = lowestKey(1);
+        long toKey = highestKey(Integer.MAX_VALUE);
+        int known = massTree.countKeyRange(fromKey, toKey);
+        if(known == 0) return null;
+        return new MeteoriteView() {
+            @Override
+            public int size() {
+                return Math.min(k, known);
+            }
+
+            @Override
+            public Iterator<Meteorite> iterator() {
+                return massTree.keyRangeIterator(fromKey, toKey, 0, k, descending);
+            }
+        };
+    }
+
+    /**
+     * Returns the Meteorite object at the given mass quantile of this collection, using the
+     * nearest-rank method on the mass ordering. For example, getMassQuantile(0.5) returns the
+     * meteorite with the median mass. Meteorites with mass 0 have an unknown mass and are left
+     * out, so the rank starts after them at the start of massTree. Uses select function from BST
+     * class. Operation is O(H).
+     * @param q - quantile, from 0.0 to 1.0
+     * @return Meteorite object at quantile q of the mass ordering, or null if the collection holds
+     * no meteorite with a known mass
+     * @throws IllegalArgumentException if q is not within range 0.0 to 1.0
+     */
+    public Meteorite getMassQuantile (double q) throws IllegalArgumentException{
+        //checks for errors
+        if(!(q >= 0 && q <= 1)) throw new IllegalArgumentException("Invalid argument.");
+        int unknown = massTree.countKeyRange(lowestKey(0), highestKey(0));
+        int known = massTree.size() - unknown;
+        if(known == 0) return null;
+        //nearest rank among the meteorites with a known mass
+        int k = Math.max((int) Math.ceil(q * known) - 1, 0);
+        return massTree.select(unknown + k);
+    }
+
+    /**
+     * Returns the Meteorite object at the given mass quantile of the meteorites that landed from
+     * fromYear to toYear, inclusive, e.g. getMassQuantile(0.5, 1990, 1990) returns the meteorite
+     * with the median mass of 1990. Meteorites with mass 0 are left out as in getMassQuantile(q).
+     * The year buckets are not ordered by mass, so the meteorites of the years are gathered and
+     * sorted. Operation is O(Y + K log K) where K is the number of meteorites of these years.
+     * @param q - quantile, from 0.0 to 1.0
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @return Meteorite object at quantile q of the mass ordering of these years, or null if no
+     * meteorite with a known mass landed during these years
+     * @throws IllegalArgumentException if q is not within range 0.0 to 1.0, or the years are not
+     * within range 0 to 2020 or fromYear is greater than toYear
+     */
+    public Meteorite getMassQuantile (double q, int fromYear, int toYear) throws IllegalArgumentException{
+        //checks for errors
+        if(!(q >= 0 && q <= 1) || fromYear < 0 || toYear > 2020 || fromYear > toYear)
+            throw new IllegalArgumentException("Invalid arguments.");
+        ArrayList<Meteorite> known = new ArrayList<Meteorite>();
+        for (int year = fromYear; year <= toYear; year++) {
+            if (yearBuckets[year] == null) continue;
+            for (Meteorite m : yearBuckets[year]) {
+                if (m.getMass() > 0) known.add(m);
+            }
+        }
+        if(known.isEmpty()) return null;
+        known.sort(new MassComparator());
+        return known.get(Math.max((int) Math.ceil(q * known.size()) - 1, 0));
+    }
+
+    /**
+     * Returns a DensityGrid with cells of the given size in degrees, holding the number, the total
+     * mass and the heaviest of the meteorites that fell in every cell. The meteorites are
+     * aggregated in parallel. The grid is not updated by later calls to add, but meteorites can be
+     * added to it directly. Operation is O(N + C) where C is the number of cells.
+     * @param resolution - size of a cell in degrees
+     * @return DensityGrid of all meteorites with a Location
+     * @throws IllegalArgumentException if resolution is not within range 0 to 180, or is too fine
+     */
+    public DensityGrid getDensity (double resolution) throws IllegalArgumentException{
+        DensityGrid grid = new DensityGrid(resolution);
+        grid.addAll(identity.values());
+        return grid;
+    }
 
-        //uses getRange function to find desired elements
-        ArrayList<Meteorite> years = yearTree.getRange​(m1, m2);
-        if(years.size() == 0) return null;
-        for (Meteorite meteorite: years) {
-            yearData.add(meteorite);
+    /**
+     * Returns a DensityGrid with cells of the given size in degrees, holding the number, the total
+     * mass and the heaviest of the meteorites that fell from fromYear to toYear in every cell.
+     * The meteorites of these years are found in their year buckets and aggregated in parallel.
+     * Operation is O(Y + K + C) where Y is the number of years, K is the number of meteorites
+     * that fell in these years and C is the number of cells.
+     * @param resolution - size of a cell in degrees
+     * @param fromYear - first year to be counted
+     * @param toYear - last year to be counted
+     * @return DensityGrid of the meteorites with a Location that fell in these years
+     * @throws IllegalArgumentException if resolution is not within range 0 to 180, or is too fine,
+     * or if the years are not within range 0 to 2020 or fromYear is greater than toYear
+     */
+    public DensityGrid getDensity (double resolution, int fromYear, int toYear)
+            throws IllegalArgumentException{
+        //checks for errors
+        if(fromYear < 0 || toYear > 2020 || fromYear > toYear)
+            throw new IllegalArgumentException("Invalid arguments.");
+        DensityGrid grid = new DensityGrid(resolution, fromYear, toYear);
+        ArrayList<Meteorite> years = new ArrayList<Meteorite>();
+        for (Meteorite m : yearView(fromYear, toYear)) {
+            years.add(m);
+        }
+        grid.addAll(years);
+        return grid;
+    }
+
+    /**
+     * Returns a new query over this collection, combining conditions on the mass, the year and
+     * the location of the meteorites. See MeteoriteQuery.
+     * @return new MeteoriteQuery without any conditions
+     */
+    public MeteoriteQuery query(){
+        return new MeteoriteQuery(this);
+    }
+
+    /**
+     * Returns the cache holding the results of recent queries, e.g. to read its statistics.
+     * @return the query cache of this collection
+     */
+    public QueryCache getQueryCache(){
+        return cache;
+    }
+
+    /*
+     * Returns a view of the meteorites with mass from low to high grams, inclusive, backed by the
+     * range of massTree. Used by MeteoriteQuery.
+     */
+    MeteoriteView massView(long low, long high){
+        return MeteoriteView.of(massTree, lowestKey(low), highestKey(high));
+    }
+
+    /*
+     * Returns a view of one page of the meteorites with mass from low to high grams, inclusive,
+     * in the order of massTree or in reverse order, backed by a cursor over the range of massTree.
+     * Used by getByMass and MeteoriteQuery.
+     */
+    MeteoriteView massView(long low, long high, int offset, int limit, boolean descending){
+        long fromKey = lowestKey(low);
+        long toKey = highestKey(high);
+        return new MeteoriteView() {
+            @Override
+            public int size() {
+                return pageSize(massTree.countKeyRange(fromKey, toKey), offset, limit);
+            }
+
+            @Override
+            public Iterator<Meteorite> iterator() {
+                return massTree.keyRangeIterator(fromKey, toKey, offset, limit, descending);
+            }
+        };
+    }
+
+    /*
+     * Returns a view of one page of the meteorites that landed from fromYear to toYear, by year
+     * and in natural order within a year, or in reverse order. Whole buckets are skipped by their
+     * sizes and the first object of the page is found by position within its bucket. Used by
+     * getByYear and MeteoriteQuery.
+     */
+    MeteoriteView yearView(int fromYear, int toYear, int offset, int limit, boolean descending){
+        return new MeteoriteView() {
+            @Override
+            public int size() {
+                return pageSize(countByYear(fromYear, toYear), offset, limit);
+            }
+
+            @Override
+            public Iterator<Meteorite> iterator() {
+                return new Iterator<Meteorite>() {
+                    //next year whose bucket has not been started, objects still to be skipped
+                    //and returned, and cursor over the current bucket
+                    private int year = descending ? toYear : fromYear;
+                    private int skip = offset;
+                    private int remaining = size();
+                    private Iterator<Meteorite> current = Collections.emptyIterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        while (remaining > 0 && !current.hasNext() && year >= fromYear && year <= toYear) {
+                            BST<Meteorite> bucket = yearBuckets[year];
+                            year += descending ? -1 : 1;
+                            if (bucket == null) continue;
+                            //skips whole buckets by their sizes
+                            if (skip >= bucket.size()) skip -= bucket.size();
+                            else {
+                                current = bucket.iterator(skip, remaining, descending);
+                                skip = 0;
+                            }
+                        }
+                        return remaining > 0 && current.hasNext();
+                    }
+
+                    @Override
+                    public Meteorite next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        remaining--;
+                        return current.next();
+                    }
+                };
+            }
+        };
+    }
+
+    /*
+     * Returns the spatial index of this collection. Used by MeteoriteQuery.
+     */
+    KDTree spatialIndex(){
+        return spatial;
+    }
+
+    /*
+     * Returns the key of m in massTree: the mass in the high bits, followed by the first
+     * characters of the name (the high bits of Meteorite.nameKey). The key is consistent with
+     * MassComparator, so massTree only compares names when both the masses and the beginnings of
+     * the names are equal. Also used by ConcurrentMeteoriteData.
+     */
+    static long massKey(Meteorite m){
+        return ((long) m.getMass() << NAME_BITS) | (m.nameKey() >>> (Meteorite.NAME_KEY_BITS - NAME_BITS));
+    }
+
+    /*
+     * Returns the lowest key of massTree of a meteorite with the given mass.
+     */
+    static long lowestKey(long mass){
+        return mass << NAME_BITS;
+    }
+
+    /*
+     * Returns the highest key of massTree of a meteorite with the given mass.
+     */
+    static long highestKey(long mass){
+        return (mass << NAME_BITS) | ((1L << NAME_BITS) - 1);
+    }
+
+    /*
+     * Returns the key of m in a tree ordered by YearComparator: the year in the high bits,
+     * followed by the first characters of the name, as in massKey. Used by MeteoriteSnapshot.
+     */
+    static long yearKey(Meteorite m){
+        return ((long) m.getYear() << NAME_BITS) | (m.nameKey() >>> (Meteorite.NAME_KEY_BITS - NAME_BITS));
+    }
+
+    /*
+     * Returns the lowest yearKey of a meteorite that landed in the given year.
+     */
+    static long yearLowKey(int year){
+        return (long) year << NAME_BITS;
+    }
+
+    /*
+     * Returns the highest yearKey of a meteorite that landed in the given year.
+     */
+    static long yearHighKey(int year){
+        return ((long) year << NAME_BITS) | ((1L << NAME_BITS) - 1);
+    }
+
+    /*
+     * Returns a view of the meteorites that landed from fromYear to toYear, backed by the year
+     * buckets: it iterates over the buckets one after the other and reflects later changes of the
+     * collection, including buckets created afterwards. Also used by MeteoriteQuery.
+     */
+    MeteoriteView yearView(int fromYear, int toYear){
+        return new MeteoriteView() {
+            @Override
+            public int size() {
+                return countByYear(fromYear, toYear);
+            }
+
+            @Override
+            public Iterator<Meteorite> iterator() {
+                return new Iterator<Meteorite>() {
+                    //next year whose bucket has not been started, iterator of the current bucket
+                    private int year = fromYear;
+                    private Iterator<Meteorite> current = Collections.emptyIterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        while (!current.hasNext() && year <= toYear) {
+                            BST<Meteorite> bucket = yearBuckets[year++];
+                            if (bucket != null) current = bucket.iterator();
+                        }
+                        return current.hasNext();
+                    }
+
+                    @Override
+                    public Meteorite next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        return current.next();
+                    }
+                };
+            }
+
+            @Override
+            public Spliterator<Meteorite> spliterator() {
+                return new YearSpliterator(fromYear, toYear);
+            }
+        };
+    }
+
+    /*
+     * Spliterator over the year buckets from year to toYear, one after the other. Ranges of
+     * several years are split between two years, so that both parts hold about the same number
+     * of meteorites, and a single year is split by the spliterator of its bucket.
+     */
+    private class YearSpliterator implements Spliterator<Meteorite> {
+        //next year whose bucket has not been started, last year of the range
+        private int year;
+        private final int toYear;
+        //spliterator of the current bucket, null if none was started
+        private Spliterator<Meteorite> current;
+
+        YearSpliterator(int year, int toYear) {
+            this.year = year;
+            this.toYear = toYear;
+        }
+
+        /*
+         * Starts the bucket of the next year, returning false if there are no more years.
+         */
+        private boolean nextBucket() {
+            if (year > toYear) return false;
+            BST<Meteorite> bucket = yearBuckets[year++];
+            current = bucket == null ? null : bucket.spliterator();
+            return true;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Meteorite> action) {
+            do {
+                if (current != null && current.tryAdvance(action)) return true;
+            } while (nextBucket());
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Meteorite> action) {
+            do {
+                if (current != null) current.forEachRemaining(action);
+            } while (nextBucket());
+        }
+
+        @Override
+        public Spliterator<Meteorite> trySplit() {
+            if (current != null) {
+                //hands over the rest of the started bucket, or splits it if it is the last one
+                if (year > toYear) return current.trySplit();
+                Spliterator<Meteorite> prefix = current;
+                current = null;
+                return prefix;
+            }
+            if (year == toYear) {
+                nextBucket();
+                return current == null ? null : current.trySplit();
+            }
+            if (year > toYear) return null;
+
+            //splits after the year at which half of the meteorites of the range are reached
+            int total = countByYear(year, toYear);
+            int mid = year;
+            int count = countByYear(mid);
+            while (mid < toYear - 1 && 2 * count < total) {
+                count += countByYear(++mid);
+            }
+            YearSpliterator prefix = new YearSpliterator(year, mid);
+            year = mid + 1;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = current == null ? 0 : current.estimateSize();
+            return year > toYear ? size : size + countByYear(year, toYear);
+        }
+
+        @Override
+        public int characteristics() {
+            return SIZED | SUBSIZED | SORTED | ORDERED | DISTINCT | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super Meteorite> getComparator() {
+            //the buckets follow one another by year and are in natural order within a year
+            return new YearComparator();
         }
-        return yearData;
     }
 
     /**
      * Iterator method for MeteoriteData. Iterates over Meteorite objects according to their natural
-     * order. Method uses iterator method of BST class.
+     * order. Method uses iterator method of BST class, so the iterator is lazy and fail-fast.
      * @return Iterator for MeteoriteData
      */
+    @Override
     public Iterator<Meteorite> iterator(){
         //simply calls iterator method of BST
         return naturalTree.iterator();
     }
 
+    /**
+     * Returns an iterator over the Meteorite objects of this collection in reverse natural order.
+     * Method uses descendingIterator method of BST class, so the iterator is lazy and fail-fast.
+     * @return descending Iterator for MeteoriteData
+     */
+    public Iterator<Meteorite> descendingIterator(){
+        return naturalTree.descendingIterator();
+    }
+
+    /**
+     * Returns a spliterator over the Meteorite objects of this collection according to their
+     * natural order. Method uses spliterator method of BST class, so the spliterator is sized,
+     * splits along the subtrees of the tree and is fail-fast.
+     * @return Spliterator for MeteoriteData
+     */
+    @Override
+    public Spliterator<Meteorite> spliterator(){
+        return naturalTree.spliterator();
+    }
+
+    /**
+     * Returns a sequential stream over the Meteorite objects of this collection according to
+     * their natural order. Call parallel on it to process the objects in parallel, e.g.
+     * data.stream().parallel().mapToLong(Meteorite::getMass).sum().
+     * @return stream over the Meteorite objects of this collection
+     */
+    public Stream<Meteorite> stream(){
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns the number of Meteorite objects in this collection. Operation is O(1).
+     * @return the number of Meteorite objects in this collection
+     */
+    public int size(){
+        return naturalTree.size();
+    }
+
     /**
      * This method should remove an object equal to the given Meteorite object m from this collection
      * and return true such an object was present. If m is not in this collection, the method should
-     * return false. The method should throw an instance of NullPointerException if m is null. Method is
-     * O(H).
+     * return false. The method should throw an instance of NullPointerException if m is null. The
+     * stored object is found in the identity map in O(1) and then removed once from each tree.
+     * Method is O(H).
      * @param m - Meteorite object to be returned
      * @return true if m is succesfully removed
      * @throws NullPointerException if m is null
@@ -172,10 +1074,16 @@ public class MeteoriteData {
         if(m == null) throw new NullPointerException();
 
         //checks if MeteoriteData already contains m
-        if(!naturalTree.contains(m) || !massTree.contains(m) || !yearTree.contains(m)) return false;
+        Meteorite stored = identity.remove(m);
+        if(stored == null) return false;
 
-        //removes m from all three trees
-        return(massTree.remove(m) && naturalTree.remove(m) && yearTree.remove(m));
+        //removes the stored object from both trees and from the bucket of its year
+        massTree.remove(stored);
+        naturalTree.remove(stored);
+        yearBuckets[stored.getYear()].remove(stored);
+        spatial.remove(stored);
+        cache.invalidate(stored, false);
+        return true;
     }
 
     /**
@@ -185,11 +1093,11 @@ public class MeteoriteData {
     public String toString(){
         //uses iterator of MeteoriteData to parse thru elements and add to String object
         Iterator<Meteorite> itr = iterator();
-        String stuff = "";
-        for(int i = 0; i < naturalTree.size(); i++){
-            stuff = stuff + itr.next() + "\n";
+        StringBuilder stuff = new StringBuilder();
+        while(itr.hasNext()){
+            stuff.append(itr.next()).append("\n");
         }
-        return stuff;
+        return stuff.toString();
     }
 
 }
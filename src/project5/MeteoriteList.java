@@ -51,10 +51,14 @@ public class MeteoriteList extends ArrayList<Meteorite> {
     public Meteorite getByLocation(Location loc) throws IllegalArgumentException{
         if(loc == null) throw new IllegalArgumentException("Parameter cannot be null.");
         if(this.size() == 0) return null;
+        //the distance of the closest Meteorite is kept, so every distance is computed only once
         Meteorite met = this.get(0);
+        double closest = met.getLocation().getDistance(loc);
         for(Meteorite m : this){
-            if(m.getLocation().getDistance(loc) < met.getLocation().getDistance(loc)){
+            double distance = m.getLocation().getDistance(loc);
+            if(distance < closest){
                 met = m;
+                closest = distance;
             }
         }
         return met;
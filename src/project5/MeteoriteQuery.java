@@ -0,0 +1,430 @@
+package project5;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.stream.StreamSupport;
+
+/**
+ * MeteoriteQuery class combines conditions on the mass, the year and the location of the
+ * meteorites of a MeteoriteData collection, with an ordering and a limit on the number of results.
+ * A query is built by chaining its methods, for example
+ * <pre>
+ *   data.query().mass(1000, 5000).years(1900, 1950).box(-40, 10, 0, 60).orderByMass().limit(10).run()
+ * </pre>
+ * When the query is run, a planner estimates how many meteorites match every condition using the
+ * index of the collection that answers it: the mass tree and the year buckets count their ranges
+ * exactly, and the spatial index estimates the size of a box from the counts of its subtrees.
+ * The query is driven from the index that is expected to read the fewest meteorites (or from a
+ * scan of the whole collection), and the other conditions are checked on the meteorites as they
+ * are read. When the driving index already returns the meteorites in the requested order, reading
+ * stops as soon as the limit is reached; otherwise the best results are kept in a bounded priority
+ * queue, so a limited query never sorts all of its matches. Large reads are scanned in parallel,
+ * every part keeping its own bounded queue, and the queues are merged. The mass tree and the year
+ * buckets can drive a query ordered by mass or by year even without a condition on them, and any
+ * ordering can be reversed, so "the 100 heaviest meteorites of a decade" reads the mass tree from
+ * its end when that is cheaper than reading the decade. The expected row counts assume that the
+ * conditions are independent. explain returns the chosen plan with its estimates.
+ * A query reads the current content of the collection every time it is run.
+ *
+ * @author Jack
+ */
+public class MeteoriteQuery {
+    //ways to read the meteorites: conditions that can drive a query, and a full scan
+    private static final int MASS = 0;
+    private static final int YEAR = 1;
+    private static final int BOX = 2;
+    private static final int SCAN = 3;
+    private static final String[] DRIVERS = {"mass index", "year index", "spatial index", "full scan"};
+
+    //orderings of the results
+    private static final int BY_NAME = 0;
+    private static final int BY_MASS = 1;
+    private static final int BY_YEAR = 2;
+    private static final String[] ORDERS = {"name", "mass", "year"};
+    //number of meteorites read above which the bounded queues are filled in parallel
+    private static final int PARALLEL_ROWS = 1 << 14;
+
+    private final MeteoriteData data;
+    //conditions: which ones are set, and their bounds (inclusive)
+    private final boolean[] set = new boolean[3];
+    private int lowMass;
+    private int highMass;
+    private int fromYear;
+    private int toYear;
+    private double south;
+    private double west;
+    private double north;
+    private double east;
+    //ordering of the results and maximum number of results
+    private int order = BY_NAME;
+    private boolean descending;
+    private int limit = Integer.MAX_VALUE;
+
+    /*
+     * Constructs a query without any conditions over the given collection. Queries are created
+     * with MeteoriteData.query.
+     */
+    MeteoriteQuery(MeteoriteData data) {
+        this.data = data;
+    }
+
+    /**
+     * Restricts the query to meteorites with mass from low to high grams, inclusive.
+     * @param low - lowest mass
+     * @param high - highest mass
+     * @return this query
+     * @throws IllegalArgumentException if low is under zero or greater than high
+     */
+    public MeteoriteQuery mass(int low, int high) throws IllegalArgumentException {
+        if (low < 0 || low > high) throw new IllegalArgumentException("Invalid arguments.");
+        set[MASS] = true;
+        lowMass = low;
+        highMass = high;
+        return this;
+    }
+
+    /**
+     * Restricts the query to meteorites that fell from fromYear to toYear, inclusive.
+     * @param fromYear - first year
+     * @param toYear - last year
+     * @return this query
+     * @throws IllegalArgumentException if the years are not within range 0 to 2020 or fromYear is
+     * greater than toYear
+     */
+    public MeteoriteQuery years(int fromYear, int toYear) throws IllegalArgumentException {
+        if (fromYear < 0 || toYear > 2020 || fromYear > toYear)
+            throw new IllegalArgumentException("Invalid arguments.");
+        set[YEAR] = true;
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+        return this;
+    }
+
+    /**
+     * Restricts the query to meteorites whose location has a latitude from south to north and a
+     * longitude from west to east, inclusive. Meteorites without a location do not match.
+     * @param south - lowest latitude
+     * @param west - lowest longitude
+     * @param north - highest latitude
+     * @param east - highest longitude
+     * @return this query
+     * @throws IllegalArgumentException if the box is not within range -90.0 to 90.0 and -180.0 to
+     * 180.0, or south is greater than north or west is greater than east
+     */
+    public MeteoriteQuery box(double south, double west, double north, double east)
+            throws IllegalArgumentException {
+        if (!(south >= -90 && north <= 90 && south <= north && west >= -180 && east <= 180 && west <= east))
+            throw new IllegalArgumentException("Invalid arguments.");
+        set[BOX] = true;
+        this.south = south;
+        this.west = west;
+        this.north = north;
+        this.east = east;
+        return this;
+    }
+
+    /**
+     * Orders the results according to the natural ordering of the meteorites. This is the
+     * default ordering.
+     * @return this query
+     */
+    public MeteoriteQuery orderByName() {
+        order = BY_NAME;
+        return this;
+    }
+
+    /**
+     * Orders the results by mass, and meteorites with equal mass according to their natural
+     * ordering, as getByMass does.
+     * @return this query
+     */
+    public MeteoriteQuery orderByMass() {
+        order = BY_MASS;
+        return this;
+    }
+
+    /**
+     * Orders the results by year, and meteorites of the same year according to their natural
+     * ordering.
+     * @return this query
+     */
+    public MeteoriteQuery orderByYear() {
+        order = BY_YEAR;
+        return this;
+    }
+
+    /**
+     * Reverses the ordering of the results, e.g. orderByMass().descending() returns the heaviest
+     * meteorites first.
+     * @return this query
+     */
+    public MeteoriteQuery descending() {
+        descending = true;
+        return this;
+    }
+
+    /**
+     * Limits the number of results to the first n in the ordering of the query.
+     * @param n - maximum number of results
+     * @return this query
+     * @throws IllegalArgumentException if n is under one
+     */
+    public MeteoriteQuery limit(int n) throws IllegalArgumentException {
+        if (n < 1) throw new IllegalArgumentException("Invalid argument.");
+        limit = n;
+        return this;
+    }
+
+    /**
+     * Runs the query with the plan returned by explain. Operation is O(R + M log L), where R is
+     * the number of meteorites read from the driving index, M the number of them that match all
+     * conditions and L the limit. The collection must not be modified while the query runs.
+     * @return MeteoriteView of the matching meteorites in the ordering of the query, or null if
+     * there are none
+     */
+    public MeteoriteView run() {
+        Plan plan = plan();
+        Comparator<Meteorite> comparator = comparator();
+        Iterable<Meteorite> source = read(plan.driver);
+        ArrayList<Meteorite> result = new ArrayList<Meteorite>();
+
+        if (provides(plan.driver)) {
+            //the meteorites are read in the requested order, so stop at the limit
+            for (Meteorite m : source) {
+                if (matches(m, plan.driver)) {
+                    result.add(m);
+                    if (result.size() == limit) break;
+                }
+            }
+        }
+        else if (limit < Integer.MAX_VALUE) {
+            //keeps the best matches in bounded queues with the worst of them at their head
+            PriorityQueue<Meteorite> best;
+            int driver = plan.driver;
+            if (plan.rows[driver] >= PARALLEL_ROWS) {
+                best = StreamSupport.stream(source.spliterator(), true)
+                        .filter(m -> matches(m, driver))
+                        .collect(() -> boundedQueue(comparator), (q, m) -> offer(q, m, comparator),
+                                (q, other) -> other.forEach(m -> offer(q, m, comparator)));
+            }
+            else {
+                best = boundedQueue(comparator);
+                for (Meteorite m : source) {
+                    if (matches(m, driver)) offer(best, m, comparator);
+                }
+            }
+            result.addAll(best);
+            result.sort(comparator);
+        }
+        else {
+            for (Meteorite m : source) {
+                if (matches(m, plan.driver)) result.add(m);
+            }
+            result.sort(comparator);
+        }
+        if (result.isEmpty()) return null;
+        return MeteoriteView.of(result);
+    }
+
+    /*
+     * Returns an empty queue for the best matches, with the worst of them at its head.
+     */
+    private PriorityQueue<Meteorite> boundedQueue(Comparator<Meteorite> comparator) {
+        return new PriorityQueue<Meteorite>(Math.min(limit, 1024), Collections.reverseOrder(comparator));
+    }
+
+    /*
+     * Adds m to a queue of the best matches, removing the worst of them if there are more than
+     * limit.
+     */
+    private void offer(PriorityQueue<Meteorite> best, Meteorite m, Comparator<Meteorite> comparator) {
+        if (best.size() < limit) best.add(m);
+        else if (comparator.compare(m, best.peek()) < 0) {
+            best.poll();
+            best.add(m);
+        }
+    }
+
+    /**
+     * Returns the plan that run would use, with the estimated number of meteorites read and
+     * matched at every step, followed by the estimated cost of every way of reading the
+     * meteorites that was considered. Costs are counted in meteorites read, plus the matches
+     * that have to be sorted.
+     * @return String representation of the plan of this query
+     */
+    public String explain() {
+        Plan plan = plan();
+        StringBuilder stuff = new StringBuilder();
+        String indent = "";
+        if (limit < Integer.MAX_VALUE) {
+            stuff.append("Limit ").append(limit).append("\n");
+            indent += "  ";
+        }
+        if (!provides(plan.driver)) {
+            stuff.append(indent).append("Sort by ").append(ORDERS[order]);
+            if (descending) stuff.append(" descending");
+            if (limit < Integer.MAX_VALUE) stuff.append(" (top ").append(limit).append(")");
+            stuff.append("\n");
+            indent += "  ";
+        }
+        else {
+            stuff.append(indent).append("Ordered by ").append(ORDERS[order])
+                    .append(descending ? " descending" : "").append(" (provided by ").append(DRIVERS[plan.driver]).append(")\n");
+            indent += "  ";
+        }
+        StringBuilder filters = new StringBuilder();
+        for (int c = MASS; c <= BOX; c++) {
+            if (!set[c] || c == plan.driver) continue;
+            if (filters.length() > 0) filters.append(" and ");
+            filters.append(describe(c));
+        }
+        if (filters.length() > 0) {
+            stuff.append(indent).append("Filter ").append(filters)
+                    .append(String.format(" (est. %.0f rows)\n", plan.matches));
+            indent += "  ";
+        }
+        stuff.append(indent).append(capitalize(DRIVERS[plan.driver]));
+        if (plan.driver != SCAN) stuff.append(" on ").append(describe(plan.driver));
+        stuff.append(String.format(" (est. %.0f rows)\n", plan.rows[plan.driver]));
+
+        stuff.append("Considered:");
+        for (int d = MASS; d <= SCAN; d++) {
+            if (!usable(d)) continue;
+            stuff.append(String.format(" %s cost %.0f%s", DRIVERS[d], plan.costs[d],
+                    d == plan.driver ? " (chosen)" : ""));
+            if (d != SCAN) stuff.append(",");
+        }
+        stuff.append("\n");
+        return stuff.toString();
+    }
+
+    /*
+     * Chosen way of reading the meteorites of a query, with the estimated number of meteorites
+     * read by every way and the estimated number of matches.
+     */
+    private static class Plan {
+        private final double[] rows = new double[4];
+        private final double[] costs = new double[4];
+        private int driver = SCAN;
+        private double matches;
+    }
+
+    /*
+     * Estimates the number of meteorites matching every condition and chooses the cheapest way
+     * of reading them. Reading from an index that returns the meteorites in the requested order
+     * stops at the limit, i.e., after about limit / s meteorites, where s is the selectivity of
+     * the other conditions; any other way reads all meteorites of its range and sorts its matches.
+     * The mass tree and the year buckets read without a condition cover the whole collection.
+     */
+    private Plan plan() {
+        Plan plan = new Plan();
+        double total = data.size();
+        plan.rows[SCAN] = total;
+        plan.rows[MASS] = set[MASS] ? data.massView(lowMass, highMass).size() : total;
+        plan.rows[YEAR] = set[YEAR] ? data.countByYear(fromYear, toYear) : total;
+        if (set[BOX]) plan.rows[BOX] = data.spatialIndex().estimateInBox(south, west, north, east);
+
+        double best = Double.POSITIVE_INFINITY;
+        for (int d = MASS; d <= SCAN; d++) {
+            if (!usable(d)) continue;
+            //selectivity of the conditions checked on the meteorites read
+            double selectivity = 1;
+            for (int c = MASS; c <= BOX; c++) {
+                if (set[c] && c != d) selectivity *= total == 0 ? 0 : Math.min(1, plan.rows[c] / total);
+            }
+            double matches = plan.rows[d] * selectivity;
+            double cost;
+            if (provides(d)) {
+                cost = limit == Integer.MAX_VALUE || selectivity == 0 ? plan.rows[d] :
+                        Math.min(plan.rows[d], Math.ceil(limit / selectivity));
+            }
+            else cost = plan.rows[d] + matches;
+            plan.costs[d] = cost;
+            if (cost < best) {
+                best = cost;
+                plan.driver = d;
+                plan.matches = matches;
+            }
+        }
+        return plan;
+    }
+
+    /*
+     * Returns true if the given way of reading the meteorites can be used by this query: an
+     * index that answers one of its conditions or provides its ordering, or a full scan.
+     */
+    private boolean usable(int driver) {
+        return driver == SCAN || set[driver] || provides(driver);
+    }
+
+    /*
+     * Returns the meteorites read by the given way of reading them, in reverse order if the
+     * ordering of this query is reversed and provided by that way.
+     */
+    private Iterable<Meteorite> read(int driver) {
+        boolean reverse = descending && provides(driver);
+        if (driver == MASS) {
+            return set[MASS] ? data.massView(lowMass, highMass, 0, Integer.MAX_VALUE, reverse) :
+                    data.massView(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, reverse);
+        }
+        if (driver == YEAR) {
+            return set[YEAR] ? data.yearView(fromYear, toYear, 0, Integer.MAX_VALUE, reverse) :
+                    data.yearView(0, 2020, 0, Integer.MAX_VALUE, reverse);
+        }
+        if (driver == BOX) return data.spatialIndex().inBox(south, west, north, east);
+        return reverse ? data::descendingIterator : data;
+    }
+
+    /*
+     * Returns true if the given way of reading the meteorites returns them in the ordering of
+     * this query.
+     */
+    private boolean provides(int driver) {
+        return (driver == SCAN && order == BY_NAME) || (driver == MASS && order == BY_MASS) ||
+                (driver == YEAR && order == BY_YEAR);
+    }
+
+    /*
+     * Returns true if m matches all conditions, except the one checked by the driving index.
+     */
+    private boolean matches(Meteorite m, int driver) {
+        if (set[MASS] && driver != MASS && (m.getMass() < lowMass || m.getMass() > highMass))
+            return false;
+        if (set[YEAR] && driver != YEAR && (m.getYear() < fromYear || m.getYear() > toYear))
+            return false;
+        if (set[BOX] && driver != BOX) {
+            Location loc = m.getLocation();
+            if (loc == null || loc.getLatitude() < south || loc.getLatitude() > north ||
+                    loc.getLongitude() < west || loc.getLongitude() > east)
+                return false;
+        }
+        return true;
+    }
+
+    /*
+     * Returns the comparator of the ordering of this query.
+     */
+    private Comparator<Meteorite> comparator() {
+        Comparator<Meteorite> comparator = order == BY_MASS ? new MassComparator() :
+                order == BY_YEAR ? new YearComparator() : Comparator.<Meteorite>naturalOrder();
+        return descending ? comparator.reversed() : comparator;
+    }
+
+    /*
+     * Returns a description of the given condition.
+     */
+    private String describe(int condition) {
+        if (condition == MASS) return set[MASS] ? "mass " + lowMass + ".." + highMass : "all masses";
+        if (condition == YEAR) return set[YEAR] ? "year " + fromYear + ".." + toYear : "all years";
+        return "box " + south + ".." + north + " lat, " + west + ".." + east + " lon";
+    }
+
+    /*
+     * Returns s with its first letter in upper case.
+     */
+    private static String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+}
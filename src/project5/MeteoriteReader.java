@@ -0,0 +1,513 @@
+package project5;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * The MeteoriteReader class loads Meteorite objects from a CSV file containing the NASA meteorite
+ * catalog. Unlike reading the file with a Scanner and splitting each line with
+ * FallenStars.splitCSVLine, this class tokenizes raw bytes read straight from a FileChannel. The
+ * offsets of the fields on the current line are recorded in a reusable cursor and only the columns
+ * used by the program (name, id, mass, year, reclat and reclong) are decoded. Numeric columns are
+ * parsed directly into primitives, so the only object created for a valid line is the Meteorite
+ * itself (with its name and Location).
+ * The quoting rules are the same as the ones of splitCSVLine: regular and smart quotes surround
+ * entries that may contain commas, and whitespace between entries is skipped.
+ * Large files can be loaded with readParallel, which memory-maps the file and parses chunks of it
+ * on a fork-join pool.
+ * A single MeteoriteReader keeps its cursor in instance variables, so it should not be shared
+ * between threads.
+ *
+ * @author Jack
+ */
+public class MeteoriteReader {
+    //positions of the columns used by the program
+    private static final int NAME = 0;
+    private static final int ID = 1;
+    private static final int MASS = 4;
+    private static final int YEAR = 6;
+    private static final int LAT = 7;
+    private static final int LON = 8;
+    //number of leading columns tracked by the cursor, the remaining ones are never looked at
+    private static final int FIELDS = LON + 1;
+
+    //value returned by parseInt for entries that are not valid integers
+    private static final long NOT_AN_INT = Long.MIN_VALUE;
+    //size of the buffer used to read the file
+    private static final int BUFFER_SIZE = 1 << 16;
+    //smallest and largest size of a chunk parsed by a single task in parallel mode
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 1 << 26;
+    //exact powers of ten used by the fast path of parseDouble
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    //field-offset cursor: start (inclusive) and end (exclusive) of each tracked field of the line
+    private final int[] fieldStart = new int[FIELDS];
+    private final int[] fieldEnd = new int[FIELDS];
+    //reusable buffer holding the content of a single field with quotes and padding removed
+    private byte[] entry = new byte[64];
+    private int entryLength;
+
+    /**
+     * Constructs a new reader with an empty cursor.
+     */
+    MeteoriteReader() {
+    }
+
+    /**
+     * Reads all meteorites stored in the given CSV file and returns them in a MeteoriteData
+     * collection. The first line of the file is treated as a header and skipped. Lines that are
+     * incomplete or miss-formatted, as well as lines describing invalid meteorites, are skipped.
+     * @param file - CSV file to be read
+     * @return MeteoriteData collection with all valid meteorites found in the file
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static MeteoriteData read(File file) throws IOException {
+        MeteoriteReader reader = new MeteoriteReader();
+        ArrayList<Meteorite> data = new ArrayList<Meteorite>();
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            boolean header = true;      //true until the first line has been consumed
+            boolean skipLF = false;     //true if the previous line ended with '\r'
+            boolean eof = false;
+            while (!eof) {
+                eof = channel.read(buf) < 0;
+                int limit = buf.position();
+                int lineStart = 0;
+
+                //find and process all complete lines in the buffer
+                for (int i = 0; i < limit; i++) {
+                    byte b = buf.get(i);
+                    if (skipLF) {
+                        skipLF = false;
+                        if (b == '\n') {
+                            lineStart = i + 1;
+                            continue;
+                        }
+                    }
+                    if (b == '\n' || b == '\r') {
+                        if (header) header = false;
+                        else reader.parseLine(buf, lineStart, i, data::add);
+                        skipLF = (b == '\r');
+                        lineStart = i + 1;
+                    }
+                }
+
+                //last line of the file does not have to end with a line terminator
+                if (eof) {
+                    if (lineStart < limit && !header)
+                        reader.parseLine(buf, lineStart, limit, data::add);
+                    break;
+                }
+
+                //move the partial line to the front of the buffer, grow it if the line fills it
+                if (lineStart == 0 && limit == buf.capacity()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(buf.capacity() * 2);
+                    buf.flip();
+                    bigger.put(buf);
+                    buf = bigger;
+                }
+                else {
+                    buf.position(lineStart);
+                    buf.limit(limit);
+                    buf.compact();
+                }
+            }
+        }
+        return new MeteoriteData(data);
+    }
+
+    /**
+     * Reads all meteorites stored in the given CSV file using the common fork-join pool.
+     * The result is the same as the one of read(file).
+     * @param file - CSV file to be read
+     * @return MeteoriteData collection with all valid meteorites found in the file
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static MeteoriteData readParallel(File file) throws IOException {
+        return readParallel(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads all meteorites stored in the given CSV file in parallel. The file is memory-mapped and
+     * split into chunks that end at line boundaries, and the chunks are parsed by tasks running
+     * on the given pool. The parsed meteorites are then passed to the collection in the order in
+     * which they appear in the file, so the result (including which of several equal meteorites
+     * is kept) is the same as the one of read(file).
+     * @param file - CSV file to be read
+     * @param pool - fork-join pool used to parse the chunks
+     * @return MeteoriteData collection with all valid meteorites found in the file
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static MeteoriteData readParallel(File file, ForkJoinPool pool) throws IOException {
+        ArrayList<Meteorite> data = new ArrayList<Meteorite>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel, pool.getParallelism());
+            ArrayList<ArrayList<Meteorite>> results = new ArrayList<ArrayList<Meteorite>>();
+            for (int i = 0; i < bounds.length - 1; i++) results.add(null);
+
+            try {
+                pool.invoke(new ChunkTask(channel, bounds, results, 0, bounds.length - 1));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            //merge the chunks in file order
+            for (ArrayList<Meteorite> chunk : results) {
+                data.addAll(chunk);
+            }
+        }
+        return new MeteoriteData(data);
+    }
+
+    /*
+     * Splits the file into chunks of roughly equal size. Every chunk except the last one ends
+     * right after a line terminator.
+     *
+     * @return the positions of the chunk boundaries; chunk i spans bounds[i] to bounds[i+1]
+     */
+    private static long[] chunkBounds(FileChannel channel, int parallelism) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE,
+                Math.min(MAX_CHUNK_SIZE, size / (4L * Math.max(1, parallelism))));
+        ArrayList<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        long start = 0;
+        ByteBuffer window = ByteBuffer.allocate(1 << 13);
+        while (size - start > chunkSize) {
+            //look for the first line terminator at or after the nominal end of the chunk
+            long pos = start + chunkSize;
+            long end = -1;
+            while (end < 0 && pos < size) {
+                window.clear();
+                int n = channel.read(window, pos);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    byte b = window.get(i);
+                    if (b == '\n' || b == '\r') {
+                        end = pos + i + 1;
+                        //keep "\r\n" together, reading one more byte if it is not in the window
+                        if (b == '\r' && end < size) {
+                            byte next = i + 1 < n ? window.get(i + 1) : readByte(channel, end);
+                            if (next == '\n') end++;
+                        }
+                        break;
+                    }
+                }
+                pos += n;
+            }
+            if (end < 0 || end >= size) break;
+            if (end - start > Integer.MAX_VALUE)
+                throw new IOException("Line too long to be mapped into memory.");
+            bounds.add(end);
+            start = end;
+        }
+        if (size - start > Integer.MAX_VALUE)
+            throw new IOException("Line too long to be mapped into memory.");
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+        return result;
+    }
+
+    /*
+     * Reads a single byte of the file at the given position.
+     */
+    private static byte readByte(FileChannel channel, long pos) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, pos);
+        return one.get(0);
+    }
+
+    /*
+     * Fork-join task that parses the chunks from (inclusive) to (exclusive) and stores the
+     * meteorites found in chunk i in results.get(i).
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final ArrayList<ArrayList<Meteorite>> results;
+        private final int from;
+        private final int to;
+
+        ChunkTask(FileChannel channel, long[] bounds, ArrayList<ArrayList<Meteorite>> results,
+                  int from, int to) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(channel, bounds, results, from, mid),
+                        new ChunkTask(channel, bounds, results, mid, to));
+                return;
+            }
+            ArrayList<Meteorite> chunk = new ArrayList<Meteorite>();
+            try {
+                ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY,
+                        bounds[from], bounds[from + 1] - bounds[from]);
+                new MeteoriteReader().parseLines(buf, from == 0, chunk::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            results.set(from, chunk);
+        }
+    }
+
+    /*
+     * Parses all lines of a chunk that starts at the beginning of a line.
+     *
+     * @param buf - buffer holding the chunk between position 0 and its limit
+     * @param header - true if the first line of the chunk should be skipped
+     * @param sink - consumer of the parsed meteorites
+     */
+    private void parseLines(ByteBuffer buf, boolean header, Consumer<Meteorite> sink) {
+        int limit = buf.limit();
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+            byte b = buf.get(i);
+            if (b == '\n' || b == '\r') {
+                if (header) header = false;
+                else parseLine(buf, lineStart, i, sink);
+                if (b == '\r' && i + 1 < limit && buf.get(i + 1) == '\n') i++;
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < limit && !header) parseLine(buf, lineStart, limit, sink);
+    }
+
+    /*
+     * Parses a single line and passes the resulting meteorite (if any) to sink.
+     */
+    private void parseLine(ByteBuffer buf, int from, int to, Consumer<Meteorite> sink) {
+        Meteorite m = parseLine(buf, from, to);
+        if (m != null) sink.accept(m);
+    }
+
+    /**
+     * Parses a single line of the CSV file stored in buf between the absolute positions from
+     * (inclusive) and to (exclusive). The line should not contain the line terminator.
+     * @param buf - buffer holding the bytes of the line
+     * @param from - position of the first byte of the line
+     * @param to - position one past the last byte of the line
+     * @return Meteorite object described by the line, or null if the line is incomplete,
+     * miss-formatted or describes an invalid meteorite
+     */
+    Meteorite parseLine(ByteBuffer buf, int from, int to) {
+        if (tokenize(buf, from, to) < FIELDS) return null;
+
+        //decode the numeric columns first, so that no name is created for a bad line
+        long id = parseInt(buf, ID);
+        long mass = parseInt(buf, MASS);
+        if (id == NOT_AN_INT || mass == NOT_AN_INT) return null;
+
+        //the year is stored in characters 6 to 9 of a date such as "01/01/1880 12:00:00 AM"
+        decode(buf, YEAR);
+        if (entryLength < 10) return null;
+        long year = parseInt(entry, 6, 10);
+        if (year == NOT_AN_INT) return null;
+
+        double lat = parseDouble(buf, LAT);
+        double lon = parseDouble(buf, LON);
+        if (Double.isNaN(lat) || Double.isNaN(lon)) return null;
+
+        decode(buf, NAME);
+        String name = new String(entry, 0, entryLength, StandardCharsets.UTF_8).trim();
+
+        //setting values for Meteorite object, invalid values are rejected by Meteorite and Location
+        try {
+            Meteorite current = new Meteorite(name, (int) id);
+            current.setMass((int) mass);
+            current.setLocation(new Location(lat, lon));
+            current.setYear((int) year);
+            return current;
+        }
+        catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /*
+     * Finds the boundaries of the leading fields of the line and stores them in the cursor.
+     * Fields end at commas that are not inside quotes.
+     *
+     * @return the number of fields found (never more than FIELDS)
+     */
+    private int tokenize(ByteBuffer buf, int from, int to) {
+        int field = 0;
+        boolean insideQuotes = false;
+        fieldStart[0] = from;
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            int quote = quoteLength(buf, i, to);
+            if (quote > 0) {
+                insideQuotes = !insideQuotes;
+                i += quote - 1;
+            }
+            else if (b == ',' && !insideQuotes) {
+                fieldEnd[field] = i;
+                if (++field == FIELDS) return field;
+                fieldStart[field] = i + 1;
+            }
+        }
+        fieldEnd[field] = to;
+        return field + 1;
+    }
+
+    /*
+     * Copies the content of the given field into the entry buffer following the rules of
+     * splitCSVLine: quotes are dropped, and whitespace is skipped unless it appears inside quotes
+     * or after the entry has started.
+     */
+    private void decode(ByteBuffer buf, int field) {
+        int to = fieldEnd[field];
+        boolean insideQuotes = false;
+        boolean insideEntry = false;
+        entryLength = 0;
+        for (int i = fieldStart[field]; i < to; i++) {
+            byte b = buf.get(i);
+            int quote = quoteLength(buf, i, to);
+            if (quote > 0) {
+                insideQuotes = !insideQuotes;
+                insideEntry = insideQuotes;
+                i += quote - 1;
+                continue;
+            }
+            if (isWhitespace(b) && !insideQuotes && !insideEntry) continue;
+            if (!isWhitespace(b)) insideEntry = true;
+            if (entryLength == entry.length) {
+                byte[] bigger = new byte[entry.length * 2];
+                System.arraycopy(entry, 0, bigger, 0, entryLength);
+                entry = bigger;
+            }
+            entry[entryLength++] = b;
+        }
+    }
+
+    /*
+     * Returns the number of bytes of the quote starting at position i: 1 for a regular quote,
+     * 3 for a UTF-8 encoded smart quote (“ or ”) and 0 if there is no quote at i.
+     */
+    private static int quoteLength(ByteBuffer buf, int i, int to) {
+        byte b = buf.get(i);
+        if (b == '"') return 1;
+        if (b == (byte) 0xE2 && i + 2 < to && buf.get(i + 1) == (byte) 0x80) {
+            byte c = buf.get(i + 2);
+            if (c == (byte) 0x9C || c == (byte) 0x9D) return 3;
+        }
+        return 0;
+    }
+
+    /*
+     * ASCII equivalent of Character.isWhitespace.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+    }
+
+    /*
+     * Decodes the given field and parses it as an int.
+     */
+    private long parseInt(ByteBuffer buf, int field) {
+        decode(buf, field);
+        return parseInt(entry, 0, entryLength);
+    }
+
+    /*
+     * Parses the bytes from (inclusive) to (exclusive) as a signed decimal int, accepting the
+     * same input as Integer.parseInt.
+     *
+     * @return the parsed value or NOT_AN_INT if the bytes do not form a valid int
+     */
+    private static long parseInt(byte[] b, int from, int to) {
+        if (from >= to) return NOT_AN_INT;
+        boolean negative = b[from] == '-';
+        if (negative || b[from] == '+') from++;
+        if (from >= to) return NOT_AN_INT;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = b[i] - '0';
+            if (digit < 0 || digit > 9) return NOT_AN_INT;
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) return NOT_AN_INT;
+        }
+        if (negative) return -value;
+        return value > Integer.MAX_VALUE ? NOT_AN_INT : value;
+    }
+
+    /*
+     * Decodes the given field and parses it as a double.
+     */
+    private double parseDouble(ByteBuffer buf, int field) {
+        decode(buf, field);
+        return parseDouble(entry, 0, entryLength);
+    }
+
+    /*
+     * Parses the bytes from (inclusive) to (exclusive) as a double, accepting the same input as
+     * Double.parseDouble. Plain decimal numbers with at most 15 significant digits are converted
+     * directly; anything else falls back to Double.parseDouble. Also used by ReaderCheck.
+     *
+     * @return the parsed value or NaN if the bytes do not form a valid number
+     */
+    static double parseDouble(byte[] b, int from, int to) {
+        //Double.parseDouble ignores leading and trailing control characters and spaces
+        while (from < to && (b[from] & 0xFF) <= ' ') from++;
+        while (to > from && (b[to - 1] & 0xFF) <= ' ') to--;
+        if (from == to) return Double.NaN;
+
+        boolean negative = b[from] == '-';
+        //first byte after the sign, if any
+        int signEnd = negative || b[from] == '+' ? from + 1 : from;
+        int i = signEnd;
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;      //number of digits after the decimal point, -1 if there is none
+        for (; i < to; i++) {
+            byte c = b[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) digits++;
+                if (fraction >= 0) fraction++;
+                if (digits > 15) break;
+            }
+            else if (c == '.' && fraction < 0) fraction = 0;
+            else break;
+        }
+
+        //fast path: both the mantissa and the power of ten are exact doubles, so a single
+        //division gives the correctly rounded result. A sign or a decimal point alone is not a
+        //number.
+        if (i == to && i > signEnd && fraction < POWERS_OF_TEN.length
+                && !(fraction == 0 && i - signEnd == 1)) {
+            double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(b, from, to - from, StandardCharsets.UTF_8));
+        }
+        catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package project5;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * MeteoriteSnapshot class is an immutable version of the content of a ConcurrentMeteoriteData
+ * collection, returned by ConcurrentMeteoriteData.snapshot. It answers the same queries as the
+ * collection, always as of the time it was taken, so long analytical scans can run on a snapshot
+ * while the collection keeps changing, and two snapshots can be compared to find the meteorites
+ * that were added or removed in between.
+ * A snapshot is cheap: it holds the versions of the persistent indexes (PersistentBST and
+ * PersistentKDTree) that were current when it was taken, so taking one is O(1) and does not copy
+ * anything, and every later change only copies the O(log N) nodes on its paths while the rest of
+ * the nodes stay shared between the snapshot and the collection. A snapshot has no link back to
+ * the collection: once it is no longer referenced, the nodes that only it was using are reclaimed
+ * by the garbage collector.
+ *
+ * @author Jack
+ */
+public class MeteoriteSnapshot implements Iterable<Meteorite> {
+    //versions of the indexes, by name, by mass, by year and by location
+    private final PersistentBST<Meteorite> natural;
+    private final PersistentBST<Meteorite> mass;
+    private final PersistentBST<Meteorite> year;
+    private final PersistentKDTree spatial;
+
+    /*
+     * Constructs a snapshot of the given versions of the indexes.
+     */
+    private MeteoriteSnapshot(PersistentBST<Meteorite> natural, PersistentBST<Meteorite> mass,
+                              PersistentBST<Meteorite> year, PersistentKDTree spatial) {
+        this.natural = natural;
+        this.mass = mass;
+        this.year = year;
+        this.spatial = spatial;
+    }
+
+    /*
+     * Returns a snapshot of an empty collection.
+     */
+    static MeteoriteSnapshot empty() {
+        return new MeteoriteSnapshot(new PersistentBST<Meteorite>(null, Meteorite::nameKey),
+                new PersistentBST<Meteorite>(new MassComparator(), MeteoriteData::massKey),
+                new PersistentBST<Meteorite>(new YearComparator(), MeteoriteData::yearKey),
+                new PersistentKDTree());
+    }
+
+    /*
+     * Returns a snapshot holding the given objects, which are in strictly ascending natural order.
+     * Each tree is built directly from the objects sorted in its order, so the names of the
+     * objects must be consistently ordered (see MeteoriteData.consistentlyOrdered).
+     */
+    static MeteoriteSnapshot of(List<Meteorite> natural) {
+        MeteoriteSnapshot empty = empty();
+        return new MeteoriteSnapshot(empty.natural.addAllSorted(natural),
+                empty.mass.addAllSorted(sort(natural, Comparator.comparingInt(Meteorite::getMass))),
+                empty.year.addAllSorted(sort(natural, Comparator.comparingInt(Meteorite::getYear))),
+                new PersistentKDTree(natural));
+    }
+
+    /*
+     * Returns the objects given in natural order sorted in the order of a tree whose comparator
+     * breaks ties using the natural ordering, with a stable sort on the given key alone.
+     */
+    private static List<Meteorite> sort(List<Meteorite> natural, Comparator<Meteorite> key) {
+        Meteorite[] sorted = natural.toArray(new Meteorite[0]);
+        Arrays.parallelSort(sorted, key);
+        return Arrays.asList(sorted);
+    }
+
+    /*
+     * Returns the snapshot with m added to all indexes, or null if an equal object is present.
+     */
+    MeteoriteSnapshot add(Meteorite m) {
+        PersistentBST<Meteorite> n = natural.add(m);
+        if (n == natural) return null;
+        return new MeteoriteSnapshot(n, mass.add(m), year.add(m), spatial.add(m));
+    }
+
+    /*
+     * Returns the snapshot with the object equal to m removed from all indexes, or null if there
+     * is none.
+     */
+    MeteoriteSnapshot remove(Meteorite m) {
+        Meteorite stored = natural.find(m);
+        if (stored == null) return null;
+        return new MeteoriteSnapshot(natural.remove(stored), mass.remove(stored), year.remove(stored),
+                spatial.remove(stored));
+    }
+
+    /**
+     * Returns true if this snapshot contains a Meteorite object equal to m. Operation is O(H).
+     * @param m - Meteorite object to be checked for
+     * @return true if an equal Meteorite object is present in this snapshot
+     * @throws NullPointerException if m is null
+     */
+    public boolean contains(Meteorite m) throws NullPointerException {
+        return natural.contains(m);
+    }
+
+    /**
+     * Returns the number of Meteorite objects in this snapshot. Operation is O(1).
+     * @return the number of Meteorite objects in this snapshot
+     */
+    public int size() {
+        return natural.size();
+    }
+
+    /**
+     * Returns collection of the Meteorite objects of this snapshot that are not in the given
+     * older one, i.e., the objects added in between, in natural order. Subtrees that the two
+     * snapshots still share are skipped without being visited, so for two snapshots of the same
+     * collection the operation is O(D log N) where D is the number of changes in between.
+     * @param since - older snapshot to be compared with
+     * @return MeteoriteView of the added meteorites, or null if there are none
+     * @throws NullPointerException if since is null
+     */
+    public MeteoriteView added(MeteoriteSnapshot since) throws NullPointerException {
+        List<Meteorite> added = natural.difference(since.natural);
+        return added.isEmpty() ? null : MeteoriteView.of(added);
+    }
+
+    /**
+     * Returns collection of the Meteorite objects of the given older snapshot that are not in
+     * this one, i.e., the objects removed in between, in natural order. Operation is O(D log N)
+     * as for added.
+     * @param since - older snapshot to be compared with
+     * @return MeteoriteView of the removed meteorites, or null if there are none
+     * @throws NullPointerException if since is null
+     */
+    public MeteoriteView removed(MeteoriteSnapshot since) throws NullPointerException {
+        List<Meteorite> removed = since.natural.difference(natural);
+        return removed.isEmpty() ? null : MeteoriteView.of(removed);
+    }
+
+    /**
+     * Returns collection of all Meteorite objects with mass within delta grams of the specified
+     * mass, organized as in MeteoriteData.getByMass. Operation is O(H) to create the view and
+     * O(K) to iterate over it.
+     * @param mass - specified mass
+     * @param delta - acceptable range around mass
+     * @return MeteoriteView with elements within range, or null if there are none
+     * @throws IllegalArgumentException if mass or delta is under zero
+     */
+    public MeteoriteView getByMass(int mass, int delta) throws IllegalArgumentException {
+        if (mass < 0 || delta < 0) throw new IllegalArgumentException("Invalid arguments.");
+        long low = Math.max((long) mass - delta, 1);
+        long high = (long) mass + delta;
+        //a mass of zero is unknown, so the range is empty if it ends below one gram
+        if (high < low) return null;
+        long fromKey = MeteoriteData.lowestKey(low);
+        long toKey = MeteoriteData.highestKey(high);
+        if (this.mass.countKeyRange(fromKey, toKey) == 0) return null;
+        return MeteoriteView.of(this.mass, fromKey, toKey);
+    }
+
+    /**
+     * Returns the number of Meteorite objects with mass within delta grams of the specified mass,
+     * without visiting them. Operation is O(H).
+     * @param mass - specified mass
+     * @param delta - acceptable range around mass
+     * @return number of Meteorite objects with mass within range
+     * @throws IllegalArgumentException if mass or delta is under zero
+     */
+    public int countByMass(int mass, int delta) throws IllegalArgumentException {
+        if (mass < 0 || delta < 0) throw new IllegalArgumentException("Invalid arguments.");
+        long low = Math.max((long) mass - delta, 1);
+        long high = (long) mass + delta;
+        if (high < low) return 0;
+        return this.mass.countKeyRange(MeteoriteData.lowestKey(low), MeteoriteData.highestKey(high));
+    }
+
+    /**
+     * Returns collection of Meteorite objects that landed within provided year, organized
+     * according to their natural ordering. Operation is O(H) to create the view and O(K) to
+     * iterate over it.
+     * @param year - year in which desired Meteorites landed
+     * @return MeteoriteView of all Meteorites that landed during provided year, or null if there
+     * are none
+     * @throws IllegalArgumentException if year is under zero or over 2020
+     */
+    public MeteoriteView getByYear(int year) throws IllegalArgumentException {
+        if (year < 0 || year > 2020) throw new IllegalArgumentException("Invalid argument.");
+        return getByYear(year, year);
+    }
+
+    /**
+     * Returns collection of Meteorite objects that landed from fromYear to toYear, inclusive,
+     * organized by year and, within a year, according to their natural ordering. Operation is
+     * O(H) to create the view and O(K) to iterate over it.
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @return MeteoriteView of all Meteorites that landed during these years, or null if there
+     * are none
+     * @throws IllegalArgumentException if the years are not within range 0 to 2020 or fromYear is
+     * greater than toYear
+     */
+    public MeteoriteView getByYear(int fromYear, int toYear) throws IllegalArgumentException {
+        if (countByYear(fromYear, toYear) == 0) return null;
+        return MeteoriteView.of(year, MeteoriteData.yearLowKey(fromYear), MeteoriteData.yearHighKey(toYear));
+    }
+
+    /**
+     * Returns the number of Meteorite objects that landed within provided year. Operation is O(H).
+     * @param year - year in which desired Meteorites landed
+     * @return number of Meteorites that landed during provided year
+     * @throws IllegalArgumentException if year is under zero or over 2020
+     */
+    public int countByYear(int year) throws IllegalArgumentException {
+        if (year < 0 || year > 2020) throw new IllegalArgumentException("Invalid argument.");
+        return countByYear(year, year);
+    }
+
+    /**
+     * Returns the number of Meteorite objects that landed from fromYear to toYear, inclusive.
+     * Operation is O(H).
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @return number of Meteorites that landed during these years
+     * @throws IllegalArgumentException if the years are not within range 0 to 2020 or fromYear is
+     * greater than toYear
+     */
+    public int countByYear(int fromYear, int toYear) throws IllegalArgumentException {
+        if (fromYear < 0 || toYear > 2020 || fromYear > toYear)
+            throw new IllegalArgumentException("Invalid arguments.");
+        return year.countKeyRange(MeteoriteData.yearLowKey(fromYear), MeteoriteData.yearHighKey(toYear));
+    }
+
+    /**
+     * Returns the Meteorite object closest to the given Location, as
+     * MeteoriteData.getByLocation(Location) would. Operation is O(log N).
+     * @param loc - Location value to be compared
+     * @return Meteorite object with closest Location value to loc, or null if no meteorite has a
+     * Location
+     * @throws IllegalArgumentException if loc is null
+     */
+    public Meteorite getByLocation(Location loc) throws IllegalArgumentException {
+        return spatial.nearest(loc);
+    }
+
+    /**
+     * Returns collection of the k Meteorite objects closest to the given Location, as
+     * MeteoriteData.getNearest would. Operation is O(k log k + log N).
+     * @param loc - Location value to be compared
+     * @param k - number of Meteorite objects to be returned
+     * @return MeteoriteView of the k closest meteorites, or null if no meteorite has a Location
+     * @throws IllegalArgumentException if loc is null or k is under one
+     */
+    public MeteoriteView getNearest(Location loc, int k) throws IllegalArgumentException {
+        List<Meteorite> near = spatial.nearest(loc, k);
+        if (near.isEmpty()) return null;
+        return MeteoriteView.of(near);
+    }
+
+    /**
+     * Returns collection of all Meteorite objects within radius kilometres of the given Location,
+     * as MeteoriteData.getByDistance would. Operation is O(log N + K log K) for small radii.
+     * @param loc - center of the search
+     * @param radius - maximum distance from loc in kilometres
+     * @return MeteoriteView of the meteorites within radius of loc, or null if there are none
+     * @throws IllegalArgumentException if loc is null or radius is negative
+     */
+    public MeteoriteView getByDistance(Location loc, double radius) throws IllegalArgumentException {
+        List<Meteorite> near = spatial.within(loc, radius);
+        if (near.isEmpty()) return null;
+        return MeteoriteView.of(near);
+    }
+
+    /**
+     * Iterates over the Meteorite objects of this snapshot according to their natural order.
+     * @return Iterator for MeteoriteSnapshot
+     */
+    @Override
+    public Iterator<Meteorite> iterator() {
+        return natural.iterator();
+    }
+
+    /**
+     * toString method, in the same format as MeteoriteData.toString.
+     * @return String representation of this snapshot
+     */
+    @Override
+    public String toString() {
+        StringBuilder stuff = new StringBuilder();
+        for (Meteorite m : natural) {
+            stuff.append(m).append("\n");
+        }
+        return stuff.toString();
+    }
+}
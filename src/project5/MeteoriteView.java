@@ -0,0 +1,201 @@
+package project5;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * MeteoriteView class is a read-only sequence of Meteorite objects returned by the queries of
+ * MeteoriteData and PackedMeteoriteData. A view does not copy the matching meteorites: it is backed
+ * by a range of the index that answered the query and iterates over it lazily, so a query costs
+ * O(H + K) to consume instead of building a new collection with three more trees.
+ * Results that have to be computed in full, such as the ones sorted by distance, are backed by a
+ * list instead.
+ * A view backed by a tree of MeteoriteData reflects the current content of the collection. Its iterators
+ * are fail-fast: if the collection is modified while iterating, they throw
+ * ConcurrentModificationException. A view backed by a PersistentBST of ConcurrentMeteoriteData
+ * is backed by the version of the collection it was created from, so it never changes and can be
+ * iterated while the collection is being modified.
+ *
+ * @author Jack
+ */
+public abstract class MeteoriteView implements Iterable<Meteorite> {
+
+    /**
+     * Returns the number of Meteorite objects in this view.
+     * @return the number of Meteorite objects in this view
+     */
+    public abstract int size();
+
+    /**
+     * Returns an iterator over the Meteorite objects in this view, in the order of the index that
+     * answered the query.
+     * @return iterator over the Meteorite objects in this view
+     */
+    @Override
+    public abstract Iterator<Meteorite> iterator();
+
+    /**
+     * Returns a spliterator over the Meteorite objects in this view, in the same order as
+     * iterator. Views backed by a range of a BST return the spliterator of that range, which is
+     * SIZED and splits along subtree boundaries; other views return a SIZED spliterator that
+     * splits by taking batches from the iterator.
+     * @return spliterator over the Meteorite objects in this view
+     */
+    @Override
+    public Spliterator<Meteorite> spliterator() {
+        return Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    /**
+     * Returns a sequential stream over the Meteorite objects in this view, backed by spliterator.
+     * Call parallel on it to process the objects in parallel, e.g. to sum their masses.
+     * @return stream over the Meteorite objects in this view
+     */
+    public Stream<Meteorite> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns true if this view contains no Meteorite objects.
+     * @return true if this view is empty
+     */
+    public boolean isEmpty() {
+        return !iterator().hasNext();
+    }
+
+    /**
+     * Writes the Meteorite objects in this view to out, one per line, as they are iterated. The
+     * text is the same as the one returned by toString, but it is never built in memory.
+     * @param out - destination of the text, for example System.out
+     * @throws IOException if out throws it
+     */
+    public void writeTo(Appendable out) throws IOException {
+        for (Meteorite m : this) {
+            out.append(m.toString()).append("\n");
+        }
+    }
+
+    /**
+     * Returns a string representation of this view: the Meteorite objects it contains, one per
+     * line, in the same format as MeteoriteData.toString.
+     * @return String representation of this view
+     */
+    @Override
+    public String toString() {
+        StringBuilder stuff = new StringBuilder();
+        try {
+            writeTo(stuff);
+        } catch (IOException e) {
+            //StringBuilder does not throw IOException
+            throw new IllegalStateException(e);
+        }
+        return stuff.toString();
+    }
+
+    /**
+     * Returns a view of the Meteorite objects of list, in the order of the list. Used for query
+     * results that are computed in full, e.g. sorted by distance.
+     * @param list - list holding the Meteorite objects
+     * @return view backed by the list
+     */
+    static MeteoriteView of(List<Meteorite> list) {
+        return new MeteoriteView() {
+            @Override
+            public int size() {
+                return list.size();
+            }
+
+            @Override
+            public Iterator<Meteorite> iterator() {
+                return Collections.unmodifiableList(list).iterator();
+            }
+
+            @Override
+            public Spliterator<Meteorite> spliterator() {
+                return Collections.unmodifiableList(list).spliterator();
+            }
+        };
+    }
+
+    /**
+     * Returns a view of the Meteorite objects of tree that range from fromElement, inclusive, to
+     * toElement, inclusive, in the order of the tree.
+     * @param tree - tree holding the Meteorite objects
+     * @param fromElement - low endpoint (inclusive) of the range
+     * @param toElement - high endpoint (inclusive) of the range
+     * @return view backed by the range of the tree
+     */
+    static MeteoriteView of(BST<Meteorite> tree, Meteorite fromElement, Meteorite toElement) {
+        return new MeteoriteView() {
+            @Override
+            public int size() {
+                return tree.countRange(fromElement, toElement);
+            }
+
+            @Override
+            public Iterator<Meteorite> iterator() {
+                return tree.rangeIterator(fromElement, toElement);
+            }
+
+            @Override
+            public Spliterator<Meteorite> spliterator() {
+                return tree.rangeSpliterator(fromElement, toElement);
+            }
+        };
+    }
+
+    /**
+     * Returns a view of the Meteorite objects of tree whose keys range from fromKey, inclusive, to
+     * toKey, inclusive, in the order of the tree.
+     * @param tree - tree holding the Meteorite objects, with a key extractor
+     * @param fromKey - low endpoint (inclusive) of the keys
+     * @param toKey - high endpoint (inclusive) of the keys
+     * @return view backed by the range of the tree
+     */
+    static MeteoriteView of(BST<Meteorite> tree, long fromKey, long toKey) {
+        return new MeteoriteView() {
+            @Override
+            public int size() {
+                return tree.countKeyRange(fromKey, toKey);
+            }
+
+            @Override
+            public Iterator<Meteorite> iterator() {
+                return tree.keyRangeIterator(fromKey, toKey);
+            }
+
+            @Override
+            public Spliterator<Meteorite> spliterator() {
+                return tree.keyRangeSpliterator(fromKey, toKey);
+            }
+        };
+    }
+
+    /**
+     * Returns a view of the Meteorite objects of a version of a persistent tree whose keys range
+     * from fromKey, inclusive, to toKey, inclusive, in the order of the tree.
+     * @param tree - version of the tree holding the Meteorite objects, with a key extractor
+     * @param fromKey - low endpoint (inclusive) of the keys
+     * @param toKey - high endpoint (inclusive) of the keys
+     * @return view backed by the range of the tree
+     */
+    static MeteoriteView of(PersistentBST<Meteorite> tree, long fromKey, long toKey) {
+        return new MeteoriteView() {
+            @Override
+            public int size() {
+                return tree.countKeyRange(fromKey, toKey);
+            }
+
+            @Override
+            public Iterator<Meteorite> iterator() {
+                return tree.keyRangeIterator(fromKey, toKey);
+            }
+        };
+    }
+}
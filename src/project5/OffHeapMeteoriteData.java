@@ -0,0 +1,145 @@
+package project5;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * OffHeapMeteoriteData class is a read-only alternative to MeteoriteData that stores the
+ * meteorites outside of the Java heap, so that large catalogs do not add to the work of the
+ * garbage collector. Records are stored in a direct ByteBuffer with a fixed stride of 40 bytes:
+ * <pre>
+ *   offset  0: id (int)          offset 12: name offset (int)     offset 24: latitude (double)
+ *   offset  4: mass (int)        offset 16: name length (int)     offset 32: longitude (double)
+ *   offset  8: year (int)        offset 20: unused
+ * </pre>
+ * The UTF-8 encoded names are stored in a second direct buffer. The mass index is an int array
+ * holding the record numbers sorted by mass and the year index is a YearIndex in a direct buffer,
+ * so the whole collection is a handful of objects on the heap, regardless of its size.
+ *
+ * @author Jack
+ */
+public class OffHeapMeteoriteData extends PackedMeteoriteData {
+    //size of a single record in bytes and the offsets of its fields (also used by the record
+    //section of the index files written by MappedMeteoriteData)
+    static final int STRIDE = 40;
+    static final int ID = 0;
+    static final int MASS = 4;
+    static final int YEAR = 8;
+    static final int NAME_OFFSET = 12;
+    static final int NAME_LENGTH = 16;
+    static final int LATITUDE = 24;
+    static final int LONGITUDE = 32;
+
+    //number of records
+    private final int size;
+    //off-heap storage of the records and of the names
+    private final ByteBuffer records;
+    private final ByteBuffer names;
+    //record numbers sorted by mass and posting lists by year
+    private final int[] byMass;
+    private final YearIndex byYear;
+
+    /**
+     * Constructs an off-heap copy of the given collection. Operation is O(N log N).
+     * @param data - collection to be copied
+     * @throws NullPointerException if data is null
+     * @throws IllegalArgumentException if the collection is too large to be stored in a single
+     * direct buffer
+     */
+    public OffHeapMeteoriteData(MeteoriteData data)
+            throws NullPointerException, IllegalArgumentException {
+        if (data == null) throw new NullPointerException();
+        size = data.size();
+        if ((long) size * STRIDE > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many meteorites for off-heap storage.");
+        records = ByteBuffer.allocateDirect(size * STRIDE).order(ByteOrder.nativeOrder());
+
+        //write the records in natural order, collecting the encoded names
+        int[] masses = new int[size];
+        int[] years = new int[size];
+        byte[][] encoded = new byte[size][];
+        long nameBytes = 0;
+        int i = 0;
+        for (Meteorite m : data) {
+            int base = i * STRIDE;
+            encoded[i] = m.getName().getBytes(StandardCharsets.UTF_8);
+            Location loc = m.getLocation();
+            records.putInt(base + ID, m.getId());
+            records.putInt(base + MASS, m.getMass());
+            records.putInt(base + YEAR, m.getYear());
+            records.putInt(base + NAME_OFFSET, (int) nameBytes);
+            records.putInt(base + NAME_LENGTH, encoded[i].length);
+            records.putDouble(base + LATITUDE, loc == null ? Double.NaN : loc.getLatitude());
+            records.putDouble(base + LONGITUDE, loc == null ? Double.NaN : loc.getLongitude());
+            masses[i] = m.getMass();
+            years[i] = m.getYear();
+            nameBytes += encoded[i].length;
+            if (nameBytes > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Too many meteorites for off-heap storage.");
+            i++;
+        }
+        names = ByteBuffer.allocateDirect((int) nameBytes);
+        for (byte[] name : encoded) {
+            names.put(name);
+        }
+
+        byMass = sortBy(masses);
+        byYear = new YearIndex(years, true);
+    }
+
+    /**
+     * Returns the number of bytes allocated outside of the Java heap by this collection.
+     * @return the size of the direct buffers holding the records and the names
+     */
+    public long offHeapBytes() {
+        return (long) records.capacity() + names.capacity();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    protected String name(int record) {
+        byte[] name = new byte[records.getInt(record * STRIDE + NAME_LENGTH)];
+        names.get(records.getInt(record * STRIDE + NAME_OFFSET), name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected int id(int record) {
+        return records.getInt(record * STRIDE + ID);
+    }
+
+    @Override
+    protected int mass(int record) {
+        return records.getInt(record * STRIDE + MASS);
+    }
+
+    @Override
+    protected int year(int record) {
+        return records.getInt(record * STRIDE + YEAR);
+    }
+
+    @Override
+    protected double latitude(int record) {
+        return records.getDouble(record * STRIDE + LATITUDE);
+    }
+
+    @Override
+    protected double longitude(int record) {
+        return records.getDouble(record * STRIDE + LONGITUDE);
+    }
+
+    @Override
+    protected int massOrder(int position) {
+        return byMass[position];
+    }
+
+    @Override
+    protected YearIndex yearIndex() {
+        return byYear;
+    }
+}
@@ -0,0 +1,363 @@
+package project5;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * PackedMeteoriteData is the base class of the read-only collections that store meteorites as
+ * primitive records instead of Meteorite, Location and BST node objects. Subclasses decide where
+ * the records are stored and provide access to the fields of a record given its record number,
+ * and to the mass and year indexes.
+ * Records are numbered in the natural ordering of the meteorites, so record i is the i-th
+ * meteorite returned by the iterator of MeteoriteData and the natural index is the identity. The
+ * mass index lists the record numbers sorted by mass (ties in natural order) and is searched with
+ * binary search. The year index is a YearIndex, with one compressed posting list per year.
+ * Meteorite objects are only created when they are returned to
+ * the caller. The queries return the same results as the ones of MeteoriteData.
+ *
+ * @author Jack
+ */
+public abstract class PackedMeteoriteData implements Iterable<Meteorite> {
+    //kernel used by the location queries, created by the first one
+    private DistanceKernel kernel;
+
+    /**
+     * Returns the number of meteorites in this collection.
+     * @return the number of meteorites in this collection
+     */
+    public abstract int size();
+
+    /**
+     * Returns the name of the meteorite stored in the given record.
+     * @param record - record number, from 0 to size()-1
+     * @return name of the meteorite
+     */
+    protected abstract String name(int record);
+
+    /**
+     * Returns the id of the meteorite stored in the given record.
+     * @param record - record number, from 0 to size()-1
+     * @return id of the meteorite
+     */
+    protected abstract int id(int record);
+
+    /**
+     * Returns the mass of the meteorite stored in the given record.
+     * @param record - record number, from 0 to size()-1
+     * @return mass of the meteorite
+     */
+    protected abstract int mass(int record);
+
+    /**
+     * Returns the year of the meteorite stored in the given record.
+     * @param record - record number, from 0 to size()-1
+     * @return year of the meteorite
+     */
+    protected abstract int year(int record);
+
+    /**
+     * Returns the latitude of the meteorite stored in the given record.
+     * @param record - record number, from 0 to size()-1
+     * @return latitude of the meteorite, or NaN if the meteorite does not have a location
+     */
+    protected abstract double latitude(int record);
+
+    /**
+     * Returns the longitude of the meteorite stored in the given record.
+     * @param record - record number, from 0 to size()-1
+     * @return longitude of the meteorite, or NaN if the meteorite does not have a location
+     */
+    protected abstract double longitude(int record);
+
+    /**
+     * Returns the record at the given position of the mass index.
+     * @param position - position in the index, from 0 to size()-1
+     * @return number of the record with the given rank in the mass ordering
+     */
+    protected abstract int massOrder(int position);
+
+    /**
+     * Returns the index of the records by year.
+     * @return the year index
+     */
+    protected abstract YearIndex yearIndex();
+
+    /**
+     * Returns the record numbers sorted by the given column. Record numbers follow the natural
+     * ordering, so sorting (value, record) pairs orders ties in the same way as the comparators
+     * of MeteoriteData. Used by subclasses to build their indexes.
+     * @param column - values of the column, indexed by record number (must not be negative)
+     * @return record numbers sorted by the column
+     */
+    protected static int[] sortBy(int[] column) {
+        long[] keys = new long[column.length];
+        for (int i = 0; i < column.length; i++) {
+            keys[i] = ((long) column[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[column.length];
+        for (int i = 0; i < column.length; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    /**
+     * Returns the meteorite stored in the given record. A new Meteorite object is created on
+     * every call.
+     * @param record - record number, from 0 to size()-1
+     * @return Meteorite object stored in the record
+     * @throws IndexOutOfBoundsException if record is not a valid record number
+     */
+    public Meteorite get(int record) throws IndexOutOfBoundsException {
+        if (record < 0 || record >= size())
+            throw new IndexOutOfBoundsException("Invalid record: " + record);
+        Meteorite m = new Meteorite(name(record), id(record));
+        m.setMass(mass(record));
+        m.setYear(year(record));
+        double lat = latitude(record);
+        if (!Double.isNaN(lat)) m.setLocation(new Location(lat, longitude(record)));
+        return m;
+    }
+
+    /**
+     * Returns view of all Meteorite objects with mass within delta grams of the specified mass, as
+     * in MeteoriteData.getByMass. The view is backed by a range of the mass index and creates the
+     * Meteorite objects as they are iterated. Operation is O(log N) to create the view.
+     * @param mass - specified mass
+     * @param delta - acceptable range around mass
+     * @return MeteoriteView with elements within range, or null if there are none
+     * @throws IllegalArgumentException - mass or delta is under zero
+     */
+    public MeteoriteView getByMass(int mass, int delta) throws IllegalArgumentException {
+        if (mass < 0 || delta < 0) throw new IllegalArgumentException("Invalid arguments.");
+        int start = massBound(Math.max(mass - delta, 1));
+        int end = massBound((long) mass + delta + 1);
+        if (start >= end) return null;
+        return new IndexRange(start, end);
+    }
+
+    /**
+     * Returns view of Meteorite objects that landed within provided year, as in
+     * MeteoriteData.getByYear. The view is backed by the posting list of the year and creates the
+     * Meteorite objects as they are iterated. Operation is O(1) to create the view.
+     * @param year - year in which desired Meteorites landed
+     * @return MeteoriteView of all Meteorites that landed during provided year, or null if there
+     * are none
+     * @throws IllegalArgumentException if year is under zero or over 2020
+     */
+    public MeteoriteView getByYear(int year) throws IllegalArgumentException {
+        return getByYear(year, year);
+    }
+
+    /**
+     * Returns view of Meteorite objects that landed from fromYear to toYear, inclusive, as in
+     * MeteoriteData.getByYear. The view is backed by the posting lists of the years and creates
+     * the Meteorite objects as they are iterated. Operation is O(1) to create the view.
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @return MeteoriteView of all Meteorites that landed during these years, or null if there
+     * are none
+     * @throws IllegalArgumentException if the years are not within range 0 to 2020 or fromYear is
+     * greater than toYear
+     */
+    public MeteoriteView getByYear(int fromYear, int toYear) throws IllegalArgumentException {
+        if (fromYear < 0 || toYear > 2020 || fromYear > toYear)
+            throw new IllegalArgumentException("Invalid arguments.");
+        YearIndex index = yearIndex();
+        int count = index.count(fromYear, toYear);
+        if (count == 0) return null;
+        return new MeteoriteView() {
+            @Override
+            public int size() {
+                return count;
+            }
+
+            @Override
+            public Iterator<Meteorite> iterator() {
+                PrimitiveIterator.OfInt records = index.records(fromYear, toYear);
+                return new Iterator<Meteorite>() {
+                    @Override
+                    public boolean hasNext() {
+                        return records.hasNext();
+                    }
+
+                    @Override
+                    public Meteorite next() {
+                        return get(records.nextInt());
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the number of Meteorite objects that landed within provided year, as in
+     * MeteoriteData.countByYear. Operation is O(1).
+     * @param year - year in which desired Meteorites landed
+     * @return number of Meteorites that landed during provided year
+     * @throws IllegalArgumentException if year is under zero or over 2020
+     */
+    public int countByYear(int year) throws IllegalArgumentException {
+        return yearIndex().count(year);
+    }
+
+    /*
+     * View of the records at positions start (inclusive) to end (exclusive) of the mass index.
+     */
+    private class IndexRange extends MeteoriteView {
+        private final int start;
+        private final int end;
+
+        IndexRange(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+
+        @Override
+        public Iterator<Meteorite> iterator() {
+            return new Iterator<Meteorite>() {
+                private int next = start;
+
+                @Override
+                public boolean hasNext() {
+                    return next < end;
+                }
+
+                @Override
+                public Meteorite next() {
+                    if (next >= end) throw new NoSuchElementException();
+                    return get(massOrder(next++));
+                }
+            };
+        }
+    }
+
+    /*
+     * Returns the first position of the mass index whose record has a mass not less than value.
+     */
+    private int massBound(long value) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mass(massOrder(mid)) < value) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the Meteorite object that is closest to the given Location, as in
+     * MeteoriteData.getByLocation. The locations of the records are scanned by a DistanceKernel
+     * without creating any objects. Operation is O(N).
+     * @param loc - Location value to be compared
+     * @return Meteorite object with closest Location value to loc, or null if there are none
+     * @throws IllegalArgumentException if loc is null
+     */
+    public Meteorite getByLocation(Location loc) throws IllegalArgumentException {
+        if (loc == null) throw new IllegalArgumentException("Invalid argument.");
+        int closest = kernel().nearest(loc.getLatitude(), loc.getLongitude());
+        return closest < 0 ? null : get(closest);
+    }
+
+    /**
+     * Returns the kernel holding the locations of all records, creating it on the first call.
+     * @return kernel over the locations of the records
+     */
+    protected DistanceKernel kernel() {
+        if (kernel == null) {
+            int size = size();
+            double[] latitudes = new double[size];
+            double[] longitudes = new double[size];
+            for (int i = 0; i < size; i++) {
+                latitudes[i] = latitude(i);
+                longitudes[i] = longitude(i);
+            }
+            kernel = new DistanceKernel(latitudes, longitudes);
+        }
+        return kernel;
+    }
+
+    /**
+     * Returns view of all Meteorite objects within radius kilometres of the given Location, sorted
+     * by distance, as in MeteoriteData.getByDistance. The locations of the records are scanned by
+     * a DistanceKernel and Meteorite objects are only created for the matches. Operation is
+     * O(N + K log K).
+     * @param loc - center of the search
+     * @param radius - maximum distance from loc in kilometres
+     * @return MeteoriteView of the meteorites within radius of loc, or null if there are none
+     * @throws IllegalArgumentException if loc is null or radius is negative
+     */
+    public MeteoriteView getByDistance(Location loc, double radius) throws IllegalArgumentException {
+        if (loc == null || !(radius >= 0)) throw new IllegalArgumentException("Invalid arguments.");
+        ArrayList<KDTree.Neighbour> found = new ArrayList<KDTree.Neighbour>();
+        for (int i : kernel().within(loc.getLatitude(), loc.getLongitude(), radius)) {
+            double d = Location.getDistance(latitude(i), longitude(i), loc.getLatitude(), loc.getLongitude());
+            found.add(new KDTree.Neighbour(get(i), d));
+        }
+        return sorted(found);
+    }
+
+    /**
+     * Returns a view of the meteorites found by a distance query, sorted by distance, or null if
+     * none were found.
+     * @param found - meteorites found along with their distances
+     * @return MeteoriteView of the found meteorites, or null if there are none
+     */
+    protected static MeteoriteView sorted(List<KDTree.Neighbour> found) {
+        if (found.isEmpty()) return null;
+        Collections.sort(found);
+        ArrayList<Meteorite> result = new ArrayList<Meteorite>(found.size());
+        for (KDTree.Neighbour n : found) {
+            result.add(n.meteorite);
+        }
+        return MeteoriteView.of(result);
+    }
+
+    /**
+     * Iterator method. Iterates over Meteorite objects according to their natural order,
+     * creating each object as it is returned.
+     * @return Iterator over the meteorites of this collection
+     */
+    @Override
+    public Iterator<Meteorite> iterator() {
+        return new Iterator<Meteorite>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public Meteorite next() {
+                if (next >= size()) throw new NoSuchElementException();
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * toString method. Returns the same text as MeteoriteData.toString.
+     * @return String representation of this collection
+     */
+    @Override
+    public String toString() {
+        StringBuilder stuff = new StringBuilder();
+        for (Meteorite m : this) {
+            stuff.append(m).append("\n");
+        }
+        return stuff.toString();
+    }
+}
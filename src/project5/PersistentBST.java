@@ -0,0 +1,590 @@
+package project5;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.ToLongFunction;
+
+/**
+ * PersistentBST class is an immutable variant of BST. Its nodes are never modified: add and remove
+ * leave this tree unchanged and return a new version of it, which copies the nodes on the path
+ * from the root to the changed node and shares all other nodes with this version. A change
+ * therefore costs O(log N) time and memory, every version stays valid for as long as it is
+ * referenced, and versions that are no longer referenced are reclaimed by the garbage collector.
+ * Because nothing is ever modified, a version can be read by any number of threads without
+ * locking, and its iterators never throw ConcurrentModificationException.
+ * Like BST, the tree is kept balanced as an AVL tree, every node stores the number of nodes in its
+ * subtree, and the tree may be given a key extractor that maps every element to a primitive key
+ * consistent with its ordering.
+ * @param <T> - generic parameter
+ *
+ * @author Jack
+ */
+public class PersistentBST<T extends Comparable<T>> implements Iterable<T> {
+    private final Node<T> root;
+    private final Comparator<T> comparator;   //ordering of the elements, null for natural ordering
+    private final ToLongFunction<T> key;      //primitive keys of the elements, null if there are none
+
+    /**
+     * Constructs a new, empty tree, sorted according to the natural ordering of its elements.
+     */
+    public PersistentBST() {
+        this(null, null, null);
+    }
+
+    /**
+     * Constructs a new, empty tree, sorted according to the specified comparator, or to the
+     * natural ordering of its elements if comparator is null, with the given key extractor, as
+     * BST(Comparator, ToLongFunction).
+     * @param comparator - ordering of the elements, null for their natural ordering
+     * @param key - primitive key of every element
+     * @throws NullPointerException if key is null
+     */
+    public PersistentBST(Comparator<T> comparator, ToLongFunction<T> key) {
+        this(null, comparator, key);
+        if (key == null) throw new NullPointerException();
+    }
+
+    /*
+     * Constructs a version of a tree with the given root.
+     */
+    private PersistentBST(Node<T> root, Comparator<T> comparator, ToLongFunction<T> key) {
+        this.root = root;
+        this.comparator = comparator;
+        this.key = key;
+    }
+
+    /*
+     * Returns a version of this tree with the given root, or this tree if the root is the same.
+     */
+    private PersistentBST<T> version(Node<T> newRoot) {
+        return newRoot == root ? this : new PersistentBST<T>(newRoot, comparator, key);
+    }
+
+    /**
+     * Returns the number of elements in this tree. This operation is O(1).
+     * @return the number of elements in this tree
+     */
+    public int size() {
+        return count(root);
+    }
+
+    /**
+     * Returns true if this tree contains no elements. This operation is O(1).
+     * @return true if this tree contains no elements
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns a version of this tree that also contains the specified element. If this tree
+     * already contains the element, this tree is returned. This operation is O(H).
+     * @param data - element to be added
+     * @return the new version of the tree, or this tree if data is already present
+     * @throws NullPointerException if data is null
+     */
+    public PersistentBST<T> add(T data) {
+        if (data == null) throw new NullPointerException();
+        return version(add(data, key(data), root));
+    }
+
+    /*
+     * Returns the subtree rooted at node with data added, or node itself if data is present.
+     */
+    private Node<T> add(T data, long dataKey, Node<T> node) {
+        if (node == null) return new Node<T>(data, dataKey, null, null);
+        int comp = compare(data, dataKey, node);
+        if (comp < 0) {
+            Node<T> left = add(data, dataKey, node.left);
+            return left == node.left ? node : balance(node.data, node.key, left, node.right);
+        }
+        if (comp > 0) {
+            Node<T> right = add(data, dataKey, node.right);
+            return right == node.right ? node : balance(node.data, node.key, node.left, right);
+        }
+        return node;
+    }
+
+    /**
+     * Returns a version of this tree that does not contain the specified element. If this tree
+     * does not contain the element, this tree is returned. This operation is O(H).
+     * @param target - element to be removed
+     * @return the new version of the tree, or this tree if target is not present
+     * @throws NullPointerException if target is null
+     */
+    public PersistentBST<T> remove(T target) {
+        if (target == null) throw new NullPointerException();
+        return version(remove(target, key(target), root));
+    }
+
+    /*
+     * Returns the subtree rooted at node with target removed, or node itself if target is not
+     * present.
+     */
+    private Node<T> remove(T target, long targetKey, Node<T> node) {
+        if (node == null) return null;
+        int comp = compare(target, targetKey, node);
+        if (comp < 0) {
+            Node<T> left = remove(target, targetKey, node.left);
+            return left == node.left ? node : balance(node.data, node.key, left, node.right);
+        }
+        if (comp > 0) {
+            Node<T> right = remove(target, targetKey, node.right);
+            return right == node.right ? node : balance(node.data, node.key, node.left, right);
+        }
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+        //replaces the element of node with its predecessor
+        Node<T> predecessor = node.left;
+        while (predecessor.right != null) predecessor = predecessor.right;
+        return balance(predecessor.data, predecessor.key, removeLast(node.left), node.right);
+    }
+
+    /*
+     * Returns the subtree rooted at node without its last element.
+     */
+    private Node<T> removeLast(Node<T> node) {
+        if (node.right == null) return node.left;
+        return balance(node.data, node.key, node.left, removeLast(node.right));
+    }
+
+    /**
+     * Returns a version of this tree, which must be empty, holding the elements of the given list.
+     * The elements must be sorted in strictly ascending order, as for BST.addAllSorted, and the
+     * tree is built directly from the list. This operation is O(N).
+     * @param sorted - elements to be added in strictly ascending order
+     * @return the new version of the tree
+     * @throws IllegalStateException if this tree is not empty
+     * @throws IllegalArgumentException if the elements are not in strictly ascending order
+     * @throws NullPointerException if the list or any of its elements is null
+     */
+    public PersistentBST<T> addAllSorted(List<T> sorted) {
+        if (!isEmpty()) throw new IllegalStateException("Tree must be empty.");
+        long[] keys = new long[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            if (sorted.get(i) == null) throw new NullPointerException();
+            keys[i] = key(sorted.get(i));
+            //elements with smaller keys are smaller, so only equal keys need a comparison
+            if (i > 0 && (keys[i - 1] > keys[i] ||
+                    (keys[i - 1] == keys[i] && compare(sorted.get(i - 1), sorted.get(i)) >= 0)))
+                throw new IllegalArgumentException("Elements are not in strictly ascending order.");
+        }
+        return version(build(sorted, keys, 0, sorted.size()));
+    }
+
+    /*
+     * Builds a balanced subtree from the elements at positions from (inclusive) to to (exclusive)
+     * of a sorted list and returns its root.
+     */
+    private Node<T> build(List<T> sorted, long[] keys, int from, int to) {
+        if (from >= to) return null;
+        int mid = (from + to) >>> 1;
+        return new Node<T>(sorted.get(mid), keys[mid], build(sorted, keys, from, mid),
+                build(sorted, keys, mid + 1, to));
+    }
+
+    /**
+     * Returns true if this tree contains the specified element, compared in the same way as in
+     * add and remove. This operation is O(H).
+     * @param o - element to be checked for containment in this tree
+     * @return true if this tree contains the specified element
+     * @throws NullPointerException if o is null
+     */
+    public boolean contains(T o) {
+        if (o == null) throw new NullPointerException();
+        return find(o) != null;
+    }
+
+    /**
+     * Returns the element of this tree that is equal to the specified one, compared in the same
+     * way as in add and remove, e.g. to get the stored object from an equal one.
+     * This operation is O(H).
+     * @param o - element to be found
+     * @return the element of this tree equal to o, or null if there is none
+     * @throws NullPointerException if o is null
+     */
+    public T find(T o) {
+        if (o == null) throw new NullPointerException();
+        long oKey = key(o);
+        Node<T> node = root;
+        while (node != null) {
+            int comp = compare(o, oKey, node);
+            if (comp == 0) return node.data;
+            node = comp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Returns an iterator over the elements in this tree in ascending order. The iterator is lazy
+     * and uses O(H) memory, like the iterator of BST, and this version never changes while it is
+     * iterated.
+     * @return an iterator over the elements in this tree in ascending order
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new TreeIterator(null, Long.MIN_VALUE, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Returns an iterator over the elements that range from fromElement, inclusive, to toElement,
+     * inclusive, in ascending order. This operation is O(H) to create the iterator.
+     * @param fromElement - low endpoint (inclusive) of the range
+     * @param toElement - high endpoint (inclusive) of the range
+     * @return an iterator over the elements of this tree within the range
+     * @throws NullPointerException - if fromElement or toElement is null
+     * @throws IllegalArgumentException - if fromElement is greater than toElement
+     */
+    public Iterator<T> rangeIterator(T fromElement, T toElement) {
+        if (fromElement == null || toElement == null) throw new NullPointerException();
+        if (compare(fromElement, toElement) > 0) throw new IllegalArgumentException();
+        return new TreeIterator(fromElement, Long.MIN_VALUE, Long.MAX_VALUE, toElement);
+    }
+
+    /**
+     * Returns an iterator over the elements whose keys range from fromKey, inclusive, to toKey,
+     * inclusive, in ascending order. Only keys are compared. This operation is O(H) to create
+     * the iterator.
+     * @param fromKey - low endpoint (inclusive) of the keys
+     * @param toKey - high endpoint (inclusive) of the keys
+     * @return an iterator over the elements of this tree within the range of keys
+     * @throws IllegalStateException - if this tree does not have a key extractor
+     * @throws IllegalArgumentException - if fromKey is greater than toKey
+     */
+    public Iterator<T> keyRangeIterator(long fromKey, long toKey) {
+        if (key == null) throw new IllegalStateException("Tree does not have keys.");
+        if (fromKey > toKey) throw new IllegalArgumentException();
+        return new TreeIterator(null, fromKey, toKey, null);
+    }
+
+    /**
+     * Returns the number of elements that range from fromElement, inclusive, to toElement,
+     * inclusive, without visiting them. This operation is O(H).
+     * @param fromElement - low endpoint (inclusive) of the range
+     * @param toElement - high endpoint (inclusive) of the range
+     * @return the number of elements of this tree within the range
+     * @throws NullPointerException - if fromElement or toElement is null
+     * @throws IllegalArgumentException - if fromElement is greater than toElement
+     */
+    public int countRange(T fromElement, T toElement) {
+        if (fromElement == null || toElement == null) throw new NullPointerException();
+        if (compare(fromElement, toElement) > 0) throw new IllegalArgumentException();
+        return countBelow(toElement, true) - countBelow(fromElement, false);
+    }
+
+    /**
+     * Returns the number of elements whose keys range from fromKey, inclusive, to toKey,
+     * inclusive, without visiting them. This operation is O(H).
+     * @param fromKey - low endpoint (inclusive) of the keys
+     * @param toKey - high endpoint (inclusive) of the keys
+     * @return the number of elements of this tree within the range of keys
+     * @throws IllegalStateException - if this tree does not have a key extractor
+     * @throws IllegalArgumentException - if fromKey is greater than toKey
+     */
+    public int countKeyRange(long fromKey, long toKey) {
+        if (key == null) throw new IllegalStateException("Tree does not have keys.");
+        if (fromKey > toKey) throw new IllegalArgumentException();
+        return countBelow(toKey, true) - countBelow(fromKey, false);
+    }
+
+    /*
+     * Counts the elements that are less than element, or less than or equal to element if
+     * inclusive is true.
+     */
+    private int countBelow(T element, boolean inclusive) {
+        int result = 0;
+        long elementKey = key(element);
+        Node<T> node = root;
+        while (node != null) {
+            int comp = compare(element, elementKey, node);
+            if (comp < 0 || (comp == 0 && !inclusive)) node = node.left;
+            else {
+                result += count(node.left) + 1;
+                if (comp == 0) break;
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Counts the elements whose keys are less than bound, or less than or equal to bound if
+     * inclusive is true.
+     */
+    private int countBelow(long bound, boolean inclusive) {
+        int result = 0;
+        Node<T> node = root;
+        while (node != null) {
+            if (bound < node.key || (bound == node.key && !inclusive)) node = node.left;
+            else {
+                result += count(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the element at the given position in the ascending order of this tree.
+     * This operation is O(H).
+     * @param k - position of the element, from 0 to size()-1
+     * @return the k-th smallest element of this tree (counting from 0)
+     * @throws IndexOutOfBoundsException - if k is negative or not smaller than size()
+     */
+    public T select(int k) {
+        if (k < 0 || k >= size()) throw new IndexOutOfBoundsException("Invalid position: " + k);
+        Node<T> node = root;
+        while (true) {
+            int leftCount = count(node.left);
+            if (k < leftCount) node = node.left;
+            else if (k == leftCount) return node.data;
+            else {
+                k -= leftCount + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Returns the elements of this tree that are not in the given tree, in ascending order. Both
+     * trees are traversed in order at the same time, and a subtree that is shared by both (e.g.
+     * because one tree is a later version of the other) is skipped without being visited, since
+     * it holds the same elements in both. Comparing two versions of the same tree is therefore
+     * O(D log N) where D is the number of changes between them, and O(N) in the worst case.
+     * Both trees must use the same ordering.
+     * @param other - tree to be compared with
+     * @return list of the elements of this tree that are not in other, possibly empty
+     * @throws NullPointerException if other is null
+     */
+    public List<T> difference(PersistentBST<T> other) {
+        ArrayList<T> result = new ArrayList<T>();
+        ArrayDeque<Pending<T>> mine = new ArrayDeque<Pending<T>>();
+        ArrayDeque<Pending<T>> theirs = new ArrayDeque<Pending<T>>();
+        if (root != null) mine.push(new Pending<T>(root, true, leftmost(root)));
+        if (other.root != null) theirs.push(new Pending<T>(other.root, true, leftmost(other.root)));
+        while (!mine.isEmpty()) {
+            Pending<T> a = mine.peek();
+            Pending<T> b = theirs.peek();
+            if (b == null) {
+                //nothing left on the other side
+                if (a.whole) expand(mine);
+                else result.add(mine.pop().node.data);
+                continue;
+            }
+            if (a.whole && b.whole && a.node == b.node) {
+                mine.pop();
+                theirs.pop();
+                continue;
+            }
+            //compares the smallest elements still pending on each side
+            int comp = compare(a.first, b.first);
+            if (comp < 0) {
+                if (a.whole) expand(mine);
+                else result.add(mine.pop().node.data);
+            }
+            else if (comp > 0) {
+                if (b.whole) expand(theirs);
+                else theirs.pop();
+            }
+            else if (!a.whole && !b.whole) {
+                mine.pop();
+                theirs.pop();
+            }
+            //expands the larger subtree, so that shared subtrees end up on top of both sides
+            else if (a.whole && (!b.whole || a.node.count >= b.node.count)) expand(mine);
+            else expand(theirs);
+        }
+        return result;
+    }
+
+    /*
+     * Replaces the subtree on top of a traversal with its left subtree, its root alone and its
+     * right subtree, the left subtree on top.
+     */
+    private static <T> void expand(ArrayDeque<Pending<T>> traversal) {
+        Pending<T> top = traversal.pop();
+        Node<T> node = top.node;
+        if (node.right != null) traversal.push(new Pending<T>(node.right, true, leftmost(node.right)));
+        traversal.push(new Pending<T>(node, false, node));
+        if (node.left != null) traversal.push(new Pending<T>(node.left, true, top.first));
+    }
+
+    /*
+     * Returns the node holding the smallest element of the subtree rooted at node.
+     */
+    private static <T> Node<T> leftmost(Node<T> node) {
+        while (node.left != null) node = node.left;
+        return node;
+    }
+
+    /*
+     * Compares the elements of two nodes, on their keys first.
+     */
+    private int compare(Node<T> a, Node<T> b) {
+        if (key != null && a.key != b.key) return a.key < b.key ? -1 : 1;
+        return compare(a.data, b.data);
+    }
+
+    /*
+     * Part of an in-order traversal that has not been visited yet: either a whole subtree or the
+     * element of a single node, along with the node holding its smallest element.
+     */
+    private static final class Pending<T> {
+        private final Node<T> node;
+        private final boolean whole;
+        private final Node<T> first;
+
+        Pending(Node<T> node, boolean whole, Node<T> first) {
+            this.node = node;
+            this.whole = whole;
+            this.first = first;
+        }
+    }
+
+    /**
+     * Returns a string representation of this tree, in the same format as BST.toString.
+     * This operation is O(N).
+     * @return a string representation of this tree
+     */
+    @Override
+    public String toString() {
+        StringBuilder elements = new StringBuilder("[");
+        Iterator<T> t = iterator();
+        while (t.hasNext()) {
+            elements.append(String.valueOf(t.next()));
+            if (t.hasNext()) elements.append(", ");
+        }
+        return elements.append("]").toString();
+    }
+
+    /*
+     * Compares an element, whose key is given, with the element of node. The keys are compared
+     * first and the elements only if the keys are equal.
+     */
+    private int compare(T a, long aKey, Node<T> node) {
+        if (key != null && aKey != node.key) return aKey < node.key ? -1 : 1;
+        return compare(a, node.data);
+    }
+
+    /*
+     * Compares two elements using the comparator of this tree, or their natural ordering.
+     */
+    private int compare(T a, T b) {
+        if (comparator == null) return a.compareTo(b);
+        return comparator.compare(a, b);
+    }
+
+    /*
+     * Returns the key of an element, or zero if this tree does not have a key extractor.
+     */
+    private long key(T element) {
+        return key == null ? 0 : key.applyAsLong(element);
+    }
+
+    /*
+     * Returns the number of nodes in the subtree rooted at node.
+     */
+    private static int count(Node<?> node) {
+        return node == null ? 0 : node.count;
+    }
+
+    /*
+     * Returns the height of the subtree rooted at node.
+     */
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /*
+     * Returns a new node holding data over the given subtrees, rotated if the heights of the
+     * subtrees differ by more than one. The subtrees were balanced and their heights differ by at
+     * most two, as after a single change.
+     */
+    private static <T> Node<T> balance(T data, long key, Node<T> left, Node<T> right) {
+        if (height(left) > height(right) + 1) {
+            if (height(left.left) >= height(left.right))
+                return new Node<T>(left.data, left.key, left.left, new Node<T>(data, key, left.right, right));
+            Node<T> middle = left.right;
+            return new Node<T>(middle.data, middle.key, new Node<T>(left.data, left.key, left.left, middle.left),
+                    new Node<T>(data, key, middle.right, right));
+        }
+        if (height(right) > height(left) + 1) {
+            if (height(right.right) >= height(right.left))
+                return new Node<T>(right.data, right.key, new Node<T>(data, key, left, right.left), right.right);
+            Node<T> middle = right.left;
+            return new Node<T>(middle.data, middle.key, new Node<T>(data, key, left, middle.left),
+                    new Node<T>(right.data, right.key, middle.right, right.right));
+        }
+        return new Node<T>(data, key, left, right);
+    }
+
+    /*
+     * In-order iterator over the elements of this version that range from fromElement to
+     * toElement, or from fromKey to toKey. Null elements and the extreme keys mean that the
+     * iteration is not bounded on that side.
+     */
+    private class TreeIterator implements Iterator<T> {
+        //nodes on the path to the next element, the next element is at the top
+        private final ArrayDeque<Node<T>> path = new ArrayDeque<Node<T>>();
+        private final long toKey;
+        private final T toElement;
+
+        TreeIterator(T fromElement, long fromKey, long toKey, T toElement) {
+            this.toKey = toKey;
+            this.toElement = toElement;
+            long elementKey = fromElement == null ? 0 : key(fromElement);
+            Node<T> node = root;
+            while (node != null) {
+                int comp = fromElement != null ? compare(fromElement, elementKey, node) :
+                        fromKey == Long.MIN_VALUE ? -1 : Long.compare(fromKey, node.key);
+                if (comp <= 0) {
+                    path.push(node);
+                    node = node.left;
+                }
+                else node = node.right;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (path.isEmpty()) return false;
+            if (toElement == null) return path.peek().key <= toKey;
+            return compare(path.peek().data, toElement) <= 0;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Node<T> node = path.pop();
+            for (Node<T> n = node.right; n != null; n = n.left) {
+                path.push(n);
+            }
+            return node.data;
+        }
+    }
+
+    /*
+     * Immutable node of the tree.
+     */
+    private static final class Node<T> {
+        private final T data;
+        private final long key;       //key of data, zero if the tree does not have a key extractor
+        private final Node<T> left;
+        private final Node<T> right;
+        private final int height;     //height of the subtree rooted at this node
+        private final int count;      //number of nodes in the subtree rooted at this node
+
+        Node(T data, long key, Node<T> left, Node<T> right) {
+            this.data = data;
+            this.key = key;
+            this.left = left;
+            this.right = right;
+            height = Math.max(height(left), height(right)) + 1;
+            count = count(left) + count(right) + 1;
+        }
+    }
+}
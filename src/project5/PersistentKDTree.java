@@ -0,0 +1,245 @@
+package project5;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * PersistentKDTree class is an immutable variant of KDTree, used by ConcurrentMeteoriteData. Its
+ * nodes are never modified: add and remove leave this tree unchanged and return a new version of
+ * it, which copies the nodes on the path to the change and shares all other nodes with this
+ * version, so every version can be searched by any number of threads without locking.
+ * Points, partitioning, balancing and searches are the ones of KDTree, so nearest neighbour and
+ * radius queries return exactly the meteorites a full scan would; only the nodes differ. Since
+ * nodes cannot be marked as removed, removing a meteorite rebuilds the subtree of its node
+ * without it, which is O(log N) on average because most nodes are near the leaves. Insertions are
+ * balanced as in KDTree: when the path to the new leaf is too deep, the subtree at the highest
+ * unbalanced node on the path is rebuilt.
+ * Meteorites without a location are not stored in the tree.
+ *
+ * @author Jack
+ */
+public class PersistentKDTree {
+    private final PersistentNode root;
+
+    /**
+     * Constructs a new, empty tree.
+     */
+    public PersistentKDTree() {
+        root = null;
+    }
+
+    /**
+     * Constructs a balanced tree holding the given meteorites. Meteorites without a location are
+     * ignored. Operation is O(N log N).
+     * @param meteorites - Meteorite objects to be added
+     * @throws NullPointerException if meteorites or any of its elements is null
+     */
+    public PersistentKDTree(Collection<Meteorite> meteorites) throws NullPointerException {
+        ArrayList<KDTree.Point> points = new ArrayList<KDTree.Point>(meteorites.size());
+        for (Meteorite m : meteorites) {
+            if (m.getLocation() != null) points.add(new KDTree.Point(m));
+        }
+        root = build(points.toArray(new KDTree.Point[0]), 0, points.size());
+    }
+
+    /*
+     * Constructs a version of a tree with the given root.
+     */
+    private PersistentKDTree(PersistentNode root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the number of meteorites in this tree. Operation is O(1).
+     * @return the number of meteorites in this tree
+     */
+    public int size() {
+        return count(root);
+    }
+
+    /**
+     * Returns a version of this tree that also holds the given meteorite, or this tree if the
+     * meteorite has no location. The caller is responsible for not adding the same object twice.
+     * Operation is amortized O(log N).
+     * @param m - Meteorite object to be added
+     * @return the new version of the tree
+     * @throws NullPointerException if m is null
+     */
+    public PersistentKDTree add(Meteorite m) throws NullPointerException {
+        if (m.getLocation() == null) return this;
+        KDTree.Point point = new KDTree.Point(m);
+        if (root == null) return new PersistentKDTree(new PersistentNode(point, 0, null, null));
+
+        //walks down to the parent of the new leaf, remembering the path
+        ArrayList<PersistentNode> path = new ArrayList<PersistentNode>();
+        PersistentNode current = root;
+        while (current != null) {
+            path.add(current);
+            current = point.goesLeft(current) ? current.left : current.right;
+        }
+        PersistentNode parent = path.get(path.size() - 1);
+        PersistentNode subtree = new PersistentNode(point, (parent.axis + 1) % 3, null, null);
+        int top = path.size();
+
+        //rebuilds the subtree at the highest unbalanced node if the path is too deep
+        if (KDTree.tooDeep(path.size(), root.count + 1)) {
+            for (int i = 0; i < path.size(); i++) {
+                PersistentNode node = path.get(i);
+                int child = i + 1 < path.size() ? path.get(i + 1).count + 1 : 1;
+                if (KDTree.unbalanced(child, node.count + 1)) {
+                    ArrayList<KDTree.Point> points = new ArrayList<KDTree.Point>(node.count + 1);
+                    KDTree.collect(node, points);
+                    points.add(point);
+                    subtree = build(points.toArray(new KDTree.Point[0]), 0, points.size());
+                    top = i;
+                    break;
+                }
+            }
+        }
+
+        //copies the path above the new subtree
+        for (int i = top - 1; i >= 0; i--) {
+            PersistentNode node = path.get(i);
+            subtree = point.goesLeft(node) ? node.withChildren(subtree, node.right) :
+                    node.withChildren(node.left, subtree);
+        }
+        return new PersistentKDTree(subtree);
+    }
+
+    /**
+     * Returns a version of this tree that does not hold the given meteorite, or this tree if it
+     * does not hold it. The meteorite is found by identity, so m must be the object that was
+     * added. Operation is O(log N) on average.
+     * @param m - Meteorite object to be removed
+     * @return the new version of the tree
+     * @throws NullPointerException if m is null
+     */
+    public PersistentKDTree remove(Meteorite m) throws NullPointerException {
+        if (m.getLocation() == null) return this;
+        PersistentNode newRoot = remove(root, new KDTree.Point(m), m);
+        return newRoot == root ? this : new PersistentKDTree(newRoot);
+    }
+
+    /*
+     * Returns the subtree rooted at node without m, or node itself if m is not in it. point holds
+     * the coordinates of m. Points on a splitting plane may be on either side of it.
+     */
+    private static PersistentNode remove(PersistentNode node, KDTree.Point point, Meteorite m) {
+        if (node == null) return null;
+        if (node.point.meteorite == m) {
+            ArrayList<KDTree.Point> points = new ArrayList<KDTree.Point>(node.count - 1);
+            KDTree.collect(node.left, points);
+            KDTree.collect(node.right, points);
+            return build(points.toArray(new KDTree.Point[0]), 0, points.size());
+        }
+        double diff = point.coordinate(node.axis) - node.point.coordinate(node.axis);
+        if (diff <= 0) {
+            PersistentNode left = remove(node.left, point, m);
+            if (left != node.left) return node.withChildren(left, node.right);
+        }
+        if (diff >= 0) {
+            PersistentNode right = remove(node.right, point, m);
+            if (right != node.right) return node.withChildren(node.left, right);
+        }
+        return node;
+    }
+
+    /**
+     * Returns the meteorite closest to the given location, as KDTree.nearest(Location) would: if
+     * several meteorites are at the same distance, the first one in the natural ordering is
+     * returned. Operation is O(log N) for locations spread over the globe.
+     * @param loc - Location value to be compared
+     * @return Meteorite object with closest Location value to loc, or null if the tree is empty
+     * @throws IllegalArgumentException if loc is null
+     */
+    public Meteorite nearest(Location loc) throws IllegalArgumentException {
+        if (loc == null) throw new IllegalArgumentException("Invalid argument.");
+        return KDTree.nearest(root, loc);
+    }
+
+    /**
+     * Returns the meteorites closest to the given location, sorted by their distance from it, as
+     * KDTree.nearest(Location, int) would. Operation is O(k log k + log N) for locations spread
+     * over the globe.
+     * @param loc - Location value to be compared
+     * @param k - number of meteorites to be returned
+     * @return list of the k meteorites closest to loc, or all of them if the tree holds fewer
+     * than k meteorites
+     * @throws IllegalArgumentException if loc is null or k is under one
+     */
+    public List<Meteorite> nearest(Location loc, int k) throws IllegalArgumentException {
+        if (loc == null || k < 1) throw new IllegalArgumentException("Invalid arguments.");
+        return KDTree.nearest(root, loc, k);
+    }
+
+    /**
+     * Returns the meteorites within the given distance of the given location, sorted by their
+     * distance from it, as KDTree.within would. Operation is O(log N + K log K) for small radii,
+     * where K is the number of meteorites within the radius.
+     * @param loc - center of the circle
+     * @param radius - radius of the circle in kilometres
+     * @return list of the meteorites within radius of loc, possibly empty
+     * @throws IllegalArgumentException if loc is null or radius is negative or NaN
+     */
+    public List<Meteorite> within(Location loc, double radius) throws IllegalArgumentException {
+        if (loc == null || !(radius >= 0)) throw new IllegalArgumentException("Invalid arguments.");
+        return KDTree.within(root, loc, radius);
+    }
+
+    /*
+     * Builds a balanced tree from points[from] to points[to-1], as KDTree does.
+     */
+    private static PersistentNode build(KDTree.Point[] points, int from, int to) {
+        if (from >= to) return null;
+        int axis = KDTree.split(points, from, to);
+        int mid = (from + to) >>> 1;
+        return new PersistentNode(points[mid], axis, build(points, from, mid), build(points, mid + 1, to));
+    }
+
+    /*
+     * Returns the number of nodes in the subtree rooted at node.
+     */
+    private static int count(PersistentNode node) {
+        return node == null ? 0 : node.count;
+    }
+
+    /*
+     * Immutable node of the tree, which also holds the number of nodes in its subtree. Points are
+     * shared by all the nodes that hold the same meteorite in different versions of the tree.
+     */
+    private static final class PersistentNode extends KDTree.Node {
+        private final int count;
+        private final PersistentNode left;
+        private final PersistentNode right;
+
+        PersistentNode(KDTree.Point point, int axis, PersistentNode left, PersistentNode right) {
+            super(point, axis);
+            this.left = left;
+            this.right = right;
+            count = count(left) + count(right) + 1;
+        }
+
+        /*
+         * Returns a copy of this node with the given subtrees.
+         */
+        PersistentNode withChildren(PersistentNode left, PersistentNode right) {
+            return new PersistentNode(point, axis, left, right);
+        }
+
+        @Override
+        KDTree.Node left() {
+            return left;
+        }
+
+        @Override
+        KDTree.Node right() {
+            return right;
+        }
+
+        @Override
+        boolean removed() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package project5;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+/**
+ * QueryCache class keeps the results of recent getByMass, getByYear and getByLocation queries of a
+ * MeteoriteData collection, so that repeated queries are answered without searching the trees.
+ * Queries are keyed on their normalized parameters: a mass query is keyed on the range of masses
+ * it covers (so mass 1000 +/- 10 and mass 995 +/- 15 share an entry), a year query on the year and
+ * a location query on the latitude and longitude.
+ * The cache is bounded both by the number of entries and by the total number of meteorites held in
+ * cached results. When either limit is exceeded, the least recently used entries are evicted.
+ * When a meteorite is added to or removed from the collection, only the entries whose result may
+ * change are invalidated: the mass ranges that contain its mass, its year, and the locations for
+ * which it is (or may become) the closest meteorite.
+ * The cache counts hits, misses, evictions and invalidations.
+ *
+ * @author Jack
+ */
+public class QueryCache {
+    //kinds of cached queries
+    private static final int MASS = 0;
+    private static final int YEAR = 1;
+    private static final int LOCATION = 2;
+
+    //cached entries in access order, least recently used first
+    private final LinkedHashMap<Key, Entry> entries;
+    //maximum number of entries and of meteorites held in cached results
+    private final int maxEntries;
+    private final int maxMeteorites;
+    //number of meteorites currently held in cached results
+    private int meteorites;
+    //number of modifications of the collection, used to tell whether a copied result is current
+    private int modCount;
+
+    //statistics
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Constructs an empty cache with the given limits.
+     * @param maxEntries - maximum number of cached queries
+     * @param maxMeteorites - maximum number of meteorites held in all cached results together
+     * @throws IllegalArgumentException if any of the limits is under one
+     */
+    public QueryCache(int maxEntries, int maxMeteorites) throws IllegalArgumentException {
+        if (maxEntries < 1 || maxMeteorites < 1) throw new IllegalArgumentException("Invalid arguments.");
+        this.maxEntries = maxEntries;
+        this.maxMeteorites = maxMeteorites;
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the number of queries answered from the cache.
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of queries that were not found in the cache.
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries removed to make room for newer ones.
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries removed because the collection was modified.
+     * @return the number of invalidations
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Returns the number of cached queries.
+     * @return the number of entries in the cache
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all entries from the cache. The statistics are kept.
+     */
+    public void clear() {
+        entries.clear();
+        meteorites = 0;
+    }
+
+    /**
+     * toString method. Returns the statistics of the cache.
+     * @return String representation of the statistics of the cache
+     */
+    @Override
+    public String toString() {
+        return "entries: " + entries.size() + ", hits: " + hits + ", misses: " + misses +
+                ", evictions: " + evictions + ", invalidations: " + invalidations;
+    }
+
+    /*
+     * Returns the key of a mass query covering masses from low to high, inclusive.
+     */
+    static Key massKey(long low, long high) {
+        return new Key(MASS, low, high);
+    }
+
+    /*
+     * Returns the key of a year query.
+     */
+    static Key yearKey(int year) {
+        return new Key(YEAR, year, year);
+    }
+
+    /*
+     * Returns the key of a location query. Adding 0.0 turns -0.0 into 0.0, so that both values
+     * share an entry.
+     */
+    static Key locationKey(Location loc) {
+        return new Key(LOCATION, Double.doubleToLongBits(loc.getLatitude() + 0.0),
+                Double.doubleToLongBits(loc.getLongitude() + 0.0));
+    }
+
+    /*
+     * Returns the cached entry for key, or null if the query is not cached.
+     */
+    Entry get(Key key) {
+        Entry e = entries.get(key);
+        if (e == null) misses++;
+        else hits++;
+        return e;
+    }
+
+    /*
+     * Caches the result of a mass or year query and returns the view to be returned to the caller.
+     * The result is copied from the live view, unless it is too large to be cached, in which case
+     * the live view itself is returned.
+     */
+    MeteoriteView putRange(Key key, MeteoriteView live) {
+        int size = live.size();
+        if (size == 0) {
+            store(new Entry(key, new Meteorite[0], live, null, 0));
+            return null;
+        }
+        if (size >= maxMeteorites) return live;
+        Meteorite[] range = new Meteorite[size];
+        int i = 0;
+        for (Meteorite m : live) {
+            range[i++] = m;
+        }
+        Entry e = new Entry(key, range, live, null, 0);
+        store(e);
+        return e.view();
+    }
+
+    /*
+     * Caches the result of a location query.
+     */
+    void putClosest(Key key, Location loc, Meteorite closest) {
+        double distance = closest == null || closest.getLocation() == null ?
+                Double.POSITIVE_INFINITY : closest.getLocation().getDistance(loc);
+        store(new Entry(key, null, null, closest, distance));
+    }
+
+    /*
+     * Adds e to the cache and evicts the least recently used entries until the cache is within
+     * its limits again.
+     */
+    private void store(Entry e) {
+        Entry old = entries.put(e.key, e);
+        if (old != null) meteorites -= old.weight();
+        meteorites += e.weight();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || meteorites > maxMeteorites) {
+            meteorites -= eldest.next().weight();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /*
+     * Invalidates the entries whose result may change when m is added to (added is true) or
+     * removed from (added is false) the collection. Operation is O(E) where E is the number of
+     * entries.
+     */
+    void invalidate(Meteorite m, boolean added) {
+        modCount++;
+        if (entries.isEmpty()) return;
+        Location loc = m.getLocation();
+        Iterator<Entry> itr = entries.values().iterator();
+        while (itr.hasNext()) {
+            Entry e = itr.next();
+            Key k = e.key;
+            boolean stale;
+            if (k.kind == MASS) stale = m.getMass() >= k.a && m.getMass() <= k.b;
+            else if (k.kind == YEAR) stale = m.getYear() == k.a;
+            else if (!added) stale = m.equals(e.closest);
+            else if (loc == null) stale = false;
+            else if (e.closest == null) stale = true;
+            else {
+                //ties are broken by the natural ordering, so an equally close meteorite may win
+                double d = Location.getDistance(loc.getLatitude(), loc.getLongitude(),
+                        Double.longBitsToDouble(k.a), Double.longBitsToDouble(k.b));
+                stale = d <= e.distance;
+            }
+            if (stale) {
+                itr.remove();
+                meteorites -= e.weight();
+                invalidations++;
+            }
+        }
+    }
+
+    /*
+     * Normalized parameters of a query. For mass queries a and b are the lowest and the highest
+     * mass, for year queries both are the year, and for location queries they hold the bits of
+     * the latitude and the longitude.
+     */
+    static final class Key {
+        private final int kind;
+        private final long a;
+        private final long b;
+
+        private Key(int kind, long a, long b) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key k = (Key) obj;
+            return kind == k.kind && a == k.a && b == k.b;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * kind + Long.hashCode(a)) + Long.hashCode(b);
+        }
+    }
+
+    /*
+     * Cached result of a query. Range queries keep a copy of the matching meteorites along with
+     * the live view they were copied from; location queries keep the closest meteorite and its
+     * distance.
+     */
+    final class Entry {
+        private final Key key;
+        private final Meteorite[] range;
+        private final MeteoriteView live;
+        private final Meteorite closest;
+        private final double distance;
+
+        private Entry(Key key, Meteorite[] range, MeteoriteView live, Meteorite closest, double distance) {
+            this.key = key;
+            this.range = range;
+            this.live = live;
+            this.closest = closest;
+            this.distance = distance;
+        }
+
+        /*
+         * Returns the number of meteorites held by this entry, counting the entry itself.
+         */
+        private int weight() {
+            return range == null ? 1 : range.length + 1;
+        }
+
+        /*
+         * Returns the cached closest meteorite of a location query.
+         */
+        Meteorite closest() {
+            return closest;
+        }
+
+        /*
+         * Returns a view of the cached result of a range query, or null if there are no matches.
+         * The copy is current while the entry is cached. Until the collection is modified, the
+         * view iterates over the copy; afterwards it uses the live view, so it always reflects the
+         * current content of the collection. Like the iterators of the trees, the iterators over
+         * the copy are fail-fast.
+         */
+        MeteoriteView view() {
+            if (range.length == 0) return null;
+            int expectedModCount = modCount;
+            return new MeteoriteView() {
+                @Override
+                public int size() {
+                    return modCount == expectedModCount ? range.length : live.size();
+                }
+
+                @Override
+                public Iterator<Meteorite> iterator() {
+                    if (modCount != expectedModCount) return live.iterator();
+                    return new Iterator<Meteorite>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < range.length;
+                        }
+
+                        @Override
+                        public Meteorite next() {
+                            if (modCount != expectedModCount)
+                                throw new ConcurrentModificationException();
+                            if (next >= range.length) throw new NoSuchElementException();
+                            return range[next++];
+                        }
+                    };
+                }
+
+                @Override
+                public Spliterator<Meteorite> spliterator() {
+                    if (modCount != expectedModCount) return live.spliterator();
+                    return Spliterators.spliterator(range, Spliterator.ORDERED | Spliterator.NONNULL);
+                }
+            };
+        }
+    }
+}
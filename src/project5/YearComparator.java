@@ -13,6 +13,6 @@ public class YearComparator implements Comparator<Meteorite> {
         if (m1.getYear() == m2.getYear())
             return m1.compareTo(m2);
         else
-            return m1.getYear() - m2.getYear();
+            return Integer.compare(m1.getYear(), m2.getYear());
     }
 }
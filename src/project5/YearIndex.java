@@ -0,0 +1,225 @@
+package project5;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * YearIndex class is a direct-addressed index of the records of a packed collection by year. Years
+ * are small bounded integers (from 0 to 2020), so the index holds one bucket per year instead of
+ * sorting the records by year. Every bucket is a posting list of the numbers of the records that
+ * fell in that year, in increasing order, i.e., in the natural ordering of the meteorites. The
+ * lists are compressed: each record number is stored as its difference from the previous one, in
+ * a variable number of bytes (seven bits per byte, the high bit set on all bytes but the last).
+ * The index is stored in a single little-endian ByteBuffer, so it can live on the heap, in a
+ * direct buffer, or in a memory-mapped file:
+ * <pre>
+ *   2022 ints   number of records in the years before each year (the last one is the total)
+ *   2022 ints   offset of the posting list of each year within the postings (the last one is
+ *               the size of the postings)
+ *   postings    compressed posting lists, one after the other in order of year
+ * </pre>
+ * Looking up a year or counting the records of a year or of a range of years takes O(1), and
+ * iterating over the K records of a range of years takes O(K).
+ *
+ * @author Jack
+ */
+public class YearIndex {
+    //years covered by the index, as restricted by Meteorite.setYear
+    static final int YEARS = 2021;
+    //size of the two tables in front of the postings
+    private static final int TABLES = 2 * 4 * (YEARS + 1);
+
+    //tables and postings of the index
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructs the index of the given year column. Operation is O(N).
+     * @param years - years of the records, indexed by record number
+     * @param direct - true to store the index outside of the Java heap, in a direct buffer
+     * @throws IllegalArgumentException if a year is not within range 0 to 2020
+     */
+    public YearIndex(int[] years, boolean direct) throws IllegalArgumentException {
+        //counts the records of every year
+        int[] before = new int[YEARS + 1];
+        for (int year : years) {
+            if (year < 0 || year >= YEARS) throw new IllegalArgumentException("Invalid year: " + year);
+            before[year + 1]++;
+        }
+        for (int year = 0; year < YEARS; year++) {
+            before[year + 1] += before[year];
+        }
+
+        //lists the records of every year, then compresses the lists
+        int[] records = new int[years.length];
+        int[] next = before.clone();
+        for (int record = 0; record < years.length; record++) {
+            records[next[years[record]]++] = record;
+        }
+        int[] offsets = new int[YEARS + 1];
+        long bytes = 0;
+        for (int year = 0; year < YEARS; year++) {
+            offsets[year] = (int) bytes;
+            int previous = -1;
+            for (int i = before[year]; i < before[year + 1]; i++) {
+                bytes += varIntSize(records[i] - previous);
+                previous = records[i];
+            }
+            if (TABLES + bytes > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many records.");
+        }
+        offsets[YEARS] = (int) bytes;
+
+        buffer = (direct ? ByteBuffer.allocateDirect(TABLES + (int) bytes) :
+                ByteBuffer.allocate(TABLES + (int) bytes)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int count : before) {
+            buffer.putInt(count);
+        }
+        for (int offset : offsets) {
+            buffer.putInt(offset);
+        }
+        for (int year = 0; year < YEARS; year++) {
+            int previous = -1;
+            for (int i = before[year]; i < before[year + 1]; i++) {
+                putVarInt(buffer, records[i] - previous);
+                previous = records[i];
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Constructs an index backed by a buffer holding an index in the format described above, e.g.
+     * a section of a memory-mapped file. The buffer is not copied.
+     * @param buffer - buffer holding the index, from its position to its limit
+     * @throws IllegalArgumentException if the buffer is too small to hold an index
+     */
+    YearIndex(ByteBuffer buffer) throws IllegalArgumentException {
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (this.buffer.capacity() < TABLES ||
+                TABLES + (long) offset(YEARS) != this.buffer.capacity())
+            throw new IllegalArgumentException("Not a valid year index.");
+    }
+
+    /**
+     * Returns a read-only view of the buffer holding this index, e.g. to write it to a file.
+     * @return buffer holding the index
+     */
+    ByteBuffer buffer() {
+        return buffer.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the number of records of the given year. Operation is O(1).
+     * @param year - year, from 0 to 2020
+     * @return the number of records of the year
+     * @throws IllegalArgumentException if year is not within range 0 to 2020
+     */
+    public int count(int year) throws IllegalArgumentException {
+        return count(year, year);
+    }
+
+    /**
+     * Returns the number of records from fromYear to toYear, inclusive. Operation is O(1).
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @return the number of records of the years within the range
+     * @throws IllegalArgumentException if the years are not within range 0 to 2020 or fromYear
+     * is greater than toYear
+     */
+    public int count(int fromYear, int toYear) throws IllegalArgumentException {
+        check(fromYear, toYear);
+        return before(toYear + 1) - before(fromYear);
+    }
+
+    /**
+     * Returns an iterator over the numbers of the records from fromYear to toYear, inclusive,
+     * ordered by year and, within a year, by record number. Operation is O(1) to create the
+     * iterator and O(K) to iterate over the K records.
+     * @param fromYear - first year of the range
+     * @param toYear - last year of the range
+     * @return iterator over the record numbers
+     * @throws IllegalArgumentException if the years are not within range 0 to 2020 or fromYear
+     * is greater than toYear
+     */
+    public PrimitiveIterator.OfInt records(int fromYear, int toYear) throws IllegalArgumentException {
+        check(fromYear, toYear);
+        return new PrimitiveIterator.OfInt() {
+            //position of the next byte, end of the postings of the range
+            private int position = TABLES + offset(fromYear);
+            private final int last = TABLES + offset(toYear + 1);
+            //current year, end of its posting list and last record returned from it
+            private int year = fromYear;
+            private int end = TABLES + offset(fromYear + 1);
+            private int previous = -1;
+
+            @Override
+            public boolean hasNext() {
+                return position < last;
+            }
+
+            @Override
+            public int nextInt() {
+                if (position >= last) throw new NoSuchElementException();
+                //moves on to the posting list of the next non-empty year
+                while (position >= end) {
+                    year++;
+                    end = TABLES + offset(year + 1);
+                    previous = -1;
+                }
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(position++);
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous += delta;
+                return previous;
+            }
+        };
+    }
+
+    /*
+     * Returns the number of records of the years before year.
+     */
+    private int before(int year) {
+        return buffer.getInt(4 * year);
+    }
+
+    /*
+     * Returns the offset of the posting list of year within the postings.
+     */
+    private int offset(int year) {
+        return buffer.getInt(4 * (YEARS + 1) + 4 * year);
+    }
+
+    /*
+     * Checks that a range of years is valid.
+     */
+    private static void check(int fromYear, int toYear) {
+        if (fromYear < 0 || toYear >= YEARS || fromYear > toYear)
+            throw new IllegalArgumentException("Invalid arguments.");
+    }
+
+    /*
+     * Returns the number of bytes needed to store value, which is not negative.
+     */
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) size++;
+        return size;
+    }
+
+    /*
+     * Stores value, which is not negative, in as many bytes as needed.
+     */
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
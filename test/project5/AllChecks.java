@@ -0,0 +1,37 @@
+package project5;
+
+import java.io.IOException;
+
+/**
+ * AllChecks class runs every behavior check of this directory on the same file. The program is
+ * executed with the name of a CSV file of meteorites as its single (optional) command line
+ * argument, defaulting to src/Meteorite_Test.csv.
+ *
+ * @author Jack
+ */
+public class AllChecks {
+    /**
+     * Runs all checks, stopping at the first failure.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        ReaderCheck.main(args);
+        ParallelReadCheck.main(args);
+        BSTCheck.main(args);
+        MeteoriteDataCheck.main(args);
+        PackedCheck.main(args);
+        QueryCacheCheck.main(args);
+        KDTreeCheck.main(args);
+        DistanceKernelCheck.main(args);
+        DensityGridCheck.main(args);
+        YearIndexCheck.main(args);
+        KeyCheck.main(args);
+        QueryCheck.main(args);
+        ConcurrentCheck.main(args);
+        SnapshotCheck.main(args);
+        SpliteratorCheck.main(args);
+        PagingCheck.main(args);
+        TopKCheck.main(args);
+    }
+}
@@ -0,0 +1,266 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * BSTCheck class checks the BST class against a TreeSet holding the same elements, after
+ * sequences of adds and removes in ascending, descending and random order, with the natural
+ * ordering, with a comparator and with a key extractor whose keys are often equal. It also
+ * checks that the tree stays balanced (its height is within the AVL bound) and that the mass
+ * tree of MeteoriteData is balanced after loading a file sorted by mass. The lazy iterators are
+ * compared with the subsets of the TreeSet, and checked to be fail-fast. The order statistics
+ * (rank, select, countRange, countKeyRange and quantile) are compared with positions in the
+ * sorted list of the elements.
+ *
+ * @author Jack
+ */
+public class BSTCheck {
+    //number of elements of the generated trees
+    private static final int N = 3000;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        checkBalance(null, null);
+        checkBalance(Collections.reverseOrder(), null);
+        checkBalance(null, 3);
+        checkSortedFile(args);
+        checkIterators();
+        checkOrderStatistics();
+        System.out.println("BSTCheck: OK");
+    }
+
+    /*
+     * Adds and removes elements in several orders and compares the tree with a TreeSet after
+     * every phase. A non-null shift gives the tree the key element >> shift, so that many
+     * elements share a key.
+     */
+    private static void checkBalance(Comparator<Integer> comparator, Integer shift) {
+        Random random = new Random(5);
+        String what = comparator == null ? (shift == null ? "natural" : "keyed") : "comparator";
+        List<Integer> ascending = new ArrayList<Integer>();
+        for (int i = 0; i < N; i++) ascending.add(i);
+        List<Integer> descending = new ArrayList<Integer>(ascending);
+        Collections.reverse(descending);
+        List<Integer> shuffled = new ArrayList<Integer>(ascending);
+        Collections.shuffle(shuffled, random);
+
+        for (List<Integer> order : List.of(ascending, descending, shuffled)) {
+            BST<Integer> tree = newTree(comparator, shift);
+            TreeSet<Integer> expected = new TreeSet<Integer>(comparator);
+            for (Integer i : order) {
+                Checks.check(tree.add(i) == expected.add(i), what + ": add " + i);
+                Checks.check(!tree.add(i), what + ": duplicate add " + i);
+            }
+            compare(tree, expected, what + " after adds");
+            //removes a random half, some of them twice, and absent elements
+            for (int i = 0; i < N; i++) {
+                int e = random.nextInt(N + N / 10) - N / 20;
+                Checks.check(tree.remove(e) == expected.remove(e), what + ": remove " + e);
+            }
+            compare(tree, expected, what + " after removes");
+            //removes everything in the order of the adds
+            for (Integer i : order) {
+                Checks.check(tree.remove(i) == expected.remove(i), what + ": remove " + i);
+                if (expected.size() % 500 == 0) compare(tree, expected, what + " while emptying");
+            }
+            Checks.check(tree.isEmpty() && tree.size() == 0, what + ": empty tree");
+        }
+    }
+
+    /*
+     * Returns an empty tree with the given comparator, keyed by element >> shift if shift is
+     * not null.
+     */
+    private static BST<Integer> newTree(Comparator<Integer> comparator, Integer shift) {
+        if (shift == null) return comparator == null ? new BST<Integer>() : new BST<Integer>(comparator);
+        return new BST<Integer>(comparator, e -> e >> shift);
+    }
+
+    /*
+     * Checks that the tree holds the elements of expected, in the same order, and is balanced.
+     */
+    private static void compare(BST<Integer> tree, TreeSet<Integer> expected, String what) {
+        Checks.check(tree.size() == expected.size(), what + ": size");
+        Checks.check(new ArrayList<Integer>(expected).equals(list(tree)), what + ": elements");
+        for (Integer e : expected) {
+            Checks.check(tree.contains(e), what + ": contains " + e);
+        }
+        Checks.check(!tree.contains(-1) && !tree.contains(N), what + ": contains absent");
+        int height = height(tree);
+        Checks.check(height <= maxHeight(tree.size()), what + ": height " + height + " of " + tree.size() + " elements");
+    }
+
+    /*
+     * Checks that the mass tree built from a file sorted by mass, one meteorite at a time, is
+     * balanced.
+     */
+    private static void checkSortedFile(String[] args) throws IOException {
+        List<Meteorite> byMass = Checks.meteorites(args, 6, N);
+        byMass.sort(new MassComparator());
+        BST<Meteorite> tree = new BST<Meteorite>(new MassComparator());
+        TreeSet<Meteorite> expected = new TreeSet<Meteorite>(new MassComparator());
+        for (Meteorite m : byMass) {
+            Checks.check(tree.add(m) == expected.add(m), "mass tree: add " + m);
+        }
+        Checks.check(height(tree) <= maxHeight(tree.size()), "mass tree height " + height(tree));
+        Checks.same(new ArrayList<Meteorite>(expected), Checks.list(tree), "mass tree");
+    }
+
+    /*
+     * Compares iterator, rangeIterator and keyRangeIterator with the subsets of a TreeSet for
+     * random ranges (including empty ones and ones that go past the ends), and checks that the
+     * iterators stop with NoSuchElementException and fail after a modification of the tree.
+     */
+    private static void checkIterators() {
+        Random random = new Random(7);
+        BST<Integer> tree = new BST<Integer>(null, e -> e >> 2);
+        TreeSet<Integer> expected = new TreeSet<Integer>();
+        Checks.check(!tree.iterator().hasNext(), "iterator of an empty tree");
+        for (int i = 0; i < N; i++) {
+            int e = random.nextInt(4 * N);
+            tree.add(e);
+            expected.add(e);
+        }
+        Checks.check(expected.toString().equals(tree.toString()), "toString");
+        Checks.check(new ArrayList<Integer>(expected).equals(list(tree.iterator())), "iterator");
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(4 * N + 20) - 10;
+            int to = from + random.nextInt(i % 2 == 0 ? 20 : 4 * N);
+            Checks.check(new ArrayList<Integer>(expected.subSet(from, true, to, true))
+                    .equals(list(tree.rangeIterator(from, to))), "rangeIterator " + from + ".." + to);
+            //keys are element >> 2, so the key range covers the elements of 4 from to 4 to + 3
+            Checks.check(new ArrayList<Integer>(expected.subSet(4 * from, true, 4 * to + 3, true))
+                    .equals(list(tree.keyRangeIterator(from, to))), "keyRangeIterator " + from + ".." + to);
+        }
+
+        Iterator<Integer> it = tree.iterator();
+        while (it.hasNext()) {
+            Checks.check(it.hasNext(), "hasNext does not move the iterator");
+            it.next();
+        }
+        try {
+            it.next();
+            Checks.check(false, "next after the last element");
+        } catch (NoSuchElementException e) {
+            //expected
+        }
+        Iterator<Integer> added = tree.iterator();
+        added.next();
+        tree.add(-5);
+        Iterator<Integer> removed = tree.rangeIterator(0, 4 * N);
+        removed.next();
+        tree.remove(-5);
+        for (Iterator<Integer> stale : List.of(added, removed)) {
+            try {
+                stale.next();
+                Checks.check(false, "next after a modification");
+            } catch (ConcurrentModificationException e) {
+                //expected
+            }
+        }
+        Iterator<Integer> unchanged = tree.iterator();
+        tree.add(expected.first());         //not a modification, the element is present
+        tree.remove(-1);
+        Checks.check(unchanged.next().equals(expected.first()), "next after failed add and remove");
+    }
+
+    /*
+     * Compares the order statistics of a tree with positions in the sorted list of its elements,
+     * after adds and after removes.
+     */
+    private static void checkOrderStatistics() {
+        Random random = new Random(8);
+        BST<Integer> tree = new BST<Integer>(null, e -> e >> 2);
+        TreeSet<Integer> set = new TreeSet<Integer>();
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < N; i++) {
+                int e = random.nextInt(4 * N);
+                if (round == 0) {
+                    tree.add(e);
+                    set.add(e);
+                }
+                else if (i % 2 == 0) {
+                    tree.remove(e);
+                    set.remove(e);
+                }
+            }
+            List<Integer> sorted = new ArrayList<Integer>(set);
+            for (int k = 0; k < sorted.size(); k++) {
+                Checks.check(tree.select(k).equals(sorted.get(k)), "select " + k);
+                Checks.check(tree.rank(sorted.get(k)) == k, "rank " + sorted.get(k));
+            }
+            for (int i = 0; i < 1000; i++) {
+                int e = random.nextInt(4 * N + 20) - 10;
+                Checks.check(tree.rank(e) == set.headSet(e, false).size(), "rank of " + e);
+                int to = e + random.nextInt(i % 2 == 0 ? 20 : 4 * N);
+                Checks.check(tree.countRange(e, to) == set.subSet(e, true, to, true).size(),
+                        "countRange " + e + ".." + to);
+                Checks.check(tree.countKeyRange(e, to) == set.subSet(4 * e, true, 4 * to + 3, true).size(),
+                        "countKeyRange " + e + ".." + to);
+                double q = i == 0 ? 0 : i == 1 ? 1 : random.nextDouble();
+                int k = Math.max((int) Math.ceil(q * sorted.size()) - 1, 0);
+                Checks.check(tree.quantile(q).equals(sorted.get(k)), "quantile " + q);
+            }
+            for (int k : new int[]{-1, sorted.size()}) {
+                try {
+                    tree.select(k);
+                    Checks.check(false, "select " + k + " of " + sorted.size());
+                } catch (IndexOutOfBoundsException e) {
+                    //expected
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns the elements returned by the iterator.
+     */
+    private static <T> List<T> list(Iterator<T> it) {
+        List<T> list = new ArrayList<T>();
+        while (it.hasNext()) list.add(it.next());
+        return list;
+    }
+
+    /*
+     * Returns the elements of the tree in iteration order.
+     */
+    private static <T extends Comparable<T>> List<T> list(BST<T> tree) {
+        List<T> list = new ArrayList<T>();
+        for (T e : tree) list.add(e);
+        return list;
+    }
+
+    /*
+     * Returns the height of the tree (0 if it is empty), from the depth of the deepest line of
+     * toStringTree: a node at depth d is printed after 3(d - 1) spaces and "|--".
+     */
+    private static <T extends Comparable<T>> int height(BST<T> tree) {
+        int height = 0;
+        for (String line : tree.toStringTree().split("\n")) {
+            if (line.endsWith("->")) continue;      //empty subtree
+            int depth = line.indexOf("|--") < 0 ? 0 : line.indexOf("|--") / 3 + 1;
+            height = Math.max(height, depth + 1);
+        }
+        return height;
+    }
+
+    /*
+     * Returns the largest height of an AVL tree of n elements, 1.44 log2(n + 2).
+     */
+    private static int maxHeight(int n) {
+        return (int) (1.4405 * Math.log(n + 2) / Math.log(2));
+    }
+}
@@ -0,0 +1,179 @@
+package project5;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks class holds the helpers shared by the behavior checks of this directory. Every check is
+ * a program, like FallenStars, that is run with the name of a CSV file of meteorites as its
+ * single (optional) command line argument, defaulting to src/Meteorite_Test.csv. A check compares
+ * the results of the collections and indexes with a brute-force scan of the same data, on the
+ * file and on random meteorites, and stops with an AssertionError at the first difference.
+ * AllChecks runs all of them.
+ *
+ * @author Jack
+ */
+class Checks {
+    //file used when no file is given on the command line
+    private static final String DEFAULT_FILE = "src/Meteorite_Test.csv";
+    //characters of the random names, all lowercase: names that differ only in case are equal
+    //but not consistently ordered, so they are only generated by the checks that need them
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    private Checks() {
+    }
+
+    /**
+     * Throws an AssertionError with the given message if ok is false.
+     * @param ok - result of the check
+     * @param what - description of the check
+     * @throws AssertionError if ok is false
+     */
+    static void check(boolean ok, String what) throws AssertionError {
+        if (!ok) throw new AssertionError(what);
+    }
+
+    /**
+     * Throws an AssertionError if the two lists do not hold the same meteorites, with the same
+     * values, in the same order.
+     * @param expected - result of the brute-force scan
+     * @param actual - result of the checked query
+     * @param what - description of the query
+     * @throws AssertionError if the lists differ
+     */
+    static void same(List<Meteorite> expected, List<Meteorite> actual, String what) throws AssertionError {
+        if (expected.size() != actual.size())
+            throw new AssertionError(what + ": expected " + expected.size() + " meteorites, found " + actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            if (!describe(expected.get(i)).equals(describe(actual.get(i))))
+                throw new AssertionError(what + ": at " + i + " expected " + describe(expected.get(i)) +
+                        ", found " + describe(actual.get(i)));
+        }
+    }
+
+    /**
+     * Returns the list of the meteorites returned by the given Iterable, or an empty list if it
+     * is null (queries return null when nothing matches).
+     * @param meteorites - meteorites to be listed
+     * @return list of the meteorites in iteration order
+     */
+    static List<Meteorite> list(Iterable<Meteorite> meteorites) {
+        ArrayList<Meteorite> list = new ArrayList<Meteorite>();
+        if (meteorites != null) {
+            for (Meteorite m : meteorites) {
+                list.add(m);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns all values of the given meteorite, with the exact coordinates of its location.
+     * @param m - meteorite to be described
+     * @return String with the name, id, mass, year and location of m
+     */
+    static String describe(Meteorite m) {
+        if (m == null) return "null";
+        Location loc = m.getLocation();
+        return m.getName() + "|" + m.getId() + "|" + m.getMass() + "|" + m.getYear() + "|" +
+                (loc == null ? "-" : loc.getLatitude() + "," + loc.getLongitude());
+    }
+
+    /**
+     * Returns the meteorites of the given list without the ones equal to an earlier one, i.e.,
+     * the meteorites that a collection keeps when they are added in the order of the list.
+     * @param meteorites - meteorites to be filtered
+     * @return list of the first of every group of equal meteorites, in the order of the list
+     */
+    static List<Meteorite> distinct(List<Meteorite> meteorites) {
+        return new ArrayList<Meteorite>(new LinkedHashSet<Meteorite>(meteorites));
+    }
+
+    /**
+     * Returns the file given on the command line, or the default test file.
+     * @param args - command line arguments of the check
+     * @return the CSV file to be checked
+     */
+    static File file(String[] args) {
+        return new File(args.length > 0 ? args[0] : DEFAULT_FILE);
+    }
+
+    /**
+     * Reads the meteorites of the file given on the command line, or of the default test file.
+     * @param args - command line arguments of the check
+     * @return MeteoriteData collection read by MeteoriteReader
+     * @throws IOException if the file cannot be read
+     */
+    static MeteoriteData load(String[] args) throws IOException {
+        return MeteoriteReader.read(file(args));
+    }
+
+    /**
+     * Returns the meteorites of the file given on the command line, or of the default test file,
+     * followed by n random meteorites: the data set shared by most of the checks.
+     * @param args - command line arguments of the check
+     * @param seed - seed of the random meteorites
+     * @param n - number of random meteorites
+     * @return list of the meteorites of the file and n random meteorites
+     * @throws IOException if the file cannot be read
+     */
+    static List<Meteorite> meteorites(String[] args, long seed, int n) throws IOException {
+        List<Meteorite> meteorites = list(load(args));
+        meteorites.addAll(randomMeteorites(seed, n));
+        return meteorites;
+    }
+
+    /**
+     * Returns n random meteorites. Names are short, so some of them repeat, with different ids
+     * or (rarely) with the same id, in which case the meteorites are equal. Masses, years and
+     * locations repeat often, about one meteorite in four has no mass and one in eight no year,
+     * one in twenty has no location and the coordinates include the poles and the antimeridian.
+     * @param seed - seed of the random values
+     * @param n - number of meteorites
+     * @return list of n random meteorites
+     */
+    static List<Meteorite> randomMeteorites(long seed, int n) {
+        Random random = new Random(seed);
+        ArrayList<Meteorite> list = new ArrayList<Meteorite>(n);
+        for (int i = 0; i < n; i++) {
+            StringBuilder name = new StringBuilder();
+            int length = 1 + random.nextInt(4);
+            for (int j = 0; j < length; j++) {
+                name.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            }
+            Meteorite m = new Meteorite(name.toString(), 1 + random.nextInt(5 * n));
+            m.setMass(random.nextInt(4) == 0 ? 0 : random.nextInt(random.nextBoolean() ? 100 : 100000));
+            m.setYear(random.nextInt(8) == 0 ? 0 : 1800 + random.nextInt(221));
+            if (random.nextInt(20) != 0) {
+                double lat = random.nextInt(50) == 0 ? (random.nextBoolean() ? 90 : -90) : random.nextDouble() * 180 - 90;
+                double lon = random.nextInt(50) == 0 ? (random.nextBoolean() ? 180 : -180) : random.nextDouble() * 360 - 180;
+                m.setLocation(new Location(lat, lon));
+            }
+            list.add(m);
+        }
+        return list;
+    }
+
+    /**
+     * Throws an AssertionError if one of the given calls does not throw an
+     * IllegalArgumentException, i.e., accepts invalid arguments.
+     * @param what - description of the calls
+     * @param calls - calls with invalid arguments
+     * @throws AssertionError if a call returns normally
+     */
+    static void rejects(String what, Runnable... calls) throws AssertionError {
+        for (int i = 0; i < calls.length; i++) {
+            try {
+                calls[i].run();
+            } catch (IllegalArgumentException e) {
+                //expected
+                continue;
+            }
+            throw new AssertionError(what + ": call " + i + " accepted invalid arguments");
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ConcurrentCheck class checks ConcurrentMeteoriteData and its spatial index, PersistentKDTree.
+ * The versions of the tree are compared with scans of the meteorites they held, after random
+ * adds and removes that rebuild some of their subtrees, and old versions are checked to be
+ * unchanged by later ones. The collection is compared with a MeteoriteData holding the same
+ * meteorites, after being built at once (also from names that differ only in case) and after
+ * random adds, removes and batches. Finally readers iterate over the collection while a writer
+ * adds batches, and must always see whole batches.
+ *
+ * @author Jack
+ */
+public class ConcurrentCheck {
+    //numbers of neighbours of the k nearest neighbours queries
+    private static final int[] NEIGHBOURS = {1, 2, 7, 40, 300};
+    //radii of the radius queries, in kilometres
+    private static final double[] RADII = {0, 1, 50, 500, 3000, 21000};
+    //number of meteorites added at once by the writer of the concurrent phase
+    private static final int BATCH = 50;
+    //number of threads reading the collection during the concurrent phase
+    private static final int READERS = 3;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        List<Meteorite> meteorites = KDTreeCheck.meteorites(args);
+        checkVersions(meteorites);
+        checkQueries(meteorites);
+        checkCases(meteorites);
+        checkConcurrent(meteorites);
+        System.out.println("ConcurrentCheck: OK");
+    }
+
+    /*
+     * Compares versions of PersistentKDTree with scans of the meteorites they hold, after
+     * building and after random adds and removes, including versions older than the last one.
+     */
+    private static void checkVersions(List<Meteorite> meteorites) {
+        Random random = new Random(30);
+        List<Location> queries = KDTreeCheck.queries(meteorites, random);
+        PersistentKDTree built = new PersistentKDTree(meteorites);
+        Checks.check(built.size() == KDTreeCheck.located(meteorites).size(), "built: size");
+        compare(built, meteorites, queries, "built");
+
+        List<PersistentKDTree> versions = new ArrayList<PersistentKDTree>();
+        List<List<Meteorite>> contents = new ArrayList<List<Meteorite>>();
+        PersistentKDTree tree = new PersistentKDTree();
+        Set<Meteorite> stored = Collections.newSetFromMap(new IdentityHashMap<Meteorite, Boolean>());
+        for (int i = 0; i < 3 * meteorites.size(); i++) {
+            Meteorite m = meteorites.get(random.nextInt(meteorites.size()));
+            PersistentKDTree next;
+            if (stored.remove(m)) {
+                next = tree.remove(m);
+                Checks.check(next != tree && next.remove(m) == next, "remove " + m);
+            }
+            else {
+                next = tree.add(m);
+                Checks.check((next == tree) == (m.getLocation() == null), "add " + m);
+                if (m.getLocation() != null) stored.add(m);
+            }
+            Checks.check(next.size() == stored.size(), "size after " + i + " changes");
+            tree = next;
+            if (i % 3000 == 0) {
+                versions.add(tree);
+                contents.add(new ArrayList<Meteorite>(stored));
+            }
+        }
+        versions.add(tree);
+        contents.add(new ArrayList<Meteorite>(stored));
+        for (int v = 0; v < versions.size(); v++) {
+            Checks.check(versions.get(v).size() == contents.get(v).size(), "version " + v + ": size");
+            compare(versions.get(v), contents.get(v), queries.subList(0, 100), "version " + v);
+        }
+
+        PersistentKDTree empty = new PersistentKDTree();
+        Checks.check(empty.size() == 0 && empty.nearest(new Location(0, 0)) == null &&
+                empty.within(new Location(0, 0), 21000).isEmpty(), "empty tree");
+        Checks.rejects("invalid arguments", () -> built.nearest(null), () -> built.nearest(null, 3),
+                () -> built.nearest(new Location(0, 0), 0), () -> built.within(null, 5),
+                () -> built.within(new Location(0, 0), -1), () -> built.within(new Location(0, 0), Double.NaN));
+    }
+
+    /*
+     * Compares the nearest meteorites and the meteorites within a radius found by the tree with
+     * scans of the meteorites.
+     */
+    private static void compare(PersistentKDTree tree, List<Meteorite> meteorites, List<Location> queries,
+                                String what) {
+        List<Meteorite> natural = KDTreeCheck.located(meteorites);
+        natural.sort(null);
+        for (int i = 0; i < queries.size(); i++) {
+            Location loc = queries.get(i);
+            String where = loc.getLatitude() + " " + loc.getLongitude();
+            Checks.check(MeteoriteDataCheck.nearest(natural, loc) == tree.nearest(loc), what + ": nearest " + where);
+            double radius = RADII[i % RADII.length];
+            Checks.same(KDTreeCheck.within(natural, loc, radius), tree.within(loc, radius),
+                    what + ": within " + radius + " of " + where);
+            int k = NEIGHBOURS[i % NEIGHBOURS.length];
+            List<Meteorite> all = KDTreeCheck.within(natural, loc, Double.POSITIVE_INFINITY);
+            Checks.same(all.subList(0, Math.min(k, all.size())), tree.nearest(loc, k),
+                    what + ": " + k + " nearest " + where);
+        }
+    }
+
+    /*
+     * Compares the collection with a MeteoriteData holding the same meteorites, after building
+     * both at once and after random adds, removes and batches of adds.
+     */
+    private static void checkQueries(List<Meteorite> meteorites) {
+        Random random = new Random(31);
+        MeteoriteData data = new MeteoriteData(meteorites);
+        compare(new ConcurrentMeteoriteData(meteorites), data, random, "built");
+        compare(new ConcurrentMeteoriteData(data), data, random, "copied");
+        compare(new ConcurrentMeteoriteData(), new MeteoriteData(), random, "empty");
+
+        ConcurrentMeteoriteData concurrent = new ConcurrentMeteoriteData();
+        data = new MeteoriteData();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < meteorites.size(); i++) {
+                Meteorite m = meteorites.get(random.nextInt(meteorites.size()));
+                if (random.nextInt(3) != 0) Checks.check(concurrent.add(m) == data.add(m), "add " + m);
+                else Checks.check(concurrent.remove(m) == data.remove(m), "remove " + m);
+                Checks.check(concurrent.contains(m) == data.contains(m), "contains " + m);
+            }
+            List<Meteorite> batch = new ArrayList<Meteorite>();
+            for (int i = 0; i < 500; i++) batch.add(meteorites.get(random.nextInt(meteorites.size())));
+            int added = 0;
+            for (Meteorite m : batch) {
+                if (data.add(m)) added++;
+            }
+            Checks.check(concurrent.addAll(batch) == added, "addAll");
+            compare(concurrent, data, random, "after changes " + round);
+        }
+        List<Meteorite> invalid = new ArrayList<Meteorite>(meteorites.subList(0, 10));
+        invalid.add(null);
+        try {
+            new ConcurrentMeteoriteData().addAll(invalid);
+            Checks.check(false, "addAll with null");
+        } catch (NullPointerException e) {
+            //expected
+        }
+        int size = concurrent.size();
+        try {
+            concurrent.addAll(invalid);
+            Checks.check(false, "addAll with null");
+        } catch (NullPointerException e) {
+            Checks.check(concurrent.size() == size, "addAll with null added meteorites");
+        }
+    }
+
+    /*
+     * Checks that building the collection at once from meteorites whose names differ only in
+     * case gives the same collection as adding them one by one.
+     */
+    private static void checkCases(List<Meteorite> meteorites) {
+        Random random = new Random(32);
+        List<Meteorite> cased = new ArrayList<Meteorite>(meteorites);
+        String[] names = {"Allende", "ALLENDE", "allende", "AllEnde", "Allende"};
+        for (int i = 0; i < 200; i++) {
+            Meteorite m = new Meteorite(names[random.nextInt(names.length)], 1 + random.nextInt(50));
+            m.setMass(random.nextInt(1000));
+            m.setYear(1969);
+            m.setLocation(new Location(26.96667, -105.31667));
+            cased.add(random.nextInt(cased.size()), m);
+        }
+        ConcurrentMeteoriteData bulk = new ConcurrentMeteoriteData(cased);
+        ConcurrentMeteoriteData added = new ConcurrentMeteoriteData();
+        for (Meteorite m : cased) added.add(m);
+        Checks.check(bulk.size() == added.size(), "cased: size");
+        Checks.same(Checks.list(added), Checks.list(bulk), "cased: natural order");
+        Checks.same(Checks.list(added.getByMass(1, Integer.MAX_VALUE)),
+                Checks.list(bulk.getByMass(1, Integer.MAX_VALUE)), "cased: mass order");
+        Checks.same(Checks.list(added.getByYear(0, 2020)), Checks.list(bulk.getByYear(0, 2020)), "cased: year order");
+    }
+
+    /*
+     * Compares all queries of the collection with the ones of data.
+     */
+    private static void compare(ConcurrentMeteoriteData concurrent, MeteoriteData data, Random random, String what) {
+        List<Meteorite> natural = Checks.list(data);
+        Checks.check(concurrent.size() == data.size(), what + ": size");
+        Checks.same(natural, Checks.list(concurrent), what + ": iterator");
+        Checks.check(data.toString().equals(concurrent.toString()), what + ": toString");
+        for (int i = 0; i < 200; i++) {
+            int mass = i < 3 ? i : random.nextInt(110000);
+            int delta = i % 7 == 0 ? 0 : i % 11 == 0 ? Integer.MAX_VALUE : random.nextInt(i % 2 == 0 ? 50 : 20000);
+            Checks.same(Checks.list(data.getByMass(mass, delta)), Checks.list(concurrent.getByMass(mass, delta)),
+                    what + ": getByMass " + mass + " " + delta);
+            Checks.check(data.countByMass(mass, delta) == concurrent.countByMass(mass, delta),
+                    what + ": countByMass " + mass + " " + delta);
+            int year = i % 13 == 0 ? 0 : 1780 + random.nextInt(241);
+            Checks.same(Checks.list(data.getByYear(year)), Checks.list(concurrent.getByYear(year)),
+                    what + ": getByYear " + year);
+            Checks.check(data.countByYear(year) == concurrent.countByYear(year), what + ": countByYear " + year);
+            int toYear = Math.min(2020, year + random.nextInt(i % 3 == 0 ? 3 : 300));
+            Checks.same(Checks.list(data.getByYear(year, toYear)), Checks.list(concurrent.getByYear(year, toYear)),
+                    what + ": getByYear " + year + ".." + toYear);
+            Checks.check(data.countByYear(year, toYear) == concurrent.countByYear(year, toYear),
+                    what + ": countByYear " + year + ".." + toYear);
+
+            Location loc = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            Meteorite at = natural.isEmpty() || i % 4 != 0 ? null : natural.get(random.nextInt(natural.size()));
+            if (at != null && at.getLocation() != null) loc = at.getLocation();
+            String where = loc.getLatitude() + " " + loc.getLongitude();
+            Checks.check(Checks.describe(data.getByLocation(loc)).equals(Checks.describe(concurrent.getByLocation(loc))),
+                    what + ": getByLocation " + where);
+            int k = NEIGHBOURS[i % NEIGHBOURS.length];
+            Checks.same(Checks.list(data.getNearest(loc, k)), Checks.list(concurrent.getNearest(loc, k)),
+                    what + ": getNearest " + k + " " + where);
+            double radius = RADII[i % RADII.length];
+            Checks.same(Checks.list(data.getByDistance(loc, radius)), Checks.list(concurrent.getByDistance(loc, radius)),
+                    what + ": getByDistance " + radius + " " + where);
+        }
+    }
+
+    /*
+     * Iterates over the collection in several threads while a writer adds the meteorites in
+     * batches, and checks that every iteration sees whole batches.
+     */
+    private static void checkConcurrent(List<Meteorite> meteorites) {
+        ConcurrentMeteoriteData concurrent = new ConcurrentMeteoriteData();
+        int batches = meteorites.size() / BATCH;
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread writer = new Thread(() -> {
+            for (int b = 0; b < batches; b++) {
+                concurrent.addAll(meteorites.subList(b * BATCH, (b + 1) * BATCH));
+            }
+        });
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(new Thread(() -> {
+                try {
+                    while (writer.isAlive()) {
+                        int count = Checks.list(concurrent).size();
+                        Checks.check(count % BATCH == 0, "concurrent: iteration saw " + count + " meteorites");
+                        Checks.check(concurrent.size() % BATCH == 0, "concurrent: size");
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        writer.start();
+        for (Thread reader : readers) reader.start();
+        try {
+            writer.join();
+            for (Thread reader : readers) reader.join();
+        } catch (InterruptedException e) {
+            throw new AssertionError("concurrent: interrupted", e);
+        }
+        if (failure.get() != null) throw new AssertionError("concurrent: reader failed", failure.get());
+        Checks.check(concurrent.size() == batches * BATCH, "concurrent: size after the writer");
+        List<Meteorite> expected = new ArrayList<Meteorite>(meteorites.subList(0, batches * BATCH));
+        expected.sort(null);
+        Checks.same(expected, Checks.list(concurrent), "concurrent: natural order");
+    }
+}
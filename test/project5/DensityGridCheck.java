@@ -0,0 +1,155 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DensityGridCheck class checks the cells of DensityGrid against a scan of the meteorites that
+ * assigns every meteorite to the cell whose south-west corner is the closest one below and to the
+ * left of its location. Grids are aggregated from enough meteorites to be split between
+ * fork-join tasks, refined with add, restricted to ranges of years, and computed by
+ * MeteoriteData.getDensity, with resolutions that do and do not divide 180 degrees. A grid close
+ * to the limit of 2^24 cells is aggregated from several times as many meteorites as a fork-join
+ * task takes, and its non-empty cells are compared with the scan.
+ *
+ * @author Jack
+ */
+public class DensityGridCheck {
+    //number of random meteorites added to the ones of the file, more than a fork-join task takes
+    private static final int N = 40000;
+    //sizes of the cells in degrees
+    private static final double[] RESOLUTIONS = {0.25, 1, 7, 45, 180};
+    //size of the cells of the finest grid, which has 2880 rows and 5760 columns
+    private static final double FINEST = 0.0625;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        List<Meteorite> meteorites = Checks.meteorites(args, 22, N);
+        meteorites = Checks.distinct(meteorites);
+        MeteoriteData data = new MeteoriteData(meteorites);
+        int half = meteorites.size() / 2;
+
+        for (double resolution : RESOLUTIONS) {
+            DensityGrid all = new DensityGrid(resolution);
+            all.addAll(meteorites);
+            compare(all, meteorites, 0, 2020, "addAll " + resolution);
+            compare(data.getDensity(resolution), meteorites, 0, 2020, "getDensity " + resolution);
+
+            //aggregates half of the meteorites in parallel and refines the grid with the others
+            DensityGrid refined = new DensityGrid(resolution, 1900, 1999);
+            refined.addAll(meteorites.subList(0, half));
+            for (Meteorite m : meteorites.subList(half, meteorites.size())) {
+                boolean counted = m.getLocation() != null && m.getYear() >= 1900 && m.getYear() <= 1999;
+                Checks.check(refined.add(m) == counted, "add " + m);
+            }
+            compare(refined, meteorites, 1900, 1999, "refined " + resolution);
+            compare(data.getDensity(resolution, 1950, 1950), meteorites, 1950, 1950, "getDensity 1950 " + resolution);
+        }
+
+        checkFinest(meteorites);
+
+        DensityGrid grid = new DensityGrid(1);
+        for (int[] cell : new int[][]{{-1, 0}, {0, -1}, {180, 0}, {0, 360}}) {
+            try {
+                grid.getCount(cell[0], cell[1]);
+                Checks.check(false, "cell " + cell[0] + ", " + cell[1]);
+            } catch (IndexOutOfBoundsException e) {
+                //expected
+            }
+        }
+        Checks.rejects("invalid arguments", () -> new DensityGrid(0), () -> new DensityGrid(-1),
+                () -> new DensityGrid(181), () -> new DensityGrid(Double.NaN), () -> new DensityGrid(0.01),
+                () -> new DensityGrid(1, 2000, 1999), () -> data.getDensity(1, 2000, 2021));
+        System.out.println("DensityGridCheck: OK");
+    }
+
+    /*
+     * Aggregates the finest grid from the meteorites repeated several times, with other ids, and
+     * compares its non-empty cells with a scan.
+     */
+    private static void checkFinest(List<Meteorite> meteorites) {
+        List<Meteorite> repeated = new ArrayList<Meteorite>();
+        for (int copy = 0; copy < 4; copy++) {
+            for (Meteorite m : meteorites) {
+                Meteorite c = new Meteorite(m.getName(), m.getId() + copy * 1000000);
+                c.setMass(m.getMass());
+                c.setYear(m.getYear());
+                c.setLocation(m.getLocation());
+                repeated.add(c);
+            }
+        }
+        DensityGrid grid = new DensityGrid(FINEST);
+        grid.addAll(repeated);
+        Checks.check(grid.getRows() == 2880 && grid.getColumns() == 5760, "finest: size");
+
+        repeated.sort(null);
+        Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+        Map<Integer, Long> masses = new HashMap<Integer, Long>();
+        Map<Integer, Meteorite> heaviest = new HashMap<Integer, Meteorite>();
+        for (Meteorite m : repeated) {
+            if (m.getLocation() == null) continue;
+            int row = Math.min(2879, (int) Math.floor((m.getLocation().getLatitude() + 90) / FINEST));
+            int column = Math.min(5759, (int) Math.floor((m.getLocation().getLongitude() + 180) / FINEST));
+            int cell = row * 5760 + column;
+            counts.merge(cell, 1, Integer::sum);
+            masses.merge(cell, (long) m.getMass(), Long::sum);
+            Meteorite h = heaviest.get(cell);
+            if (h == null || m.getMass() > h.getMass()) heaviest.put(cell, m);
+        }
+        for (int cell : counts.keySet()) {
+            int row = cell / 5760;
+            int column = cell % 5760;
+            String where = "finest: cell " + row + ", " + column;
+            Checks.check(grid.getCount(row, column) == counts.get(cell), where + " count");
+            Checks.check(grid.getTotalMass(row, column) == masses.get(cell), where + " mass");
+            Checks.check(Checks.describe(heaviest.get(cell)).equals(Checks.describe(grid.getHeaviest(row, column))),
+                    where + " heaviest");
+        }
+        Checks.check(grid.toString().split("\n").length == counts.size(), "finest: non-empty cells");
+    }
+
+    /*
+     * Compares every cell of grid with a scan of the meteorites that fell from fromYear to
+     * toYear.
+     */
+    private static void compare(DensityGrid grid, List<Meteorite> meteorites, int fromYear, int toYear, String what) {
+        double resolution = grid.getResolution();
+        int rows = (int) Math.ceil(180 / resolution);
+        int columns = (int) Math.ceil(360 / resolution);
+        Checks.check(grid.getRows() == rows && grid.getColumns() == columns, what + ": size");
+        int[] counts = new int[rows * columns];
+        long[] masses = new long[rows * columns];
+        Meteorite[] heaviest = new Meteorite[rows * columns];
+        List<Meteorite> counted = new ArrayList<Meteorite>();
+        for (Meteorite m : meteorites) {
+            if (m.getLocation() != null && m.getYear() >= fromYear && m.getYear() <= toYear) counted.add(m);
+        }
+        counted.sort(null);
+        for (Meteorite m : counted) {
+            //the north pole and the antimeridian at 180 degrees are in the last row and column
+            int row = Math.min(rows - 1, (int) Math.floor((m.getLocation().getLatitude() + 90) / resolution));
+            int column = Math.min(columns - 1, (int) Math.floor((m.getLocation().getLongitude() + 180) / resolution));
+            int cell = row * columns + column;
+            counts[cell]++;
+            masses[cell] += m.getMass();
+            if (heaviest[cell] == null || m.getMass() > heaviest[cell].getMass()) heaviest[cell] = m;
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int cell = row * columns + column;
+                String where = what + ": cell " + row + ", " + column;
+                Checks.check(grid.getCount(row, column) == counts[cell], where + " count");
+                Checks.check(grid.getTotalMass(row, column) == masses[cell], where + " mass");
+                Checks.check(Checks.describe(heaviest[cell]).equals(Checks.describe(grid.getHeaviest(row, column))),
+                        where + " heaviest");
+            }
+        }
+    }
+}
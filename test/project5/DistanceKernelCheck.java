@@ -0,0 +1,113 @@
+package project5;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * DistanceKernelCheck class checks the scans of DistanceKernel against scans comparing
+ * Location.getDistance values, on the locations of the file and on random locations that include
+ * missing ones, repeated ones, the poles, the antimeridian and clusters of locations a few
+ * millimetres apart, where the chords and the haversine distances round differently.
+ *
+ * @author Jack
+ */
+public class DistanceKernelCheck {
+    //number of random locations
+    private static final int N = 5000;
+    //radii of the radius queries, in kilometres, up to more than half the circumference
+    private static final double[] RADII = {0, 1e-6, 0.5, 50, 800, 21000};
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(21);
+        MeteoriteData data = Checks.load(args);
+        double[] latitudes = new double[data.size()];
+        double[] longitudes = new double[data.size()];
+        int n = 0;
+        for (Meteorite m : data) {
+            latitudes[n] = m.getLocation() == null ? Double.NaN : m.getLocation().getLatitude();
+            longitudes[n++] = m.getLocation() == null ? Double.NaN : m.getLocation().getLongitude();
+        }
+        compare(latitudes, longitudes, random, "file");
+
+        latitudes = new double[N];
+        longitudes = new double[N];
+        for (int i = 0; i < N; i++) {
+            if (i % 5 == 0 && i > 0) {
+                //a location a few millimetres from an earlier one, or the same one
+                int j = random.nextInt(i);
+                latitudes[i] = Math.max(-90, Math.min(90, latitudes[j] + (random.nextInt(3) - 1) * 1e-8));
+                longitudes[i] = Math.max(-180, Math.min(180, longitudes[j] + (random.nextInt(3) - 1) * 1e-8));
+            }
+            else if (i % 20 == 1) {
+                latitudes[i] = Double.NaN;
+                longitudes[i] = Double.NaN;
+            }
+            else {
+                latitudes[i] = i % 50 == 2 ? (random.nextBoolean() ? 90 : -90) : random.nextDouble() * 180 - 90;
+                longitudes[i] = i % 50 == 3 ? (random.nextBoolean() ? 180 : -180) : random.nextDouble() * 360 - 180;
+            }
+        }
+        compare(latitudes, longitudes, random, "random");
+
+        DistanceKernel empty = new DistanceKernel(new double[0], new double[0]);
+        Checks.check(empty.size() == 0 && empty.nearest(0, 0) == -1 && empty.within(0, 0, 100).length == 0,
+                "empty kernel");
+        DistanceKernel missing = new DistanceKernel(new double[]{Double.NaN}, new double[]{Double.NaN});
+        Checks.check(missing.nearest(0, 0) == -1 && missing.within(0, 0, 21000).length == 0, "missing locations");
+        Checks.rejects("arrays of different lengths", () -> new DistanceKernel(new double[2], new double[3]));
+        System.out.println("DistanceKernelCheck: OK");
+    }
+
+    /*
+     * Compares nearest and within of a kernel over the given locations with scans, for queries
+     * at random locations, at the poles and the antimeridian, and at or next to the locations.
+     */
+    private static void compare(double[] latitudes, double[] longitudes, Random random, String what) {
+        DistanceKernel kernel = new DistanceKernel(latitudes, longitudes);
+        Checks.check(kernel.size() == latitudes.length, what + ": size");
+        for (int q = 0; q < 600; q++) {
+            double lat;
+            double lon;
+            int j = random.nextInt(latitudes.length);
+            if (q % 3 == 0 && !Double.isNaN(latitudes[j])) {
+                lat = Math.max(-90, Math.min(90, latitudes[j] + (q % 2) * (random.nextDouble() - 0.5) * 1e-8));
+                lon = Math.max(-180, Math.min(180, longitudes[j] + (q % 2) * (random.nextDouble() - 0.5) * 1e-8));
+            }
+            else {
+                lat = q % 10 == 1 ? (random.nextBoolean() ? 90 : -90) : random.nextDouble() * 180 - 90;
+                lon = q % 10 == 2 ? (random.nextBoolean() ? 180 : -180) : random.nextDouble() * 360 - 180;
+            }
+            String where = what + " " + lat + " " + lon;
+
+            int closest = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < latitudes.length; i++) {
+                if (Double.isNaN(latitudes[i])) continue;
+                double d = Location.getDistance(latitudes[i], longitudes[i], lat, lon);
+                if (d < best) {
+                    best = d;
+                    closest = i;
+                }
+            }
+            Checks.check(kernel.nearest(lat, lon) == closest, "nearest " + where);
+
+            double radius = RADII[q % RADII.length];
+            //a radius equal to a distance, so that the comparison is decided by rounding
+            if (q % 7 == 0 && closest >= 0) radius = best;
+            int[] within = new int[latitudes.length];
+            int count = 0;
+            for (int i = 0; i < latitudes.length; i++) {
+                if (!Double.isNaN(latitudes[i]) &&
+                        Location.getDistance(latitudes[i], longitudes[i], lat, lon) <= radius) within[count++] = i;
+            }
+            Checks.check(Arrays.equals(Arrays.copyOf(within, count), kernel.within(lat, lon, radius)),
+                    "within " + radius + " of " + where);
+        }
+    }
+}
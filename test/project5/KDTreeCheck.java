@@ -0,0 +1,231 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * KDTreeCheck class checks the spatial index of MeteoriteData against scans of the meteorites it
+ * holds: the meteorites of the file followed by random ones, many of which share a location so
+ * that ties are broken by the natural ordering. The tree is checked after being built at once,
+ * and after random adds and removes that rebuild some of its subtrees. Query locations include
+ * the poles, the antimeridian and the locations of the meteorites themselves. Radius queries are
+ * compared with the meteorites within the radius sorted by distance and natural order, and k
+ * nearest neighbours queries with the first k of all meteorites in that order. Batches of
+ * nearest neighbour queries, large enough to be split between threads, are compared with scans
+ * for every location of the batch, on the tree and through MeteoriteData.
+ *
+ * @author Jack
+ */
+public class KDTreeCheck {
+    //number of random meteorites added to the ones of the file
+    private static final int N = 4000;
+    //radii of the radius queries, in kilometres, up to more than half the circumference
+    private static final double[] RADII = {0, 1, 50, 500, 3000, 21000};
+    //numbers of neighbours of the k nearest neighbours queries
+    private static final int[] NEIGHBOURS = {1, 2, 7, 40, 300};
+    //number of locations of a batch of nearest neighbour queries
+    private static final int BATCH = 5000;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        List<Meteorite> meteorites = meteorites(args);
+        Random random = new Random(18);
+        List<Location> queries = queries(meteorites, random);
+
+        KDTree built = new KDTree(meteorites);
+        Checks.check(built.size() == located(meteorites).size(), "size");
+        compare(built, meteorites, queries, "built");
+        checkBatch(built, new MeteoriteData(meteorites), meteorites, queries, random);
+
+        KDTree tree = new KDTree();
+        List<Meteorite> stored = new ArrayList<Meteorite>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < meteorites.size(); i++) {
+                Meteorite m = meteorites.get(random.nextInt(meteorites.size()));
+                if (containsObject(stored, m)) {
+                    Checks.check(tree.remove(m), "remove " + m);
+                    removeObject(stored, m);
+                }
+                else {
+                    Checks.check(tree.add(m) == (m.getLocation() != null), "add " + m);
+                    if (m.getLocation() != null) stored.add(m);
+                }
+                Checks.check(tree.size() == stored.size(), "size after " + i + " changes");
+            }
+            compare(tree, stored, queries.subList(0, 300), "after changes " + round);
+        }
+        for (Meteorite m : new ArrayList<Meteorite>(stored)) {
+            Checks.check(tree.remove(m) && !tree.remove(m), "remove all " + m);
+        }
+        Checks.check(tree.size() == 0 && tree.nearest(new Location(0, 0)) == null, "empty tree");
+        Checks.rejects("empty tree", () -> tree.nearest((Location) null), () -> tree.within(new Location(0, 0), -1),
+                () -> tree.within(new Location(0, 0), Double.NaN));
+        System.out.println("KDTreeCheck: OK");
+    }
+
+    /*
+     * Returns the meteorites of the file followed by distinct random ones, a third of which are
+     * at one of a few shared locations. The list holds no two equal meteorites.
+     */
+    static List<Meteorite> meteorites(String[] args) throws IOException {
+        List<Meteorite> meteorites = Checks.list(Checks.load(args));
+        Random random = new Random(19);
+        Location[] shared = new Location[40];
+        for (int i = 0; i < shared.length; i++) {
+            shared[i] = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+        }
+        for (Meteorite m : Checks.randomMeteorites(20, N)) {
+            if (m.getLocation() != null && random.nextInt(3) == 0)
+                m.setLocation(shared[random.nextInt(shared.length)]);
+            meteorites.add(m);
+        }
+        return Checks.distinct(meteorites);
+    }
+
+    /*
+     * Returns query locations: random ones, the poles, points on the antimeridian and the
+     * locations of some of the meteorites.
+     */
+    static List<Location> queries(List<Meteorite> meteorites, Random random) {
+        List<Location> queries = new ArrayList<Location>();
+        for (int i = 0; i < 400; i++) {
+            if (i % 4 == 0) {
+                Meteorite m = meteorites.get(random.nextInt(meteorites.size()));
+                if (m.getLocation() != null) {
+                    queries.add(m.getLocation());
+                    continue;
+                }
+            }
+            double lat = i % 10 == 1 ? (random.nextBoolean() ? 90 : -90) : random.nextDouble() * 180 - 90;
+            double lon = i % 10 == 2 ? (random.nextBoolean() ? 180 : -180) :
+                    i % 10 == 3 ? 179.999 + random.nextDouble() / 1000 : random.nextDouble() * 360 - 180;
+            queries.add(new Location(lat, lon));
+        }
+        return queries;
+    }
+
+    /*
+     * Compares the nearest meteorites and the meteorites within a radius found by the tree with
+     * scans of the meteorites.
+     */
+    private static void compare(KDTree tree, List<Meteorite> meteorites, List<Location> queries, String what) {
+        List<Meteorite> natural = located(meteorites);
+        natural.sort(null);
+        for (int i = 0; i < queries.size(); i++) {
+            Location loc = queries.get(i);
+            String where = loc.getLatitude() + " " + loc.getLongitude();
+            Checks.check(MeteoriteDataCheck.nearest(natural, loc) == tree.nearest(loc), what + ": nearest " + where);
+            double radius = RADII[i % RADII.length];
+            Checks.same(within(natural, loc, radius), tree.within(loc, radius),
+                    what + ": within " + radius + " of " + where);
+            int k = NEIGHBOURS[i % NEIGHBOURS.length];
+            List<Meteorite> all = within(natural, loc, Double.POSITIVE_INFINITY);
+            Checks.same(all.subList(0, Math.min(k, all.size())), tree.nearest(loc, k),
+                    what + ": " + k + " nearest " + where);
+        }
+    }
+
+    /*
+     * Compares batches of nearest neighbour queries of the tree and of data with scans.
+     */
+    private static void checkBatch(KDTree tree, MeteoriteData data, List<Meteorite> meteorites,
+                                   List<Location> queries, Random random) {
+        List<Meteorite> natural = located(meteorites);
+        natural.sort(null);
+        Location[] batch = new Location[BATCH];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = i % 2 == 0 ? queries.get(random.nextInt(queries.size())) :
+                    new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+        }
+        Meteorite[] found = tree.nearest(batch);
+        Meteorite[] answered = data.getByLocation(batch);
+        Checks.check(found.length == batch.length && answered.length == batch.length, "batch: length");
+        for (int i = 0; i < batch.length; i++) {
+            Meteorite expected = MeteoriteDataCheck.nearest(natural, batch[i]);
+            String where = batch[i].getLatitude() + " " + batch[i].getLongitude();
+            Checks.check(expected == found[i], "batch: nearest " + i + " " + where);
+            Checks.check(Checks.describe(expected).equals(Checks.describe(answered[i])),
+                    "batch: getByLocation " + i + " " + where);
+        }
+        Checks.check(new KDTree().nearest(batch)[0] == null && tree.nearest(new Location[0]).length == 0,
+                "batch: empty");
+
+        for (int i = 0; i < 50; i++) {
+            Location loc = queries.get(i);
+            int k = NEIGHBOURS[i % NEIGHBOURS.length];
+            List<Meteorite> all = within(natural, loc, Double.POSITIVE_INFINITY);
+            Checks.same(all.subList(0, Math.min(k, all.size())), Checks.list(data.getNearest(loc, k)),
+                    "getNearest " + k + " " + loc.getLatitude() + " " + loc.getLongitude());
+        }
+        Checks.check(new MeteoriteData().getNearest(new Location(0, 0), 3) == null,
+                "getNearest of an empty collection");
+        Checks.rejects("invalid arguments", () -> tree.nearest(new Location(0, 0), 0),
+                () -> tree.nearest((Location[]) null), () -> tree.nearest(new Location[]{null}),
+                () -> data.getNearest(null, 3), () -> data.getByLocation((Location[]) null));
+    }
+
+    /**
+     * Returns the meteorites within radius kilometres of loc, sorted by distance and, at the same
+     * distance, in natural order. Also used by PackedCheck.
+     * @param meteorites - meteorites to be scanned
+     * @param loc - center of the search
+     * @param radius - maximum distance from loc in kilometres
+     * @return list of the meteorites within radius of loc
+     */
+    static List<Meteorite> within(List<Meteorite> meteorites, Location loc, double radius) {
+        List<Meteorite> found = new ArrayList<Meteorite>();
+        for (Meteorite m : meteorites) {
+            if (m.getLocation() != null && distance(m, loc) <= radius) found.add(m);
+        }
+        found.sort(Comparator.comparingDouble((Meteorite m) -> distance(m, loc)).thenComparing(m -> m));
+        return found;
+    }
+
+    /*
+     * Returns the distance between m and loc, with the arguments in the order of the indexes.
+     */
+    private static double distance(Meteorite m, Location loc) {
+        return Location.getDistance(m.getLocation().getLatitude(), m.getLocation().getLongitude(),
+                loc.getLatitude(), loc.getLongitude());
+    }
+
+    /*
+     * Returns the meteorites that have a location.
+     */
+    static List<Meteorite> located(List<Meteorite> meteorites) {
+        List<Meteorite> located = new ArrayList<Meteorite>();
+        for (Meteorite m : meteorites) {
+            if (m.getLocation() != null) located.add(m);
+        }
+        return located;
+    }
+
+    /*
+     * Returns true if the list holds the given object.
+     */
+    private static boolean containsObject(List<Meteorite> list, Meteorite m) {
+        for (Meteorite e : list) {
+            if (e == m) return true;
+        }
+        return false;
+    }
+
+    /*
+     * Removes the given object from the list.
+     */
+    private static void removeObject(List<Meteorite> list, Meteorite m) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == m) {
+                list.remove(i);
+                return;
+            }
+        }
+    }
+}
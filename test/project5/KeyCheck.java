@@ -0,0 +1,123 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * KeyCheck class checks that the primitive keys the trees compare first are consistent with
+ * their comparators: for every pair of meteorites, a smaller name key means a smaller meteorite
+ * in natural order and a smaller mass key means a smaller meteorite for MassComparator. The names
+ * mix both cases, digits, punctuation, letters whose case folding is unusual, characters too
+ * large for a key and surrogate pairs. MeteoriteData is then checked to keep such meteorites in
+ * the orders of the comparators, and to find them, after adds and removes.
+ *
+ * @author Jack
+ */
+public class KeyCheck {
+    //characters of the names: letters whose case folding differs from toLowerCase (dotted and
+    //dotless i, long s, Kelvin sign, sharp s), a fullwidth letter too large for a key and a
+    //surrogate pair
+    private static final String[] CHARACTERS = {"a", "A", "b", "B", "i", "I", "s", "S", "k", "K",
+            "z", "Z", "0", "9", " ", "-", "(", "~", "é", "É", "ß", "İ", "ı",
+            "ſ", "K", "東", "Ａ", "😀"};
+    //number of generated names
+    private static final int N = 1500;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(24);
+        List<Meteorite> meteorites = new ArrayList<Meteorite>();
+        List<Meteorite> file = Checks.list(Checks.load(args));
+        for (int i = 0; i < 300 && i < file.size(); i++) {
+            meteorites.add(file.get(random.nextInt(file.size())));
+        }
+        for (int i = 0; i < N; i++) {
+            StringBuilder name = new StringBuilder();
+            int length = 1 + random.nextInt(7);
+            for (int j = 0; j < length; j++) {
+                name.append(CHARACTERS[random.nextInt(CHARACTERS.length)]);
+            }
+            Meteorite m = new Meteorite(name.toString(), 1 + random.nextInt(3));
+            //masses include unknown ones and the largest ones, whose keys use the highest bits
+            int mass = random.nextInt(4);
+            m.setMass(mass == 0 ? random.nextInt(3) : mass == 1 ? Integer.MAX_VALUE - random.nextInt(2) :
+                    random.nextInt(1000));
+            m.setYear(1800 + random.nextInt(221));
+            meteorites.add(m);
+        }
+        checkKeys(meteorites);
+        checkCollection(meteorites, random);
+        System.out.println("KeyCheck: OK");
+    }
+
+    /*
+     * Checks the name keys and the mass keys of every pair of meteorites against the natural
+     * ordering and MassComparator.
+     */
+    private static void checkKeys(List<Meteorite> meteorites) {
+        MassComparator byMass = new MassComparator();
+        for (Meteorite a : meteorites) {
+            Checks.check(a.nameKey() >= 0 && a.nameKey() >>> Meteorite.NAME_KEY_BITS == 0,
+                    "name key of " + a.getName());
+            Checks.check(MeteoriteData.massKey(a) >= MeteoriteData.lowestKey(a.getMass()) &&
+                    MeteoriteData.massKey(a) <= MeteoriteData.highestKey(a.getMass()), "mass key of " + a);
+            for (Meteorite b : meteorites) {
+                if (a.nameKey() < b.nameKey())
+                    Checks.check(a.compareTo(b) < 0, "name key of " + a.getName() + " below " + b.getName());
+                if (MeteoriteData.massKey(a) < MeteoriteData.massKey(b))
+                    Checks.check(byMass.compare(a, b) < 0, "mass key of " + a + " below " + b);
+            }
+        }
+    }
+
+    /*
+     * Compares a MeteoriteData holding the meteorites with the sorted meteorites, after adding
+     * them and after removing half of them. Names that differ only in case are equal but not
+     * consistently ordered, so only the first meteorite of such names is kept.
+     */
+    private static void checkCollection(List<Meteorite> meteorites, Random random) {
+        TreeSet<String> names = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        List<Meteorite> kept = new ArrayList<Meteorite>();
+        for (Meteorite m : meteorites) {
+            if (names.add(m.getName())) kept.add(m);
+        }
+        MeteoriteData data = new MeteoriteData();
+        for (Meteorite m : kept) data.add(m);
+        compare(data, kept, "added");
+        Checks.same(Checks.list(new MeteoriteData(kept)), Checks.list(data), "bulk load");
+        List<Meteorite> remaining = new ArrayList<Meteorite>();
+        for (Meteorite m : kept) {
+            if (random.nextBoolean()) Checks.check(data.remove(m), "remove " + m);
+            else remaining.add(m);
+        }
+        compare(data, remaining, "removed");
+    }
+
+    /*
+     * Compares the natural, mass and year orders of data, and the results of contains and
+     * getByMass, with the sorted meteorites.
+     */
+    private static void compare(MeteoriteData data, List<Meteorite> meteorites, String what) {
+        List<Meteorite> natural = new ArrayList<Meteorite>(meteorites);
+        natural.sort(null);
+        Checks.same(natural, Checks.list(data), what + ": natural order");
+        List<Meteorite> byMass = MeteoriteDataCheck.massRange(natural, 0, Integer.MAX_VALUE);
+        byMass.sort(new MassComparator());
+        Checks.same(byMass, Checks.list(data.getByMass(0, Integer.MAX_VALUE)), what + ": mass order");
+        List<Meteorite> byYear = new ArrayList<Meteorite>(natural);
+        byYear.sort(new YearComparator());
+        Checks.same(byYear, Checks.list(data.getByYear(0, 2020)), what + ": year order");
+        for (Meteorite m : natural) {
+            Checks.check(data.contains(m), what + ": contains " + m);
+            Checks.same(MeteoriteDataCheck.massRange(byMass, m.getMass(), 0),
+                    Checks.list(data.getByMass(m.getMass(), 0)), what + ": getByMass " + m.getMass());
+        }
+    }
+}
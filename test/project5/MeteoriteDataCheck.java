@@ -0,0 +1,297 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * MeteoriteDataCheck class checks the queries of MeteoriteData against brute-force scans of the
+ * meteorites it was given: the meteorites of the file followed by random ones, added one by one.
+ * The views returned by the queries are checked to hold the matching meteorites in the order of
+ * the query, with the right size and text. It also checks that the bulk constructor builds the
+ * same collection as adding the meteorites one by one, including when several names differ only
+ * in case. Random adds and removes, also of objects that are equal to stored ones but have other
+ * values, are compared with a map from every meteorite to the stored one.
+ *
+ * @author Jack
+ */
+public class MeteoriteDataCheck {
+    //number of random meteorites added to the ones of the file
+    private static final int N = 4000;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        List<Meteorite> meteorites = Checks.meteorites(args, 9, N);
+        MeteoriteData data = new MeteoriteData();
+        for (Meteorite m : meteorites) data.add(m);
+        List<Meteorite> expected = Checks.distinct(meteorites);
+        checkCounts(data, expected);
+        checkViews(data, expected);
+        checkBulkLoad(meteorites);
+        checkAddRemove(meteorites);
+        System.out.println("MeteoriteDataCheck: OK");
+    }
+
+    /*
+     * Compares countByMass, countByYear and getMassQuantile with scans of the meteorites.
+     */
+    private static void checkCounts(MeteoriteData data, List<Meteorite> expected) {
+        Random random = new Random(10);
+        Checks.check(data.size() == expected.size(), "size");
+        for (int i = 0; i < 300; i++) {
+            int mass = i < 3 ? i : random.nextInt(110000);
+            int delta = i % 7 == 0 ? 0 : i % 11 == 0 ? Integer.MAX_VALUE : random.nextInt(i % 2 == 0 ? 50 : 20000);
+            Checks.check(data.countByMass(mass, delta) == massRange(expected, mass, delta).size(),
+                    "countByMass " + mass + " " + delta);
+            int year = random.nextInt(2021);
+            int count = 0;
+            for (Meteorite m : expected) {
+                if (m.getYear() == year) count++;
+            }
+            Checks.check(data.countByYear(year) == count, "countByYear " + year);
+            int fromYear = i % 5 == 0 ? 0 : 1780 + random.nextInt(240);
+            int toYear = Math.min(2020, fromYear + random.nextInt(i % 3 == 0 ? 3 : 300));
+            Checks.check(data.countByYear(fromYear, toYear) == yearRange(expected, fromYear, toYear).size(),
+                    "countByYear " + fromYear + ".." + toYear);
+        }
+
+        List<Meteorite> byMass = knownMasses(expected);
+        for (int i = 0; i <= 200; i++) {
+            double q = i / 200.0;
+            int k = Math.max((int) Math.ceil(q * byMass.size()) - 1, 0);
+            Checks.check(Checks.describe(byMass.get(k)).equals(Checks.describe(data.getMassQuantile(q))),
+                    "getMassQuantile " + q);
+        }
+        for (int i = 0; i < 100; i++) {
+            double q = random.nextInt(201) / 200.0;
+            int fromYear = i % 5 == 0 ? 0 : 1780 + random.nextInt(240);
+            int toYear = Math.min(2020, fromYear + random.nextInt(i % 3 == 0 ? 1 : 40));
+            List<Meteorite> years = knownMasses(yearRange(expected, fromYear, toYear));
+            Meteorite quantile = data.getMassQuantile(q, fromYear, toYear);
+            if (years.isEmpty()) {
+                Checks.check(quantile == null, "getMassQuantile " + q + " " + fromYear + ".." + toYear);
+            } else {
+                int k = Math.max((int) Math.ceil(q * years.size()) - 1, 0);
+                Checks.check(Checks.describe(years.get(k)).equals(Checks.describe(quantile)),
+                        "getMassQuantile " + q + " " + fromYear + ".." + toYear);
+            }
+        }
+        Checks.check(new MeteoriteData().getMassQuantile(0.5) == null, "getMassQuantile of an empty collection");
+        MeteoriteData unknown = new MeteoriteData();
+        unknown.add(new Meteorite("Unknown", 1));
+        Checks.check(unknown.getMassQuantile(0.5) == null && unknown.getMassQuantile(0.5, 0, 2020) == null,
+                "getMassQuantile of meteorites with mass 0");
+        Checks.rejects("invalid arguments", () -> data.countByMass(-1, 5), () -> data.countByMass(5, -1),
+                () -> data.countByYear(2021), () -> data.countByYear(1990, 1980), () -> data.getMassQuantile(1.5),
+                () -> data.getMassQuantile(-0.5, 1990, 1990), () -> data.getMassQuantile(0.5, 1990, 1980),
+                () -> data.getMassQuantile(0.5, -1, 1990), () -> data.getMassQuantile(0.5, 1990, 2021));
+    }
+
+    /*
+     * Returns the meteorites with a known mass, i.e. mass over 0, sorted by mass.
+     */
+    private static List<Meteorite> knownMasses(List<Meteorite> meteorites) {
+        List<Meteorite> known = new ArrayList<Meteorite>();
+        for (Meteorite m : meteorites) {
+            if (m.getMass() > 0) known.add(m);
+        }
+        known.sort(new MassComparator());
+        return known;
+    }
+
+    /*
+     * Compares the views returned by getByMass and getByYear with sorted scans of the meteorites,
+     * including empty ranges (for which the queries return null), and checks their size,
+     * isEmpty, toString and writeTo.
+     */
+    private static void checkViews(MeteoriteData data, List<Meteorite> expected) throws IOException {
+        Random random = new Random(15);
+        List<Meteorite> byMass = new ArrayList<Meteorite>(expected);
+        byMass.sort(new MassComparator());
+        List<Meteorite> byYear = new ArrayList<Meteorite>(expected);
+        byYear.sort(new YearComparator());
+        for (int i = 0; i < 300; i++) {
+            int mass = i < 3 ? i : random.nextInt(110000);
+            int delta = i % 7 == 0 ? 0 : i % 11 == 0 ? Integer.MAX_VALUE : random.nextInt(i % 2 == 0 ? 50 : 20000);
+            checkView(massRange(byMass, mass, delta), data.getByMass(mass, delta), "getByMass " + mass + " " + delta);
+            int year = i % 13 == 0 ? 0 : 1780 + random.nextInt(241);
+            checkView(yearRange(byYear, year, year), data.getByYear(year), "getByYear " + year);
+            int toYear = Math.min(2020, year + random.nextInt(i % 3 == 0 ? 3 : 300));
+            checkView(yearRange(byYear, year, toYear), data.getByYear(year, toYear),
+                    "getByYear " + year + ".." + toYear);
+        }
+        Checks.rejects("invalid arguments", () -> data.getByMass(-1, 5), () -> data.getByMass(5, -1),
+                () -> data.getByYear(2021), () -> data.getByYear(1990, 1980), () -> data.getByYear(-1, 1980));
+    }
+
+    /*
+     * Checks that view holds the expected meteorites, or is null if there are none.
+     */
+    private static void checkView(List<Meteorite> expected, MeteoriteView view, String what) throws IOException {
+        Checks.check(expected.isEmpty() == (view == null), what + ": is null");
+        if (view == null) return;
+        Checks.same(expected, Checks.list(view), what);
+        Checks.check(view.size() == expected.size() && !view.isEmpty(), what + ": size");
+        StringBuilder text = new StringBuilder();
+        for (Meteorite m : expected) text.append(m).append("\n");
+        Checks.check(text.toString().equals(view.toString()), what + ": toString");
+        StringBuilder written = new StringBuilder();
+        view.writeTo(written);
+        Checks.check(text.toString().equals(written.toString()), what + ": writeTo");
+    }
+
+    /*
+     * Compares collections built by the bulk constructor with collections built by add, from
+     * the meteorites in their order, in natural order, and with meteorites whose names differ
+     * only in case, for which the bulk constructor falls back to add.
+     */
+    private static void checkBulkLoad(List<Meteorite> meteorites) {
+        List<Meteorite> sorted = new ArrayList<Meteorite>(meteorites);
+        sorted.sort(null);
+        List<Meteorite> cased = new ArrayList<Meteorite>(meteorites);
+        Random random = new Random(11);
+        String[] names = {"Allende", "ALLENDE", "allende", "AllEnde", "Allende"};
+        for (int i = 0; i < 200; i++) {
+            Meteorite m = new Meteorite(names[random.nextInt(names.length)], 1 + random.nextInt(50));
+            m.setMass(random.nextInt(1000));
+            m.setYear(1969);
+            m.setLocation(new Location(26.96667, -105.31667));
+            cased.add(random.nextInt(cased.size()), m);
+        }
+
+        for (List<Meteorite> input : List.of(meteorites, sorted, cased)) {
+            MeteoriteData bulk = new MeteoriteData(input);
+            MeteoriteData added = new MeteoriteData();
+            for (Meteorite m : input) added.add(m);
+            if (input != cased) {
+                List<Meteorite> expected = Checks.distinct(input);
+                expected.sort(null);
+                Checks.same(expected, Checks.list(bulk), "bulk load");
+            }
+            Checks.check(bulk.size() == added.size(), "bulk load: size");
+            Checks.same(Checks.list(added), Checks.list(bulk), "bulk load: natural order");
+            Checks.same(Checks.list(added.getByMass(0, Integer.MAX_VALUE)),
+                    Checks.list(bulk.getByMass(0, Integer.MAX_VALUE)), "bulk load: mass order");
+            Checks.same(Checks.list(added.getByYear(0, 2020)), Checks.list(bulk.getByYear(0, 2020)),
+                    "bulk load: year order");
+            for (Meteorite m : input) {
+                Checks.check(bulk.contains(m) == added.contains(m), "bulk load: contains " + m);
+            }
+            for (int i = 0; i < 100; i++) {
+                Location loc = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+                Checks.check(Checks.describe(added.getByLocation(loc)).equals(Checks.describe(bulk.getByLocation(loc))),
+                        "bulk load: getByLocation " + loc.getLatitude() + " " + loc.getLongitude());
+            }
+        }
+    }
+
+    /*
+     * Adds and removes random meteorites, and copies of them with other values, and compares the
+     * collection with a map holding the stored objects.
+     */
+    private static void checkAddRemove(List<Meteorite> meteorites) {
+        Random random = new Random(14);
+        MeteoriteData data = new MeteoriteData();
+        Map<Meteorite, Meteorite> stored = new HashMap<Meteorite, Meteorite>();
+        for (int i = 0; i < 3 * meteorites.size(); i++) {
+            Meteorite m = meteorites.get(random.nextInt(meteorites.size()));
+            if (random.nextBoolean()) m = copy(m, random);
+            if (random.nextInt(3) != 0) {
+                Checks.check(data.add(m) == (stored.putIfAbsent(m, m) == null), "add " + m);
+            }
+            else {
+                Checks.check(data.remove(m) == (stored.remove(m) != null), "remove " + m);
+            }
+            Checks.check(data.contains(m) == stored.containsKey(m), "contains " + m);
+            if (i % 2000 == 0) compareIndexes(data, stored, random);
+        }
+        compareIndexes(data, stored, random);
+        for (Meteorite m : new ArrayList<Meteorite>(stored.keySet())) {
+            Checks.check(data.remove(copy(m, random)), "remove all " + m);
+        }
+        Checks.check(data.size() == 0 && Checks.list(data).isEmpty(), "empty after removing all");
+        Checks.check(data.getByMass(50, Integer.MAX_VALUE) == null && data.getByYear(0, 2020) == null &&
+                data.getByLocation(new Location(0, 0)) == null, "queries of an empty collection");
+    }
+
+    /*
+     * Returns a meteorite equal to m (same name and id) with random values.
+     */
+    private static Meteorite copy(Meteorite m, Random random) {
+        Meteorite copy = new Meteorite(m.getName(), m.getId());
+        copy.setMass(random.nextInt(1000));
+        copy.setYear(1800 + random.nextInt(221));
+        copy.setLocation(new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        return copy;
+    }
+
+    /*
+     * Compares the natural, mass and year orders and nearest meteorites of data with the stored
+     * objects.
+     */
+    private static void compareIndexes(MeteoriteData data, Map<Meteorite, Meteorite> stored, Random random) {
+        List<Meteorite> natural = new ArrayList<Meteorite>(stored.values());
+        natural.sort(null);
+        Checks.check(data.size() == natural.size(), "size");
+        Checks.same(natural, Checks.list(data), "natural order");
+        List<Meteorite> byMass = massRange(natural, 0, Integer.MAX_VALUE);
+        byMass.sort(new MassComparator());
+        Checks.same(byMass, Checks.list(data.getByMass(0, Integer.MAX_VALUE)), "mass order");
+        List<Meteorite> byYear = new ArrayList<Meteorite>(natural);
+        byYear.sort(new YearComparator());
+        Checks.same(byYear, Checks.list(data.getByYear(0, 2020)), "year order");
+        for (int i = 0; i < 20; i++) {
+            Location loc = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            Checks.check(Checks.describe(nearest(natural, loc)).equals(Checks.describe(data.getByLocation(loc))),
+                    "getByLocation " + loc.getLatitude() + " " + loc.getLongitude());
+        }
+    }
+
+    /*
+     * Returns the meteorite closest to loc, the first one in the order of the list if several
+     * are equally close, or null if none has a location.
+     */
+    static Meteorite nearest(List<Meteorite> meteorites, Location loc) {
+        Meteorite closest = null;
+        double best = Double.POSITIVE_INFINITY;
+        for (Meteorite m : meteorites) {
+            if (m.getLocation() == null) continue;
+            double d = m.getLocation().getDistance(loc);
+            if (d < best) {
+                best = d;
+                closest = m;
+            }
+        }
+        return closest;
+    }
+
+    /*
+     * Returns the meteorites, in the order of the list, with a known mass within delta grams of
+     * mass.
+     */
+    static List<Meteorite> massRange(List<Meteorite> meteorites, int mass, int delta) {
+        List<Meteorite> result = new ArrayList<Meteorite>();
+        for (Meteorite m : meteorites) {
+            if (m.getMass() > 0 && Math.abs((long) m.getMass() - mass) <= delta) result.add(m);
+        }
+        return result;
+    }
+
+    /*
+     * Returns the meteorites, in the order of the list, that landed from fromYear to toYear.
+     */
+    static List<Meteorite> yearRange(List<Meteorite> meteorites, int fromYear, int toYear) {
+        List<Meteorite> result = new ArrayList<Meteorite>();
+        for (Meteorite m : meteorites) {
+            if (m.getYear() >= fromYear && m.getYear() <= toYear) result.add(m);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,146 @@
+package project5;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * PackedCheck class checks that the read-only collections storing meteorites as primitive
+ * records return the same results as the MeteoriteData they were built from, for every query
+ * they support. Radius queries of both are also compared with scans. The meteorites are the ones
+ * of the file followed by random ones and a few with non-ASCII names.
+ *
+ * @author Jack
+ */
+public class PackedCheck {
+    //number of random meteorites added to the ones of the file
+    private static final int N = 3000;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        List<Meteorite> meteorites = Checks.meteorites(args, 12, N);
+        //names whose UTF-8 encoding is longer than their number of characters
+        for (String name : new String[]{"Żółw", "Ĉiuĵaŭde", "Ünter Öst", "東京", "Sânt-Étienne"}) {
+            Meteorite m = new Meteorite(name, 100000 + meteorites.size());
+            m.setMass(name.length());
+            m.setYear(1900 + name.length());
+            meteorites.add(m);
+        }
+        MeteoriteData data = new MeteoriteData(meteorites);
+        compare(new ColumnarMeteoriteData(data), data, "columnar");
+        compare(new ColumnarMeteoriteData(new MeteoriteData()), new MeteoriteData(), "empty columnar");
+        OffHeapMeteoriteData offHeap = new OffHeapMeteoriteData(data);
+        compare(offHeap, data, "off-heap");
+        compare(new OffHeapMeteoriteData(new MeteoriteData()), new MeteoriteData(), "empty off-heap");
+        long nameBytes = 0;
+        for (Meteorite m : data) nameBytes += m.getName().getBytes(StandardCharsets.UTF_8).length;
+        Checks.check(offHeap.offHeapBytes() == (long) data.size() * OffHeapMeteoriteData.STRIDE + nameBytes,
+                "off-heap: offHeapBytes");
+        checkMapped(data);
+        System.out.println("PackedCheck: OK");
+    }
+
+    /*
+     * Writes data to an index file, opens it and compares it with data, and checks that
+     * truncated or damaged files are rejected.
+     */
+    private static void checkMapped(MeteoriteData data) throws IOException {
+        File file = File.createTempFile("meteorites", ".idx");
+        try {
+            MappedMeteoriteData.write(new MeteoriteData(), file);
+            compare(MappedMeteoriteData.open(file), new MeteoriteData(), "empty mapped");
+            MappedMeteoriteData.write(data, file);
+            compare(MappedMeteoriteData.open(file), data, "mapped");
+
+            byte[] content = Files.readAllBytes(file.toPath());
+            byte[] damaged = content.clone();
+            damaged[0] ^= 1;
+            List<byte[]> files = new ArrayList<byte[]>(Arrays.asList(new byte[0], Arrays.copyOf(content, 40),
+                    Arrays.copyOf(content, content.length - 4), damaged));
+            //headers whose sizes or offsets do not match the layout of the sections
+            for (int[] field : new int[][]{{12, 1}, {12, Integer.MAX_VALUE}, {20, 1}, {20, -1}, {24, -8},
+                    {32, 8}, {40, -4}, {48, 4}, {56, 4}}) {
+                ByteBuffer header = ByteBuffer.wrap(content.clone()).order(ByteOrder.LITTLE_ENDIAN);
+                if (field[0] < 24) header.putInt(field[0], header.getInt(field[0]) + field[1]);
+                else header.putLong(field[0], header.getLong(field[0]) + field[1]);
+                files.add(header.array());
+            }
+            ByteBuffer far = ByteBuffer.wrap(content.clone()).order(ByteOrder.LITTLE_ENDIAN);
+            far.putLong(40, Long.MAX_VALUE - 8);
+            files.add(far.array());
+            for (byte[] bytes : files) {
+                Files.write(file.toPath(), bytes);
+                try {
+                    MappedMeteoriteData.open(file);
+                    Checks.check(false, "mapped: damaged file " + files.indexOf(bytes) + " opened");
+                } catch (IOException e) {
+                    //expected
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /*
+     * Compares all queries of packed with the ones of data.
+     */
+    private static void compare(PackedMeteoriteData packed, MeteoriteData data, String what) {
+        Random random = new Random(13);
+        List<Meteorite> natural = Checks.list(data);
+        Checks.check(packed.size() == data.size(), what + ": size");
+        Checks.same(natural, Checks.list(packed), what + ": iterator");
+        for (int i = 0; i < natural.size(); i += 7) {
+            Checks.check(Checks.describe(natural.get(i)).equals(Checks.describe(packed.get(i))), what + ": get " + i);
+        }
+        for (int record : new int[]{-1, natural.size()}) {
+            try {
+                packed.get(record);
+                Checks.check(false, what + ": get " + record);
+            } catch (IndexOutOfBoundsException e) {
+                //expected
+            }
+        }
+        Checks.check(data.toString().equals(packed.toString()), what + ": toString");
+
+        for (int i = 0; i < 300; i++) {
+            int mass = i < 3 ? i : random.nextInt(110000);
+            int delta = i % 7 == 0 ? 0 : i % 11 == 0 ? Integer.MAX_VALUE : random.nextInt(i % 2 == 0 ? 50 : 20000);
+            Checks.check(data.getByMass(mass, delta) == null == (packed.getByMass(mass, delta) == null),
+                    what + ": getByMass " + mass + " " + delta + " is null");
+            Checks.same(Checks.list(data.getByMass(mass, delta)), Checks.list(packed.getByMass(mass, delta)),
+                    what + ": getByMass " + mass + " " + delta);
+            int year = i % 13 == 0 ? 0 : 1780 + random.nextInt(241);
+            Checks.same(Checks.list(data.getByYear(year)), Checks.list(packed.getByYear(year)), what + ": getByYear " + year);
+            Checks.check(data.countByYear(year) == packed.countByYear(year), what + ": countByYear " + year);
+            int toYear = Math.min(2020, year + random.nextInt(i % 3 == 0 ? 3 : 300));
+            Checks.same(Checks.list(data.getByYear(year, toYear)), Checks.list(packed.getByYear(year, toYear)),
+                    what + ": getByYear " + year + ".." + toYear);
+            Location loc = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            //also searches around the meteorites, where several may be at the same distance
+            Meteorite at = natural.isEmpty() || i % 4 != 0 ? null : natural.get(random.nextInt(natural.size()));
+            if (at != null && at.getLocation() != null) loc = at.getLocation();
+            Checks.check(Checks.describe(data.getByLocation(loc)).equals(Checks.describe(packed.getByLocation(loc))),
+                    what + ": getByLocation " + loc.getLatitude() + " " + loc.getLongitude());
+            double radius = i % 5 == 0 ? 0 : i % 17 == 0 ? 21000 : random.nextDouble() * (i % 2 == 0 ? 100 : 3000);
+            List<Meteorite> within = KDTreeCheck.within(natural, loc, radius);
+            Checks.check(within.isEmpty() == (data.getByDistance(loc, radius) == null) &&
+                    within.isEmpty() == (packed.getByDistance(loc, radius) == null),
+                    what + ": getByDistance " + radius + " is null");
+            Checks.same(within, Checks.list(data.getByDistance(loc, radius)),
+                    what + ": MeteoriteData.getByDistance " + radius);
+            Checks.same(within, Checks.list(packed.getByDistance(loc, radius)), what + ": getByDistance " + radius);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * PagingCheck class checks the paged cursors of BST and the paged getByMass and getByYear of
+ * MeteoriteData against pages of sorted lists: the elements of the page at a given offset and of
+ * a given size, taken from the list or from the reversed list. Offsets and limits include zero,
+ * one, the end of the range, past the end of the range and Integer.MAX_VALUE. The cursors are
+ * also checked to stop with NoSuchElementException and to fail after a modification of the tree,
+ * and the pages of a range, read one after the other, to hold the whole range.
+ *
+ * @author Jack
+ */
+public class PagingCheck {
+    //number of elements of the generated trees
+    private static final int N = 3000;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        checkTree();
+        List<Meteorite> meteorites = Checks.meteorites(args, 38, N);
+        checkCollection(new MeteoriteData(meteorites));
+        checkCollection(new MeteoriteData());
+        System.out.println("PagingCheck: OK");
+    }
+
+    /*
+     * Compares the cursors of a tree keyed by element >> 2 with pages of the subsets of a TreeSet.
+     */
+    private static void checkTree() {
+        Random random = new Random(39);
+        BST<Integer> tree = new BST<Integer>(null, e -> e >> 2);
+        TreeSet<Integer> expected = new TreeSet<Integer>();
+        Checks.check(!tree.iterator(0, 5, true).hasNext(), "cursor of an empty tree");
+        for (int i = 0; i < N; i++) {
+            int e = random.nextInt(4 * N);
+            tree.add(e);
+            expected.add(e);
+        }
+        List<Integer> all = new ArrayList<Integer>(expected);
+        List<Integer> reversed = new ArrayList<Integer>(all);
+        Collections.reverse(reversed);
+        Checks.check(reversed.equals(list(tree.descendingIterator())), "descendingIterator");
+
+        for (int i = 0; i < 500; i++) {
+            int offset = offset(random, i, all.size());
+            int limit = limit(random, i);
+            boolean descending = i % 2 == 0;
+            String what = " offset " + offset + " limit " + limit + (descending ? " descending" : "");
+            Checks.check(page(all, offset, limit, descending).equals(list(tree.iterator(offset, limit, descending))),
+                    "iterator" + what);
+            int from = random.nextInt(4 * N + 20) - 10;
+            int to = from + random.nextInt(i % 3 == 0 ? 20 : 4 * N);
+            List<Integer> range = new ArrayList<Integer>(expected.subSet(from, true, to, true));
+            Checks.check(page(range, offset % (range.size() + 2), limit, descending).equals(
+                    list(tree.rangeIterator(from, to, offset % (range.size() + 2), limit, descending))),
+                    "rangeIterator " + from + ".." + to + what);
+            //keys are element >> 2, so the key range covers the elements of 4 from to 4 to + 3
+            List<Integer> keyed = new ArrayList<Integer>(expected.subSet(4 * from, true, 4 * to + 3, true));
+            Checks.check(page(keyed, offset % (keyed.size() + 2), limit, descending).equals(
+                    list(tree.keyRangeIterator(from, to, offset % (keyed.size() + 2), limit, descending))),
+                    "keyRangeIterator " + from + ".." + to + what);
+        }
+
+        Iterator<Integer> it = tree.iterator(all.size() - 3, 10, false);
+        for (int i = 0; i < 3; i++) it.next();
+        try {
+            it.next();
+            Checks.check(false, "next after the last element of a page");
+        } catch (NoSuchElementException e) {
+            //expected
+        }
+        Iterator<Integer> stale = tree.keyRangeIterator(0, N, 5, 100, true);
+        stale.next();
+        tree.add(-5);
+        try {
+            stale.next();
+            Checks.check(false, "next after a modification");
+        } catch (ConcurrentModificationException e) {
+            //expected
+        }
+        Checks.rejects("invalid arguments", () -> tree.iterator(-1, 5, false), () -> tree.iterator(0, 0, true),
+                () -> tree.rangeIterator(5, 1, 0, 5, false), () -> tree.keyRangeIterator(0, 5, -1, 5, false),
+                () -> tree.keyRangeIterator(5, 0, 0, 5, true));
+    }
+
+    /*
+     * Compares the pages of getByMass and getByYear with pages of sorted scans of data, and reads
+     * some ranges page by page.
+     */
+    private static void checkCollection(MeteoriteData data) {
+        Random random = new Random(40);
+        String what = data.size() == 0 ? "empty collection: " : "";
+        List<Meteorite> byMass = Checks.list(data);
+        byMass.sort(new MassComparator());
+        List<Meteorite> byYear = Checks.list(data);
+        byYear.sort(new YearComparator());
+        for (int i = 0; i < 300; i++) {
+            int mass = i < 3 ? i : random.nextInt(110000);
+            int delta = i % 7 == 0 ? 0 : i % 11 == 0 ? Integer.MAX_VALUE : random.nextInt(i % 2 == 0 ? 50 : 20000);
+            List<Meteorite> masses = MeteoriteDataCheck.massRange(byMass, mass, delta);
+            int offset = offset(random, i, masses.size());
+            int limit = limit(random, i);
+            boolean descending = i % 2 == 0;
+            checkPage(page(masses, offset, limit, descending), data.getByMass(mass, delta, offset, limit, descending),
+                    what + "getByMass " + mass + " " + delta + " offset " + offset + " limit " + limit);
+
+            int fromYear = i % 13 == 0 ? 0 : 1780 + random.nextInt(241);
+            int toYear = Math.min(2020, fromYear + random.nextInt(i % 3 == 0 ? 3 : 300));
+            List<Meteorite> years = MeteoriteDataCheck.yearRange(byYear, fromYear, toYear);
+            offset = offset(random, i, years.size());
+            checkPage(page(years, offset, limit, descending),
+                    data.getByYear(fromYear, toYear, offset, limit, descending),
+                    what + "getByYear " + fromYear + ".." + toYear + " offset " + offset + " limit " + limit);
+
+            if (i % 20 == 0) {
+                //reads the whole range, page by page
+                int size = 1 + random.nextInt(60);
+                List<Meteorite> pages = new ArrayList<Meteorite>();
+                for (int p = 0; p * size < years.size(); p++) {
+                    pages.addAll(Checks.list(data.getByYear(fromYear, toYear, p * size, size, descending)));
+                }
+                Checks.same(page(years, 0, Integer.MAX_VALUE, descending), pages,
+                        what + "pages of " + size + " of getByYear " + fromYear + ".." + toYear);
+            }
+        }
+        Checks.rejects(what + "invalid arguments", () -> data.getByMass(5, 5, -1, 5, false),
+                () -> data.getByMass(5, 5, 0, 0, false), () -> data.getByMass(-1, 5, 0, 5, true),
+                () -> data.getByYear(1990, 1980, 0, 5, false), () -> data.getByYear(1980, 1990, -1, 5, false),
+                () -> data.getByYear(1980, 2021, 0, 5, true), () -> data.getByYear(1980, 1990, 0, 0, true));
+    }
+
+    /*
+     * Checks that view holds the expected page, or is null if the page is empty.
+     */
+    private static void checkPage(List<Meteorite> expected, MeteoriteView view, String what) {
+        Checks.check(expected.isEmpty() == (view == null), what + ": is null");
+        if (view == null) return;
+        Checks.check(view.size() == expected.size(), what + ": size");
+        Checks.same(expected, Checks.list(view), what);
+    }
+
+    /*
+     * Returns a random offset within a result of the given size, or at its end, past it, or zero.
+     */
+    private static int offset(Random random, int i, int size) {
+        switch (i % 6) {
+            case 0: return 0;
+            case 1: return size;
+            case 2: return size + 1 + random.nextInt(5);
+            case 3: return Integer.MAX_VALUE;
+            default: return random.nextInt(size + 1);
+        }
+    }
+
+    /*
+     * Returns a random limit, often one or Integer.MAX_VALUE.
+     */
+    private static int limit(Random random, int i) {
+        return i % 5 == 0 ? 1 : i % 7 == 0 ? Integer.MAX_VALUE : 1 + random.nextInt(i % 2 == 0 ? 10 : 500);
+    }
+
+    /*
+     * Returns the page of list at offset holding at most limit elements, in the order of the list
+     * or in reverse order.
+     */
+    private static <T> List<T> page(List<T> list, int offset, int limit, boolean descending) {
+        List<T> ordered = new ArrayList<T>(list);
+        if (descending) Collections.reverse(ordered);
+        int from = Math.min(offset, ordered.size());
+        int to = (int) Math.min((long) offset + limit, ordered.size());
+        return new ArrayList<T>(ordered.subList(from, Math.max(from, to)));
+    }
+
+    /*
+     * Returns the elements returned by the iterator.
+     */
+    private static <T> List<T> list(Iterator<T> it) {
+        List<T> list = new ArrayList<T>();
+        while (it.hasNext()) list.add(it.next());
+        return list;
+    }
+}
@@ -0,0 +1,89 @@
+package project5;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * ParallelReadCheck class checks that MeteoriteReader.readParallel gives the same collection as
+ * read and as the reference parser, on the given file and on a generated file of several chunks
+ * whose lines end with "\n", "\r\n" or "\r" and repeat some meteorites (so the order in which
+ * the chunks are merged decides which copy is kept).
+ *
+ * @author Jack
+ */
+public class ParallelReadCheck {
+    //size of the generated file, a few times the smallest chunk
+    private static final int GENERATED_SIZE = 5 << 20;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read, or the generated file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        checkFile(Checks.file(args), false);
+        File generated = File.createTempFile("meteorites", ".csv");
+        try {
+            generate(generated);
+            checkFile(generated, true);
+        } finally {
+            generated.delete();
+        }
+        System.out.println("ParallelReadCheck: OK");
+    }
+
+    /*
+     * Compares readParallel on pools of several sizes with read and with the reference parser.
+     */
+    private static void checkFile(File file, boolean mixedTerminators) throws IOException {
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        String[] lines = content.split("\r\n|\r|\n", -1);
+        MeteoriteData reference = new MeteoriteData();
+        for (int i = 1; i < lines.length; i++) {
+            Meteorite m = ReaderCheck.reference(lines[i]);
+            if (m != null) reference.add(m);
+        }
+        List<Meteorite> expected = Checks.list(reference);
+        Checks.same(expected, Checks.list(MeteoriteReader.read(file)), "read " + file);
+        for (int threads : new int[]{1, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                Checks.same(expected, Checks.list(MeteoriteReader.readParallel(file, pool)),
+                        "readParallel with " + threads + " threads" + (mixedTerminators ? " (mixed terminators)" : ""));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /*
+     * Writes a CSV file of random meteorites, without a line terminator after its last line.
+     */
+    private static void generate(File file) throws IOException {
+        Random random = new Random(3);
+        List<Meteorite> meteorites = Checks.randomMeteorites(4, 20000);
+        String[] terminators = {"\n", "\r\n", "\r"};
+        StringBuilder csv = new StringBuilder("name,id,nametype,recclass,mass (g),fall,year,reclat,reclong,GeoLocation");
+        while (csv.length() < GENERATED_SIZE) {
+            Meteorite m = meteorites.get(random.nextInt(meteorites.size()));
+            Location loc = m.getLocation();
+            csv.append(terminators[random.nextInt(terminators.length)]);
+            if (random.nextInt(50) == 0) continue;      //empty line
+            csv.append('"').append(m.getName()).append(", ").append(m.getId()).append('"').append(',')
+                    .append(m.getId()).append(",Valid,L5,").append(m.getMass()).append(",Fell,01/01/")
+                    .append(String.format("%04d", m.getYear())).append(" 12:00:00 AM,")
+                    .append(loc == null ? "" : loc.getLatitude()).append(',')
+                    .append(loc == null ? "" : loc.getLongitude()).append(",\"(")
+                    .append(loc == null ? "" : loc.getLatitude() + ", " + loc.getLongitude()).append(")\"");
+        }
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            out.write(csv.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
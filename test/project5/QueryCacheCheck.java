@@ -0,0 +1,156 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * QueryCacheCheck class checks that the query cache of MeteoriteData never returns a stale
+ * result: random getByMass, getByYear and getByLocation queries, drawn from small sets so that
+ * most of them are repeated, are interleaved with adds and removes and compared with scans of
+ * the meteorites the collection holds. It also checks that a modification only invalidates the
+ * entries it may change, that views returned before a modification reflect it, and that the
+ * cache stays within its limits.
+ *
+ * @author Jack
+ */
+public class QueryCacheCheck {
+    //number of random meteorites added to the ones of the file
+    private static final int N = 3000;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        List<Meteorite> meteorites = Checks.meteorites(args, 16, N);
+        checkQueries(meteorites);
+        checkInvalidation();
+        checkEviction();
+        System.out.println("QueryCacheCheck: OK");
+    }
+
+    /*
+     * Interleaves repeated queries with adds and removes and compares every result with a scan.
+     */
+    private static void checkQueries(List<Meteorite> meteorites) {
+        Random random = new Random(17);
+        MeteoriteData data = new MeteoriteData();
+        TreeSet<Meteorite> stored = new TreeSet<Meteorite>();
+        int[] masses = {0, 1, 20, 50, 1000, 5000, 40000};
+        int[] deltas = {0, 10, 100, 5000, Integer.MAX_VALUE};
+        Location[] locations = new Location[12];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+        }
+        for (int i = 0; i < 20000; i++) {
+            int op = random.nextInt(10);
+            if (op < 3) {
+                Meteorite m = meteorites.get(random.nextInt(meteorites.size()));
+                if (op == 0 && stored.contains(m)) Checks.check(data.remove(m) && stored.remove(m), "remove " + m);
+                else Checks.check(data.add(m) == stored.add(m), "add " + m);
+                continue;
+            }
+            List<Meteorite> natural = new ArrayList<Meteorite>(stored);
+            if (op < 5) {
+                int mass = masses[random.nextInt(masses.length)];
+                int delta = deltas[random.nextInt(deltas.length)];
+                List<Meteorite> expected = MeteoriteDataCheck.massRange(natural, mass, delta);
+                expected.sort(new MassComparator());
+                MeteoriteView view = data.getByMass(mass, delta);
+                Checks.check(expected.isEmpty() == (view == null), "getByMass " + mass + " " + delta + " is null");
+                Checks.same(expected, Checks.list(view), "getByMass " + mass + " " + delta);
+            }
+            else if (op < 8) {
+                int year = 1800 + random.nextInt(20) * 11;
+                List<Meteorite> expected = MeteoriteDataCheck.yearRange(natural, year, year);
+                MeteoriteView view = data.getByYear(year);
+                Checks.check(expected.isEmpty() == (view == null), "getByYear " + year + " is null");
+                Checks.same(expected, Checks.list(view), "getByYear " + year);
+            }
+            else {
+                Location loc = locations[random.nextInt(locations.length)];
+                Checks.check(Checks.describe(MeteoriteDataCheck.nearest(natural, loc))
+                                .equals(Checks.describe(data.getByLocation(loc))),
+                        "getByLocation " + loc.getLatitude() + " " + loc.getLongitude());
+            }
+        }
+        QueryCache cache = data.getQueryCache();
+        Checks.check(cache.getHits() > 0 && cache.getMisses() > 0 && cache.getInvalidations() > 0,
+                "statistics " + cache);
+    }
+
+    /*
+     * Checks that a modification invalidates the entries whose result it changes and keeps the
+     * others, and that views returned before the modification reflect it.
+     */
+    private static void checkInvalidation() {
+        MeteoriteData data = new MeteoriteData();
+        data.add(meteorite("a", 1, 1000, 1950, 10, 10));
+        data.add(meteorite("b", 2, 2000, 1960, -10, -10));
+        QueryCache cache = data.getQueryCache();
+        MeteoriteView year = data.getByYear(1950);
+        MeteoriteView mass = data.getByMass(1000, 10);
+        data.getByYear(1960);
+        data.getByMass(2000, 10);
+        data.getByLocation(new Location(10, 11));
+        data.getByLocation(new Location(-10, -11));
+        Checks.check(cache.size() == 6, "entries " + cache);
+
+        //a meteorite of year 1950, mass 1005 and far from both locations
+        Meteorite c = meteorite("c", 3, 1005, 1950, 60, 120);
+        data.add(c);
+        Checks.check(cache.getInvalidations() == 2 && cache.size() == 4, "invalidations after add " + cache);
+        long hits = cache.getHits();
+        data.getByYear(1960);
+        data.getByMass(2000, 10);
+        data.getByLocation(new Location(10, 11));
+        data.getByLocation(new Location(-10, -11));
+        Checks.check(cache.getHits() == hits + 4, "hits after add " + cache);
+        Checks.check(Checks.list(year).size() == 2 && year.size() == 2, "year view after add");
+        Checks.check(Checks.list(mass).size() == 2 && mass.size() == 2, "mass view after add");
+
+        //a meteorite closer to the first location than "a"
+        data.add(meteorite("d", 4, 0, 1800, 10, 10.5));
+        Checks.check(data.getByLocation(new Location(10, 11)).getName().equals("d"), "getByLocation after add");
+        Checks.check(data.getByLocation(new Location(-10, -11)).getName().equals("b"), "getByLocation kept");
+
+        data.remove(c);
+        Checks.check(Checks.list(year).size() == 1 && Checks.list(data.getByYear(1950)).size() == 1,
+                "year view after remove");
+        Checks.check(data.getByMass(1005, 0) == null, "getByMass after remove");
+    }
+
+    /*
+     * Checks that the cache evicts entries when it holds too many queries and that evicted
+     * queries are still answered correctly.
+     */
+    private static void checkEviction() {
+        MeteoriteData data = new MeteoriteData();
+        for (int i = 1; i <= 1000; i++) {
+            data.add(meteorite("m" + i, i, i, 1800 + i % 200, 0, 0));
+        }
+        QueryCache cache = data.getQueryCache();
+        for (int round = 0; round < 2; round++) {
+            for (int i = 1; i <= 1000; i++) {
+                MeteoriteView view = data.getByMass(i, 0);
+                Checks.check(view.size() == 1 && view.iterator().next().getId() == i, "getByMass " + i);
+            }
+        }
+        Checks.check(cache.getEvictions() > 0 && cache.size() < 1000, "evictions " + cache);
+    }
+
+    /*
+     * Returns a meteorite with the given values.
+     */
+    private static Meteorite meteorite(String name, int id, int mass, int year, double lat, double lon) {
+        Meteorite m = new Meteorite(name, id);
+        m.setMass(mass);
+        m.setYear(year);
+        m.setLocation(new Location(lat, lon));
+        return m;
+    }
+}
@@ -0,0 +1,197 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * QueryCheck class checks MeteoriteQuery against a scan of the meteorites that keeps the ones
+ * matching every condition, sorts them and keeps the first ones up to the limit. Random queries
+ * combine conditions on the mass, the year and the location with every ordering, in both
+ * directions, with and without a limit, over enough meteorites for the bounded queues to be filled
+ * in parallel. The driver chosen by the planner is read from explain: every driver has to be
+ * chosen by some of the random queries, and queries with one obviously cheapest driver have to
+ * choose it. The box searches of the spatial index are compared with scans too.
+ *
+ * @author Jack
+ */
+public class QueryCheck {
+    //number of random meteorites added to the ones of the file, enough for a query that reads
+    //more meteorites than a sequential read takes to be cheaper than a full scan
+    private static final int N = 40000;
+    //driver marked as chosen in the last line of explain
+    private static final Pattern CHOSEN = Pattern.compile("([a-z]+ [a-z]+) cost [0-9]+ \\(chosen\\)");
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        List<Meteorite> meteorites = Checks.meteorites(args, 25, N);
+        MeteoriteData data = new MeteoriteData(meteorites);
+        List<Meteorite> natural = Checks.list(data);
+        checkQueries(data, natural);
+        checkDrivers(data, natural);
+        checkBoxes(data, natural);
+        Checks.check(new MeteoriteData().query().mass(0, 100).run() == null, "query of an empty collection");
+        Checks.rejects("invalid arguments", () -> data.query().mass(-1, 5), () -> data.query().mass(6, 5),
+                () -> data.query().years(1990, 1980), () -> data.query().years(0, 2021),
+                () -> data.query().box(10, 0, 0, 10), () -> data.query().box(0, -181, 10, 10),
+                () -> data.query().limit(0));
+        System.out.println("QueryCheck: OK");
+    }
+
+    /*
+     * Compares random queries with scans, and checks that every driver is chosen by some of them.
+     */
+    private static void checkQueries(MeteoriteData data, List<Meteorite> natural) {
+        Random random = new Random(26);
+        Set<String> drivers = new HashSet<String>();
+        for (int i = 0; i < 400; i++) {
+            MeteoriteQuery query = data.query();
+            StringBuilder what = new StringBuilder("query");
+            int lowMass = 0;
+            int highMass = Integer.MAX_VALUE;
+            int fromYear = 0;
+            int toYear = 2020;
+            double[] box = null;
+            if (random.nextInt(3) != 0) {
+                lowMass = random.nextInt(5) == 0 ? 0 : random.nextInt(100000);
+                highMass = lowMass + random.nextInt(random.nextBoolean() ? 100 : 50000);
+                query.mass(lowMass, highMass);
+                what.append(" mass ").append(lowMass).append("..").append(highMass);
+            }
+            if (random.nextInt(3) != 0) {
+                fromYear = random.nextInt(10) == 0 ? 0 : 1790 + random.nextInt(231);
+                toYear = Math.min(2020, fromYear + random.nextInt(random.nextBoolean() ? 3 : 150));
+                query.years(fromYear, toYear);
+                what.append(" years ").append(fromYear).append("..").append(toYear);
+            }
+            if (random.nextInt(3) == 0) {
+                box = randomBox(random);
+                query.box(box[0], box[1], box[2], box[3]);
+                what.append(" box ").append(box[0]).append(",").append(box[1]).append(",").append(box[2])
+                        .append(",").append(box[3]);
+            }
+            Comparator<Meteorite> comparator = Comparator.naturalOrder();
+            int order = random.nextInt(3);
+            if (order == 1) {
+                query.orderByMass();
+                comparator = new MassComparator();
+            }
+            else if (order == 2) {
+                query.orderByYear();
+                comparator = new YearComparator();
+            }
+            else if (random.nextBoolean()) query.orderByName();
+            if (random.nextBoolean()) {
+                query.descending();
+                comparator = comparator.reversed();
+            }
+            int limit = Integer.MAX_VALUE;
+            if (random.nextInt(3) != 0) {
+                limit = 1 + random.nextInt(random.nextBoolean() ? 10 : 2000);
+                query.limit(limit);
+            }
+            what.append(" order ").append(order).append(" limit ").append(limit);
+
+            List<Meteorite> expected = new ArrayList<Meteorite>();
+            for (Meteorite m : natural) {
+                if (m.getMass() >= lowMass && m.getMass() <= highMass && m.getYear() >= fromYear &&
+                        m.getYear() <= toYear && (box == null || inside(m, box))) expected.add(m);
+            }
+            expected.sort(comparator);
+            if (expected.size() > limit) expected = expected.subList(0, limit);
+            MeteoriteView result = query.run();
+            Checks.check(expected.isEmpty() == (result == null), what + ": is null");
+            Checks.same(expected, Checks.list(result), what.toString());
+            drivers.add(driver(query));
+        }
+        Checks.check(drivers.size() == 4, "drivers chosen by the random queries: " + drivers);
+    }
+
+    /*
+     * Checks the drivers chosen for queries that have an obviously cheapest one, and runs a
+     * query whose driver reads enough meteorites for its bounded queues to be filled in parallel.
+     */
+    private static void checkDrivers(MeteoriteData data, List<Meteorite> natural) {
+        Checks.check(driver(data.query()).equals("full scan"), "no conditions");
+        Checks.check(driver(data.query().years(1950, 1950).mass(0, 1000000)).equals("year index"), "one year");
+        Checks.check(driver(data.query().mass(5000, 5001).years(1800, 2020)).equals("mass index"), "two grams");
+        Checks.check(driver(data.query().box(10, 10, 11, 11).years(1800, 2020).mass(0, 1000000))
+                .equals("spatial index"), "small box");
+        Checks.check(driver(data.query().orderByMass().descending().limit(10)).equals("mass index"), "heaviest");
+        Checks.check(driver(data.query().orderByYear().limit(10)).equals("year index"), "earliest");
+        Checks.check(driver(data.query().years(1800, 2020).limit(10)).equals("full scan"), "first names");
+
+        //the heaviest meteorites of about 42% of the collection, read from the year buckets
+        int toYear = 1800;
+        while (data.countByYear(1800, toYear) < 0.42 * data.size()) toYear++;
+        int limit = data.countByYear(1800, toYear) * 9 / 10;
+        MeteoriteQuery query = data.query().years(1800, toYear).orderByMass().descending().limit(limit);
+        Checks.check(driver(query).equals("year index") && data.countByYear(1800, toYear) >= 1 << 14,
+                "parallel read: " + query.explain());
+        List<Meteorite> expected = MeteoriteDataCheck.yearRange(natural, 1800, toYear);
+        expected.sort(new MassComparator().reversed());
+        Checks.same(expected.subList(0, limit), Checks.list(query.run()), "parallel read");
+    }
+
+    /*
+     * Compares the box searches of the spatial index with scans, and checks that the estimates
+     * of empty and full boxes are sensible.
+     */
+    private static void checkBoxes(MeteoriteData data, List<Meteorite> natural) {
+        Random random = new Random(27);
+        KDTree tree = data.spatialIndex();
+        for (int i = 0; i < 300; i++) {
+            double[] box = i == 0 ? new double[]{-90, -180, 90, 180} : randomBox(random);
+            List<Meteorite> expected = new ArrayList<Meteorite>();
+            for (Meteorite m : natural) {
+                if (inside(m, box)) expected.add(m);
+            }
+            List<Meteorite> found = tree.inBox(box[0], box[1], box[2], box[3]);
+            found.sort(null);
+            Checks.same(expected, found, "inBox " + box[0] + "," + box[1] + "," + box[2] + "," + box[3]);
+        }
+        double all = tree.estimateInBox(-90, -180, 90, 180);
+        Checks.check(Math.abs(all - tree.size()) <= tree.size() / 10.0, "estimate of the whole globe " + all);
+        Checks.check(new KDTree().estimateInBox(-90, -180, 90, 180) == 0, "estimate of an empty tree");
+    }
+
+    /*
+     * Returns a random box: small, wide, on the poles or on the antimeridian.
+     */
+    static double[] randomBox(Random random) {
+        double size = random.nextBoolean() ? random.nextDouble() * 5 : random.nextDouble() * 90;
+        double south = random.nextInt(10) == 0 ? -90 : Math.max(-90, random.nextDouble() * 180 - 90 - size);
+        double west = random.nextInt(10) == 0 ? -180 : Math.max(-180, random.nextDouble() * 360 - 180 - size);
+        double north = random.nextInt(10) == 0 ? 90 : Math.min(90, south + size);
+        double east = random.nextInt(10) == 0 ? 180 : Math.min(180, west + 2 * size);
+        return new double[]{south, west, north, east};
+    }
+
+    /*
+     * Returns true if m has a location within the box.
+     */
+    static boolean inside(Meteorite m, double[] box) {
+        Location loc = m.getLocation();
+        return loc != null && loc.getLatitude() >= box[0] && loc.getLatitude() <= box[2] &&
+                loc.getLongitude() >= box[1] && loc.getLongitude() <= box[3];
+    }
+
+    /*
+     * Returns the name of the driver chosen for the query, from the last line of explain.
+     */
+    private static String driver(MeteoriteQuery query) {
+        Matcher matcher = CHOSEN.matcher(query.explain());
+        Checks.check(matcher.find(), "no chosen driver in " + query.explain());
+        return matcher.group(1);
+    }
+}
@@ -0,0 +1,158 @@
+package project5;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ReaderCheck class checks the byte-level CSV parser of MeteoriteReader against the
+ * Scanner-based parsing it replaced (FallenStars.splitCSVLine followed by Integer.parseInt and
+ * Double.parseDouble): the number parser on its own, single lines with valid and malformed
+ * fields, and whole files.
+ *
+ * @author Jack
+ */
+public class ReaderCheck {
+    //entries that are not plain decimal numbers, or only nearly so
+    private static final String[] NUMBERS = {
+            "+", "-", ".", "+.", "-.", "1.", ".5", "-.5", "+1.", "5", "-0", "+0.0", "00012.50",
+            "1234567890123456", "12345678901234567", "0.12345678901234567", "-98765432109876.54321",
+            "0.000000000000000000000001", "1e5", "1.5E-3", "1.5d", "2f", "0x1p3", "Infinity",
+            "-Infinity", "NaN", "1.2.3", "--1", "+-1", "1-", " 3.25 ", "\t-7.5\t", "", " ", "..5", "5..",
+            "abc", "1,5", "90.000001", "-180.0", "180" };
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        checkNumbers();
+        checkLines();
+        checkFile(Checks.file(args));
+        System.out.println("ReaderCheck: OK");
+    }
+
+    /*
+     * Compares parseDouble with Double.parseDouble on the listed entries and on random decimal
+     * numbers, bit for bit (so -0.0 and 0.0 differ).
+     */
+    private static void checkNumbers() {
+        for (String s : NUMBERS) {
+            checkNumber(s);
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < 200000; i++) {
+            StringBuilder s = new StringBuilder();
+            if (random.nextInt(4) == 0) s.append(random.nextBoolean() ? '-' : '+');
+            int digits = random.nextInt(22);
+            int point = random.nextInt(digits + 2) - 1;
+            for (int j = 0; j < digits; j++) {
+                if (j == point) s.append('.');
+                s.append((char) ('0' + random.nextInt(10)));
+            }
+            if (point == digits) s.append('.');
+            checkNumber(s.toString());
+        }
+    }
+
+    /*
+     * Compares parseDouble with Double.parseDouble on a single entry.
+     */
+    private static void checkNumber(String s) {
+        double expected;
+        try {
+            expected = Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            expected = Double.NaN;
+        }
+        byte[] b = ("#" + s + "#").getBytes(StandardCharsets.UTF_8);
+        double actual = MeteoriteReader.parseDouble(b, 1, b.length - 1);
+        Checks.check(Double.doubleToLongBits(expected) == Double.doubleToLongBits(actual),
+                "parseDouble(\"" + s + "\") is " + actual + ", expected " + expected);
+    }
+
+    /*
+     * Compares parseLine with the reference parser on random lines, with quoted names, smart
+     * quotes, padding and malformed numbers in every column.
+     */
+    private static void checkLines() {
+        Random random = new Random(2);
+        String[] names = {"Aachen", " Abee ", "\"Allan Hills, 77005\"", "“New, York”", "\"\"", "", "Ab\"c"};
+        MeteoriteReader reader = new MeteoriteReader();
+        for (int i = 0; i < 20000; i++) {
+            String name = names[random.nextInt(names.length)];
+            String id = pick(random, Integer.toString(1 + random.nextInt(100000)));
+            String mass = pick(random, Integer.toString(random.nextInt(60000000)));
+            String year = random.nextInt(10) == 0 ? pick(random, "1880") :
+                    "01/01/" + (1700 + random.nextInt(400)) + " 12:00:00 AM";
+            String lat = pick(random, Double.toString(random.nextDouble() * 200 - 100));
+            String lon = pick(random, Double.toString(random.nextDouble() * 400 - 200));
+            String line = name + "," + id + ",Valid,L5," + mass + ",Fell," + year + "," + lat + "," + lon +
+                    (random.nextBoolean() ? ",\"(50.775, 6.08333)\"" : "");
+            byte[] b = line.getBytes(StandardCharsets.UTF_8);
+            Meteorite actual = reader.parseLine(ByteBuffer.wrap(b), 0, b.length);
+            Checks.check(Checks.describe(reference(line)).equals(Checks.describe(actual)),
+                    "line " + line + " parsed as " + Checks.describe(actual) + ", expected " +
+                    Checks.describe(reference(line)));
+        }
+    }
+
+    /*
+     * Returns the given valid entry most of the time, or one of the malformed or unusual
+     * entries, possibly padded.
+     */
+    private static String pick(Random random, String valid) {
+        if (random.nextInt(4) != 0) return valid;
+        String s = NUMBERS[random.nextInt(NUMBERS.length)];
+        return random.nextBoolean() ? s : " " + s + " ";
+    }
+
+    /*
+     * Compares read with the reference parser on all lines of the file.
+     */
+    private static void checkFile(File file) throws IOException {
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        MeteoriteData expected = new MeteoriteData();
+        for (String line : lines.subList(1, lines.size())) {
+            Meteorite m = reference(line);
+            if (m != null) expected.add(m);
+        }
+        Checks.same(Checks.list(expected), Checks.list(MeteoriteReader.read(file)), "read " + file);
+    }
+
+    /**
+     * Parses a line as FallenStars did before MeteoriteReader: with splitCSVLine and the
+     * parsing methods of Integer and Double. The only difference is that a "NaN" coordinate,
+     * which Location does not reject, makes the line invalid, as in MeteoriteReader. Also used
+     * by ParallelReadCheck.
+     * @param line - line of a CSV file, without its line terminator
+     * @return Meteorite object described by the line, or null if the line is not valid
+     */
+    static Meteorite reference(String line) {
+        ArrayList<String> entries = FallenStars.splitCSVLine(line);
+        try {
+            String name = entries.get(0);
+            int id = Integer.parseInt(entries.get(1));
+            int mass = Integer.parseInt(entries.get(4));
+            int year = Integer.parseInt(entries.get(6).substring(6, 10));
+            double lat = Double.parseDouble(entries.get(7));
+            double lon = Double.parseDouble(entries.get(8));
+            if (Double.isNaN(lat) || Double.isNaN(lon)) return null;
+            Location loc = new Location(lat, lon);
+            Meteorite m = new Meteorite(name.trim(), id);
+            m.setMass(mass);
+            m.setLocation(loc);
+            m.setYear(year);
+            return m;
+        } catch (Exception e) {
+            //incomplete, miss-formatted or invalid line
+            return null;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * SnapshotCheck class checks the snapshots of ConcurrentMeteoriteData and the difference of two
+ * versions of PersistentBST. Snapshots are taken while the collection changes at random, and
+ * every one of them is compared afterwards with a MeteoriteData holding the meteorites the
+ * collection held when it was taken. The meteorites added and removed between two snapshots are
+ * compared with the differences of their contents. PersistentBST.difference is compared with the
+ * difference of two TreeSets, for related versions (which share subtrees) and unrelated trees.
+ *
+ * @author Jack
+ */
+public class SnapshotCheck {
+    //number of elements of the generated trees
+    private static final int N = 3000;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        checkSnapshots(KDTreeCheck.meteorites(args));
+        checkDifference();
+        System.out.println("SnapshotCheck: OK");
+    }
+
+    /*
+     * Takes snapshots while adding and removing random meteorites, then compares every snapshot
+     * with the meteorites held when it was taken, and every pair of snapshots with the
+     * differences of their contents.
+     */
+    private static void checkSnapshots(List<Meteorite> meteorites) {
+        Random random = new Random(33);
+        ConcurrentMeteoriteData concurrent = new ConcurrentMeteoriteData(meteorites.subList(0, meteorites.size() / 2));
+        TreeSet<Meteorite> stored = new TreeSet<Meteorite>(meteorites.subList(0, meteorites.size() / 2));
+        List<MeteoriteSnapshot> snapshots = new ArrayList<MeteoriteSnapshot>();
+        List<List<Meteorite>> contents = new ArrayList<List<Meteorite>>();
+        for (int i = 0; i <= 2 * meteorites.size(); i++) {
+            if (i % 1000 == 0) {
+                snapshots.add(concurrent.snapshot());
+                contents.add(new ArrayList<Meteorite>(stored));
+            }
+            //a few snapshots are taken without changes in between
+            if (i % 1000 < 2) continue;
+            Meteorite m = meteorites.get(random.nextInt(meteorites.size()));
+            if (random.nextBoolean()) Checks.check(concurrent.add(m) == stored.add(m), "add " + m);
+            else Checks.check(concurrent.remove(m) == stored.remove(m), "remove " + m);
+        }
+
+        for (int s = 0; s < snapshots.size(); s++) {
+            compare(snapshots.get(s), contents.get(s), random, "snapshot " + s);
+        }
+        for (int i = 0; i < 40; i++) {
+            int s = random.nextInt(snapshots.size());
+            int t = i == 0 ? s : random.nextInt(snapshots.size());
+            String what = "snapshots " + s + " and " + t;
+            List<Meteorite> added = new ArrayList<Meteorite>(contents.get(t));
+            added.removeAll(new TreeSet<Meteorite>(contents.get(s)));
+            List<Meteorite> removed = new ArrayList<Meteorite>(contents.get(s));
+            removed.removeAll(new TreeSet<Meteorite>(contents.get(t)));
+            MeteoriteView addedView = snapshots.get(t).added(snapshots.get(s));
+            MeteoriteView removedView = snapshots.get(t).removed(snapshots.get(s));
+            Checks.check(added.isEmpty() == (addedView == null), what + ": added is null");
+            Checks.check(removed.isEmpty() == (removedView == null), what + ": removed is null");
+            Checks.same(added, Checks.list(addedView), what + ": added");
+            Checks.same(removed, Checks.list(removedView), what + ": removed");
+        }
+    }
+
+    /*
+     * Compares all queries of the snapshot with the ones of a MeteoriteData holding the given
+     * meteorites.
+     */
+    private static void compare(MeteoriteSnapshot snapshot, List<Meteorite> content, Random random, String what) {
+        MeteoriteData data = new MeteoriteData(content);
+        Checks.check(snapshot.size() == content.size(), what + ": size");
+        Checks.same(content, Checks.list(snapshot), what + ": iterator");
+        Checks.check(data.toString().equals(snapshot.toString()), what + ": toString");
+        for (int i = 0; i < 100; i++) {
+            Meteorite m = content.isEmpty() ? null : content.get(random.nextInt(content.size()));
+            Checks.check(m == null || snapshot.contains(m), what + ": contains " + m);
+            int mass = i < 3 ? i : random.nextInt(110000);
+            int delta = i % 7 == 0 ? 0 : i % 11 == 0 ? Integer.MAX_VALUE : random.nextInt(i % 2 == 0 ? 50 : 20000);
+            Checks.check(data.getByMass(mass, delta) == null == (snapshot.getByMass(mass, delta) == null),
+                    what + ": getByMass " + mass + " " + delta + " is null");
+            Checks.same(Checks.list(data.getByMass(mass, delta)), Checks.list(snapshot.getByMass(mass, delta)),
+                    what + ": getByMass " + mass + " " + delta);
+            Checks.check(data.countByMass(mass, delta) == snapshot.countByMass(mass, delta),
+                    what + ": countByMass " + mass + " " + delta);
+            int year = i % 13 == 0 ? 0 : 1780 + random.nextInt(241);
+            Checks.same(Checks.list(data.getByYear(year)), Checks.list(snapshot.getByYear(year)),
+                    what + ": getByYear " + year);
+            Checks.check(data.countByYear(year) == snapshot.countByYear(year), what + ": countByYear " + year);
+            int toYear = Math.min(2020, year + random.nextInt(i % 3 == 0 ? 3 : 300));
+            Checks.check(data.getByYear(year, toYear) == null == (snapshot.getByYear(year, toYear) == null),
+                    what + ": getByYear " + year + ".." + toYear + " is null");
+            Checks.same(Checks.list(data.getByYear(year, toYear)), Checks.list(snapshot.getByYear(year, toYear)),
+                    what + ": getByYear " + year + ".." + toYear);
+            Checks.check(data.countByYear(year, toYear) == snapshot.countByYear(year, toYear),
+                    what + ": countByYear " + year + ".." + toYear);
+            Location loc = m != null && m.getLocation() != null && i % 4 == 0 ? m.getLocation() :
+                    new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            String where = loc.getLatitude() + " " + loc.getLongitude();
+            Checks.check(Checks.describe(data.getByLocation(loc)).equals(Checks.describe(snapshot.getByLocation(loc))),
+                    what + ": getByLocation " + where);
+            Checks.same(Checks.list(data.getNearest(loc, 1 + i % 20)), Checks.list(snapshot.getNearest(loc, 1 + i % 20)),
+                    what + ": getNearest " + where);
+            double radius = i % 5 == 0 ? 0 : random.nextDouble() * 2000;
+            Checks.same(Checks.list(data.getByDistance(loc, radius)), Checks.list(snapshot.getByDistance(loc, radius)),
+                    what + ": getByDistance " + radius + " " + where);
+        }
+        Checks.rejects(what + ": invalid arguments", () -> snapshot.getByMass(-1, 5), () -> snapshot.countByMass(5, -1),
+                () -> snapshot.getByYear(2021), () -> snapshot.countByYear(1990, 1980), () -> snapshot.getByYear(-1, 1980),
+                () -> snapshot.getByLocation(null), () -> snapshot.getNearest(new Location(0, 0), 0));
+    }
+
+    /*
+     * Compares difference with the difference of two TreeSets, between versions of a tree with
+     * random changes in between, between a tree and its bulk-built copy, and with empty trees.
+     */
+    private static void checkDifference() {
+        Random random = new Random(34);
+        List<PersistentBST<Integer>> versions = new ArrayList<PersistentBST<Integer>>();
+        List<TreeSet<Integer>> contents = new ArrayList<TreeSet<Integer>>();
+        PersistentBST<Integer> tree = new PersistentBST<Integer>();
+        TreeSet<Integer> set = new TreeSet<Integer>();
+        for (int i = 0; i <= 4 * N; i++) {
+            if (i % 500 == 0) {
+                versions.add(tree);
+                contents.add(new TreeSet<Integer>(set));
+            }
+            int e = random.nextInt(2 * N);
+            if (random.nextInt(3) != 0) {
+                tree = tree.add(e);
+                set.add(e);
+            }
+            else {
+                tree = tree.remove(e);
+                set.remove(e);
+            }
+        }
+        versions.add(new PersistentBST<Integer>().addAllSorted(new ArrayList<Integer>(set)));
+        contents.add(new TreeSet<Integer>(set));
+        for (int s = 0; s < versions.size(); s++) {
+            for (int t = 0; t < versions.size(); t++) {
+                TreeSet<Integer> expected = new TreeSet<Integer>(contents.get(s));
+                expected.removeAll(contents.get(t));
+                Checks.check(new ArrayList<Integer>(expected).equals(versions.get(s).difference(versions.get(t))),
+                        "difference of versions " + s + " and " + t);
+            }
+        }
+        Checks.check(new PersistentBST<Integer>().difference(tree).isEmpty(), "difference of an empty tree");
+        Checks.check(new ArrayList<Integer>(set).equals(tree.difference(new PersistentBST<Integer>())),
+                "difference with an empty tree");
+    }
+}
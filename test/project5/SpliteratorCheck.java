@@ -0,0 +1,209 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * SpliteratorCheck class checks the spliterators and streams of BST, MeteoriteData and the views
+ * returned by the queries against lists of the same elements. Every spliterator is split at
+ * random, down to single elements, and its parts are traversed in order with tryAdvance or
+ * forEachRemaining: together they must hold the elements of the list, in its order, and every
+ * part must report its exact size. Parallel streams are compared with scans: sums of masses,
+ * counts per year and the elements collected in encounter order.
+ *
+ * @author Jack
+ */
+public class SpliteratorCheck {
+    //number of elements of the generated trees
+    private static final int N = 3000;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        checkTree(null);
+        checkTree(Collections.reverseOrder());
+        List<Meteorite> meteorites = Checks.meteorites(args, 35, N);
+        checkCollection(new MeteoriteData(meteorites));
+        checkCollection(new MeteoriteData());
+        System.out.println("SpliteratorCheck: OK");
+    }
+
+    /*
+     * Compares the spliterators of a tree keyed by element >> 2 with the subsets of a TreeSet,
+     * for the whole tree and for random ranges of elements and of keys, and checks that they are
+     * fail-fast.
+     */
+    private static void checkTree(Comparator<Integer> comparator) {
+        Random random = new Random(36);
+        String what = comparator == null ? "natural" : "comparator";
+        BST<Integer> tree = new BST<Integer>(comparator, e -> comparator == null ? e >> 2 : -(e >> 2));
+        TreeSet<Integer> expected = new TreeSet<Integer>(comparator);
+        split(tree.spliterator(), new ArrayList<Integer>(), random, what + ": empty tree");
+        for (int i = 0; i < N; i++) {
+            int e = random.nextInt(4 * N);
+            tree.add(e);
+            expected.add(e);
+        }
+        List<Integer> all = new ArrayList<Integer>(expected);
+        for (int i = 0; i < 20; i++) {
+            split(tree.spliterator(), all, random, what + ": spliterator");
+        }
+        Spliterator<Integer> s = tree.spliterator();
+        Checks.check(s.hasCharacteristics(Spliterator.SORTED | Spliterator.SIZED | Spliterator.SUBSIZED |
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), what + ": characteristics");
+        Checks.check(s.getComparator() == comparator, what + ": getComparator");
+        checkBalanced(s, what + ": spliterator");
+        Checks.check(all.equals(tree.stream().collect(Collectors.toList())), what + ": stream");
+        Checks.check(all.equals(tree.stream().parallel().collect(Collectors.toList())), what + ": parallel stream");
+        long sum = 0;
+        for (int e : all) sum += e;
+        Checks.check(tree.stream().parallel().mapToLong(e -> e).sum() == sum, what + ": parallel sum");
+
+        for (int i = 0; i < 300; i++) {
+            int low = random.nextInt(4 * N + 20) - 10;
+            int high = low + random.nextInt(i % 2 == 0 ? 20 : 4 * N);
+            int from = comparator == null ? low : high;
+            int to = comparator == null ? high : low;
+            split(tree.rangeSpliterator(from, to), new ArrayList<Integer>(expected.subSet(from, true, to, true)),
+                    random, what + ": rangeSpliterator " + from + ".." + to);
+            //keys are element >> 2, negated with the comparator, so the key range covers the
+            //elements of 4 low to 4 high + 3
+            long fromKey = comparator == null ? low : -high;
+            long toKey = comparator == null ? high : -low;
+            TreeSet<Integer> keyed = new TreeSet<Integer>(comparator);
+            keyed.addAll(new TreeSet<Integer>(all).subSet(4 * low, true, 4 * high + 3, true));
+            split(tree.keyRangeSpliterator(fromKey, toKey), new ArrayList<Integer>(keyed), random,
+                    what + ": keyRangeSpliterator " + fromKey + ".." + toKey);
+        }
+
+        Spliterator<Integer> stale = tree.spliterator();
+        stale.tryAdvance(e -> { });
+        tree.add(-5);
+        try {
+            stale.tryAdvance(e -> { });
+            Checks.check(false, what + ": tryAdvance after a modification");
+        } catch (ConcurrentModificationException e) {
+            //expected
+        }
+    }
+
+    /*
+     * Compares the spliterators and streams of data and of the views of its queries with the
+     * lists of their elements.
+     */
+    private static void checkCollection(MeteoriteData data) {
+        Random random = new Random(37);
+        List<Meteorite> natural = Checks.list(data);
+        String what = data.size() == 0 ? "empty collection" : "collection";
+        split(data.spliterator(), natural, random, what + ": spliterator");
+        if (!natural.isEmpty()) {
+            checkBalanced(data.spliterator(), what + ": spliterator");
+            checkBalanced(data.getByYear(0, 2020).spliterator(), what + ": getByYear spliterator");
+            Spliterator<Meteorite> years = data.getByYear(0, 2020).spliterator();
+            Checks.check(years.hasCharacteristics(Spliterator.SORTED | Spliterator.SIZED | Spliterator.ORDERED)
+                    && years.getComparator() instanceof YearComparator, what + ": getByYear characteristics");
+            checkBalanced(data.getByMass(0, Integer.MAX_VALUE).spliterator(), what + ": getByMass spliterator");
+        }
+        Checks.same(natural, data.stream().parallel().collect(Collectors.toList()), what + ": parallel stream");
+        long mass = 0;
+        for (Meteorite m : natural) mass += m.getMass();
+        Checks.check(data.stream().parallel().mapToLong(Meteorite::getMass).sum() == mass, what + ": mass sum");
+
+        Map<Integer, Long> perYear = new TreeMap<Integer, Long>();
+        for (Meteorite m : natural) perYear.merge(m.getYear(), 1L, Long::sum);
+        MeteoriteView all = data.getByYear(0, 2020);
+        Checks.check(natural.isEmpty() ? all == null :
+                        perYear.equals(all.stream().parallel().collect(
+                                Collectors.groupingBy(Meteorite::getYear, TreeMap::new, Collectors.counting()))),
+                what + ": counts per year");
+
+        List<Meteorite> byMass = new ArrayList<Meteorite>(natural);
+        byMass.sort(new MassComparator());
+        List<Meteorite> byYear = new ArrayList<Meteorite>(natural);
+        byYear.sort(new YearComparator());
+        for (int i = 0; i < 200; i++) {
+            int year = i % 13 == 0 ? 0 : 1780 + random.nextInt(241);
+            int toYear = Math.min(2020, year + random.nextInt(i % 3 == 0 ? 3 : 300));
+            checkView(MeteoriteDataCheck.yearRange(byYear, year, toYear), data.getByYear(year, toYear), random,
+                    what + ": getByYear " + year + ".." + toYear);
+            checkView(MeteoriteDataCheck.yearRange(byYear, year, year), data.getByYear(year), random,
+                    what + ": getByYear " + year);
+            int m = i < 3 ? i : random.nextInt(110000);
+            int delta = i % 7 == 0 ? 0 : i % 11 == 0 ? Integer.MAX_VALUE : random.nextInt(i % 2 == 0 ? 50 : 20000);
+            checkView(MeteoriteDataCheck.massRange(byMass, m, delta), data.getByMass(m, delta), random,
+                    what + ": getByMass " + m + " " + delta);
+            Location loc = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            double radius = random.nextDouble() * 3000;
+            checkView(KDTreeCheck.within(natural, loc, radius), data.getByDistance(loc, radius), random,
+                    what + ": getByDistance " + radius);
+        }
+    }
+
+    /*
+     * Compares the spliterator and the parallel stream of view with the expected meteorites.
+     */
+    private static void checkView(List<Meteorite> expected, MeteoriteView view, Random random, String what) {
+        Checks.check(expected.isEmpty() == (view == null), what + ": is null");
+        if (view == null) return;
+        split(view.spliterator(), expected, random, what);
+        Checks.same(expected, view.stream().parallel().collect(Collectors.toList()), what + ": parallel stream");
+    }
+
+    /*
+     * Checks that the first split of s gives each part at least a fifth of the elements.
+     */
+    private static <T> void checkBalanced(Spliterator<T> s, String what) {
+        long size = s.estimateSize();
+        Spliterator<T> prefix = s.trySplit();
+        Checks.check(prefix != null, what + ": not split");
+        Checks.check(5 * prefix.estimateSize() >= size && 5 * s.estimateSize() >= size,
+                what + ": split " + prefix.estimateSize() + " + " + s.estimateSize());
+    }
+
+    /*
+     * Splits the spliterator at random and traverses its parts in order, checking that together
+     * they hold the expected elements and that every part of a SIZED spliterator reports its exact
+     * size.
+     */
+    private static <T> void split(Spliterator<T> s, List<T> expected, Random random, String what) {
+        List<T> found = new ArrayList<T>();
+        split(s, found, random, 12, what);
+        Checks.check(expected.equals(found), what + ": elements");
+    }
+
+    /*
+     * Adds the elements of s to found, after splitting it up to depth more times.
+     */
+    private static <T> void split(Spliterator<T> s, List<T> found, Random random, int depth, String what) {
+        boolean sized = s.hasCharacteristics(Spliterator.SIZED);
+        long size = s.estimateSize();
+        int before = found.size();
+        Spliterator<T> prefix = depth > 0 && random.nextInt(5) != 0 ? s.trySplit() : null;
+        if (prefix != null) {
+            if (sized && s.hasCharacteristics(Spliterator.SUBSIZED))
+                Checks.check(prefix.estimateSize() + s.estimateSize() == size, what + ": sizes of the parts");
+            split(prefix, found, random, depth - 1, what);
+            split(s, found, random, depth - 1, what);
+        }
+        else if (random.nextBoolean()) s.forEachRemaining(found::add);
+        else {
+            while (s.tryAdvance(found::add)) {
+                Checks.check(!sized || found.size() - before <= size, what + ": more elements than its size");
+            }
+        }
+        Checks.check(!sized || found.size() - before == size, what + ": size " + size + " of a part");
+    }
+}
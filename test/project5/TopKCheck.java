@@ -0,0 +1,130 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * TopKCheck class checks getHeaviest and getLightest of MeteoriteData against sorted scans: the
+ * first k meteorites of the collection, of a range of years or of a box, in the order of
+ * MassComparator or in reverse order. Meteorites with mass 0 have an unknown mass and must be
+ * left out. The queries are repeated after changes, to check that cached results are not reused.
+ *
+ * @author Jack
+ */
+public class TopKCheck {
+    //number of generated meteorites
+    private static final int N = 20000;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(41);
+        List<Meteorite> meteorites = Checks.meteorites(args, 42, N);
+        MeteoriteData data = new MeteoriteData(meteorites);
+        checkQueries(data, random, "collection");
+        List<Meteorite> natural = Checks.list(data);
+        for (int round = 0; round < 3; round++) {
+            //removes some of the heaviest and lightest, and adds new ones
+            List<Meteorite> heaviest = Checks.list(data.getHeaviest(50));
+            List<Meteorite> lightest = Checks.list(data.getLightest(50));
+            for (int i = 0; i < 50; i += 2) {
+                data.remove(heaviest.get(i));
+                data.remove(lightest.get(i));
+            }
+            for (Meteorite m : Checks.randomMeteorites(43 + round, 200)) data.add(m);
+            data.add(natural.get(random.nextInt(natural.size())));
+            checkQueries(data, random, "collection after changes " + round);
+        }
+        MeteoriteData empty = new MeteoriteData();
+        checkQueries(empty, random, "empty collection");
+        MeteoriteData unknown = new MeteoriteData();
+        for (Meteorite m : natural) {
+            if (m.getMass() == 0) unknown.add(m);
+        }
+        Checks.check(unknown.size() > 0, "meteorites with mass 0");
+        checkQueries(unknown, random, "meteorites with mass 0");
+        Checks.rejects("invalid arguments", () -> data.getHeaviest(0), () -> empty.getLightest(-1),
+                () -> data.getHeaviest(0, 1980, 1990), () -> data.getLightest(5, 1990, 1980),
+                () -> data.getHeaviest(5, -1, 1990), () -> data.getLightest(5, 1980, 2021),
+                () -> data.getHeaviest(0, 0, 0, 10, 10), () -> data.getLightest(5, 10, 0, 0, 10),
+                () -> data.getHeaviest(5, 0, 10, 10, 0), () -> data.getLightest(5, -91, 0, 10, 10),
+                () -> data.getHeaviest(5, 0, 0, 10, 181));
+        System.out.println("TopKCheck: OK");
+    }
+
+    /*
+     * Compares random top-k queries of data with the first k meteorites of sorted scans.
+     */
+    private static void checkQueries(MeteoriteData data, Random random, String what) {
+        List<Meteorite> natural = Checks.list(data);
+        List<Meteorite> lightest = new ArrayList<Meteorite>();
+        for (Meteorite m : natural) {
+            if (m.getMass() > 0) lightest.add(m);
+        }
+        lightest.sort(new MassComparator());
+        List<Meteorite> heaviest = new ArrayList<Meteorite>(lightest);
+        Collections.reverse(heaviest);
+        for (int i = 0; i < 200; i++) {
+            int k = k(random, i, natural.size());
+            check(top(heaviest, k, m -> true), data.getHeaviest(k), what + ": getHeaviest " + k);
+            check(top(lightest, k, m -> true), data.getLightest(k), what + ": getLightest " + k);
+
+            int fromYear = i % 13 == 0 ? 0 : 1790 + random.nextInt(231);
+            int toYear = i % 17 == 0 ? 2020 : Math.min(2020, fromYear + random.nextInt(i % 2 == 0 ? 3 : 150));
+            Predicate<Meteorite> years = m -> m.getYear() >= fromYear && m.getYear() <= toYear;
+            String range = " " + k + " " + fromYear + ".." + toYear;
+            check(top(heaviest, k, years), data.getHeaviest(k, fromYear, toYear), what + ": getHeaviest" + range);
+            check(top(lightest, k, years), data.getLightest(k, fromYear, toYear), what + ": getLightest" + range);
+
+            double[] box = i == 0 ? new double[]{-90, -180, 90, 180} : QueryCheck.randomBox(random);
+            Predicate<Meteorite> inside = m -> QueryCheck.inside(m, box);
+            String where = " " + k + " " + box[0] + "," + box[1] + "," + box[2] + "," + box[3];
+            check(top(heaviest, k, inside), data.getHeaviest(k, box[0], box[1], box[2], box[3]),
+                    what + ": getHeaviest" + where);
+            check(top(lightest, k, inside), data.getLightest(k, box[0], box[1], box[2], box[3]),
+                    what + ": getLightest" + where);
+        }
+    }
+
+    /*
+     * Checks that view holds the expected meteorites, or is null if there are none.
+     */
+    private static void check(List<Meteorite> expected, MeteoriteView view, String what) {
+        Checks.check(expected.isEmpty() == (view == null), what + ": is null");
+        if (view == null) return;
+        Checks.check(view.size() == expected.size(), what + ": size");
+        Checks.same(expected, Checks.list(view), what);
+    }
+
+    /*
+     * Returns a random k: one, small, large, the size of the collection or Integer.MAX_VALUE.
+     */
+    private static int k(Random random, int i, int size) {
+        switch (i % 5) {
+            case 0: return 1;
+            case 1: return Math.max(1, size + i % 2);
+            case 2: return Integer.MAX_VALUE;
+            case 3: return 1 + random.nextInt(2000);
+            default: return 1 + random.nextInt(20);
+        }
+    }
+
+    /*
+     * Returns the first k meteorites of sorted that satisfy condition, in the order of sorted.
+     */
+    private static List<Meteorite> top(List<Meteorite> sorted, int k, Predicate<Meteorite> condition) {
+        List<Meteorite> top = new ArrayList<Meteorite>();
+        for (Meteorite m : sorted) {
+            if (top.size() == k) break;
+            if (condition.test(m)) top.add(m);
+        }
+        return top;
+    }
+}
@@ -0,0 +1,129 @@
+package project5;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+/**
+ * YearIndexCheck class checks the year indexes against scans of the years. The posting lists of
+ * YearIndex are compared with the records of every range of years, on the heap, in a direct
+ * buffer and read back from the buffer of another index, with years whose records are far enough
+ * apart to need three bytes per record. The year buckets of MeteoriteData are checked to follow
+ * adds and removes: a year whose meteorites are all removed is empty, and a view of a range of
+ * years shows the buckets created after it.
+ *
+ * @author Jack
+ */
+public class YearIndexCheck {
+    //number of records of the generated indexes
+    private static final int N = 200000;
+
+    /**
+     * Runs the check.
+     * @param args - name of the CSV file to be checked (optional)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(23);
+        int[] years = new int[N];
+        for (int i = 0; i < N; i++) {
+            //year 1 only every 20000 records, year 2 only every 128, years 0 and 2020 rarely
+            if (i % 20000 == 7) years[i] = 1;
+            else if (i % 128 == 3) years[i] = 2;
+            else if (random.nextInt(5000) == 0) years[i] = random.nextBoolean() ? 0 : 2020;
+            else years[i] = 1800 + random.nextInt(221);
+        }
+        YearIndex heap = new YearIndex(years, false);
+        compare(heap, years, random, "heap");
+        compare(new YearIndex(years, true), years, random, "direct");
+        compare(new YearIndex(heap.buffer()), years, random, "copy");
+        compare(new YearIndex(new int[0], false), new int[0], random, "empty");
+
+        ByteBuffer buffer = heap.buffer();
+        Checks.rejects("invalid arguments", () -> new YearIndex(new int[]{1900, -1}, false),
+                () -> new YearIndex(new int[]{2021}, false), () -> heap.count(2021), () -> heap.count(-1, 5),
+                () -> heap.count(10, 5), () -> heap.records(10, 5), () -> new YearIndex(ByteBuffer.allocate(100)),
+                () -> new YearIndex(buffer.limit(buffer.limit() - 1)));
+        checkBuckets(args);
+        System.out.println("YearIndexCheck: OK");
+    }
+
+    /*
+     * Compares the counts and posting lists of index with scans of the years, for every year and
+     * for random ranges of years.
+     */
+    private static void compare(YearIndex index, int[] years, Random random, String what) {
+        //records of every year, in increasing order
+        List<List<Integer>> byYear = new ArrayList<List<Integer>>();
+        for (int year = 0; year < YearIndex.YEARS; year++) byYear.add(new ArrayList<Integer>());
+        for (int record = 0; record < years.length; record++) byYear.get(years[record]).add(record);
+        for (int year = 0; year < YearIndex.YEARS; year++) {
+            Checks.check(index.count(year) == byYear.get(year).size(), what + ": count " + year);
+        }
+        compare(index, byYear, 0, 2020, what);
+        for (int year : new int[]{0, 1, 2, 1799, 2020}) {
+            compare(index, byYear, year, year, what);
+        }
+        for (int i = 0; i < 100; i++) {
+            int fromYear = random.nextInt(YearIndex.YEARS);
+            int toYear = Math.min(2020, fromYear + random.nextInt(i % 2 == 0 ? 3 : 400));
+            compare(index, byYear, fromYear, toYear, what);
+        }
+    }
+
+    /*
+     * Compares the count and the posting lists of a range of years with the records of the years.
+     */
+    private static void compare(YearIndex index, List<List<Integer>> byYear, int fromYear, int toYear, String what) {
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int year = fromYear; year <= toYear; year++) expected.addAll(byYear.get(year));
+        String range = what + ": " + fromYear + ".." + toYear;
+        Checks.check(index.count(fromYear, toYear) == expected.size(), range + " count");
+        PrimitiveIterator.OfInt records = index.records(fromYear, toYear);
+        for (int i = 0; i < expected.size(); i++) {
+            Checks.check(records.hasNext() && records.nextInt() == expected.get(i), range + " record " + i);
+        }
+        Checks.check(!records.hasNext(), range + " end");
+        try {
+            records.nextInt();
+            Checks.check(false, range + " next after the end");
+        } catch (NoSuchElementException e) {
+            //expected
+        }
+    }
+
+    /*
+     * Checks that the year buckets of MeteoriteData follow adds and removes.
+     */
+    private static void checkBuckets(String[] args) throws IOException {
+        MeteoriteData data = new MeteoriteData(Checks.list(Checks.load(args)));
+        for (Meteorite m : Checks.list(data.getByYear(0, 2020))) {
+            if (m.getYear() != 1950) data.remove(m);
+        }
+        List<Meteorite> added = new ArrayList<Meteorite>();
+        for (int year : new int[]{1950, 1951, 1949, 1950, 2020, 0}) {
+            Meteorite m = new Meteorite("year " + year + " " + added.size(), added.size() + 1);
+            m.setYear(year);
+            added.add(m);
+        }
+        //a view of the years around 1950, created before the buckets of 1949 and 1951
+        data.add(added.get(0));
+        MeteoriteView view = data.getByYear(1949, 1951);
+        for (Meteorite m : added) data.add(m);
+        List<Meteorite> expected = MeteoriteDataCheck.yearRange(Checks.list(data), 1949, 1951);
+        expected.sort(new YearComparator());
+        Checks.same(expected, Checks.list(view), "buckets: view after adds");
+        Checks.check(view.size() == expected.size(), "buckets: size after adds");
+        Checks.same(List.of(added.get(4)), Checks.list(data.getByYear(2020)), "buckets: year 2020");
+        Checks.same(List.of(added.get(5)), Checks.list(data.getByYear(0)), "buckets: year 0");
+
+        for (Meteorite m : Checks.list(data.getByYear(1950))) data.remove(m);
+        Checks.check(data.getByYear(1950) == null && data.countByYear(1950) == 0, "buckets: emptied year");
+        Checks.same(List.of(added.get(2), added.get(1)), Checks.list(view), "buckets: view after removes");
+        Checks.check(data.countByYear(0, 2020) == 4 && data.size() == 4, "buckets: count after removes");
+    }
+}